@@ -0,0 +1,29 @@
+package com.mall.cart.client;
+
+import com.mall.cart.domain.dto.ProductDTO;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.util.List;
+
+/**
+ * 商品服务客户端（product-service）
+ * 用于购物车批量操作时一次性获取多个商品信息
+ * 
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@FeignClient(name = "product-service", contextId = "cartProductService", path = "/api")
+public interface ProductServiceClient {
+
+    /**
+     * 批量获取商品信息
+     * 
+     * @param productIds 商品ID列表
+     * @return 商品信息列表（不存在的商品不会返回）
+     */
+    @PostMapping("/products/batch")
+    List<ProductDTO> getProductsBatch(@RequestBody List<Long> productIds);
+}
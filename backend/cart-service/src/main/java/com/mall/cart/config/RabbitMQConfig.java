@@ -0,0 +1,102 @@
+package com.mall.cart.config;
+
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * RabbitMQ配置类
+ * 订阅商品服务发布的价格、库存、状态变更事件
+ * 消费失败按 spring.rabbitmq.listener.simple.retry 有限重试，重试耗尽后拒绝且不重新入队，经死信交换机进入死信队列
+ *
+ * @author lingbai
+ * @version 1.1
+ * @since 2026-10-19
+ *
+ * V1.1 2026-10-19：购物车商品变更队列增加死信队列
+ */
+@Configuration
+public class RabbitMQConfig {
+
+  /**
+   * 商品事件Exchange（由商品服务发布）
+   */
+  public static final String PRODUCT_EXCHANGE = "product.exchange";
+
+  /**
+   * 购物车商品变更队列
+   */
+  public static final String CART_PRODUCT_CHANGE_QUEUE = "cart.product.change.queue";
+
+  /**
+   * 购物车商品变更死信Exchange
+   */
+  public static final String CART_PRODUCT_CHANGE_DLX = "cart.product.change.dlx";
+
+  /**
+   * 购物车商品变更死信队列，保存重试耗尽的事件，供排查后人工重放
+   */
+  public static final String CART_PRODUCT_CHANGE_DLQ = "cart.product.change.dlq";
+
+  /**
+   * 声明商品事件Exchange，与商品服务声明保持一致，保证启动顺序无关
+   */
+  @Bean
+  public TopicExchange productExchange() {
+    return new TopicExchange(PRODUCT_EXCHANGE, true, false);
+  }
+
+  /**
+   * 声明购物车商品变更队列，被拒绝的消息转入死信队列
+   */
+  @Bean
+  public Queue cartProductChangeQueue() {
+    return QueueBuilder.durable(CART_PRODUCT_CHANGE_QUEUE)
+        .deadLetterExchange(CART_PRODUCT_CHANGE_DLX)
+        .deadLetterRoutingKey(CART_PRODUCT_CHANGE_DLQ)
+        .build();
+  }
+
+  /**
+   * 声明购物车商品变更死信Exchange
+   */
+  @Bean
+  public DirectExchange cartProductChangeDeadLetterExchange() {
+    return new DirectExchange(CART_PRODUCT_CHANGE_DLX, true, false);
+  }
+
+  /**
+   * 声明购物车商品变更死信队列
+   */
+  @Bean
+  public Queue cartProductChangeDeadLetterQueue() {
+    return new Queue(CART_PRODUCT_CHANGE_DLQ, true);
+  }
+
+  /**
+   * 绑定死信队列
+   */
+  @Bean
+  public Binding cartProductChangeDeadLetterBinding() {
+    return BindingBuilder
+        .bind(cartProductChangeDeadLetterQueue())
+        .to(cartProductChangeDeadLetterExchange())
+        .with(CART_PRODUCT_CHANGE_DLQ);
+  }
+
+  /**
+   * 绑定全部商品事件到购物车队列
+   */
+  @Bean
+  public Binding cartProductChangeBinding() {
+    return BindingBuilder
+        .bind(cartProductChangeQueue())
+        .to(productExchange())
+        .with("product.#");
+  }
+}
@@ -1,7 +1,10 @@
 package com.mall.cart.controller;
 
+import com.mall.cart.domain.dto.CartItemRequest;
+import com.mall.cart.domain.dto.CheckoutSnapshot;
 import com.mall.cart.domain.entity.CartItem;
 import com.mall.cart.service.CartService;
+import com.mall.cart.service.CheckoutSnapshotService;
 import com.mall.common.core.domain.R;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -14,7 +17,9 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import java.util.List;
 
@@ -22,11 +27,15 @@ import java.util.List;
  * 购物车控制器
  * 
  * @author lingbai
- * @version 1.1
+ * @version 1.5
  * @since 2025-01-21
  * 
  *        修改日志：
  *        V1.1 2025-01-21：添加JWT认证支持，从令牌中获取用户ID
+ *        V1.2 2026-10-19：添加批量添加/更新/删除/选中接口
+ *        V1.3 2026-10-19：添加结算快照生成/领取/完成接口
+ *        V1.4 2026-10-19：添加结算快照只读获取接口
+ *        V1.5 2026-10-19：添加结算快照释放接口
  */
 @RestController
 @RequestMapping("/cart")
@@ -39,6 +48,9 @@ public class CartController {
     @Autowired
     private CartService cartService;
 
+    @Autowired
+    private CheckoutSnapshotService checkoutSnapshotService;
+
     /**
      * 获取当前认证用户的ID
      * 
@@ -171,4 +183,141 @@ public class CartController {
         log.info("获取购物车商品数量请求: userId={}", userId);
         return cartService.getCartCount(userId);
     }
-}
\ No newline at end of file
+
+    /**
+     * 批量添加商品到购物车（再次购买、登录后合并本地购物车）
+     */
+    @Operation(summary = "批量添加商品到购物车")
+    @PostMapping("/batch/add")
+    public R<Void> batchAddToCart(
+            @Parameter(description = "用户ID") @RequestParam(required = false) Long userId,
+            @RequestBody @NotEmpty List<@Valid CartItemRequest> items) {
+
+        // 开发模式：使用参数传入的userId
+        if (userId == null) {
+            userId = getCurrentUserId();
+        }
+        log.info("批量添加商品到购物车请求: userId={}, 商品数={}", userId, items.size());
+        return cartService.batchAddToCart(userId, items);
+    }
+
+    /**
+     * 批量更新购物车商品数量
+     */
+    @Operation(summary = "批量更新购物车商品数量")
+    @PutMapping("/batch/update")
+    public R<Void> batchUpdateQuantity(
+            @Parameter(description = "用户ID") @RequestParam(required = false) Long userId,
+            @RequestBody @NotEmpty List<@Valid CartItemRequest> items) {
+
+        // 开发模式：使用参数传入的userId
+        if (userId == null) {
+            userId = getCurrentUserId();
+        }
+        log.info("批量更新购物车商品数量请求: userId={}, 商品数={}", userId, items.size());
+        return cartService.batchUpdateQuantity(userId, items);
+    }
+
+    /**
+     * 批量从购物车删除商品
+     */
+    @Operation(summary = "批量从购物车删除商品")
+    @DeleteMapping("/batch/remove")
+    public R<Void> batchRemoveFromCart(
+            @Parameter(description = "用户ID") @RequestParam(required = false) Long userId,
+            @RequestBody @NotEmpty List<Long> productIds) {
+
+        // 开发模式：使用参数传入的userId
+        if (userId == null) {
+            userId = getCurrentUserId();
+        }
+        log.info("批量删除购物车商品请求: userId={}, productIds={}", userId, productIds);
+        return cartService.batchRemoveFromCart(userId, productIds);
+    }
+
+    /**
+     * 批量选中/取消选中购物车商品
+     */
+    @Operation(summary = "批量选中/取消选中购物车商品")
+    @PutMapping("/batch/select")
+    public R<Void> batchSelectItems(
+            @Parameter(description = "用户ID") @RequestParam(required = false) Long userId,
+            @Parameter(description = "是否选中") @RequestParam @NotNull Boolean selected,
+            @RequestBody @NotEmpty List<Long> productIds) {
+
+        // 开发模式：使用参数传入的userId
+        if (userId == null) {
+            userId = getCurrentUserId();
+        }
+        log.info("批量选中购物车商品请求: userId={}, productIds={}, selected={}", userId, productIds, selected);
+        return cartService.batchSelectItems(userId, productIds, selected);
+    }
+
+    /**
+     * 生成结算快照
+     */
+    @Operation(summary = "生成结算快照")
+    @PostMapping("/checkout/snapshot")
+    public R<CheckoutSnapshot> createCheckoutSnapshot(
+            @Parameter(description = "用户ID") @RequestParam(required = false) Long userId) {
+
+        // 开发模式：使用参数传入的userId
+        if (userId == null) {
+            userId = getCurrentUserId();
+        }
+        log.info("生成结算快照请求: userId={}", userId);
+        return checkoutSnapshotService.createSnapshot(userId);
+    }
+
+    /**
+     * 获取结算快照（供订单服务验签，不领取）
+     */
+    @Operation(summary = "获取结算快照")
+    @GetMapping("/checkout/snapshot/{snapshotId}")
+    public R<CheckoutSnapshot> getCheckoutSnapshot(
+            @Parameter(description = "快照ID") @PathVariable String snapshotId,
+            @Parameter(description = "用户ID") @RequestParam @NotNull Long userId) {
+
+        log.info("获取结算快照请求: snapshotId={}, userId={}", snapshotId, userId);
+        return checkoutSnapshotService.getSnapshot(snapshotId, userId);
+    }
+
+    /**
+     * 领取结算快照（供订单服务调用）
+     */
+    @Operation(summary = "领取结算快照")
+    @PostMapping("/checkout/snapshot/{snapshotId}/claim")
+    public R<CheckoutSnapshot> claimCheckoutSnapshot(
+            @Parameter(description = "快照ID") @PathVariable String snapshotId,
+            @Parameter(description = "用户ID") @RequestParam @NotNull Long userId) {
+
+        log.info("领取结算快照请求: snapshotId={}, userId={}", snapshotId, userId);
+        return checkoutSnapshotService.claimSnapshot(snapshotId, userId);
+    }
+
+    /**
+     * 释放结算快照（供订单服务在订单创建失败时调用）
+     */
+    @Operation(summary = "释放结算快照")
+    @PostMapping("/checkout/snapshot/{snapshotId}/release")
+    public R<Void> releaseCheckoutSnapshot(
+            @Parameter(description = "快照ID") @PathVariable String snapshotId,
+            @Parameter(description = "用户ID") @RequestParam @NotNull Long userId) {
+
+        log.info("释放结算快照请求: snapshotId={}, userId={}", snapshotId, userId);
+        return checkoutSnapshotService.releaseSnapshot(snapshotId, userId);
+    }
+
+    /**
+     * 完成结算快照（供订单服务调用）
+     */
+    @Operation(summary = "完成结算快照")
+    @PostMapping("/checkout/snapshot/{snapshotId}/complete")
+    public R<Void> completeCheckoutSnapshot(
+            @Parameter(description = "快照ID") @PathVariable String snapshotId,
+            @Parameter(description = "用户ID") @RequestParam @NotNull Long userId) {
+
+        log.info("完成结算快照请求: snapshotId={}, userId={}", snapshotId, userId);
+        return checkoutSnapshotService.completeSnapshot(snapshotId, userId);
+    }
+}
@@ -0,0 +1,32 @@
+package com.mall.cart.domain.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 购物车批量操作请求项
+ * 
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Data
+public class CartItemRequest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** 商品ID */
+    @NotNull(message = "商品ID不能为空")
+    private Long productId;
+
+    /** 数量（批量更新时为0表示删除） */
+    @NotNull(message = "商品数量不能为空")
+    @Min(value = 0, message = "商品数量不能为负数")
+    private Integer quantity;
+
+    /** 商品规格 */
+    private String specifications;
+}
@@ -0,0 +1,42 @@
+package com.mall.cart.domain.dto;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 结算快照
+ * 结算时对选中购物车项的价格和商品版本号的签名快照，短期有效且只能被订单服务领取一次
+ * 
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Data
+public class CheckoutSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** 快照ID */
+    private String snapshotId;
+
+    /** 用户ID */
+    private Long userId;
+
+    /** 快照商品项 */
+    private List<CheckoutSnapshotItem> items;
+
+    /** 商品总金额 */
+    private BigDecimal totalAmount;
+
+    /** 创建时间戳（毫秒） */
+    private Long createTime;
+
+    /** 过期时间戳（毫秒） */
+    private Long expireTime;
+
+    /** 签名（HMAC-SHA256） */
+    private String signature;
+}
@@ -0,0 +1,46 @@
+package com.mall.cart.domain.dto;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * 结算快照商品项
+ * 
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Data
+public class CheckoutSnapshotItem implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** 购物车项Hash字段名，下单完成后据此删除购物车项 */
+    private String itemKey;
+
+    /** 商品ID */
+    private Long productId;
+
+    /** 商家ID */
+    private Long merchantId;
+
+    /** 商品名称 */
+    private String productName;
+
+    /** 商品图片 */
+    private String productImage;
+
+    /** 商品规格 */
+    private String specifications;
+
+    /** 单价 */
+    private BigDecimal price;
+
+    /** 数量 */
+    private Integer quantity;
+
+    /** 商品交易版本号 */
+    private Long version;
+}
@@ -0,0 +1,162 @@
+package com.mall.cart.domain.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 商品变更事件DTO
+ * 对应商品服务发布的 ProductEvent，字段为空表示该字段未变更
+ * 
+ * @author lingbai
+ * @version 1.1
+ * @since 2026-10-19
+ * 
+ * V1.1 2026-10-19：增加商品变更版本号
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ProductChangeEvent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** 商品删除事件类型 */
+    public static final String TYPE_DELETED = "DELETED";
+
+    /**
+     * 事件类型 (PRICE_CHANGED/STOCK_CHANGED/STATUS_CHANGED/INFO_CHANGED/DELETED)
+     */
+    private String eventType;
+
+    /**
+     * 商品ID
+     */
+    private Long productId;
+
+    /**
+     * 商品名称
+     */
+    private String name;
+
+    /**
+     * 商品主图
+     */
+    private String mainImage;
+
+    /**
+     * 变更后价格
+     */
+    private BigDecimal price;
+
+    /**
+     * 变更后库存
+     */
+    private Integer stock;
+
+    /**
+     * 变更后状态 (1:上架 0:下架)
+     */
+    private Integer status;
+
+    /**
+     * 商品变更版本号（商品服务 change_version，删除事件为空）
+     */
+    private Long version;
+
+    /**
+     * 事件时间
+     */
+    private LocalDateTime eventTime;
+
+    public boolean isDeleted() {
+        return TYPE_DELETED.equals(eventType);
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public void setProductId(Long productId) {
+        this.productId = productId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getMainImage() {
+        // 如果图片包含逗号，只取第一张
+        if (mainImage != null && mainImage.contains(",")) {
+            return mainImage.split(",")[0].trim();
+        }
+        return mainImage;
+    }
+
+    public void setMainImage(String mainImage) {
+        this.mainImage = mainImage;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public Integer getStock() {
+        return stock;
+    }
+
+    public void setStock(Integer stock) {
+        this.stock = stock;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public void setStatus(Integer status) {
+        this.status = status;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public LocalDateTime getEventTime() {
+        return eventTime;
+    }
+
+    public void setEventTime(LocalDateTime eventTime) {
+        this.eventTime = eventTime;
+    }
+
+    @Override
+    public String toString() {
+        return "ProductChangeEvent{" +
+                "eventType='" + eventType + '\'' +
+                ", productId=" + productId +
+                ", price=" + price +
+                ", stock=" + stock +
+                ", status=" + status +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -8,10 +8,12 @@ import java.math.BigDecimal;
  * 商品信息DTO
  * 
  * @author lingbai
- * @version 1.1
+ * @version 1.3
  * @since 2025-01-21
  * 
  *        V1.1: 添加字段别名，兼容 merchant-service 返回的 productName 和 mainImage 字段
+ *        V1.2: 添加商家ID和交易版本号，用于生成结算快照
+ *        V1.3: 添加商品变更版本号，用于判断商品变更事件先后
  */
 public class ProductDTO implements Serializable {
 
@@ -62,6 +64,21 @@ public class ProductDTO implements Serializable {
     @JsonAlias({ "stockQuantity", "stock" })
     private Integer stockQuantity;
 
+    /**
+     * 商家ID
+     */
+    private Long merchantId;
+
+    /**
+     * 交易版本号（由价格和上下架状态计算，product-service批量接口返回）
+     */
+    private Long version;
+
+    /**
+     * 商品变更版本号（product-service change_version）
+     */
+    private Long changeVersion;
+
     // 构造函数
     public ProductDTO() {
     }
@@ -163,6 +180,30 @@ public class ProductDTO implements Serializable {
         }
     }
 
+    public Long getMerchantId() {
+        return merchantId;
+    }
+
+    public void setMerchantId(Long merchantId) {
+        this.merchantId = merchantId;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Long getChangeVersion() {
+        return changeVersion;
+    }
+
+    public void setChangeVersion(Long changeVersion) {
+        this.changeVersion = changeVersion;
+    }
+
     @Override
     public String toString() {
         return "ProductDTO{" +
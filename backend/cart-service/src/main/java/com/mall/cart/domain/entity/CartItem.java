@@ -1,5 +1,6 @@
 package com.mall.cart.domain.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.mall.common.core.domain.BaseEntity;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -10,10 +11,15 @@ import java.math.BigDecimal;
  * 购物车项实体类
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.3
  * @since 2025-01-21
+ * 
+ * V1.1 2026-10-19：增加商品库存、状态快照和可购买标记，由商品变更事件增量维护
+ * V1.2 2026-10-19：记录已应用的商品变更事件时间，过期事件不再覆盖较新的快照
+ * V1.3 2026-10-19：改为记录商品服务的商品变更版本号，不再比较不同服务的系统时钟
  */
 @Data
+@JsonIgnoreProperties(ignoreUnknown = true)
 @EqualsAndHashCode(callSuper = true)
 public class CartItem extends BaseEntity {
     
@@ -41,6 +47,18 @@ public class CartItem extends BaseEntity {
     /** 商品规格 */
     private String specifications;
     
+    /** 商品库存（最近一次同步的快照） */
+    private Integer stock;
+    
+    /** 商品状态快照 (1:上架 0:下架) */
+    private Integer productStatus;
+    
+    /** 是否可购买（已下架、已删除或库存不足时为false） */
+    private Boolean available;
+    
+    /** 商品快照对应的商品变更版本号，不大于此版本的商品变更事件不再应用 */
+    private Long productVersion;
+    
     // Getter methods for Lambda expressions
     public Long getUserId() { return userId; }
     public Long getProductId() { return productId; }
@@ -50,6 +68,10 @@ public class CartItem extends BaseEntity {
     public Integer getQuantity() { return quantity; }
     public Boolean getSelected() { return selected; }
     public String getSpecifications() { return specifications; }
+    public Integer getStock() { return stock; }
+    public Integer getProductStatus() { return productStatus; }
+    public Boolean getAvailable() { return available; }
+    public Long getProductVersion() { return productVersion; }
     
     // Setter methods
     public void setUserId(Long userId) { this.userId = userId; }
@@ -60,4 +82,8 @@ public class CartItem extends BaseEntity {
     public void setQuantity(Integer quantity) { this.quantity = quantity; }
     public void setSelected(Boolean selected) { this.selected = selected; }
     public void setSpecifications(String specifications) { this.specifications = specifications; }
+    public void setStock(Integer stock) { this.stock = stock; }
+    public void setProductStatus(Integer productStatus) { this.productStatus = productStatus; }
+    public void setAvailable(Boolean available) { this.available = available; }
+    public void setProductVersion(Long productVersion) { this.productVersion = productVersion; }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.mall.cart.listener;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mall.cart.config.RabbitMQConfig;
+import com.mall.cart.domain.dto.ProductChangeEvent;
+import com.mall.cart.service.CartProductChangeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 商品变更事件监听器
+ * 消费商品服务发布的价格、库存、状态变更事件，增量刷新购物车
+ * 
+ * <p>处理失败时抛出异常，由监听容器按配置有限重试（带退避），重试耗尽后拒绝且不重新入队，
+ * 消息进入死信队列 {@link RabbitMQConfig#CART_PRODUCT_CHANGE_DLQ}，不会在队列头部反复重投。</p>
+ * 
+ * @author lingbai
+ * @version 1.1
+ * @since 2026-10-19
+ * 
+ * V1.1 2026-10-19：处理失败记录日志后交由容器有限重试，耗尽后进入死信队列
+ */
+@Component
+public class ProductChangeListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductChangeListener.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Autowired
+    private CartProductChangeService cartProductChangeService;
+
+    /**
+     * 处理商品变更事件
+     * 
+     * @param message 事件JSON
+     */
+    @RabbitListener(queues = RabbitMQConfig.CART_PRODUCT_CHANGE_QUEUE)
+    public void onProductChange(String message) {
+        ProductChangeEvent event;
+        try {
+            event = objectMapper.readValue(message, ProductChangeEvent.class);
+        } catch (Exception e) {
+            // 格式错误的消息无法重试成功，记录后丢弃
+            log.error("商品变更事件解析失败，已丢弃: message={}", message, e);
+            return;
+        }
+        log.debug("收到商品变更事件: {}", event);
+        try {
+            cartProductChangeService.applyProductChange(event);
+        } catch (RuntimeException e) {
+            log.warn("商品变更事件处理失败，将按重试策略重试，耗尽后进入死信队列: productId={}, eventType={}, 错误: {}",
+                    event.getProductId(), event.getEventType(), e.getMessage());
+            throw e;
+        }
+    }
+}
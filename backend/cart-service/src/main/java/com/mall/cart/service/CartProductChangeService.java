@@ -0,0 +1,56 @@
+package com.mall.cart.service;
+
+import com.mall.cart.domain.dto.ProductChangeEvent;
+import com.mall.cart.domain.entity.CartItem;
+
+/**
+ * 购物车商品变更服务接口
+ * 维护"商品 -> 包含该商品的购物车"反向索引，并根据商品变更事件增量刷新购物车项
+ * 
+ * @author lingbai
+ * @version 1.1
+ * @since 2026-10-19
+ * 
+ * V1.1 2026-10-19：增加反向索引回填
+ */
+public interface CartProductChangeService {
+
+    /**
+     * 记录用户购物车包含该商品
+     * 
+     * @param userId 用户ID
+     * @param productId 商品ID
+     */
+    void indexProduct(Long userId, Long productId);
+
+    /**
+     * 移除用户购物车与该商品的索引关系
+     * 
+     * @param userId 用户ID
+     * @param productId 商品ID
+     */
+    void unindexProduct(Long userId, Long productId);
+
+    /**
+     * 应用商品变更事件，刷新所有包含该商品的购物车项
+     * 
+     * @param event 商品变更事件
+     * @return 刷新的购物车项数量
+     */
+    int applyProductChange(ProductChangeEvent event);
+
+    /**
+     * 扫描全部购物车，为已有购物车项补建反向索引
+     * 用于上线前已存在、尚未建立索引的购物车，重复执行不会产生重复索引
+     * 
+     * @return 写入的索引项数量
+     */
+    long backfillProductIndex();
+
+    /**
+     * 根据库存、状态快照重新计算购物车项是否可购买，不可购买时自动取消选中
+     * 
+     * @param item 购物车项
+     */
+    void refreshAvailability(CartItem item);
+}
@@ -1,5 +1,6 @@
 package com.mall.cart.service;
 
+import com.mall.cart.domain.dto.CartItemRequest;
 import com.mall.cart.domain.entity.CartItem;
 import com.mall.common.core.domain.R;
 
@@ -9,8 +10,10 @@ import java.util.List;
  * 购物车服务接口
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.1
  * @since 2025-01-21
+ * 
+ * V1.1 2026-10-19：增加批量添加/更新/删除/选中接口
  */
 public interface CartService {
     
@@ -77,4 +80,42 @@ public interface CartService {
      * @return 购物车商品数量
      */
     R<Integer> getCartCount(Long userId);
-}
\ No newline at end of file
+    
+    /**
+     * 批量添加商品到购物车
+     * 一次批量查询校验所有商品，校验全部通过后一次性写入（用于再次购买、登录后合并购物车）
+     * 
+     * @param userId 用户ID
+     * @param items 商品列表
+     * @return 操作结果
+     */
+    R<Void> batchAddToCart(Long userId, List<CartItemRequest> items);
+    
+    /**
+     * 批量更新购物车商品数量（数量为0表示删除）
+     * 
+     * @param userId 用户ID
+     * @param items 商品列表
+     * @return 操作结果
+     */
+    R<Void> batchUpdateQuantity(Long userId, List<CartItemRequest> items);
+    
+    /**
+     * 批量从购物车删除商品
+     * 
+     * @param userId 用户ID
+     * @param productIds 商品ID列表
+     * @return 操作结果
+     */
+    R<Void> batchRemoveFromCart(Long userId, List<Long> productIds);
+    
+    /**
+     * 批量选中/取消选中购物车商品
+     * 
+     * @param userId 用户ID
+     * @param productIds 商品ID列表
+     * @param selected 是否选中
+     * @return 操作结果
+     */
+    R<Void> batchSelectItems(Long userId, List<Long> productIds, Boolean selected);
+}
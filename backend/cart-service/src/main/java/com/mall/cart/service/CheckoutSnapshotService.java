@@ -0,0 +1,62 @@
+package com.mall.cart.service;
+
+import com.mall.cart.domain.dto.CheckoutSnapshot;
+import com.mall.common.core.domain.R;
+
+/**
+ * 结算快照服务接口
+ * 结算时生成带签名的短期快照，订单服务领取快照后只需校验商品版本号，无需再次查询购物车和商品
+ * 
+ * @author lingbai
+ * @version 1.2
+ * @since 2026-10-19
+ * 
+ * V1.1 2026-10-19：增加只读获取快照，订单服务验签通过后再领取
+ * V1.2 2026-10-19：增加释放领取标记，订单创建失败后快照可重新使用
+ */
+public interface CheckoutSnapshotService {
+
+    /**
+     * 根据选中的购物车项生成结算快照
+     * 
+     * @param userId 用户ID
+     * @return 结算快照
+     */
+    R<CheckoutSnapshot> createSnapshot(Long userId);
+
+    /**
+     * 获取结算快照，不做领取标记
+     * 
+     * @param snapshotId 快照ID
+     * @param userId 用户ID
+     * @return 结算快照
+     */
+    R<CheckoutSnapshot> getSnapshot(String snapshotId, Long userId);
+
+    /**
+     * 领取结算快照（每个快照只能被领取一次）
+     * 
+     * @param snapshotId 快照ID
+     * @param userId 用户ID
+     * @return 结算快照
+     */
+    R<CheckoutSnapshot> claimSnapshot(String snapshotId, Long userId);
+
+    /**
+     * 释放结算快照的领取标记（订单创建失败时调用），快照未过期时可重新下单
+     * 
+     * @param snapshotId 快照ID
+     * @param userId 用户ID
+     * @return 操作结果
+     */
+    R<Void> releaseSnapshot(String snapshotId, Long userId);
+
+    /**
+     * 完成结算：删除快照及其对应的购物车项
+     * 
+     * @param snapshotId 快照ID
+     * @param userId 用户ID
+     * @return 操作结果
+     */
+    R<Void> completeSnapshot(String snapshotId, Long userId);
+}
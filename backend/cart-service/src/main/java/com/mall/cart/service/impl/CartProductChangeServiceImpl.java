@@ -0,0 +1,255 @@
+package com.mall.cart.service.impl;
+
+import com.mall.cart.domain.dto.ProductChangeEvent;
+import com.mall.cart.domain.entity.CartItem;
+import com.mall.cart.service.CartProductChangeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 购物车商品变更服务实现类
+ * 反向索引使用Redis Set存储：cart:index:product:{productId} -> {userId...}
+ * 
+ * <p>每个购物车项记录已应用的商品变更版本号（商品服务在更新商品时同步递增的 change_version），
+ * 不大于该版本的事件直接跳过；单个购物车的读取、合并、写回在 WATCH/MULTI 中完成，
+ * 期间购物车被修改时重新读取，避免并发消费时旧事件覆盖新事件。</p>
+ * 
+ * @author lingbai
+ * @version 1.2
+ * @since 2026-10-19
+ * 
+ * V1.1 2026-10-19：按事件时间丢弃过期事件，购物车写回改为乐观事务；增加反向索引回填
+ * V1.2 2026-10-19：改为按商品服务的商品变更版本号判断事件先后，删除事件之后不再接受其它事件
+ */
+@Service
+public class CartProductChangeServiceImpl implements CartProductChangeService {
+
+    private static final Logger log = LoggerFactory.getLogger(CartProductChangeServiceImpl.class);
+    private static final String CART_KEY_PREFIX = "cart:";
+    private static final String PRODUCT_INDEX_KEY_PREFIX = "cart:index:product:";
+    private static final long CART_EXPIRE_TIME = 30; // 与购物车保持一致，30天过期
+    private static final long INDEX_SCAN_COUNT = 500;
+    private static final Pattern CART_KEY_PATTERN = Pattern.compile("^cart:(\\d+)$");
+
+    /** 单个购物车乐观事务的最大尝试次数 */
+    private static final int MAX_CART_UPDATE_ATTEMPTS = 5;
+
+    /** 购物车中已无该商品 */
+    private static final int CART_ITEM_NOT_FOUND = -1;
+
+    /** 乐观事务期间购物车被修改 */
+    private static final int CART_UPDATE_CONFLICT = -2;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Override
+    public void indexProduct(Long userId, Long productId) {
+        if (userId == null || productId == null) {
+            return;
+        }
+        String indexKey = PRODUCT_INDEX_KEY_PREFIX + productId;
+        redisTemplate.opsForSet().add(indexKey, userId);
+        redisTemplate.expire(indexKey, CART_EXPIRE_TIME, TimeUnit.DAYS);
+    }
+
+    @Override
+    public void unindexProduct(Long userId, Long productId) {
+        if (userId == null || productId == null) {
+            return;
+        }
+        redisTemplate.opsForSet().remove(PRODUCT_INDEX_KEY_PREFIX + productId, userId);
+    }
+
+    @Override
+    public int applyProductChange(ProductChangeEvent event) {
+        if (event == null || event.getProductId() == null) {
+            return 0;
+        }
+        Long productId = event.getProductId();
+        String indexKey = PRODUCT_INDEX_KEY_PREFIX + productId;
+
+        // 先收集用户ID再逐个处理，避免在SSCAN游标打开期间修改集合
+        List<Long> userIds = new ArrayList<>();
+        ScanOptions options = ScanOptions.scanOptions().count(INDEX_SCAN_COUNT).build();
+        try (Cursor<Object> cursor = redisTemplate.opsForSet().scan(indexKey, options)) {
+            while (cursor.hasNext()) {
+                Object member = cursor.next();
+                if (member != null) {
+                    userIds.add(Long.valueOf(member.toString()));
+                }
+            }
+        }
+
+        int updated = 0;
+        for (Long userId : userIds) {
+            int result = applyToCart(userId, productId, event);
+            if (result == CART_ITEM_NOT_FOUND) {
+                // 购物车中已无该商品，惰性清理索引
+                unindexProduct(userId, productId);
+            } else if (result == CART_UPDATE_CONFLICT) {
+                throw new IllegalStateException("购物车并发修改，商品变更事件应用失败: userId=" + userId
+                        + ", productId=" + productId);
+            } else {
+                updated += result;
+            }
+        }
+
+        if (event.isDeleted()) {
+            redisTemplate.delete(indexKey);
+        }
+        log.info("商品变更已同步到购物车: productId={}, eventType={}, 涉及用户数={}, 更新购物车项数={}",
+                productId, event.getEventType(), userIds.size(), updated);
+        return updated;
+    }
+
+    @Override
+    public long backfillProductIndex() {
+        long carts = 0;
+        long indexed = 0;
+        ScanOptions options = ScanOptions.scanOptions().match(CART_KEY_PREFIX + "*").count(INDEX_SCAN_COUNT).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                Matcher matcher = CART_KEY_PATTERN.matcher(cursor.next());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                Long userId = Long.valueOf(matcher.group(1));
+                Set<Long> productIds = new HashSet<>();
+                for (Object value : redisTemplate.opsForHash().values(CART_KEY_PREFIX + userId)) {
+                    if (value instanceof CartItem && ((CartItem) value).getProductId() != null) {
+                        productIds.add(((CartItem) value).getProductId());
+                    }
+                }
+                productIds.forEach(productId -> indexProduct(userId, productId));
+                carts++;
+                indexed += productIds.size();
+            }
+        }
+        log.info("购物车商品反向索引回填完成: 购物车数={}, 索引项数={}", carts, indexed);
+        return indexed;
+    }
+
+    @Override
+    public void refreshAvailability(CartItem item) {
+        boolean online = item.getProductStatus() == null || item.getProductStatus() == 1;
+        boolean stockEnough = item.getStock() == null || item.getQuantity() == null
+                || item.getStock() >= item.getQuantity();
+        boolean available = online && stockEnough;
+        item.setAvailable(available);
+        if (!available) {
+            item.setSelected(false);
+        }
+    }
+
+    /**
+     * 在乐观事务中将事件应用到单个购物车，购物车在读取后被修改时重新读取
+     * 
+     * @return 更新的购物车项数；购物车中已无该商品时返回 CART_ITEM_NOT_FOUND，多次冲突后返回 CART_UPDATE_CONFLICT
+     */
+    private int applyToCart(Long userId, Long productId, ProductChangeEvent event) {
+        String cartKey = CART_KEY_PREFIX + userId;
+        for (int attempt = 0; attempt < MAX_CART_UPDATE_ATTEMPTS; attempt++) {
+            Integer result = redisTemplate.execute(new SessionCallback<Integer>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Integer execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    ops.watch(cartKey);
+                    Map<Object, Object> cartItems = ops.opsForHash().entries(cartKey);
+                    Map<Object, Object> changed = new HashMap<>();
+                    boolean found = false;
+                    for (Map.Entry<Object, Object> entry : cartItems.entrySet()) {
+                        CartItem item = (CartItem) entry.getValue();
+                        if (!productId.equals(item.getProductId())) {
+                            continue;
+                        }
+                        found = true;
+                        if (isStale(item, event)) {
+                            log.debug("跳过过期的商品变更事件: userId={}, productId={}, 事件版本={}, 快照版本={}",
+                                    userId, productId, event.getVersion(), item.getProductVersion());
+                            continue;
+                        }
+                        applyToItem(item, event);
+                        if (event.isDeleted()) {
+                            // 商品删除后不再接受任何延迟到达的事件
+                            item.setProductVersion(Long.MAX_VALUE);
+                        } else if (event.getVersion() != null) {
+                            item.setProductVersion(event.getVersion());
+                        }
+                        changed.put(entry.getKey(), item);
+                    }
+                    if (changed.isEmpty()) {
+                        ops.unwatch();
+                        return found ? 0 : CART_ITEM_NOT_FOUND;
+                    }
+                    ops.multi();
+                    ops.opsForHash().putAll(cartKey, changed);
+                    List<Object> results = ops.exec();
+                    return results == null || results.isEmpty() ? CART_UPDATE_CONFLICT : changed.size();
+                }
+            });
+            if (result != null && result != CART_UPDATE_CONFLICT) {
+                return result;
+            }
+        }
+        return CART_UPDATE_CONFLICT;
+    }
+
+    /**
+     * 事件版本是否不新于购物车项已应用的快照版本，删除事件总是应用
+     */
+    private boolean isStale(CartItem item, ProductChangeEvent event) {
+        if (event.isDeleted()) {
+            return false;
+        }
+        return event.getVersion() != null && item.getProductVersion() != null
+                && event.getVersion() <= item.getProductVersion();
+    }
+
+    /**
+     * 将事件中的变更字段合并到购物车项
+     */
+    private void applyToItem(CartItem item, ProductChangeEvent event) {
+        if (event.isDeleted()) {
+            item.setProductStatus(0);
+            item.setAvailable(false);
+            item.setSelected(false);
+            return;
+        }
+        if (event.getPrice() != null) {
+            item.setPrice(event.getPrice());
+        }
+        if (event.getName() != null) {
+            item.setProductName(event.getName());
+        }
+        if (event.getMainImage() != null) {
+            item.setProductImage(event.getMainImage());
+        }
+        if (event.getStock() != null) {
+            item.setStock(event.getStock());
+        }
+        if (event.getStatus() != null) {
+            item.setProductStatus(event.getStatus());
+        }
+        refreshAvailability(item);
+    }
+}
@@ -1,32 +1,51 @@
 package com.mall.cart.service.impl;
 
 import com.mall.cart.client.ProductClient;
+import com.mall.cart.client.ProductServiceClient;
+import com.mall.cart.domain.dto.CartItemRequest;
 import com.mall.cart.domain.dto.ProductDTO;
 import com.mall.cart.domain.entity.CartItem;
+import com.mall.cart.service.CartProductChangeService;
 import com.mall.cart.service.CartService;
 import com.mall.common.core.domain.R;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * 购物车服务实现类
  * 基于Redis实现购物车功能
  * 
  * @author lingbai
- * @version 1.1
+ * @version 1.6
  * @since 2025-01-21
  * 
  * V1.1 2025-11-01：启用Redis缓存功能，完善库存验证和异常处理
+ * V1.2 2026-10-19：购物车列表改为纯Redis读取，价格/库存/状态由商品变更事件增量刷新
+ * V1.3 2026-10-19：增加批量操作，一次批量查询商品、一次管道写入Redis
+ * V1.4 2026-10-19：从商品服务刷新快照时记录快照时间，供商品变更事件判断新旧
+ * V1.5 2026-10-19：快照改为记录商品服务返回的商品变更版本号，不再使用本服务时钟
+ * V1.6 2026-10-19：批量操作改为在 WATCH/MULTI 乐观事务中读取、合并和写回，购物车被并发修改时重新读取
  */
 @Service
 public class CartServiceImpl implements CartService {
@@ -34,6 +53,7 @@ public class CartServiceImpl implements CartService {
     private static final Logger log = LoggerFactory.getLogger(CartServiceImpl.class);
     private static final String CART_KEY_PREFIX = "cart:";
     private static final long CART_EXPIRE_TIME = 30; // 30天过期
+    private static final int MAX_CART_UPDATE_ATTEMPTS = 5;
     
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
@@ -41,6 +61,12 @@ public class CartServiceImpl implements CartService {
     @Autowired
     private ProductClient productClient;
     
+    @Autowired
+    private ProductServiceClient productServiceClient;
+    
+    @Autowired
+    private CartProductChangeService cartProductChangeService;
+    
     /**
      * 添加商品到购物车
      * 
@@ -100,6 +126,10 @@ public class CartServiceImpl implements CartService {
                 existingItem.setPrice(product.getPrice());
                 existingItem.setProductName(product.getName());
                 existingItem.setProductImage(product.getImage());
+                existingItem.setStock(product.getStock());
+                existingItem.setProductStatus(product.getStatus());
+                existingItem.setProductVersion(product.getChangeVersion());
+                cartProductChangeService.refreshAvailability(existingItem);
                 
                 redisTemplate.opsForHash().put(cartKey, itemKey, existingItem);
                 log.info("购物车商品数量更新成功: 新数量={}", newQuantity);
@@ -135,6 +165,10 @@ public class CartServiceImpl implements CartService {
                 newItem.setProductName(product.getName());
                 newItem.setPrice(product.getPrice());
                 newItem.setProductImage(product.getImage());
+                newItem.setStock(product.getStock());
+                newItem.setProductStatus(product.getStatus());
+                newItem.setProductVersion(product.getChangeVersion());
+                newItem.setAvailable(true);
                 
                 redisTemplate.opsForHash().put(cartKey, itemKey, newItem);
                 log.info("新购物车项创建成功: productName={}, price={}", product.getName(), product.getPrice());
@@ -142,6 +176,8 @@ public class CartServiceImpl implements CartService {
             
             // 设置过期时间
             redisTemplate.expire(cartKey, CART_EXPIRE_TIME, TimeUnit.DAYS);
+            // 维护商品反向索引，供商品变更事件定位购物车
+            cartProductChangeService.indexProduct(userId, productId);
             
             log.info("商品添加到购物车成功: userId={}, productId={}", userId, productId);
             return R.ok();
@@ -211,6 +247,10 @@ public class CartServiceImpl implements CartService {
                     item.setPrice(product.getPrice());
                     item.setProductName(product.getName());
                     item.setProductImage(product.getImage());
+                    item.setStock(product.getStock());
+                    item.setProductStatus(product.getStatus());
+                    item.setProductVersion(product.getChangeVersion());
+                    cartProductChangeService.refreshAvailability(item);
                     
                     redisTemplate.opsForHash().put(cartKey, itemKey, item);
                     found = true;
@@ -256,13 +296,16 @@ public class CartServiceImpl implements CartService {
             Map<Object, Object> cartItems = redisTemplate.opsForHash().entries(cartKey);
             
             boolean found = false;
+            int sameProductLines = 0;
             for (Object itemKey : cartItems.keySet()) {
                 CartItem item = (CartItem) cartItems.get(itemKey);
                 if (item.getProductId().equals(productId)) {
-                    redisTemplate.opsForHash().delete(cartKey, itemKey);
-                    found = true;
-                    log.info("商品从购物车删除成功: userId={}, productId={}", userId, productId);
-                    break;
+                    sameProductLines++;
+                    if (!found) {
+                        redisTemplate.opsForHash().delete(cartKey, itemKey);
+                        found = true;
+                        log.info("商品从购物车删除成功: userId={}, productId={}", userId, productId);
+                    }
                 }
             }
             
@@ -270,6 +313,10 @@ public class CartServiceImpl implements CartService {
                 log.warn("购物车中未找到指定商品: userId={}, productId={}", userId, productId);
                 return R.fail("购物车中未找到该商品");
             }
+            // 该商品的最后一个规格被删除后移除反向索引
+            if (sameProductLines == 1) {
+                cartProductChangeService.unindexProduct(userId, productId);
+            }
             
             return R.ok();
             
@@ -298,41 +345,10 @@ public class CartServiceImpl implements CartService {
             String cartKey = CART_KEY_PREFIX + userId;
             Map<Object, Object> cartItems = redisTemplate.opsForHash().entries(cartKey);
             
+            // 价格、库存、上下架状态由商品变更事件增量写回，这里只读Redis
             List<CartItem> items = new ArrayList<>();
             for (Object value : cartItems.values()) {
-                CartItem item = (CartItem) value;
-                
-                // 验证商品信息和库存状态
-                try {
-                    R<ProductDTO> productResult = productClient.getProductById(item.getProductId());
-                    if (isValidProductResult(productResult)) {
-                        ProductDTO product = productResult.getData();
-                        
-                        // 更新商品信息（价格、名称、图片可能有变化）
-                        item.setPrice(product.getPrice());
-                        item.setProductName(product.getName());
-                        item.setProductImage(product.getImage());
-                        
-                        // 检查库存状态
-                        if (product.getStatus() != 1) {
-                            item.setSelected(false); // 下架商品自动取消选中
-                            log.warn("购物车中商品已下架: productId={}", item.getProductId());
-                        } else if (product.getStock() < item.getQuantity()) {
-                            item.setSelected(false); // 库存不足自动取消选中
-                            log.warn("购物车中商品库存不足: productId={}, 需要数量={}, 可用库存={}", 
-                                item.getProductId(), item.getQuantity(), product.getStock());
-                        }
-                    } else {
-                        // 商品不存在，标记为无效
-                        item.setSelected(false);
-                        log.warn("购物车中商品信息获取失败: productId={}", item.getProductId());
-                    }
-                } catch (Exception e) {
-                    log.error("验证购物车商品信息失败: productId={}", item.getProductId(), e);
-                    item.setSelected(false);
-                }
-                
-                items.add(item);
+                items.add((CartItem) value);
             }
             
             log.info("获取购物车商品列表成功: userId={}, 商品数量={}", userId, items.size());
@@ -361,7 +377,11 @@ public class CartServiceImpl implements CartService {
             }
             
             String cartKey = CART_KEY_PREFIX + userId;
+            List<Object> cartItems = redisTemplate.opsForHash().values(cartKey);
             redisTemplate.delete(cartKey);
+            for (Object value : cartItems) {
+                cartProductChangeService.unindexProduct(userId, ((CartItem) value).getProductId());
+            }
             
             log.info("购物车清空成功: userId={}", userId);
             return R.ok();
@@ -423,6 +443,10 @@ public class CartServiceImpl implements CartService {
                                 productId, item.getQuantity(), product.getStock());
                             return R.fail("库存不足，无法选中。当前可用库存：" + product.getStock());
                         }
+                        item.setStock(product.getStock());
+                        item.setProductStatus(product.getStatus());
+                        item.setProductVersion(product.getChangeVersion());
+                        item.setAvailable(true);
                     }
                     
                     item.setSelected(selected);
@@ -480,6 +504,443 @@ public class CartServiceImpl implements CartService {
         }
     }
     
+    /**
+     * 批量添加商品到购物车
+     * 
+     * @param userId 用户ID
+     * @param items 商品列表
+     * @return 操作结果
+     */
+    @Override
+    public R<Void> batchAddToCart(Long userId, List<CartItemRequest> items) {
+        try {
+            log.info("批量添加商品到购物车开始: userId={}, 商品数={}", userId, items != null ? items.size() : 0);
+            
+            // 参数验证
+            if (userId == null || userId <= 0) {
+                return R.fail("用户ID无效");
+            }
+            if (items == null || items.isEmpty()) {
+                return R.fail("商品列表不能为空");
+            }
+            
+            // 合并相同商品规格的请求项
+            Map<String, CartItemRequest> merged = new LinkedHashMap<>();
+            for (CartItemRequest request : items) {
+                if (request == null || request.getProductId() == null || request.getProductId() <= 0) {
+                    return R.fail("商品ID无效");
+                }
+                if (request.getQuantity() == null || request.getQuantity() <= 0) {
+                    return R.fail("商品数量必须大于0");
+                }
+                String itemKey = buildItemKey(request.getProductId(), request.getSpecifications());
+                CartItemRequest existing = merged.get(itemKey);
+                if (existing == null) {
+                    CartItemRequest copy = new CartItemRequest();
+                    copy.setProductId(request.getProductId());
+                    copy.setQuantity(request.getQuantity());
+                    copy.setSpecifications(request.getSpecifications());
+                    merged.put(itemKey, copy);
+                } else {
+                    existing.setQuantity(existing.getQuantity() + request.getQuantity());
+                }
+            }
+            
+            Set<Long> productIds = new LinkedHashSet<>();
+            merged.values().forEach(request -> productIds.add(request.getProductId()));
+            Map<Long, ProductDTO> products = loadProducts(productIds);
+            
+            // 全部校验通过后才写入，避免部分成功；数量在购物车的最新内容上累加
+            R<Void> result = updateCartAtomically(userId, cartItems -> {
+                Map<String, CartItem> toSave = new LinkedHashMap<>();
+                for (Map.Entry<String, CartItemRequest> entry : merged.entrySet()) {
+                    CartItemRequest request = entry.getValue();
+                    ProductDTO product = products.get(request.getProductId());
+                    if (product == null) {
+                        log.warn("批量添加失败，商品信息不存在: productId={}", request.getProductId());
+                        return R.fail("商品信息不存在：" + request.getProductId());
+                    }
+                    if (!Integer.valueOf(1).equals(product.getStatus())) {
+                        log.warn("批量添加失败，商品已下架: productId={}", request.getProductId());
+                        return R.fail("商品已下架：" + product.getName());
+                    }
+                    
+                    CartItem item = (CartItem) cartItems.get(entry.getKey());
+                    int newQuantity = (item != null ? item.getQuantity() : 0) + request.getQuantity();
+                    if (product.getStock() == null || product.getStock() < newQuantity) {
+                        log.warn("批量添加失败，库存不足: 商品ID={}, 需要数量={}, 可用库存={}", 
+                            request.getProductId(), newQuantity, product.getStock());
+                        return R.fail("库存不足：" + product.getName() + "，当前可用库存：" + product.getStock());
+                    }
+                    
+                    if (item == null) {
+                        item = new CartItem();
+                        item.setUserId(userId);
+                        item.setProductId(request.getProductId());
+                        item.setSelected(true);
+                        item.setSpecifications(request.getSpecifications());
+                    }
+                    item.setQuantity(newQuantity);
+                    applyProductInfo(item, product);
+                    toSave.put(entry.getKey(), item);
+                }
+                return R.ok(new CartWrite(toSave, Collections.emptyList(), productIds, Collections.emptySet()));
+            });
+            
+            if (result.isSuccess()) {
+                log.info("批量添加商品到购物车成功: userId={}, 写入购物车项数={}", userId, merged.size());
+            }
+            return result;
+            
+        } catch (Exception e) {
+            log.error("批量添加商品到购物车失败: userId={}", userId, e);
+            return R.fail("批量添加商品到购物车失败：" + e.getMessage());
+        }
+    }
+    
+    /**
+     * 批量更新购物车商品数量
+     * 
+     * @param userId 用户ID
+     * @param items 商品列表（数量为0表示删除）
+     * @return 操作结果
+     */
+    @Override
+    public R<Void> batchUpdateQuantity(Long userId, List<CartItemRequest> items) {
+        try {
+            log.info("批量更新购物车商品数量开始: userId={}, 商品数={}", userId, items != null ? items.size() : 0);
+            
+            // 参数验证
+            if (userId == null || userId <= 0) {
+                return R.fail("用户ID无效");
+            }
+            if (items == null || items.isEmpty()) {
+                return R.fail("商品列表不能为空");
+            }
+            for (CartItemRequest request : items) {
+                if (request == null || request.getProductId() == null || request.getProductId() <= 0) {
+                    return R.fail("商品ID无效");
+                }
+                if (request.getQuantity() == null || request.getQuantity() < 0) {
+                    return R.fail("商品数量不能为负数");
+                }
+            }
+            
+            Set<Long> productIds = new LinkedHashSet<>();
+            items.stream()
+                .filter(request -> request.getQuantity() > 0)
+                .forEach(request -> productIds.add(request.getProductId()));
+            Map<Long, ProductDTO> products = productIds.isEmpty() ? Collections.emptyMap() : loadProducts(productIds);
+            
+            R<Void> result = updateCartAtomically(userId, cartItems -> {
+                // 定位每个请求项对应的购物车项（指定规格时精确匹配，否则取该商品的第一个规格）
+                Map<String, CartItemRequest> targets = new LinkedHashMap<>();
+                for (CartItemRequest request : items) {
+                    String itemKey = findItemKey(cartItems, request.getProductId(), request.getSpecifications());
+                    if (itemKey == null) {
+                        log.warn("购物车中未找到指定商品: userId={}, productId={}", userId, request.getProductId());
+                        return R.fail("购物车中未找到该商品：" + request.getProductId());
+                    }
+                    targets.put(itemKey, request);
+                }
+                
+                Map<String, CartItem> toSave = new LinkedHashMap<>();
+                List<String> toDelete = new ArrayList<>();
+                for (Map.Entry<String, CartItemRequest> entry : targets.entrySet()) {
+                    CartItemRequest request = entry.getValue();
+                    if (request.getQuantity() == 0) {
+                        toDelete.add(entry.getKey());
+                        continue;
+                    }
+                    ProductDTO product = products.get(request.getProductId());
+                    if (product == null) {
+                        log.error("获取商品信息失败: productId={}", request.getProductId());
+                        return R.fail("商品信息不存在：" + request.getProductId());
+                    }
+                    if (product.getStock() == null || product.getStock() < request.getQuantity()) {
+                        log.warn("库存不足: 商品ID={}, 需要数量={}, 可用库存={}", 
+                            request.getProductId(), request.getQuantity(), product.getStock());
+                        return R.fail("库存不足：" + product.getName() + "，当前可用库存：" + product.getStock());
+                    }
+                    CartItem item = (CartItem) cartItems.get(entry.getKey());
+                    item.setQuantity(request.getQuantity());
+                    applyProductInfo(item, product);
+                    toSave.put(entry.getKey(), item);
+                }
+                return R.ok(new CartWrite(toSave, toDelete, Collections.emptySet(),
+                    collectUnindexedProducts(cartItems, toDelete)));
+            });
+            
+            if (result.isSuccess()) {
+                log.info("批量更新购物车商品数量成功: userId={}, 请求项数={}", userId, items.size());
+            }
+            return result;
+            
+        } catch (Exception e) {
+            log.error("批量更新购物车商品数量失败: userId={}", userId, e);
+            return R.fail("批量更新商品数量失败：" + e.getMessage());
+        }
+    }
+    
+    /**
+     * 批量从购物车删除商品（删除该商品的所有规格）
+     * 
+     * @param userId 用户ID
+     * @param productIds 商品ID列表
+     * @return 操作结果
+     */
+    @Override
+    public R<Void> batchRemoveFromCart(Long userId, List<Long> productIds) {
+        try {
+            log.info("批量删除购物车商品开始: userId={}, productIds={}", userId, productIds);
+            
+            // 参数验证
+            if (userId == null || userId <= 0) {
+                return R.fail("用户ID无效");
+            }
+            if (productIds == null || productIds.isEmpty()) {
+                return R.fail("商品ID列表不能为空");
+            }
+            
+            Set<Long> targetIds = new HashSet<>(productIds);
+            
+            // 反向索引的移除依赖删除后剩余的购物车项，同样在乐观事务中计算
+            R<Void> result = updateCartAtomically(userId, cartItems -> {
+                List<String> toDelete = new ArrayList<>();
+                for (Map.Entry<Object, Object> entry : cartItems.entrySet()) {
+                    CartItem item = (CartItem) entry.getValue();
+                    if (targetIds.contains(item.getProductId())) {
+                        toDelete.add((String) entry.getKey());
+                    }
+                }
+                
+                if (toDelete.isEmpty()) {
+                    log.warn("购物车中未找到指定商品: userId={}, productIds={}", userId, productIds);
+                    return R.fail("购物车中未找到指定商品");
+                }
+                return R.ok(new CartWrite(Collections.emptyMap(), toDelete, Collections.emptySet(),
+                    collectUnindexedProducts(cartItems, toDelete)));
+            });
+            
+            if (result.isSuccess()) {
+                log.info("批量删除购物车商品成功: userId={}, productIds={}", userId, productIds);
+            }
+            return result;
+            
+        } catch (Exception e) {
+            log.error("批量删除购物车商品失败: userId={}", userId, e);
+            return R.fail("批量删除商品失败：" + e.getMessage());
+        }
+    }
+    
+    /**
+     * 批量选中/取消选中购物车商品
+     * 
+     * @param userId 用户ID
+     * @param productIds 商品ID列表
+     * @param selected 是否选中
+     * @return 操作结果
+     */
+    @Override
+    public R<Void> batchSelectItems(Long userId, List<Long> productIds, Boolean selected) {
+        try {
+            log.info("批量选中购物车商品开始: userId={}, productIds={}, selected={}", userId, productIds, selected);
+            
+            // 参数验证
+            if (userId == null || userId <= 0) {
+                return R.fail("用户ID无效");
+            }
+            if (productIds == null || productIds.isEmpty()) {
+                return R.fail("商品ID列表不能为空");
+            }
+            if (selected == null) {
+                return R.fail("选中状态不能为空");
+            }
+            
+            Set<Long> targetIds = new HashSet<>(productIds);
+            
+            // 选中时需要校验商品状态和库存，取消选中无需查询商品
+            Map<Long, ProductDTO> products = selected ? loadProducts(targetIds) : Collections.emptyMap();
+            R<Void> result = updateCartAtomically(userId, cartItems -> {
+                Map<String, CartItem> toSave = new LinkedHashMap<>();
+                for (Map.Entry<Object, Object> entry : cartItems.entrySet()) {
+                    CartItem item = (CartItem) entry.getValue();
+                    if (targetIds.contains(item.getProductId())) {
+                        toSave.put((String) entry.getKey(), item);
+                    }
+                }
+                if (toSave.isEmpty()) {
+                    log.warn("购物车中未找到指定商品: userId={}, productIds={}", userId, productIds);
+                    return R.fail("购物车中未找到指定商品");
+                }
+                
+                for (CartItem item : toSave.values()) {
+                    if (selected) {
+                        ProductDTO product = products.get(item.getProductId());
+                        if (product == null) {
+                            return R.fail("商品信息不存在，无法选中：" + item.getProductId());
+                        }
+                        if (!Integer.valueOf(1).equals(product.getStatus())) {
+                            return R.fail("商品已下架，无法选中：" + product.getName());
+                        }
+                        if (product.getStock() == null || product.getStock() < item.getQuantity()) {
+                            return R.fail("库存不足，无法选中：" + product.getName() + "。当前可用库存：" + product.getStock());
+                        }
+                        applyProductInfo(item, product);
+                    }
+                    item.setSelected(selected);
+                }
+                return R.ok(new CartWrite(toSave, Collections.emptyList(), Collections.emptySet(), Collections.emptySet()));
+            });
+            
+            if (result.isSuccess()) {
+                log.info("批量更新购物车选中状态成功: userId={}, productIds={}, selected={}", userId, productIds, selected);
+            }
+            return result;
+            
+        } catch (Exception e) {
+            log.error("批量选中购物车商品失败: userId={}", userId, e);
+            return R.fail("操作失败：" + e.getMessage());
+        }
+    }
+    
+    /**
+     * 构建购物车项的Hash字段名
+     */
+    private String buildItemKey(Long productId, String specifications) {
+        return productId + ":" + (StringUtils.hasText(specifications) ? specifications : "default");
+    }
+    
+    /**
+     * 查找购物车项的Hash字段名，指定规格时精确匹配，否则返回该商品的第一个购物车项
+     */
+    private String findItemKey(Map<Object, Object> cartItems, Long productId, String specifications) {
+        if (StringUtils.hasText(specifications)) {
+            String itemKey = buildItemKey(productId, specifications);
+            return cartItems.containsKey(itemKey) ? itemKey : null;
+        }
+        for (Map.Entry<Object, Object> entry : cartItems.entrySet()) {
+            CartItem item = (CartItem) entry.getValue();
+            if (item.getProductId().equals(productId)) {
+                return (String) entry.getKey();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 计算删除后购物车中已不再包含的商品，用于移除反向索引
+     */
+    private Set<Long> collectUnindexedProducts(Map<Object, Object> cartItems, Collection<String> deletedKeys) {
+        Set<Long> removed = new HashSet<>();
+        Set<Long> remaining = new HashSet<>();
+        for (Map.Entry<Object, Object> entry : cartItems.entrySet()) {
+            CartItem item = (CartItem) entry.getValue();
+            if (deletedKeys.contains(entry.getKey())) {
+                removed.add(item.getProductId());
+            } else {
+                remaining.add(item.getProductId());
+            }
+        }
+        removed.removeAll(remaining);
+        return removed;
+    }
+    
+    /**
+     * 一次批量调用商品服务获取商品信息
+     */
+    private Map<Long, ProductDTO> loadProducts(Collection<Long> productIds) {
+        Map<Long, ProductDTO> products = new HashMap<>();
+        List<ProductDTO> result = productServiceClient.getProductsBatch(new ArrayList<>(productIds));
+        if (result != null) {
+            for (ProductDTO product : result) {
+                if (product != null && product.getId() != null) {
+                    products.put(product.getId(), product);
+                }
+            }
+        }
+        return products;
+    }
+    
+    /**
+     * 将商品最新信息写入购物车项
+     */
+    private void applyProductInfo(CartItem item, ProductDTO product) {
+        item.setPrice(product.getPrice());
+        item.setProductName(product.getName());
+        item.setProductImage(product.getImage());
+        item.setStock(product.getStock());
+        item.setProductStatus(product.getStatus());
+        item.setProductVersion(product.getChangeVersion());
+        cartProductChangeService.refreshAvailability(item);
+    }
+    
+    /**
+     * 在乐观事务中读取、合并并写回购物车
+     * WATCH购物车后读取全部购物车项，由 merge 基于最新内容计算写入和删除，MULTI/EXEC 一次提交购物车项和反向索引；
+     * 购物车在读取后被修改时 EXEC 放弃提交，重新读取后再次合并，多次冲突后返回失败
+     * 
+     * @param userId 用户ID
+     * @param merge 根据当前购物车项计算写入内容，返回失败结果时不写入
+     * @return 操作结果
+     */
+    private R<Void> updateCartAtomically(Long userId, Function<Map<Object, Object>, R<CartWrite>> merge) {
+        String cartKey = CART_KEY_PREFIX + userId;
+        for (int attempt = 0; attempt < MAX_CART_UPDATE_ATTEMPTS; attempt++) {
+            R<CartWrite> outcome = redisTemplate.execute(new SessionCallback<R<CartWrite>>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> R<CartWrite> execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    ops.watch(cartKey);
+                    R<CartWrite> merged = merge.apply(ops.opsForHash().entries(cartKey));
+                    if (!merged.isSuccess()) {
+                        ops.unwatch();
+                        return merged;
+                    }
+                    CartWrite write = merged.getData();
+                    ops.multi();
+                    if (!write.toSave.isEmpty()) {
+                        ops.opsForHash().putAll(cartKey, write.toSave);
+                    }
+                    if (!write.toDelete.isEmpty()) {
+                        ops.opsForHash().delete(cartKey, write.toDelete.toArray());
+                    }
+                    ops.expire(cartKey, CART_EXPIRE_TIME, TimeUnit.DAYS);
+                    // 会话期间连接已绑定到当前线程，反向索引的维护同样进入本次事务
+                    write.toIndex.forEach(productId -> cartProductChangeService.indexProduct(userId, productId));
+                    write.toUnindex.forEach(productId -> cartProductChangeService.unindexProduct(userId, productId));
+                    List<Object> results = ops.exec();
+                    return results == null || results.isEmpty() ? null : merged;
+                }
+            });
+            if (outcome != null) {
+                return outcome.isSuccess() ? R.ok() : R.fail(outcome.getCode(), outcome.getMessage());
+            }
+            log.debug("购物车被并发修改，重新读取: userId={}, attempt={}", userId, attempt + 1);
+        }
+        log.warn("购物车更新冲突次数过多: userId={}", userId);
+        return R.fail("购物车正在被修改，请稍后重试");
+    }
+    
+    /**
+     * 购物车的一次写入内容：写入和删除的购物车项，以及需要建立和移除的商品反向索引
+     */
+    private static final class CartWrite {
+        private final Map<String, CartItem> toSave;
+        private final Collection<String> toDelete;
+        private final Collection<Long> toIndex;
+        private final Collection<Long> toUnindex;
+
+        private CartWrite(Map<String, CartItem> toSave, Collection<String> toDelete,
+                          Collection<Long> toIndex, Collection<Long> toUnindex) {
+            this.toSave = toSave;
+            this.toDelete = toDelete;
+            this.toIndex = toIndex;
+            this.toUnindex = toUnindex;
+        }
+    }
+    
     /**
      * 验证商品服务返回结果是否有效
      * 
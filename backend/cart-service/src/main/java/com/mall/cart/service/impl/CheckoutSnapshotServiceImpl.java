@@ -0,0 +1,297 @@
+package com.mall.cart.service.impl;
+
+import cn.hutool.core.util.IdUtil;
+import com.mall.cart.client.ProductServiceClient;
+import com.mall.cart.domain.dto.CheckoutSnapshot;
+import com.mall.cart.domain.dto.CheckoutSnapshotItem;
+import com.mall.cart.domain.dto.ProductDTO;
+import com.mall.cart.domain.entity.CartItem;
+import com.mall.cart.service.CartProductChangeService;
+import com.mall.cart.service.CheckoutSnapshotService;
+import com.mall.common.core.domain.R;
+import com.mall.common.core.utils.CheckoutSnapshotSigner;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 结算快照服务实现类
+ * 快照存储在 cart:checkout:{snapshotId}，领取标记存储在 cart:checkout:claim:{snapshotId}
+ * 
+ * @author lingbai
+ * @version 1.2
+ * @since 2026-10-19
+ * 
+ * V1.1 2026-10-19：签名密钥不再提供默认值；增加只读获取快照
+ * V1.2 2026-10-19：增加释放领取标记，订单创建失败时由订单服务调用
+ */
+@Service
+public class CheckoutSnapshotServiceImpl implements CheckoutSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(CheckoutSnapshotServiceImpl.class);
+    private static final String CART_KEY_PREFIX = "cart:";
+    private static final String SNAPSHOT_KEY_PREFIX = "cart:checkout:";
+    private static final String SNAPSHOT_CLAIM_KEY_PREFIX = "cart:checkout:claim:";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private ProductServiceClient productServiceClient;
+
+    @Autowired
+    private CartProductChangeService cartProductChangeService;
+
+    /**
+     * 签名密钥，必须通过 CHECKOUT_SNAPSHOT_SECRET 配置，未配置时拒绝启动
+     */
+    @Value("${cart.checkout.snapshot-secret:}")
+    private String snapshotSecret;
+
+    @Value("${cart.checkout.snapshot-ttl-minutes:15}")
+    private long snapshotTtlMinutes;
+
+    @PostConstruct
+    public void checkSnapshotSecret() {
+        CheckoutSnapshotSigner.requireSecret(snapshotSecret);
+    }
+
+    @Override
+    public R<CheckoutSnapshot> createSnapshot(Long userId) {
+        try {
+            log.info("生成结算快照开始: userId={}", userId);
+
+            if (userId == null || userId <= 0) {
+                return R.fail("用户ID无效");
+            }
+
+            String cartKey = CART_KEY_PREFIX + userId;
+            Map<Object, Object> cartItems = redisTemplate.opsForHash().entries(cartKey);
+
+            Map<String, CartItem> selectedItems = new HashMap<>();
+            Set<Long> productIds = new HashSet<>();
+            for (Map.Entry<Object, Object> entry : cartItems.entrySet()) {
+                CartItem item = (CartItem) entry.getValue();
+                if (Boolean.TRUE.equals(item.getSelected()) && !Boolean.FALSE.equals(item.getAvailable())) {
+                    selectedItems.put((String) entry.getKey(), item);
+                    productIds.add(item.getProductId());
+                }
+            }
+            if (selectedItems.isEmpty()) {
+                return R.fail("请选择要结算的商品");
+            }
+
+            // 一次批量查询获取最新价格和版本号
+            Map<Long, ProductDTO> products = new HashMap<>();
+            List<ProductDTO> result = productServiceClient.getProductsBatch(new ArrayList<>(productIds));
+            if (result != null) {
+                for (ProductDTO product : result) {
+                    if (product != null && product.getId() != null) {
+                        products.put(product.getId(), product);
+                    }
+                }
+            }
+
+            List<CheckoutSnapshotItem> items = new ArrayList<>();
+            List<String> lines = new ArrayList<>();
+            BigDecimal totalAmount = BigDecimal.ZERO;
+            for (Map.Entry<String, CartItem> entry : selectedItems.entrySet()) {
+                CartItem cartItem = entry.getValue();
+                ProductDTO product = products.get(cartItem.getProductId());
+                if (product == null) {
+                    return R.fail("商品信息不存在：" + cartItem.getProductName());
+                }
+                if (!Integer.valueOf(1).equals(product.getStatus())) {
+                    return R.fail("商品已下架：" + product.getName());
+                }
+                if (product.getStock() == null || product.getStock() < cartItem.getQuantity()) {
+                    return R.fail("库存不足：" + product.getName() + "，当前可用库存：" + product.getStock());
+                }
+
+                CheckoutSnapshotItem item = new CheckoutSnapshotItem();
+                item.setItemKey(entry.getKey());
+                item.setProductId(product.getId());
+                item.setMerchantId(product.getMerchantId());
+                item.setProductName(product.getName());
+                item.setProductImage(product.getImage());
+                item.setSpecifications(cartItem.getSpecifications());
+                item.setPrice(product.getPrice());
+                item.setQuantity(cartItem.getQuantity());
+                item.setVersion(product.getVersion());
+                items.add(item);
+                lines.add(CheckoutSnapshotSigner.line(item.getProductId(), item.getSpecifications(),
+                        item.getQuantity(), item.getPrice(), item.getVersion()));
+                totalAmount = totalAmount.add(item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+            }
+
+            long now = System.currentTimeMillis();
+            CheckoutSnapshot snapshot = new CheckoutSnapshot();
+            snapshot.setSnapshotId(IdUtil.fastSimpleUUID());
+            snapshot.setUserId(userId);
+            snapshot.setItems(items);
+            snapshot.setTotalAmount(totalAmount);
+            snapshot.setCreateTime(now);
+            snapshot.setExpireTime(now + TimeUnit.MINUTES.toMillis(snapshotTtlMinutes));
+            snapshot.setSignature(CheckoutSnapshotSigner.sign(snapshot.getSnapshotId(), userId,
+                    snapshot.getExpireTime(), lines, snapshotSecret));
+
+            redisTemplate.opsForValue().set(SNAPSHOT_KEY_PREFIX + snapshot.getSnapshotId(), snapshot,
+                    snapshotTtlMinutes, TimeUnit.MINUTES);
+
+            log.info("生成结算快照成功: userId={}, snapshotId={}, 商品项数={}, totalAmount={}",
+                    userId, snapshot.getSnapshotId(), items.size(), totalAmount);
+            return R.ok(snapshot);
+
+        } catch (Exception e) {
+            log.error("生成结算快照失败: userId={}", userId, e);
+            return R.fail("生成结算快照失败：" + e.getMessage());
+        }
+    }
+
+    @Override
+    public R<CheckoutSnapshot> getSnapshot(String snapshotId, Long userId) {
+        try {
+            CheckoutSnapshot snapshot = getOwnedSnapshot(snapshotId, userId);
+            if (snapshot == null) {
+                return R.fail("结算快照不存在或已过期，请重新确认订单");
+            }
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(SNAPSHOT_CLAIM_KEY_PREFIX + snapshotId))) {
+                return R.fail("结算快照已被使用，请勿重复提交");
+            }
+            return R.ok(snapshot);
+
+        } catch (Exception e) {
+            log.error("获取结算快照失败: snapshotId={}, userId={}", snapshotId, userId, e);
+            return R.fail("获取结算快照失败：" + e.getMessage());
+        }
+    }
+
+    @Override
+    public R<CheckoutSnapshot> claimSnapshot(String snapshotId, Long userId) {
+        try {
+            log.info("领取结算快照: snapshotId={}, userId={}", snapshotId, userId);
+
+            CheckoutSnapshot snapshot = getOwnedSnapshot(snapshotId, userId);
+            if (snapshot == null) {
+                return R.fail("结算快照不存在或已过期，请重新确认订单");
+            }
+
+            Boolean claimed = redisTemplate.opsForValue().setIfAbsent(SNAPSHOT_CLAIM_KEY_PREFIX + snapshotId,
+                    userId, snapshotTtlMinutes, TimeUnit.MINUTES);
+            if (!Boolean.TRUE.equals(claimed)) {
+                log.warn("结算快照已被领取: snapshotId={}, userId={}", snapshotId, userId);
+                return R.fail("结算快照已被使用，请勿重复提交");
+            }
+            return R.ok(snapshot);
+
+        } catch (Exception e) {
+            log.error("领取结算快照失败: snapshotId={}, userId={}", snapshotId, userId, e);
+            return R.fail("领取结算快照失败：" + e.getMessage());
+        }
+    }
+
+    @Override
+    public R<Void> releaseSnapshot(String snapshotId, Long userId) {
+        try {
+            log.info("释放结算快照: snapshotId={}, userId={}", snapshotId, userId);
+
+            // 快照已完成或已过期时领取标记不再有意义，只释放仍存在的快照
+            CheckoutSnapshot snapshot = getOwnedSnapshot(snapshotId, userId);
+            if (snapshot == null) {
+                return R.fail("结算快照不存在或已过期");
+            }
+            redisTemplate.delete(SNAPSHOT_CLAIM_KEY_PREFIX + snapshotId);
+            return R.ok();
+
+        } catch (Exception e) {
+            log.error("释放结算快照失败: snapshotId={}, userId={}", snapshotId, userId, e);
+            return R.fail("释放结算快照失败：" + e.getMessage());
+        }
+    }
+
+    @Override
+    public R<Void> completeSnapshot(String snapshotId, Long userId) {
+        try {
+            log.info("完成结算快照: snapshotId={}, userId={}", snapshotId, userId);
+
+            CheckoutSnapshot snapshot = getOwnedSnapshot(snapshotId, userId);
+            if (snapshot == null) {
+                return R.fail("结算快照不存在或已过期");
+            }
+
+            String cartKey = CART_KEY_PREFIX + userId;
+            Map<Object, Object> cartItems = redisTemplate.opsForHash().entries(cartKey);
+            Set<String> purchasedKeys = new HashSet<>();
+            snapshot.getItems().forEach(item -> purchasedKeys.add(item.getItemKey()));
+
+            // 计算删除后购物车中已不再包含的商品，用于移除反向索引
+            Set<Long> removedProducts = new HashSet<>();
+            Set<Long> remainingProducts = new HashSet<>();
+            for (Map.Entry<Object, Object> entry : cartItems.entrySet()) {
+                CartItem item = (CartItem) entry.getValue();
+                if (purchasedKeys.contains(entry.getKey())) {
+                    removedProducts.add(item.getProductId());
+                } else {
+                    remainingProducts.add(item.getProductId());
+                }
+            }
+            removedProducts.removeAll(remainingProducts);
+
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    ops.opsForHash().delete(cartKey, purchasedKeys.toArray());
+                    ops.delete(SNAPSHOT_KEY_PREFIX + snapshotId);
+                    ops.delete(SNAPSHOT_CLAIM_KEY_PREFIX + snapshotId);
+                    // 会话期间连接已绑定到当前线程，反向索引的维护同样进入本次管道
+                    removedProducts.forEach(productId -> cartProductChangeService.unindexProduct(userId, productId));
+                    return null;
+                }
+            });
+
+            log.info("结算完成，已删除购物车项: snapshotId={}, userId={}, 删除数={}", snapshotId, userId, purchasedKeys.size());
+            return R.ok();
+
+        } catch (Exception e) {
+            log.error("完成结算快照失败: snapshotId={}, userId={}", snapshotId, userId, e);
+            return R.fail("完成结算失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取属于指定用户的快照，不存在或不属于该用户时返回null
+     */
+    private CheckoutSnapshot getOwnedSnapshot(String snapshotId, Long userId) {
+        if (snapshotId == null || userId == null) {
+            return null;
+        }
+        Object value = redisTemplate.opsForValue().get(SNAPSHOT_KEY_PREFIX + snapshotId);
+        if (!(value instanceof CheckoutSnapshot)) {
+            return null;
+        }
+        CheckoutSnapshot snapshot = (CheckoutSnapshot) value;
+        if (!userId.equals(snapshot.getUserId())) {
+            log.warn("结算快照用户不匹配: snapshotId={}, userId={}", snapshotId, userId);
+            return null;
+        }
+        return snapshot;
+    }
+}
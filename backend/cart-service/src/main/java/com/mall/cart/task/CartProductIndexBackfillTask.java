@@ -0,0 +1,81 @@
+package com.mall.cart.task;
+
+import com.mall.cart.service.CartProductChangeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 购物车商品反向索引一次性回填任务
+ * 反向索引上线前已存在的购物车没有索引，收不到商品变更事件；应用启动后在后台扫描全部购物车补建索引
+ * 
+ * <p>多实例同时启动时通过Redis锁只由一个实例执行，完成后写入完成标记，之后的启动不再执行。</p>
+ * 
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Component
+public class CartProductIndexBackfillTask {
+
+    private static final Logger log = LoggerFactory.getLogger(CartProductIndexBackfillTask.class);
+
+    private static final String BACKFILL_DONE_KEY = "cart:index:backfill:done";
+    private static final String BACKFILL_LOCK_KEY = "cart:index:backfill:lock";
+    private static final long BACKFILL_LOCK_MINUTES = 30;
+
+    @Autowired
+    private CartProductChangeService cartProductChangeService;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${cart.product-index.backfill-enabled:true}")
+    private boolean backfillEnabled;
+
+    /**
+     * 应用启动完成后回填反向索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (!backfillEnabled) {
+            return;
+        }
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(BACKFILL_DONE_KEY))) {
+                return;
+            }
+            Boolean locked = redisTemplate.opsForValue().setIfAbsent(BACKFILL_LOCK_KEY,
+                    LocalDateTime.now().toString(), BACKFILL_LOCK_MINUTES, TimeUnit.MINUTES);
+            if (!Boolean.TRUE.equals(locked)) {
+                log.info("购物车商品反向索引回填正由其他实例执行，跳过");
+                return;
+            }
+        } catch (Exception e) {
+            log.error("购物车商品反向索引回填检查失败，本次启动不执行回填", e);
+            return;
+        }
+
+        Thread worker = new Thread(() -> {
+            try {
+                long indexed = cartProductChangeService.backfillProductIndex();
+                redisTemplate.opsForValue().set(BACKFILL_DONE_KEY, LocalDateTime.now().toString());
+                log.info("购物车商品反向索引回填任务完成，索引项数: {}", indexed);
+            } catch (Exception e) {
+                log.error("购物车商品反向索引回填失败，下次启动时重新执行", e);
+            } finally {
+                redisTemplate.delete(BACKFILL_LOCK_KEY);
+            }
+        }, "cart-product-index-backfill");
+        worker.setDaemon(true);
+        worker.start();
+    }
+}
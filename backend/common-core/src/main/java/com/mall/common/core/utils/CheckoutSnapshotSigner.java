@@ -0,0 +1,106 @@
+package com.mall.common.core.utils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * 结算快照签名工具类
+ * 购物车服务生成结算快照时签名，订单服务消费时验签，双方使用相同的规范化规则和密钥
+ * 
+ * @author lingbai
+ * @version 1.1
+ * @since 2026-10-19
+ * 修改日志：V1.1 2026-10-19：新增密钥校验，未配置密钥时拒绝启动
+ */
+public class CheckoutSnapshotSigner {
+
+    private static final String HMAC_SHA256 = "HmacSHA256";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private CheckoutSnapshotSigner() {
+    }
+
+    /**
+     * 校验签名密钥已配置，供服务启动时调用
+     * 
+     * @param secret 签名密钥
+     * @throws IllegalStateException 密钥为空时
+     */
+    public static void requireSecret(String secret) {
+        if (secret == null || secret.trim().isEmpty()) {
+            throw new IllegalStateException("未配置结算快照签名密钥，请设置环境变量 CHECKOUT_SNAPSHOT_SECRET");
+        }
+    }
+
+    /**
+     * 生成快照行的规范化字符串
+     * 
+     * @param productId 商品ID
+     * @param specifications 规格（可为空）
+     * @param quantity 数量
+     * @param price 单价
+     * @param version 商品版本号
+     * @return 规范化字符串
+     */
+    public static String line(Long productId, String specifications, Integer quantity, BigDecimal price, Long version) {
+        return productId + ":" + (specifications != null ? specifications : "") + ":" + quantity + ":"
+                + (price != null ? price.stripTrailingZeros().toPlainString() : "") + ":" + version;
+    }
+
+    /**
+     * 计算快照签名（HMAC-SHA256，小写十六进制）
+     * 
+     * @param snapshotId 快照ID
+     * @param userId 用户ID
+     * @param expireTime 过期时间戳（毫秒）
+     * @param lines 按快照顺序排列的规范化行
+     * @param secret 签名密钥
+     * @return 签名
+     */
+    public static String sign(String snapshotId, Long userId, long expireTime, List<String> lines, String secret) {
+        StringBuilder content = new StringBuilder(64 + lines.size() * 32);
+        content.append(snapshotId).append('|').append(userId).append('|').append(expireTime);
+        for (String line : lines) {
+            content.append('|').append(line);
+        }
+        try {
+            Mac mac = Mac.getInstance(HMAC_SHA256);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_SHA256));
+            byte[] digest = mac.doFinal(content.toString().getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0x0F];
+                hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0x0F];
+            }
+            return new String(hex);
+        } catch (Exception e) {
+            throw new IllegalStateException("结算快照签名失败", e);
+        }
+    }
+
+    /**
+     * 验证快照签名（常量时间比较）
+     * 
+     * @param snapshotId 快照ID
+     * @param userId 用户ID
+     * @param expireTime 过期时间戳（毫秒）
+     * @param lines 按快照顺序排列的规范化行
+     * @param secret 签名密钥
+     * @param signature 待验证的签名
+     * @return 签名是否有效
+     */
+    public static boolean verify(String snapshotId, Long userId, long expireTime, List<String> lines,
+                                 String secret, String signature) {
+        if (signature == null) {
+            return false;
+        }
+        String expected = sign(snapshotId, userId, expireTime, lines, secret);
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+}
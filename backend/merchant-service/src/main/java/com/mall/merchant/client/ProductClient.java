@@ -12,8 +12,10 @@ import java.util.Map;
  * 调用 product-service 进行商品管理操作
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.1
  * @since 2025-12-01
+ * 修改日志：
+ * V1.1 2026-10-19：新增批量查询、批量归属验证、批量状态、批量删除、批量库存和批量调价接口
  */
 @FeignClient(name = "product-service", path = "/api")
 public interface ProductClient {
@@ -55,6 +57,24 @@ public interface ProductClient {
      */
     @GetMapping("/{id}")
     R<Map<String, Object>> getProductById(@PathVariable("id") Long id);
+    
+    /**
+     * 批量获取商品完整信息
+     * 
+     * @param productIds 商品ID列表
+     * @return 商品信息列表，不存在的商品不返回
+     */
+    @PostMapping("/products/batch/detail")
+    R<List<Map<String, Object>>> getProductsBatch(@RequestBody List<Long> productIds);
+    
+    /**
+     * 批量删除商品
+     * 
+     * @param productIds 商品ID列表
+     * @return 删除结果
+     */
+    @PostMapping("/products/batch/delete")
+    R<String> batchDeleteProducts(@RequestBody List<Long> productIds);
 
     
     /**
@@ -113,6 +133,17 @@ public interface ProductClient {
     R<Boolean> checkProductOwnership(@PathVariable("productId") Long productId,
                                      @RequestParam("merchantId") Long merchantId);
     
+    /**
+     * 批量验证商品归属
+     * 
+     * @param productIds 商品ID列表
+     * @param merchantId 商家ID
+     * @return 属于该商家的商品ID列表
+     */
+    @PostMapping("/products/batch/ownership")
+    R<List<Long>> getOwnedProductIds(@RequestBody List<Long> productIds,
+                                     @RequestParam("merchantId") Long merchantId);
+    
     // ==================== 商品状态管理 ====================
     
     /**
@@ -125,6 +156,16 @@ public interface ProductClient {
     @PutMapping("/{id}/status")
     R<String> updateProductStatus(@PathVariable("id") Long id, @RequestParam("status") Integer status);
     
+    /**
+     * 批量更新商品状态（上架/下架）
+     * 
+     * @param productIds 商品ID列表
+     * @param status 状态（0-下架，1-上架）
+     * @return 更新的商品数
+     */
+    @PutMapping("/products/batch/status")
+    R<Integer> batchUpdateProductStatus(@RequestBody List<Long> productIds, @RequestParam("status") Integer status);
+    
     // ==================== 统计接口 ====================
     
     /**
@@ -200,6 +241,15 @@ public interface ProductClient {
     @PutMapping("/{productId}/stock")
     R<String> updateStock(@PathVariable("productId") Long productId, @RequestParam("quantity") Integer quantity);
     
+    /**
+     * 批量更新商品库存
+     * 
+     * @param stockUpdates 库存更新列表，每项包含 productId、quantity（新库存数量）
+     * @return 更新结果，任一商品更新失败时返回失败
+     */
+    @PutMapping("/stock/batch")
+    R<String> batchUpdateStock(@RequestBody List<Map<String, Object>> stockUpdates);
+    
     // ==================== 价格管理 ====================
     
     /**
@@ -216,4 +266,13 @@ public interface ProductClient {
                                  @RequestParam("newPrice") Double newPrice,
                                  @RequestParam(value = "reason", required = false) String reason,
                                  @RequestParam(value = "operatorId", required = false) Long operatorId);
+    
+    /**
+     * 批量调价
+     * 
+     * @param priceUpdates 价格更新列表，每项包含 productId、newPrice、reason、operatorId
+     * @return 更新结果，任一商品更新失败时返回失败
+     */
+    @PutMapping("/price/batch")
+    R<String> batchUpdatePrices(@RequestBody List<Map<String, Object>> priceUpdates);
 }
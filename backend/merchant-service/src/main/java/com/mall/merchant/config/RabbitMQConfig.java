@@ -0,0 +1,57 @@
+package com.mall.merchant.config;
+
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * RabbitMQ配置类
+ * 订阅订单服务发布的订单事件，用于商家统计
+ *
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Configuration
+public class RabbitMQConfig {
+
+  /**
+   * 订单事件Exchange（由订单服务发布）
+   */
+  public static final String ORDER_EXCHANGE = "order.exchange";
+
+  /**
+   * 商家统计订单事件队列
+   */
+  public static final String MERCHANT_ORDER_EVENT_QUEUE = "merchant.order.event.queue";
+
+  /**
+   * 声明订单事件Exchange，与订单服务声明保持一致，保证启动顺序无关
+   */
+  @Bean
+  public TopicExchange orderExchange() {
+    return new TopicExchange(ORDER_EXCHANGE, true, false);
+  }
+
+  /**
+   * 声明商家统计订单事件队列
+   */
+  @Bean
+  public Queue merchantOrderEventQueue() {
+    return new Queue(MERCHANT_ORDER_EVENT_QUEUE, true);
+  }
+
+  /**
+   * 绑定全部订单事件到商家统计队列
+   */
+  @Bean
+  public Binding merchantOrderEventBinding() {
+    return BindingBuilder
+        .bind(merchantOrderEventQueue())
+        .to(orderExchange())
+        .with("order.#");
+  }
+}
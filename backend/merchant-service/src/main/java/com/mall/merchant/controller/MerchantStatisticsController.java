@@ -43,6 +43,8 @@ public class MerchantStatisticsController {
      * V1.1 2025-11-05：修复控制器与服务层之间的参数类型不匹配问题（String→Integer）。
      * 变更原因：接口层传递了字符串的统计类型/报表类型，服务层方法签名要求 Integer 枚举码，导致编译错误（String 不能转换为 Integer）。
      * 影响范围：导出统计、手动计算、批量计算与报表生成相关接口；仅调整入参映射，不影响外部 API 的参数形式。
+     * V1.2 2026-10-19：排名、对比接口接入商家排行榜，对比接口增加对比指标参数。
+     * V1.3 2026-10-19：批量计算改为按批次分组聚合；新增全量统计回填及回填进度查询接口。
      */
 
     /**
@@ -428,19 +430,18 @@ public class MerchantStatisticsController {
      * 获取商家在各项指标中的排名情况
      * 
      * @param merchantId 商家ID
-     * @param metric     排名指标（sales/orders/products/rating）
-     * @param period     统计周期（daily/monthly/yearly）
+     * @param metric     排名指标（gmv/orders/conversion）
+     * @param period     统计周期（daily/monthly）
      * @return 排名数据
      */
     @GetMapping("/ranking")
     @Operation(summary = "获取商家排名数据", description = "获取商家在各项指标中的排名情况")
     public R<Map<String, Object>> getMerchantRankingData(
             @Parameter(description = "商家ID") @RequestParam @NotNull Long merchantId,
-            @Parameter(description = "排名指标") @RequestParam String metric,
+            @Parameter(description = "排名指标") @RequestParam(defaultValue = "gmv") String metric,
             @Parameter(description = "统计周期") @RequestParam(defaultValue = "monthly") String period) {
         log.debug("获取商家排名数据请求，商家ID：{}，指标：{}，周期：{}", merchantId, metric, period);
-        // return statisticsService.getMerchantRankingData(merchantId, metric, period);
-        return R.ok();
+        return statisticsService.getMerchantRanking(merchantId, metric, period);
     }
 
     /**
@@ -448,8 +449,9 @@ public class MerchantStatisticsController {
      * 获取商家与同行业平均水平的对比数据
      * 
      * @param merchantId  商家ID
-     * @param compareType 对比类型（industry/category/region）
-     * @param period      统计周期（daily/monthly/yearly）
+     * @param compareType 对比类型（industry/category-同经营类目，platform-全平台）
+     * @param metric      对比指标（gmv/orders/conversion）
+     * @param period      统计周期（daily/monthly）
      * @return 对比数据
      */
     @GetMapping("/comparison")
@@ -457,11 +459,22 @@ public class MerchantStatisticsController {
     public R<Map<String, Object>> getMerchantComparisonData(
             @Parameter(description = "商家ID") @RequestParam @NotNull Long merchantId,
             @Parameter(description = "对比类型") @RequestParam String compareType,
+            @Parameter(description = "对比指标") @RequestParam(defaultValue = "gmv") String metric,
             @Parameter(description = "统计周期") @RequestParam(defaultValue = "monthly") String period) {
         log.debug("获取商家对比数据请求，商家ID：{}，类型：{}，周期：{}", merchantId, compareType, period);
-        // return statisticsService.getMerchantComparisonData(merchantId, compareType,
-        // period);
-        return R.ok();
+        Integer type;
+        switch (compareType) {
+            case "industry":
+            case "category":
+                type = 1;
+                break;
+            case "platform":
+                type = 2;
+                break;
+            default:
+                return R.fail("不支持的对比类型: " + compareType);
+        }
+        return statisticsService.getComparisonData(merchantId, type, metric, period);
     }
 
     /**
@@ -545,23 +558,43 @@ public class MerchantStatisticsController {
             @Parameter(description = "统计类型") @RequestParam String type) {
         log.info("批量计算统计数据请求，商家数量：{}，日期：{}，类型：{}", merchantIds.size(), date, type);
         Integer statTypeCode = parseStatType(type);
-        int successCount = 0;
-        int failureCount = 0;
-        for (Long merchantId : merchantIds) {
-            try {
-                // 将字符串类型转换为服务层使用的整数枚举码
-                statisticsService.calculateStatistics(merchantId, date, statTypeCode);
-                successCount++;
-            } catch (Exception e) {
-                log.error("批量计算商家 {} 的统计数据失败", merchantId, e);
-                failureCount++;
-            }
-        }
-        Map<String, Object> result = new java.util.HashMap<>();
-        result.put("total", merchantIds.size());
-        result.put("success", successCount);
-        result.put("failure", failureCount);
-        return R.ok(result);
+        return statisticsService.batchCalculateStatistics(merchantIds, date, date, statTypeCode);
+    }
+
+    /**
+     * 提交统计回填任务
+     * 按日期范围重算统计数据，未指定商家时回填全部商家，任务在后台并行执行
+     * 
+     * @param merchantIds 商家ID列表，可为空
+     * @param startDate   开始日期
+     * @param endDate     结束日期
+     * @param type        统计类型（daily/monthly/yearly）
+     * @return 任务进度，包含任务ID
+     */
+    @PostMapping("/backfill")
+    @Operation(summary = "提交统计回填任务", description = "按日期范围并行重算商家统计数据，未指定商家时回填全部商家")
+    public R<Map<String, Object>> startStatisticsBackfill(
+            @Parameter(description = "商家ID列表，为空时回填全部商家") @RequestBody(required = false) List<Long> merchantIds,
+            @Parameter(description = "开始日期") @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @Parameter(description = "结束日期") @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @Parameter(description = "统计类型") @RequestParam String type) {
+        log.info("提交统计回填任务请求，商家数量：{}，开始日期：{}，结束日期：{}，类型：{}",
+                merchantIds != null ? merchantIds.size() : 0, startDate, endDate, type);
+        Integer statTypeCode = parseStatType(type);
+        return statisticsService.startStatisticsBackfill(merchantIds, startDate, endDate, statTypeCode);
+    }
+
+    /**
+     * 查询统计回填任务进度
+     * 
+     * @param jobId 任务ID
+     * @return 任务进度
+     */
+    @GetMapping("/backfill/{jobId}")
+    @Operation(summary = "查询统计回填进度", description = "查询统计回填任务的批次进度、写入行数和失败商家")
+    public R<Map<String, Object>> getStatisticsBackfillProgress(
+            @Parameter(description = "任务ID") @PathVariable String jobId) {
+        return statisticsService.getStatisticsBackfillProgress(jobId);
     }
 
     /**
@@ -0,0 +1,81 @@
+package com.mall.merchant.domain.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 订单事件DTO
+ * 对应订单服务发布的 OrderEvent
+ *
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Data
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class OrderEventDTO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** 订单创建事件类型 */
+    public static final String TYPE_CREATED = "ORDER_CREATED";
+
+    /** 订单支付事件类型 */
+    public static final String TYPE_PAID = "ORDER_PAID";
+
+    /** 订单发货事件类型 */
+    public static final String TYPE_SHIPPED = "ORDER_SHIPPED";
+
+    /** 订单完成事件类型 */
+    public static final String TYPE_COMPLETED = "ORDER_COMPLETED";
+
+    /** 订单取消事件类型 */
+    public static final String TYPE_CANCELLED = "ORDER_CANCELLED";
+
+    /** 订单超时事件类型 */
+    public static final String TYPE_TIMEOUT = "ORDER_TIMEOUT";
+
+    /**
+     * 事件类型 (ORDER_CREATED/ORDER_PAID/ORDER_SHIPPED/ORDER_COMPLETED/ORDER_CANCELLED/ORDER_TIMEOUT)
+     */
+    private String eventType;
+
+    /**
+     * 订单ID
+     */
+    private Long orderId;
+
+    /**
+     * 订单号
+     */
+    private String orderNo;
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * 商家ID
+     */
+    private Long merchantId;
+
+    /**
+     * 订单金额
+     */
+    private BigDecimal amount;
+
+    /**
+     * 附加信息
+     */
+    private String message;
+
+    /**
+     * 事件时间
+     */
+    private LocalDateTime eventTime;
+}
@@ -13,13 +13,17 @@ import java.time.LocalDateTime;
  * 存储商家相关的订单信息
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.1
  * @since 2025-01-27
+ * 
+ * 修改日志：
+ * V1.1 2026-10-19：增加 (商家ID, 下单时间) 索引，供统计计算按商家和时间范围分组聚合
  */
 @Data
 @EqualsAndHashCode(callSuper = true)
 @Entity
-@Table(name = "merchant_order")
+@Table(name = "merchant_order",
+       indexes = @Index(name = "idx_merchant_create_time", columnList = "merchant_id, create_time"))
 public class MerchantOrder extends BaseEntity {
 
     /**
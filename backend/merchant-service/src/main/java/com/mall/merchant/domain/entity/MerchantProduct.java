@@ -12,8 +12,10 @@ import java.math.BigDecimal;
  * 存储商家发布的商品信息
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.1
  * @since 2025-01-27
+ * 
+ * V1.1 2026-10-19：透传商品服务的商品变更版本号，供购物车判断商品事件先后
  */
 @Data
 @EqualsAndHashCode(callSuper = true)
@@ -195,6 +197,12 @@ public class MerchantProduct extends BaseEntity {
     @Column(name = "seo_description", length = 500)
     private String seoDescription;
 
+    /**
+     * 商品变更版本号（来自商品服务 change_version，不落库）
+     */
+    @Transient
+    private Long changeVersion;
+
     // 业务方法
 
     /**
@@ -0,0 +1,85 @@
+package com.mall.merchant.domain.entity;
+
+import lombok.Data;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 商家排行榜快照实体类
+ * 定时从Redis排行榜落库，Redis中的榜单过期或丢失后按快照查询历史排名
+ *
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Data
+@Entity
+@Table(name = "merchant_ranking_snapshot",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"merchant_id", "metric", "period_type", "period_start"}),
+       indexes = @Index(name = "idx_board_rank", columnList = "metric, periodType, periodStart, rankNo"))
+public class MerchantRankingSnapshot {
+
+    /**
+     * 快照ID
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 商家ID
+     */
+    @Column(name = "merchant_id", nullable = false)
+    private Long merchantId;
+
+    /**
+     * 排名指标：gmv-成交额，orders-支付订单数，conversion-下单支付转化率
+     */
+    @Column(name = "metric", nullable = false, length = 20)
+    private String metric;
+
+    /**
+     * 榜单周期：daily-日榜，monthly-月榜
+     */
+    @Column(name = "period_type", nullable = false, length = 10)
+    private String periodType;
+
+    /**
+     * 周期起始日期（日榜为当天，月榜为当月1日）
+     */
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    /**
+     * 商家经营类目
+     */
+    @Column(name = "business_category", length = 100)
+    private String businessCategory;
+
+    /**
+     * 指标值
+     */
+    @Column(name = "score", nullable = false, precision = 18, scale = 4)
+    private BigDecimal score;
+
+    /**
+     * 名次（从1开始）
+     */
+    @Column(name = "rank_no", nullable = false)
+    private Integer rankNo;
+
+    /**
+     * 上榜商家总数
+     */
+    @Column(name = "total_merchants", nullable = false)
+    private Integer totalMerchants;
+
+    /**
+     * 快照时间
+     */
+    @Column(name = "snapshot_time", nullable = false)
+    private LocalDateTime snapshotTime;
+}
@@ -13,13 +13,17 @@ import java.time.LocalDate;
  * 存储商家的各项统计数据
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.1
  * @since 2025-01-27
+ * 
+ * 修改日志：
+ * V1.1 2026-10-19：增加 (商家ID, 统计日期, 统计类型) 唯一约束，统计计算按该键批量写入
  */
 @Data
 @EqualsAndHashCode(callSuper = true)
 @Entity
-@Table(name = "merchant_statistics")
+@Table(name = "merchant_statistics",
+       uniqueConstraints = @UniqueConstraint(name = "uk_merchant_stat", columnNames = {"merchant_id", "stat_date", "stat_type"}))
 public class MerchantStatistics extends BaseEntity {
     
     /**
@@ -0,0 +1,67 @@
+package com.mall.merchant.listener;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mall.merchant.config.RabbitMQConfig;
+import com.mall.merchant.domain.dto.OrderEventDTO;
+import com.mall.merchant.service.MerchantRankingService;
+import com.mall.merchant.service.MerchantRealtimeStatsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 订单事件监听器
+ * 消费订单服务发布的订单事件，增量更新商家排行榜和实时统计
+ * 
+ * @author lingbai
+ * @version 1.2
+ * @since 2026-10-19
+ * 
+ * 修改日志：
+ * V1.1 2026-10-19：同时更新商家实时统计计数器
+ * V1.2 2026-10-19：多商家订单每个商家一条事件，去重键包含商家ID
+ */
+@Component
+public class OrderEventListener {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderEventListener.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Autowired
+    private MerchantRankingService merchantRankingService;
+
+    @Autowired
+    private MerchantRealtimeStatsService merchantRealtimeStatsService;
+
+    /**
+     * 处理订单事件
+     * 
+     * @param message 事件JSON
+     */
+    @RabbitListener(queues = RabbitMQConfig.MERCHANT_ORDER_EVENT_QUEUE)
+    public void onOrderEvent(String message) {
+        OrderEventDTO event;
+        try {
+            event = objectMapper.readValue(message, OrderEventDTO.class);
+        } catch (Exception e) {
+            // 格式错误的消息无法重试成功，记录后丢弃
+            log.error("订单事件解析失败，已丢弃: message={}", message, e);
+            return;
+        }
+        if (event.getMerchantId() == null) {
+            log.debug("订单事件未携带商家ID，跳过: orderNo={}", event.getOrderNo());
+            return;
+        }
+        log.debug("收到订单事件: {}", event);
+        // 两项更新各自按订单号、商家和事件类型去重，任一失败时消息重投不会重复计数
+        merchantRankingService.applyOrderEvent(event);
+        merchantRealtimeStatsService.applyOrderEvent(event);
+    }
+}
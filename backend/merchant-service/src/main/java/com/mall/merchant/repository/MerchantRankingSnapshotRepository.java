@@ -0,0 +1,74 @@
+package com.mall.merchant.repository;
+
+import com.mall.merchant.domain.entity.MerchantRankingSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * 商家排行榜快照数据访问层
+ *
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Repository
+public interface MerchantRankingSnapshotRepository extends JpaRepository<MerchantRankingSnapshot, Long> {
+
+    /**
+     * 查询商家在指定榜单中的快照
+     *
+     * @param merchantId 商家ID
+     * @param metric 排名指标
+     * @param periodType 榜单周期
+     * @param periodStart 周期起始日期
+     * @return 排名快照
+     */
+    Optional<MerchantRankingSnapshot> findByMerchantIdAndMetricAndPeriodTypeAndPeriodStart(
+            Long merchantId, String metric, String periodType, LocalDate periodStart);
+
+    /**
+     * 统计榜单快照中的商家数
+     *
+     * @param metric 排名指标
+     * @param periodType 榜单周期
+     * @param periodStart 周期起始日期
+     * @return 商家数
+     */
+    long countByMetricAndPeriodTypeAndPeriodStart(String metric, String periodType, LocalDate periodStart);
+
+    /**
+     * 计算榜单快照的平均指标值
+     *
+     * @param metric 排名指标
+     * @param periodType 榜单周期
+     * @param periodStart 周期起始日期
+     * @return 平均值，无快照时为null
+     */
+    @Query("SELECT AVG(s.score) FROM MerchantRankingSnapshot s WHERE s.metric = :metric " +
+           "AND s.periodType = :periodType AND s.periodStart = :periodStart")
+    Double averageScore(@Param("metric") String metric,
+                        @Param("periodType") String periodType,
+                        @Param("periodStart") LocalDate periodStart);
+
+    /**
+     * 计算榜单快照中同类目商家的平均指标值
+     *
+     * @param metric 排名指标
+     * @param periodType 榜单周期
+     * @param periodStart 周期起始日期
+     * @param businessCategory 经营类目
+     * @return 平均值，无快照时为null
+     */
+    @Query("SELECT AVG(s.score) FROM MerchantRankingSnapshot s WHERE s.metric = :metric " +
+           "AND s.periodType = :periodType AND s.periodStart = :periodStart " +
+           "AND s.businessCategory = :businessCategory")
+    Double averageScoreByCategory(@Param("metric") String metric,
+                                  @Param("periodType") String periodType,
+                                  @Param("periodStart") LocalDate periodStart,
+                                  @Param("businessCategory") String businessCategory);
+}
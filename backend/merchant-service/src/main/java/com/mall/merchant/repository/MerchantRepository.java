@@ -17,8 +17,11 @@ import java.util.Optional;
  * 提供商家相关的数据库操作方法
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.1
  * @since 2025-01-27
+ * 
+ * 修改日志：
+ * V1.1 2026-10-19：新增按ID游标分页查询商家ID，供统计回填遍历全部商家
  */
 @Repository
 public interface MerchantRepository extends JpaRepository<Merchant, Long> {
@@ -290,4 +293,14 @@ public interface MerchantRepository extends JpaRepository<Merchant, Long> {
      * @return 是否存在
      */
     boolean existsByIdFrontImage(String idFrontImage);
-}
\ No newline at end of file
+    
+    /**
+     * 按ID游标分页查询商家ID
+     * 
+     * @param lastId 上一页最后一个商家ID，首页传0
+     * @param pageable 分页参数，只使用页大小
+     * @return 大于lastId的商家ID，按ID升序
+     */
+    @Query("SELECT m.id FROM Merchant m WHERE m.id > :lastId ORDER BY m.id")
+    List<Long> findIdsAfter(@Param("lastId") Long lastId, Pageable pageable);
+}
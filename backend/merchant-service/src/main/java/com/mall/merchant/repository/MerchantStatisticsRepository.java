@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,8 +18,11 @@ import java.util.Optional;
  * 提供商家统计相关的数据库操作方法
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.1
  * @since 2025-01-27
+ * 
+ * 修改日志：
+ * V1.1 2026-10-19：新增按商家集合和日期范围批量查询统计数据，供统计计算批量写入
  */
 @Repository
 public interface MerchantStatisticsRepository extends JpaRepository<MerchantStatistics, Long> {
@@ -321,4 +325,16 @@ public interface MerchantStatisticsRepository extends JpaRepository<MerchantStat
     List<Object[]> findSummaryStatistics(@Param("merchantId") Long merchantId, 
                                         @Param("startDate") LocalDate startDate, 
                                         @Param("endDate") LocalDate endDate);
-}
\ No newline at end of file
+    
+    /**
+     * 根据商家ID集合、统计类型和日期范围查找统计数据
+     * 
+     * @param merchantIds 商家ID集合
+     * @param statType 统计类型
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @return 统计数据列表
+     */
+    List<MerchantStatistics> findByMerchantIdInAndStatTypeAndStatDateBetween(Collection<Long> merchantIds, Integer statType,
+                                                                            LocalDate startDate, LocalDate endDate);
+}
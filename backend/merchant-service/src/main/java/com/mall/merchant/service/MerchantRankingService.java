@@ -0,0 +1,72 @@
+package com.mall.merchant.service;
+
+import com.mall.merchant.domain.dto.OrderEventDTO;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * 商家排行榜服务接口
+ * 按指标和周期维护全平台商家排行榜，由订单事件增量更新
+ *
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+public interface MerchantRankingService {
+
+    /** 排名指标：成交额（已支付订单金额） */
+    String METRIC_GMV = "gmv";
+
+    /** 排名指标：支付订单数 */
+    String METRIC_ORDERS = "orders";
+
+    /** 排名指标：下单支付转化率（支付订单数 / 下单数） */
+    String METRIC_CONVERSION = "conversion";
+
+    /** 榜单周期：日榜 */
+    String PERIOD_DAILY = "daily";
+
+    /** 榜单周期：月榜 */
+    String PERIOD_MONTHLY = "monthly";
+
+    /**
+     * 按订单事件更新排行榜，同一订单的同一事件只计一次
+     *
+     * @param event 订单事件
+     * @return 是否更新了排行榜
+     */
+    boolean applyOrderEvent(OrderEventDTO event);
+
+    /**
+     * 查询商家在榜单中的排名
+     *
+     * @param merchantId 商家ID
+     * @param metric 排名指标
+     * @param period 榜单周期
+     * @param date 周期内任意日期
+     * @return 排名数据：score、rank、totalMerchants、percentile、platformAverage
+     */
+    Map<String, Object> getRanking(Long merchantId, String metric, String period, LocalDate date);
+
+    /**
+     * 查询商家指标与同行平均值的对比
+     *
+     * @param merchantId 商家ID
+     * @param metric 排名指标
+     * @param period 榜单周期
+     * @param date 周期内任意日期
+     * @param sameCategory true-与同经营类目商家平均值对比，false-与平台平均值对比
+     * @return 对比数据：merchantValue、averageValue、difference、differencePercent
+     */
+    Map<String, Object> getComparison(Long merchantId, String metric, String period, LocalDate date, boolean sameCategory);
+
+    /**
+     * 将榜单快照到数据库
+     *
+     * @param period 榜单周期
+     * @param date 周期内任意日期
+     * @return 快照的商家数
+     */
+    int snapshot(String period, LocalDate date);
+}
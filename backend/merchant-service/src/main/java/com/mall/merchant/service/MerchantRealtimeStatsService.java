@@ -0,0 +1,41 @@
+package com.mall.merchant.service;
+
+import com.mall.merchant.domain.dto.OrderEventDTO;
+import com.mall.merchant.domain.entity.MerchantStatistics;
+
+import java.util.Map;
+
+/**
+ * 商家实时统计服务接口
+ * 由订单事件增量维护商家当日计数器，供首页实时展示
+ *
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+public interface MerchantRealtimeStatsService {
+
+    /**
+     * 按订单事件更新实时计数器，同一订单的同一事件只计一次
+     *
+     * @param event 订单事件
+     * @return 是否更新了计数器
+     */
+    boolean applyOrderEvent(OrderEventDTO event);
+
+    /**
+     * 读取商家实时统计
+     *
+     * @param merchantId 商家ID
+     * @return 今日订单数、支付数、销售额、待发货订单数、买家数、近期活跃买家数及分钟趋势
+     */
+    Map<String, Object> getRealtimeStatistics(Long merchantId);
+
+    /**
+     * 由实时计数器构造今日统计
+     *
+     * @param merchantId 商家ID
+     * @return 今日统计，今日尚无订单事件时返回null
+     */
+    MerchantStatistics getTodayStatistics(Long merchantId);
+}
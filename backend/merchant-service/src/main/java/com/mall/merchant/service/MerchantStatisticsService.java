@@ -13,8 +13,12 @@ import java.util.Map;
  * 提供商家统计相关的业务逻辑处理
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.2
  * @since 2025-01-27
+ * 
+ * 修改日志：
+ * V1.1 2026-10-19：新增按指标、周期查询排名和对比数据
+ * V1.2 2026-10-19：新增多商家批量计算、全量统计回填及回填进度查询
  */
 public interface MerchantStatisticsService {
     
@@ -172,14 +176,26 @@ public interface MerchantStatisticsService {
     
     /**
      * 获取商家排名数据
+     * 返回本月成交额、支付订单数、转化率三个榜单中的排名
      * 
      * @param merchantId 商家ID
      * @return 排名数据
      */
     R<Map<String, Object>> getMerchantRanking(Long merchantId);
     
+    /**
+     * 获取商家在指定榜单中的排名
+     * 
+     * @param merchantId 商家ID
+     * @param metric 排名指标（gmv/orders/conversion）
+     * @param period 榜单周期（daily/monthly）
+     * @return 排名数据
+     */
+    R<Map<String, Object>> getMerchantRanking(Long merchantId, String metric, String period);
+    
     /**
      * 获取商家对比数据
+     * 对比本月成交额
      * 
      * @param merchantId 商家ID
      * @param compareType 对比类型：1-同行业平均，2-平台平均
@@ -187,6 +203,17 @@ public interface MerchantStatisticsService {
      */
     R<Map<String, Object>> getComparisonData(Long merchantId, Integer compareType);
     
+    /**
+     * 获取商家指定指标的对比数据
+     * 
+     * @param merchantId 商家ID
+     * @param compareType 对比类型：1-同行业平均，2-平台平均
+     * @param metric 对比指标（gmv/orders/conversion）
+     * @param period 统计周期（daily/monthly）
+     * @return 对比数据
+     */
+    R<Map<String, Object>> getComparisonData(Long merchantId, Integer compareType, String metric, String period);
+    
     /**
      * 生成统计报告
      * 
@@ -231,6 +258,36 @@ public interface MerchantStatisticsService {
      */
     R<Void> batchCalculateStatistics(Long merchantId, LocalDate startDate, LocalDate endDate, Integer statType);
     
+    /**
+     * 批量计算多个商家的统计数据，同步执行
+     * 
+     * @param merchantIds 商家ID列表
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @param statType 统计类型
+     * @return 计算结果：total、success、failure、rowsWritten
+     */
+    R<Map<String, Object>> batchCalculateStatistics(List<Long> merchantIds, LocalDate startDate, LocalDate endDate, Integer statType);
+    
+    /**
+     * 提交统计回填任务，由线程池并行执行
+     * 
+     * @param merchantIds 商家ID列表，为空时回填全部商家
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @param statType 统计类型
+     * @return 任务进度，包含jobId
+     */
+    R<Map<String, Object>> startStatisticsBackfill(List<Long> merchantIds, LocalDate startDate, LocalDate endDate, Integer statType);
+    
+    /**
+     * 查询统计回填任务进度
+     * 
+     * @param jobId 任务ID
+     * @return 任务进度
+     */
+    R<Map<String, Object>> getStatisticsBackfillProgress(String jobId);
+    
     /**
      * 获取统计数据汇总
      * 
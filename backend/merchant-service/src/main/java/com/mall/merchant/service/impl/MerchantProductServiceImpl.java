@@ -9,6 +9,7 @@ import com.mall.merchant.service.MerchantProductService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,10 +22,13 @@ import java.util.*;
  * 商品数据统一存储在 product-service，merchant-service 仅负责商家相关的业务逻辑
  * 
  * @author lingbai
- * @version 3.0
+ * @version 3.3
  * @since 2025-01-27
  * 修改日志：
  * V3.0 2025-12-01：完全重构为调用 product-service，移除本地数据库操作
+ * V3.1 2026-10-19：批量查询、批量上下架、批量删除、批量改库存和价格改为按批次调用商品服务批量接口，归属按批次验证
+ * V3.2 2026-10-19：批量更新状态任一批次调用失败即停止并返回失败；批量下架与上架一致，更新数少于商品数时返回失败
+ * V3.3 2026-10-19：商品转换时保留商品变更版本号
  */
 @Slf4j
 @Service
@@ -44,6 +48,12 @@ public class MerchantProductServiceImpl implements MerchantProductService {
     @Autowired(required = false)
     private MerchantProductRepository productRepository;
 
+    /**
+     * 调用商品服务批量接口时每批的商品数
+     */
+    @Value("${merchant.product.batch-size:200}")
+    private int productBatchSize;
+
     /**
      * 添加商品
      * 调用 product-service 创建商品
@@ -243,15 +253,33 @@ public class MerchantProductServiceImpl implements MerchantProductService {
      */
     @Override
     public R<List<MerchantProduct>> getProductsBatch(List<Long> productIds) {
-        log.debug("批量获取商品信息，商品数量：{}", productIds.size());
+        log.debug("批量获取商品信息，商品数量：{}", productIds != null ? productIds.size() : 0);
+        if (productIds == null || productIds.isEmpty()) {
+            return R.ok(new ArrayList<>());
+        }
         
         try {
-            List<MerchantProduct> products = new ArrayList<>();
-            // 逐个获取商品信息（后续可优化为批量接口）
-            for (Long productId : productIds) {
-                R<Map<String, Object>> result = productClient.getProductById(productId);
-                if (result != null && result.isSuccess() && result.getData() != null) {
-                    products.add(convertToMerchantProduct(result.getData()));
+            Map<Long, MerchantProduct> productMap = new HashMap<>();
+            for (List<Long> chunk : partition(productIds)) {
+                R<List<Map<String, Object>>> result = productClient.getProductsBatch(chunk);
+                if (result == null || !result.isSuccess()) {
+                    String errorMsg = result != null ? result.getMessage() : "调用商品服务失败";
+                    log.error("批量获取商品信息失败，错误信息：{}", errorMsg);
+                    return R.fail("获取商品信息失败");
+                }
+                if (result.getData() != null) {
+                    for (Map<String, Object> data : result.getData()) {
+                        MerchantProduct product = convertToMerchantProduct(data);
+                        productMap.put(product.getId(), product);
+                    }
+                }
+            }
+            // 按请求顺序返回，不存在的商品跳过
+            List<MerchantProduct> products = new ArrayList<>(productMap.size());
+            for (Long productId : new LinkedHashSet<>(productIds)) {
+                MerchantProduct product = productMap.get(productId);
+                if (product != null) {
+                    products.add(product);
                 }
             }
             return R.ok(products);
@@ -343,18 +371,19 @@ public class MerchantProductServiceImpl implements MerchantProductService {
     @Override
     @Transactional
     public R<Void> batchOnlineProducts(Long merchantId, List<Long> productIds) {
-        log.info("批量上架商品，商家ID：{}，商品数量：{}", merchantId, productIds.size());
+        log.info("批量上架商品，商家ID：{}，商品数量：{}", merchantId, productIds != null ? productIds.size() : 0);
+        if (productIds == null || productIds.isEmpty()) {
+            return R.ok();
+        }
 
         try {
-            int successCount = 0;
-            for (Long productId : productIds) {
-                R<Void> result = onlineProduct(merchantId, productId);
-                if (result.isSuccess()) {
-                    successCount++;
-                }
+            R<Void> ownershipResult = checkProductsOwnership(productIds, merchantId);
+            if (!ownershipResult.isSuccess()) {
+                return ownershipResult;
             }
 
-            if (successCount == productIds.size()) {
+            int successCount = batchUpdateStatus(productIds, 1);
+            if (successCount == new HashSet<>(productIds).size()) {
                 log.info("批量上架商品成功，商家ID：{}，数量：{}", merchantId, successCount);
                 return R.ok();
             } else {
@@ -377,19 +406,25 @@ public class MerchantProductServiceImpl implements MerchantProductService {
     @Override
     @Transactional
     public R<Void> batchOfflineProducts(Long merchantId, List<Long> productIds) {
-        log.info("批量下架商品，商家ID：{}，商品数量：{}", merchantId, productIds.size());
+        log.info("批量下架商品，商家ID：{}，商品数量：{}", merchantId, productIds != null ? productIds.size() : 0);
+        if (productIds == null || productIds.isEmpty()) {
+            return R.ok();
+        }
 
         try {
-            int successCount = 0;
-            for (Long productId : productIds) {
-                R<Void> result = offlineProduct(merchantId, productId);
-                if (result.isSuccess()) {
-                    successCount++;
-                }
+            R<Void> ownershipResult = checkProductsOwnership(productIds, merchantId);
+            if (!ownershipResult.isSuccess()) {
+                return ownershipResult;
             }
 
-            log.info("批量下架商品成功，商家ID：{}，数量：{}", merchantId, successCount);
-            return R.ok();
+            int successCount = batchUpdateStatus(productIds, 0);
+            if (successCount == new HashSet<>(productIds).size()) {
+                log.info("批量下架商品成功，商家ID：{}，数量：{}", merchantId, successCount);
+                return R.ok();
+            } else {
+                log.warn("部分商品下架失败，预期：{}，实际：{}", productIds.size(), successCount);
+                return R.fail("部分商品下架失败");
+            }
         } catch (Exception e) {
             log.error("批量下架商品失败，商家ID：{}，错误信息：{}", merchantId, e.getMessage(), e);
             return R.fail("批量下架失败，请稍后重试");
@@ -406,24 +441,27 @@ public class MerchantProductServiceImpl implements MerchantProductService {
     @Override
     @Transactional
     public R<Void> batchDeleteProducts(Long merchantId, List<Long> productIds) {
-        log.info("批量删除商品，商家ID：{}，商品数量：{}", merchantId, productIds.size());
+        log.info("批量删除商品，商家ID：{}，商品数量：{}", merchantId, productIds != null ? productIds.size() : 0);
+        if (productIds == null || productIds.isEmpty()) {
+            return R.ok();
+        }
 
         try {
-            int successCount = 0;
-            for (Long productId : productIds) {
-                R<Void> result = deleteProduct(merchantId, productId);
-                if (result.isSuccess()) {
-                    successCount++;
-                }
+            R<Void> ownershipResult = checkProductsOwnership(productIds, merchantId);
+            if (!ownershipResult.isSuccess()) {
+                return ownershipResult;
             }
 
-            if (successCount == productIds.size()) {
-                log.info("批量删除商品成功，商家ID：{}，数量：{}", merchantId, successCount);
-                return R.ok();
-            } else {
-                log.warn("部分商品删除失败，预期：{}，实际：{}", productIds.size(), successCount);
-                return R.fail("部分商品删除失败");
+            for (List<Long> chunk : partition(productIds)) {
+                R<String> result = productClient.batchDeleteProducts(chunk);
+                if (result == null || !result.isSuccess()) {
+                    String errorMsg = result != null ? result.getMessage() : "调用商品服务失败";
+                    log.error("批量删除商品失败，商家ID：{}，错误信息：{}", merchantId, errorMsg);
+                    return R.fail("部分商品删除失败");
+                }
             }
+            log.info("批量删除商品成功，商家ID：{}，数量：{}", merchantId, productIds.size());
+            return R.ok();
         } catch (Exception e) {
             log.error("批量删除商品失败，商家ID：{}，错误信息：{}", merchantId, e.getMessage(), e);
             return R.fail("批量删除失败，请稍后重试");
@@ -823,13 +861,31 @@ public class MerchantProductServiceImpl implements MerchantProductService {
     @Override
     @Transactional
     public R<Void> batchUpdateStock(Long merchantId, Map<Long, Integer> stockUpdates) {
-        log.info("批量更新商品库存，商家ID：{}，更新数量：{}", merchantId, stockUpdates.size());
+        log.info("批量更新商品库存，商家ID：{}，更新数量：{}", merchantId, stockUpdates != null ? stockUpdates.size() : 0);
+        if (stockUpdates == null || stockUpdates.isEmpty()) {
+            return R.ok();
+        }
 
         try {
-            for (Map.Entry<Long, Integer> entry : stockUpdates.entrySet()) {
-                R<Void> result = updateStock(merchantId, entry.getKey(), entry.getValue());
-                if (!result.isSuccess()) {
-                    return R.fail("批量更新库存失败：" + result.getMessage());
+            List<Long> productIds = new ArrayList<>(stockUpdates.keySet());
+            R<Void> ownershipResult = checkProductsOwnership(productIds, merchantId);
+            if (!ownershipResult.isSuccess()) {
+                return ownershipResult;
+            }
+
+            for (List<Long> chunk : partition(productIds)) {
+                List<Map<String, Object>> updates = new ArrayList<>(chunk.size());
+                for (Long productId : chunk) {
+                    Map<String, Object> update = new HashMap<>();
+                    update.put("productId", productId);
+                    update.put("quantity", stockUpdates.get(productId));
+                    updates.add(update);
+                }
+                R<String> result = productClient.batchUpdateStock(updates);
+                if (result == null || !result.isSuccess()) {
+                    String errorMsg = result != null ? result.getMessage() : "调用商品服务失败";
+                    log.error("批量更新商品库存失败，商家ID：{}，错误信息：{}", merchantId, errorMsg);
+                    return R.fail("批量更新库存失败：" + errorMsg);
                 }
             }
             return R.ok();
@@ -849,13 +905,34 @@ public class MerchantProductServiceImpl implements MerchantProductService {
     @Override
     @Transactional
     public R<Void> batchUpdatePrice(Long merchantId, Map<Long, BigDecimal> priceUpdates) {
-        log.info("批量更新商品价格，商家ID：{}，更新数量：{}", merchantId, priceUpdates.size());
+        log.info("批量更新商品价格，商家ID：{}，更新数量：{}", merchantId, priceUpdates != null ? priceUpdates.size() : 0);
+        if (priceUpdates == null || priceUpdates.isEmpty()) {
+            return R.ok();
+        }
 
         try {
-            for (Map.Entry<Long, BigDecimal> entry : priceUpdates.entrySet()) {
-                R<Void> result = updatePrice(merchantId, entry.getKey(), entry.getValue());
-                if (!result.isSuccess()) {
-                    return R.fail("批量更新价格失败：" + result.getMessage());
+            List<Long> productIds = new ArrayList<>(priceUpdates.keySet());
+            R<Void> ownershipResult = checkProductsOwnership(productIds, merchantId);
+            if (!ownershipResult.isSuccess()) {
+                return ownershipResult;
+            }
+
+            for (List<Long> chunk : partition(productIds)) {
+                List<Map<String, Object>> updates = new ArrayList<>(chunk.size());
+                for (Long productId : chunk) {
+                    BigDecimal price = priceUpdates.get(productId);
+                    Map<String, Object> update = new HashMap<>();
+                    update.put("productId", productId);
+                    update.put("newPrice", price != null ? price.doubleValue() : null);
+                    update.put("reason", "商家更新价格");
+                    update.put("operatorId", merchantId);
+                    updates.add(update);
+                }
+                R<String> result = productClient.batchUpdatePrices(updates);
+                if (result == null || !result.isSuccess()) {
+                    String errorMsg = result != null ? result.getMessage() : "调用商品服务失败";
+                    log.error("批量更新商品价格失败，商家ID：{}，错误信息：{}", merchantId, errorMsg);
+                    return R.fail("批量更新价格失败：" + errorMsg);
                 }
             }
             return R.ok();
@@ -1046,6 +1123,77 @@ public class MerchantProductServiceImpl implements MerchantProductService {
 
     // ==================== 私有辅助方法 ====================
 
+    /**
+     * 按批次验证一组商品是否都属于该商家
+     * 
+     * @param productIds 商品ID列表
+     * @param merchantId 商家ID
+     * @return 全部属于该商家时返回成功，否则返回失败并列出无权限的商品ID
+     */
+    private R<Void> checkProductsOwnership(List<Long> productIds, Long merchantId) {
+        Set<Long> ownedIds = new HashSet<>();
+        for (List<Long> chunk : partition(productIds)) {
+            R<List<Long>> result = productClient.getOwnedProductIds(chunk, merchantId);
+            if (result == null || !result.isSuccess()) {
+                String errorMsg = result != null ? result.getMessage() : "调用商品服务失败";
+                log.error("批量验证商品归属失败，商家ID：{}，错误信息：{}", merchantId, errorMsg);
+                return R.fail("验证商品归属失败");
+            }
+            if (result.getData() != null) {
+                ownedIds.addAll(result.getData());
+            }
+        }
+
+        List<Long> deniedIds = new ArrayList<>();
+        for (Long productId : productIds) {
+            if (!ownedIds.contains(productId)) {
+                deniedIds.add(productId);
+            }
+        }
+        if (!deniedIds.isEmpty()) {
+            log.warn("商品不存在或不属于该商家，商家ID：{}，商品ID：{}", merchantId, deniedIds);
+            return R.fail("商品不存在或无权限操作：" + deniedIds);
+        }
+        return R.ok();
+    }
+
+    /**
+     * 按批次更新商品状态，任一批次调用失败即停止
+     * 
+     * @param productIds 商品ID列表
+     * @param status 状态（0-下架，1-上架）
+     * @return 更新成功的商品数，有批次调用失败时返回-1
+     */
+    private int batchUpdateStatus(List<Long> productIds, Integer status) {
+        int successCount = 0;
+        for (List<Long> chunk : partition(productIds)) {
+            R<Integer> result = productClient.batchUpdateProductStatus(chunk, status);
+            if (result == null || !result.isSuccess() || result.getData() == null) {
+                String errorMsg = result != null ? result.getMessage() : "调用商品服务失败";
+                log.error("批量更新商品状态失败，状态：{}，批次：{}，错误信息：{}", status, chunk, errorMsg);
+                return -1;
+            }
+            successCount += result.getData();
+        }
+        return successCount;
+    }
+
+    /**
+     * 将商品ID去重后按批次大小切分
+     * 
+     * @param productIds 商品ID列表
+     * @return 商品ID批次列表
+     */
+    private List<List<Long>> partition(List<Long> productIds) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(productIds));
+        int batchSize = Math.max(1, productBatchSize);
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinctIds.size(); from += batchSize) {
+            chunks.add(distinctIds.subList(from, Math.min(from + batchSize, distinctIds.size())));
+        }
+        return chunks;
+    }
+
     /**
      * 将 MerchantProduct 转换为 Map 用于调用 product-service
      * 字段名需要与 Product 实体类的字段名一致
@@ -1127,6 +1275,7 @@ public class MerchantProductServiceImpl implements MerchantProductService {
         product.setMainImage(getStringValue(data, "mainImage"));
         product.setImages(getStringValue(data, "detailImages"));
         product.setSortOrder(getIntValue(data, "sortOrder"));
+        product.setChangeVersion(getLongValue(data, "changeVersion"));
         return product;
     }
 
@@ -0,0 +1,454 @@
+package com.mall.merchant.service.impl;
+
+import com.mall.merchant.domain.dto.OrderEventDTO;
+import com.mall.merchant.domain.entity.Merchant;
+import com.mall.merchant.domain.entity.MerchantRankingSnapshot;
+import com.mall.merchant.repository.MerchantRankingSnapshotRepository;
+import com.mall.merchant.repository.MerchantRepository;
+import com.mall.merchant.service.MerchantRankingService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 商家排行榜服务实现类
+ * 每个指标、每个周期一个Redis有序集合，成员为商家ID，分数为指标值，排名、总数查询均为 O(log n)
+ *
+ * <p>Redis键：</p>
+ * <ul>
+ *   <li>merchant:rank:board:{指标}:{周期}:{yyyyMMdd|yyyyMM} 榜单</li>
+ *   <li>merchant:rank:count:{周期}:{周期键} 各商家下单数、支付数，用于计算转化率</li>
+ *   <li>merchant:rank:sum:{周期}:{周期键} 各指标的全平台合计、类目合计和类目商家数，用于O(1)计算平均值</li>
+ * </ul>
+ *
+ * <p>同一周期的日榜、月榜在一个Lua脚本内更新，事件按订单号、商家和事件类型去重，消息重投不会重复计数。
+ * 榜单定时快照到数据库，Redis中的榜单过期后按快照查询。</p>
+ *
+ * @author lingbai
+ * @version 1.1
+ * @since 2026-10-19
+ *
+ * 修改日志：
+ * V1.1 2026-10-19：多商家订单按商家拆分事件，去重键加入商家ID；快照先将榜单复制到临时键再分页读取
+ */
+@Service
+@RequiredArgsConstructor
+public class MerchantRankingServiceImpl implements MerchantRankingService {
+
+    private static final Logger log = LoggerFactory.getLogger(MerchantRankingServiceImpl.class);
+
+    private static final String BOARD_KEY_PREFIX = "merchant:rank:board:";
+    private static final String COUNT_KEY_PREFIX = "merchant:rank:count:";
+    private static final String SUM_KEY_PREFIX = "merchant:rank:sum:";
+    private static final String EVENT_KEY_PREFIX = "merchant:rank:event:";
+    private static final long EVENT_DEDUP_HOURS = 48;
+    private static final String SNAPSHOT_COPY_SUFFIX = ":snapshot:";
+    private static final long SNAPSHOT_COPY_TTL_MINUTES = 30;
+    private static final String UNKNOWN_CATEGORY = "UNKNOWN";
+    private static final List<String> METRICS = Arrays.asList(METRIC_GMV, METRIC_ORDERS, METRIC_CONVERSION);
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyyMM");
+
+    /**
+     * 更新脚本：KEYS依次为日榜、月榜的 成交额榜、订单数榜、转化率榜、计数哈希、合计哈希，
+     * ARGV依次为商家ID、类目、下单增量、支付增量、支付金额、日榜过期秒数、月榜过期秒数
+     */
+    private static final DefaultRedisScript<Long> UPDATE_SCRIPT = new DefaultRedisScript<>(
+            "local m, cat = ARGV[1], ARGV[2] "
+            + "local createdDelta, paidDelta, amount = tonumber(ARGV[3]), tonumber(ARGV[4]), tonumber(ARGV[5]) "
+            + "local function put(board, sums, metric, value) "
+            + "  local old = redis.call('ZSCORE', board, m) "
+            + "  redis.call('ZADD', board, value, m) "
+            + "  local delta = value - (old and tonumber(old) or 0) "
+            + "  redis.call('HINCRBYFLOAT', sums, metric, delta) "
+            + "  redis.call('HINCRBYFLOAT', sums, metric .. ':' .. cat, delta) "
+            + "  if not old then redis.call('HINCRBY', sums, 'n:' .. metric .. ':' .. cat, 1) end "
+            + "end "
+            + "for p = 0, 1 do "
+            + "  local k = p * 5 "
+            + "  local sums = KEYS[k + 5] "
+            + "  local created = redis.call('HINCRBY', KEYS[k + 4], m .. ':c', createdDelta) "
+            + "  local paid = redis.call('HINCRBY', KEYS[k + 4], m .. ':p', paidDelta) "
+            + "  if paidDelta > 0 then "
+            + "    put(KEYS[k + 1], sums, 'gmv', tonumber(redis.call('ZSCORE', KEYS[k + 1], m) or '0') + amount) "
+            + "    put(KEYS[k + 2], sums, 'orders', paid) "
+            + "  end "
+            + "  if created > 0 then put(KEYS[k + 3], sums, 'conversion', math.min(paid / created, 1)) end "
+            + "  for i = 1, 5 do redis.call('EXPIRE', KEYS[k + i], ARGV[6 + p]) end "
+            + "end "
+            + "return 1",
+            Long.class);
+
+    private static final String SNAPSHOT_UPSERT_SQL = "INSERT INTO merchant_ranking_snapshot "
+            + "(merchant_id, metric, period_type, period_start, business_category, score, rank_no, total_merchants, snapshot_time) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE business_category = VALUES(business_category), score = VALUES(score), "
+            + "rank_no = VALUES(rank_no), total_merchants = VALUES(total_merchants), snapshot_time = VALUES(snapshot_time)";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final MerchantRepository merchantRepository;
+    private final MerchantRankingSnapshotRepository snapshotRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 商家经营类目缓存，更新榜单和查询同类目平均值时使用
+     */
+    private final Map<Long, String> categoryCache = new ConcurrentHashMap<>();
+
+    @Value("${merchant.ranking.daily-retention-days:40}")
+    private int dailyRetentionDays;
+
+    @Value("${merchant.ranking.monthly-retention-days:400}")
+    private int monthlyRetentionDays;
+
+    @Value("${merchant.ranking.snapshot-batch-size:1000}")
+    private int snapshotBatchSize;
+
+    @Override
+    public boolean applyOrderEvent(OrderEventDTO event) {
+        if (event == null || event.getMerchantId() == null || event.getEventType() == null) {
+            return false;
+        }
+        long createdDelta;
+        long paidDelta;
+        BigDecimal amount = BigDecimal.ZERO;
+        switch (event.getEventType()) {
+            case OrderEventDTO.TYPE_CREATED:
+                createdDelta = 1;
+                paidDelta = 0;
+                break;
+            case OrderEventDTO.TYPE_PAID:
+                createdDelta = 0;
+                paidDelta = 1;
+                if (event.getAmount() != null) {
+                    amount = event.getAmount();
+                }
+                break;
+            default:
+                return false;
+        }
+
+        String orderRef = event.getOrderNo() != null ? event.getOrderNo() : String.valueOf(event.getOrderId());
+        String eventKey = EVENT_KEY_PREFIX + orderRef + ":" + event.getMerchantId() + ":" + event.getEventType();
+        Boolean first = stringRedisTemplate.opsForValue().setIfAbsent(eventKey, "1", EVENT_DEDUP_HOURS, TimeUnit.HOURS);
+        if (!Boolean.TRUE.equals(first)) {
+            log.debug("订单事件已计入排行榜，跳过: orderNo={}, eventType={}", orderRef, event.getEventType());
+            return false;
+        }
+
+        Long merchantId = event.getMerchantId();
+        LocalDate date = event.getEventTime() != null ? event.getEventTime().toLocalDate() : LocalDate.now();
+        List<String> keys = new ArrayList<>(10);
+        for (String period : Arrays.asList(PERIOD_DAILY, PERIOD_MONTHLY)) {
+            for (String metric : METRICS) {
+                keys.add(boardKey(metric, period, date));
+            }
+            keys.add(countKey(period, date));
+            keys.add(sumKey(period, date));
+        }
+        try {
+            stringRedisTemplate.execute(UPDATE_SCRIPT, keys,
+                    String.valueOf(merchantId), categoryOf(merchantId),
+                    String.valueOf(createdDelta), String.valueOf(paidDelta), amount.toPlainString(),
+                    String.valueOf(TimeUnit.DAYS.toSeconds(dailyRetentionDays)),
+                    String.valueOf(TimeUnit.DAYS.toSeconds(monthlyRetentionDays)));
+        } catch (RuntimeException e) {
+            // 更新失败时释放去重标记，使消息重投后能重新计入
+            stringRedisTemplate.delete(eventKey);
+            throw e;
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> getRanking(Long merchantId, String metric, String period, LocalDate date) {
+        validate(metric, period);
+        LocalDate periodStart = periodStart(period, date);
+        String board = boardKey(metric, period, periodStart);
+        byte[] boardBytes = bytes(board);
+        byte[] memberBytes = bytes(String.valueOf(merchantId));
+        byte[] sumKeyBytes = bytes(sumKey(period, periodStart));
+        byte[] metricBytes = bytes(metric);
+
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.zSetCommands().zRevRank(boardBytes, memberBytes);
+            connection.zSetCommands().zScore(boardBytes, memberBytes);
+            connection.zSetCommands().zCard(boardBytes);
+            connection.hashCommands().hGet(sumKeyBytes, metricBytes);
+            return null;
+        });
+        long total = toLong(results.get(2));
+
+        Map<String, Object> ranking = new HashMap<>();
+        ranking.put("metric", metric);
+        ranking.put("period", period);
+        ranking.put("periodStart", periodStart);
+        if (total > 0) {
+            Object revRank = results.get(0);
+            Long rank = revRank == null ? null : toLong(revRank) + 1;
+            fillRanking(ranking, metric, rank, toDouble(results.get(1)), total,
+                    toDouble(results.get(3)) / total, "redis");
+            return ranking;
+        }
+
+        // Redis中无榜单（已过期或尚未产生），按快照查询
+        long snapshotTotal = snapshotRepository.countByMetricAndPeriodTypeAndPeriodStart(metric, period, periodStart);
+        if (snapshotTotal == 0) {
+            fillRanking(ranking, metric, null, 0, 0, 0, "none");
+            return ranking;
+        }
+        Optional<MerchantRankingSnapshot> snapshot = snapshotRepository
+                .findByMerchantIdAndMetricAndPeriodTypeAndPeriodStart(merchantId, metric, period, periodStart);
+        Double average = snapshotRepository.averageScore(metric, period, periodStart);
+        fillRanking(ranking, metric,
+                snapshot.map(s -> s.getRankNo().longValue()).orElse(null),
+                snapshot.map(s -> s.getScore().doubleValue()).orElse(0d),
+                snapshotTotal, average != null ? average : 0, "snapshot");
+        return ranking;
+    }
+
+    @Override
+    public Map<String, Object> getComparison(Long merchantId, String metric, String period, LocalDate date,
+                                             boolean sameCategory) {
+        validate(metric, period);
+        LocalDate periodStart = periodStart(period, date);
+        String category = categoryOf(merchantId);
+        byte[] boardBytes = bytes(boardKey(metric, period, periodStart));
+        byte[] memberBytes = bytes(String.valueOf(merchantId));
+        byte[] sumKeyBytes = bytes(sumKey(period, periodStart));
+
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.zSetCommands().zScore(boardBytes, memberBytes);
+            connection.zSetCommands().zCard(boardBytes);
+            connection.hashCommands().hMGet(sumKeyBytes, bytes(metric), bytes(metric + ":" + category),
+                    bytes("n:" + metric + ":" + category));
+            return null;
+        });
+
+        double merchantValue;
+        double averageValue;
+        String source;
+        long total = toLong(results.get(1));
+        if (total > 0) {
+            List<?> sums = (List<?>) results.get(2);
+            merchantValue = toDouble(results.get(0));
+            if (sameCategory) {
+                long categoryCount = toLong(sums.get(2));
+                averageValue = categoryCount > 0 ? toDouble(sums.get(1)) / categoryCount : 0;
+            } else {
+                averageValue = toDouble(sums.get(0)) / total;
+            }
+            source = "redis";
+        } else {
+            merchantValue = snapshotRepository
+                    .findByMerchantIdAndMetricAndPeriodTypeAndPeriodStart(merchantId, metric, period, periodStart)
+                    .map(s -> s.getScore().doubleValue()).orElse(0d);
+            Double average = sameCategory
+                    ? snapshotRepository.averageScoreByCategory(metric, period, periodStart, category)
+                    : snapshotRepository.averageScore(metric, period, periodStart);
+            averageValue = average != null ? average : 0;
+            source = "snapshot";
+        }
+
+        int scale = scaleOf(metric);
+        BigDecimal merchant = BigDecimal.valueOf(merchantValue).setScale(scale, RoundingMode.HALF_UP);
+        BigDecimal average = BigDecimal.valueOf(averageValue).setScale(scale, RoundingMode.HALF_UP);
+        BigDecimal difference = merchant.subtract(average);
+        Map<String, Object> comparison = new HashMap<>();
+        comparison.put("metric", metric);
+        comparison.put("period", period);
+        comparison.put("periodStart", periodStart);
+        comparison.put("compareScope", sameCategory ? "category" : "platform");
+        comparison.put("businessCategory", category);
+        comparison.put("merchantValue", merchant);
+        comparison.put("averageValue", average);
+        comparison.put("difference", difference);
+        comparison.put("differencePercent", average.signum() == 0 ? BigDecimal.ZERO
+                : difference.multiply(BigDecimal.valueOf(100)).divide(average, 2, RoundingMode.HALF_UP));
+        comparison.put("source", source);
+        return comparison;
+    }
+
+    @Override
+    public int snapshot(String period, LocalDate date) {
+        validate(METRIC_GMV, period);
+        LocalDate periodStart = periodStart(period, date);
+        int written = 0;
+        for (String metric : METRICS) {
+            String board = boardKey(metric, period, periodStart);
+            // 榜单持续被事件更新，直接按偏移分页会因排名变动而重复或遗漏商家；
+            // 先用 ZUNIONSTORE 原子复制一份，再分页读取副本，副本设置过期时间防止进程中断后残留
+            String copy = board + SNAPSHOT_COPY_SUFFIX + UUID.randomUUID();
+            Long total = stringRedisTemplate.opsForZSet().unionAndStore(board, Collections.emptyList(), copy);
+            if (total == null || total == 0) {
+                continue;
+            }
+            try {
+                stringRedisTemplate.expire(copy, SNAPSHOT_COPY_TTL_MINUTES, TimeUnit.MINUTES);
+                Timestamp snapshotTime = Timestamp.valueOf(LocalDateTime.now());
+                for (long offset = 0; offset < total; offset += snapshotBatchSize) {
+                    Set<ZSetOperations.TypedTuple<String>> page = stringRedisTemplate.opsForZSet()
+                            .reverseRangeWithScores(copy, offset, offset + snapshotBatchSize - 1);
+                    if (page == null || page.isEmpty()) {
+                        break;
+                    }
+                    List<Long> merchantIds = new ArrayList<>(page.size());
+                    for (ZSetOperations.TypedTuple<String> tuple : page) {
+                        merchantIds.add(Long.valueOf(tuple.getValue()));
+                    }
+                    Map<Long, String> categories = categoriesOf(merchantIds);
+
+                    List<Object[]> rows = new ArrayList<>(page.size());
+                    long rankNo = offset;
+                    for (ZSetOperations.TypedTuple<String> tuple : page) {
+                        Long merchantId = Long.valueOf(tuple.getValue());
+                        double score = tuple.getScore() != null ? tuple.getScore() : 0;
+                        rows.add(new Object[]{merchantId, metric, period, Date.valueOf(periodStart),
+                                categories.get(merchantId),
+                                BigDecimal.valueOf(score).setScale(4, RoundingMode.HALF_UP),
+                                ++rankNo, total, snapshotTime});
+                    }
+                    jdbcTemplate.batchUpdate(SNAPSHOT_UPSERT_SQL, rows);
+                    written += rows.size();
+                }
+            } finally {
+                stringRedisTemplate.delete(copy);
+            }
+            log.info("商家排行榜快照完成: metric={}, period={}, periodStart={}, 商家数={}", metric, period, periodStart, total);
+        }
+        return written;
+    }
+
+    private void fillRanking(Map<String, Object> ranking, String metric, Long rank, double score, long total,
+                             double average, String source) {
+        int scale = scaleOf(metric);
+        ranking.put("score", BigDecimal.valueOf(score).setScale(scale, RoundingMode.HALF_UP));
+        ranking.put("rank", rank);
+        ranking.put("totalMerchants", total);
+        // 超过的商家占比，未上榜时为0
+        ranking.put("percentile", rank == null || total == 0 ? BigDecimal.ZERO
+                : BigDecimal.valueOf((total - rank) * 100.0 / total).setScale(2, RoundingMode.HALF_UP));
+        ranking.put("platformAverage", BigDecimal.valueOf(average).setScale(scale, RoundingMode.HALF_UP));
+        ranking.put("source", source);
+    }
+
+    /**
+     * 查询商家经营类目，结果缓存在本地
+     */
+    private String categoryOf(Long merchantId) {
+        return categoryCache.computeIfAbsent(merchantId, id -> merchantRepository.findById(id)
+                .map(Merchant::getBusinessCategory)
+                .filter(StringUtils::hasText)
+                .orElse(UNKNOWN_CATEGORY));
+    }
+
+    /**
+     * 批量查询商家经营类目，未缓存的商家一次查询
+     */
+    private Map<Long, String> categoriesOf(List<Long> merchantIds) {
+        List<Long> missing = new ArrayList<>();
+        for (Long merchantId : merchantIds) {
+            if (!categoryCache.containsKey(merchantId)) {
+                missing.add(merchantId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Merchant merchant : merchantRepository.findAllById(missing)) {
+                String category = merchant.getBusinessCategory();
+                categoryCache.put(merchant.getId(), StringUtils.hasText(category) ? category : UNKNOWN_CATEGORY);
+            }
+            missing.forEach(merchantId -> categoryCache.putIfAbsent(merchantId, UNKNOWN_CATEGORY));
+        }
+        Map<Long, String> categories = new HashMap<>();
+        for (Long merchantId : merchantIds) {
+            categories.put(merchantId, categoryCache.getOrDefault(merchantId, UNKNOWN_CATEGORY));
+        }
+        return categories;
+    }
+
+    private void validate(String metric, String period) {
+        if (!METRICS.contains(metric)) {
+            throw new IllegalArgumentException("不支持的排名指标: " + metric);
+        }
+        if (!PERIOD_DAILY.equals(period) && !PERIOD_MONTHLY.equals(period)) {
+            throw new IllegalArgumentException("不支持的榜单周期: " + period);
+        }
+    }
+
+    private static int scaleOf(String metric) {
+        switch (metric) {
+            case METRIC_ORDERS:
+                return 0;
+            case METRIC_CONVERSION:
+                return 4;
+            default:
+                return 2;
+        }
+    }
+
+    private static LocalDate periodStart(String period, LocalDate date) {
+        return PERIOD_MONTHLY.equals(period) ? date.withDayOfMonth(1) : date;
+    }
+
+    private static String periodKey(String period, LocalDate date) {
+        return PERIOD_MONTHLY.equals(period) ? date.format(MONTH_FORMATTER) : date.format(DAY_FORMATTER);
+    }
+
+    private static String boardKey(String metric, String period, LocalDate date) {
+        return BOARD_KEY_PREFIX + metric + ":" + period + ":" + periodKey(period, date);
+    }
+
+    private static String countKey(String period, LocalDate date) {
+        return COUNT_KEY_PREFIX + period + ":" + periodKey(period, date);
+    }
+
+    private static String sumKey(String period, LocalDate date) {
+        return SUM_KEY_PREFIX + period + ":" + periodKey(period, date);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return value == null ? 0 : (long) Double.parseDouble(value.toString());
+    }
+
+    private static double toDouble(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return value == null ? 0 : Double.parseDouble(value.toString());
+    }
+}
@@ -0,0 +1,343 @@
+package com.mall.merchant.service.impl;
+
+import com.mall.merchant.domain.dto.OrderEventDTO;
+import com.mall.merchant.domain.entity.MerchantStatistics;
+import com.mall.merchant.service.MerchantRealtimeStatsService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 商家实时统计服务实现类
+ * 订单事件写入按天、按分钟分桶的Redis计数器，首页读取只需一次管道往返
+ *
+ * <p>Redis键（{日期}为yyyyMMdd）：</p>
+ * <ul>
+ *   <li>merchant:rt:{商家ID}:{日期} 当日计数哈希：created、paid、sales、shipped、completed、cancelled</li>
+ *   <li>merchant:rt:{商家ID}:{日期}:min 分钟桶哈希：{计数项}:{HHmm}</li>
+ *   <li>merchant:rt:{商家ID}:{日期}:uv 当日买家HyperLogLog</li>
+ *   <li>merchant:rt:{商家ID}:uv:{yyyyMMddHHmm} 分钟买家HyperLogLog，短期保留，用于统计近期活跃买家</li>
+ *   <li>merchant:rt:{商家ID}:pending 已支付未发货的订单号集合</li>
+ * </ul>
+ *
+ * <p>订单事件不含店铺访问数据，买家数按下单、支付的用户去重统计。</p>
+ *
+ * @author lingbai
+ * @version 1.1
+ * @since 2026-10-19
+ *
+ * 修改日志：
+ * V1.1 2026-10-19：多商家订单按商家拆分事件，去重键加入商家ID
+ */
+@Service
+@RequiredArgsConstructor
+public class MerchantRealtimeStatsServiceImpl implements MerchantRealtimeStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(MerchantRealtimeStatsServiceImpl.class);
+
+    private static final String KEY_PREFIX = "merchant:rt:";
+    private static final String EVENT_KEY_PREFIX = "merchant:rt:event:";
+    private static final long EVENT_DEDUP_HOURS = 48;
+    private static final String FIELD_CREATED = "created";
+    private static final String FIELD_PAID = "paid";
+    private static final String FIELD_SALES = "sales";
+    private static final String FIELD_SHIPPED = "shipped";
+    private static final String FIELD_COMPLETED = "completed";
+    private static final String FIELD_CANCELLED = "cancelled";
+    private static final List<String> DAY_FIELDS = Arrays.asList(
+            FIELD_CREATED, FIELD_PAID, FIELD_SALES, FIELD_SHIPPED, FIELD_COMPLETED, FIELD_CANCELLED);
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter MINUTE_FORMATTER = DateTimeFormatter.ofPattern("HHmm");
+    private static final DateTimeFormatter MINUTE_KEY_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmm");
+    private static final DateTimeFormatter MINUTE_LABEL_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+
+    /**
+     * 更新脚本：KEYS依次为当日哈希、分钟桶哈希、当日买家HLL、分钟买家HLL、待发货集合，
+     * ARGV依次为计数项、金额、买家ID（无则为空串）、分钟HHmm、订单号、待发货操作（add/rem/空串）、
+     * 当日键过期秒数、分钟买家HLL过期秒数、待发货集合过期秒数
+     */
+    private static final DefaultRedisScript<Long> UPDATE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('HINCRBY', KEYS[1], ARGV[1], 1) "
+            + "redis.call('HINCRBY', KEYS[2], ARGV[1] .. ':' .. ARGV[4], 1) "
+            + "if tonumber(ARGV[2]) > 0 then "
+            + "  redis.call('HINCRBYFLOAT', KEYS[1], 'sales', ARGV[2]) "
+            + "  redis.call('HINCRBYFLOAT', KEYS[2], 'sales:' .. ARGV[4], ARGV[2]) "
+            + "end "
+            + "if ARGV[3] ~= '' then "
+            + "  redis.call('PFADD', KEYS[3], ARGV[3]) "
+            + "  redis.call('PFADD', KEYS[4], ARGV[3]) "
+            + "  redis.call('EXPIRE', KEYS[4], ARGV[8]) "
+            + "end "
+            + "if ARGV[6] == 'add' then "
+            + "  redis.call('SADD', KEYS[5], ARGV[5]) "
+            + "  redis.call('EXPIRE', KEYS[5], ARGV[9]) "
+            + "elseif ARGV[6] == 'rem' then "
+            + "  redis.call('SREM', KEYS[5], ARGV[5]) "
+            + "end "
+            + "for i = 1, 3 do redis.call('EXPIRE', KEYS[i], ARGV[7]) end "
+            + "return 1",
+            Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Value("${merchant.realtime.day-retention-days:2}")
+    private int dayRetentionDays;
+
+    @Value("${merchant.realtime.pending-retention-days:30}")
+    private int pendingRetentionDays;
+
+    @Value("${merchant.realtime.trend-minutes:60}")
+    private int trendMinutes;
+
+    @Value("${merchant.realtime.active-minutes:5}")
+    private int activeMinutes;
+
+    @Override
+    public boolean applyOrderEvent(OrderEventDTO event) {
+        if (event == null || event.getMerchantId() == null || event.getEventType() == null) {
+            return false;
+        }
+        String field;
+        String pendingOp = "";
+        boolean buyer = false;
+        switch (event.getEventType()) {
+            case OrderEventDTO.TYPE_CREATED:
+                field = FIELD_CREATED;
+                buyer = true;
+                break;
+            case OrderEventDTO.TYPE_PAID:
+                field = FIELD_PAID;
+                pendingOp = "add";
+                buyer = true;
+                break;
+            case OrderEventDTO.TYPE_SHIPPED:
+                field = FIELD_SHIPPED;
+                pendingOp = "rem";
+                break;
+            case OrderEventDTO.TYPE_COMPLETED:
+                field = FIELD_COMPLETED;
+                pendingOp = "rem";
+                break;
+            case OrderEventDTO.TYPE_CANCELLED:
+            case OrderEventDTO.TYPE_TIMEOUT:
+                field = FIELD_CANCELLED;
+                pendingOp = "rem";
+                break;
+            default:
+                return false;
+        }
+
+        String orderRef = event.getOrderNo() != null ? event.getOrderNo() : String.valueOf(event.getOrderId());
+        String eventKey = EVENT_KEY_PREFIX + orderRef + ":" + event.getMerchantId() + ":" + event.getEventType();
+        Boolean first = stringRedisTemplate.opsForValue().setIfAbsent(eventKey, "1", EVENT_DEDUP_HOURS, TimeUnit.HOURS);
+        if (!Boolean.TRUE.equals(first)) {
+            log.debug("订单事件已计入实时统计，跳过: orderNo={}, eventType={}", orderRef, event.getEventType());
+            return false;
+        }
+
+        Long merchantId = event.getMerchantId();
+        LocalDateTime eventTime = event.getEventTime() != null ? event.getEventTime() : LocalDateTime.now();
+        LocalDate day = eventTime.toLocalDate();
+        BigDecimal amount = FIELD_PAID.equals(field) && event.getAmount() != null ? event.getAmount() : BigDecimal.ZERO;
+        List<String> keys = Arrays.asList(dayKey(merchantId, day), minuteKey(merchantId, day), dayBuyerKey(merchantId, day),
+                minuteBuyerKey(merchantId, eventTime), pendingKey(merchantId));
+        try {
+            stringRedisTemplate.execute(UPDATE_SCRIPT, keys,
+                    field, amount.toPlainString(),
+                    buyer && event.getUserId() != null ? String.valueOf(event.getUserId()) : "",
+                    eventTime.format(MINUTE_FORMATTER), orderRef, pendingOp,
+                    String.valueOf(TimeUnit.DAYS.toSeconds(dayRetentionDays)),
+                    String.valueOf(TimeUnit.MINUTES.toSeconds(activeMinutes * 2L)),
+                    String.valueOf(TimeUnit.DAYS.toSeconds(pendingRetentionDays)));
+        } catch (RuntimeException e) {
+            // 更新失败时释放去重标记，使消息重投后能重新计入
+            stringRedisTemplate.delete(eventKey);
+            throw e;
+        }
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> getRealtimeStatistics(Long merchantId) {
+        LocalDateTime now = LocalDateTime.now();
+        RealtimeCounters counters = read(merchantId, now);
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("todayOrders", counters.created);
+        stats.put("todayPaidOrders", counters.paid);
+        stats.put("todaySales", counters.sales);
+        stats.put("todayShippedOrders", counters.shipped);
+        stats.put("todayCompletedOrders", counters.completed);
+        stats.put("todayCancelledOrders", counters.cancelled);
+        stats.put("pendingOrders", counters.pending);
+        stats.put("todayBuyers", counters.buyers);
+        // 近几分钟内下单或支付的去重买家数
+        stats.put("onlineVisitors", counters.activeBuyers);
+        stats.put("minuteTrend", counters.trend);
+        stats.put("updateTime", now);
+        return stats;
+    }
+
+    @Override
+    public MerchantStatistics getTodayStatistics(Long merchantId) {
+        LocalDateTime now = LocalDateTime.now();
+        RealtimeCounters counters = read(merchantId, now);
+        if (counters.created == 0 && counters.paid == 0) {
+            return null;
+        }
+        MerchantStatistics stats = new MerchantStatistics();
+        stats.setMerchantId(merchantId);
+        stats.setStatDate(now.toLocalDate());
+        stats.setStatType(1);
+        stats.setTotalOrders((int) counters.created);
+        stats.setCompletedOrders((int) counters.completed);
+        stats.setCancelledOrders((int) counters.cancelled);
+        stats.setTotalSales(counters.sales);
+        stats.setUniqueVisitors((int) counters.buyers);
+        if (counters.paid > 0) {
+            stats.setAvgOrderValue(counters.sales.divide(BigDecimal.valueOf(counters.paid), 2, RoundingMode.HALF_UP));
+        }
+        return stats;
+    }
+
+    /**
+     * 一次管道读取当日计数、分钟趋势、待发货数和买家数
+     */
+    private RealtimeCounters read(Long merchantId, LocalDateTime now) {
+        LocalDate day = now.toLocalDate();
+        LocalDateTime currentMinute = now.truncatedTo(ChronoUnit.MINUTES);
+
+        // 趋势只取当日分钟桶，跨零点时从0点开始
+        List<LocalDateTime> minutes = new ArrayList<>(trendMinutes);
+        for (int i = trendMinutes - 1; i >= 0; i--) {
+            LocalDateTime minute = currentMinute.minusMinutes(i);
+            if (minute.toLocalDate().equals(day)) {
+                minutes.add(minute);
+            }
+        }
+        byte[][] minuteFields = new byte[minutes.size() * 3][];
+        for (int i = 0; i < minutes.size(); i++) {
+            String label = minutes.get(i).format(MINUTE_FORMATTER);
+            minuteFields[i * 3] = bytes(FIELD_CREATED + ":" + label);
+            minuteFields[i * 3 + 1] = bytes(FIELD_PAID + ":" + label);
+            minuteFields[i * 3 + 2] = bytes(FIELD_SALES + ":" + label);
+        }
+        byte[][] dayFields = new byte[DAY_FIELDS.size()][];
+        for (int i = 0; i < DAY_FIELDS.size(); i++) {
+            dayFields[i] = bytes(DAY_FIELDS.get(i));
+        }
+        byte[][] activeBuyerKeys = new byte[activeMinutes][];
+        for (int i = 0; i < activeMinutes; i++) {
+            activeBuyerKeys[i] = bytes(minuteBuyerKey(merchantId, currentMinute.minusMinutes(i)));
+        }
+
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hMGet(bytes(dayKey(merchantId, day)), dayFields);
+            if (minuteFields.length > 0) {
+                connection.hashCommands().hMGet(bytes(minuteKey(merchantId, day)), minuteFields);
+            }
+            connection.setCommands().sCard(bytes(pendingKey(merchantId)));
+            connection.hyperLogLogCommands().pfCount(bytes(dayBuyerKey(merchantId, day)));
+            connection.hyperLogLogCommands().pfCount(activeBuyerKeys);
+            return null;
+        });
+
+        int index = 0;
+        List<?> dayValues = (List<?>) results.get(index++);
+        List<?> minuteValues = minuteFields.length > 0 ? (List<?>) results.get(index++) : new ArrayList<>();
+
+        RealtimeCounters counters = new RealtimeCounters();
+        counters.created = toLong(dayValues.get(0));
+        counters.paid = toLong(dayValues.get(1));
+        counters.sales = toAmount(dayValues.get(2));
+        counters.shipped = toLong(dayValues.get(3));
+        counters.completed = toLong(dayValues.get(4));
+        counters.cancelled = toLong(dayValues.get(5));
+        counters.pending = toLong(results.get(index++));
+        counters.buyers = toLong(results.get(index++));
+        counters.activeBuyers = toLong(results.get(index));
+        counters.trend = new ArrayList<>(minutes.size());
+        for (int i = 0; i < minutes.size(); i++) {
+            Map<String, Object> point = new HashMap<>();
+            point.put("minute", minutes.get(i).format(MINUTE_LABEL_FORMATTER));
+            point.put("orders", toLong(minuteValues.get(i * 3)));
+            point.put("paidOrders", toLong(minuteValues.get(i * 3 + 1)));
+            point.put("sales", toAmount(minuteValues.get(i * 3 + 2)));
+            counters.trend.add(point);
+        }
+        return counters;
+    }
+
+    private static String dayKey(Long merchantId, LocalDate day) {
+        return KEY_PREFIX + merchantId + ":" + day.format(DAY_FORMATTER);
+    }
+
+    private static String minuteKey(Long merchantId, LocalDate day) {
+        return dayKey(merchantId, day) + ":min";
+    }
+
+    private static String dayBuyerKey(Long merchantId, LocalDate day) {
+        return dayKey(merchantId, day) + ":uv";
+    }
+
+    private static String minuteBuyerKey(Long merchantId, LocalDateTime time) {
+        return KEY_PREFIX + merchantId + ":uv:" + time.format(MINUTE_KEY_FORMATTER);
+    }
+
+    private static String pendingKey(Long merchantId) {
+        return KEY_PREFIX + merchantId + ":pending";
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return value == null ? 0 : Long.parseLong(value.toString());
+    }
+
+    private static BigDecimal toAmount(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        return new BigDecimal(value.toString()).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 一次读取的实时计数
+     */
+    private static class RealtimeCounters {
+        private long created;
+        private long paid;
+        private BigDecimal sales;
+        private long shipped;
+        private long completed;
+        private long cancelled;
+        private long pending;
+        private long buyers;
+        private long activeBuyers;
+        private List<Map<String, Object>> trend;
+    }
+}
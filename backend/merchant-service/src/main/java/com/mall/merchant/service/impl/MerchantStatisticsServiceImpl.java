@@ -5,7 +5,11 @@ import com.mall.common.core.domain.R;
 import com.mall.merchant.client.OrderServiceClient;
 import com.mall.merchant.domain.entity.MerchantStatistics;
 import com.mall.merchant.repository.MerchantStatisticsRepository;
+import com.mall.merchant.service.MerchantRankingService;
+import com.mall.merchant.service.MerchantRealtimeStatsService;
 import com.mall.merchant.service.MerchantStatisticsService;
+import com.mall.merchant.statistics.MerchantStatisticsBackfillRunner;
+import com.mall.merchant.statistics.MerchantStatisticsCalculator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
@@ -20,6 +24,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,11 +36,15 @@ import java.util.stream.Collectors;
  * 实现商家统计相关的业务逻辑处理
  * 
  * @author lingbai
- * @version 1.1
+ * @version 1.5
  * @since 2025-01-27
  * 
  * 修改日志：
  * V1.1 2025-12-29：添加 OrderServiceClient 依赖，当本地统计表无数据时通过 Feign 调用 order-service 实时获取统计数据
+ * V1.2 2026-10-19：排名和对比数据改为读取由订单事件维护的Redis排行榜
+ * V1.3 2026-10-19：实时统计改为读取由订单事件维护的Redis实时计数器，今日统计缺失时优先由实时计数器构造
+ * V1.4 2026-10-19：统计计算改为按日期范围一次分组聚合订单并批量写入，新增多商家并行回填及进度查询
+ * V1.5 2026-10-19：回填任务进度和运行中的任务改为从Redis读取，任一实例均可查询
  */
 @Slf4j
 @Service
@@ -46,6 +55,10 @@ public class MerchantStatisticsServiceImpl implements MerchantStatisticsService
     
     private final MerchantStatisticsRepository statisticsRepository;
     private final OrderServiceClient orderServiceClient;
+    private final MerchantRankingService merchantRankingService;
+    private final MerchantRealtimeStatsService merchantRealtimeStatsService;
+    private final MerchantStatisticsCalculator statisticsCalculator;
+    private final MerchantStatisticsBackfillRunner statisticsBackfillRunner;
     
     /**
      * 获取商家总览统计数据
@@ -128,7 +141,7 @@ public class MerchantStatisticsServiceImpl implements MerchantStatisticsService
     
     /**
      * 获取今日统计数据
-     * 优先从本地统计表获取，如果没有数据则通过 Feign 调用 order-service 实时计算
+     * 优先从本地统计表获取，没有数据时由实时计数器构造，实时计数器也无数据时通过 Feign 调用 order-service 实时计算
      * 
      * @param merchantId 商家ID
      * @return 今日统计数据
@@ -144,8 +157,13 @@ public class MerchantStatisticsServiceImpl implements MerchantStatisticsService
             
             if (statisticsOpt.isPresent()) {
                 return R.ok(statisticsOpt.get());
+            }
+            
+            MerchantStatistics realtimeStats = merchantRealtimeStatsService.getTodayStatistics(merchantId);
+            if (realtimeStats != null) {
+                return R.ok(realtimeStats);
             } else {
-                // 本地统计表没有数据，通过 Feign 调用 order-service 实时获取
+                // 实时计数器也没有数据（如服务刚上线），通过 Feign 调用 order-service 实时获取
                 log.info("本地统计表无今日数据，从 order-service 实时获取，商家ID：{}", merchantId);
                 MerchantStatistics stats = fetchTodayStatsFromOrderService(merchantId, today);
                 return R.ok(stats);
@@ -757,9 +775,9 @@ public class MerchantStatisticsServiceImpl implements MerchantStatisticsService
     
     /**
      * 获取商家排名数据
+     * 顶层的 rank、totalMerchants、percentile 取本月成交额榜，各指标排名在 rankings 中
      * 
      * @param merchantId 商家ID
-     * @param rankType 排名类型：1-销售额，2-订单数，3-访问量
      * @return 排名数据
      */
     @Override
@@ -767,12 +785,21 @@ public class MerchantStatisticsServiceImpl implements MerchantStatisticsService
         log.debug("获取商家排名数据，商家ID：{}", merchantId);
         
         try {
-            // 这里应该实现排名逻辑，需要查询所有商家的统计数据进行排名
-            // 暂时返回模拟数据
+            LocalDate today = LocalDate.now();
+            Map<String, Object> rankings = new HashMap<>();
+            for (String metric : new String[]{MerchantRankingService.METRIC_GMV,
+                    MerchantRankingService.METRIC_ORDERS, MerchantRankingService.METRIC_CONVERSION}) {
+                rankings.put(metric, merchantRankingService.getRanking(
+                        merchantId, metric, MerchantRankingService.PERIOD_MONTHLY, today));
+            }
+            
+            @SuppressWarnings("unchecked")
+            Map<String, Object> gmvRanking = (Map<String, Object>) rankings.get(MerchantRankingService.METRIC_GMV);
             Map<String, Object> rankingData = new HashMap<>();
-            rankingData.put("rank", 1);
-            rankingData.put("totalMerchants", 100);
-            rankingData.put("percentile", 99);
+            rankingData.put("rank", gmvRanking.get("rank"));
+            rankingData.put("totalMerchants", gmvRanking.get("totalMerchants"));
+            rankingData.put("percentile", gmvRanking.get("percentile"));
+            rankingData.put("rankings", rankings);
             
             return R.ok(rankingData);
             
@@ -782,6 +809,29 @@ public class MerchantStatisticsServiceImpl implements MerchantStatisticsService
         }
     }
     
+    /**
+     * 获取商家在指定榜单中的排名
+     * 
+     * @param merchantId 商家ID
+     * @param metric 排名指标（gmv/orders/conversion）
+     * @param period 榜单周期（daily/monthly）
+     * @return 排名数据
+     */
+    @Override
+    public R<Map<String, Object>> getMerchantRanking(Long merchantId, String metric, String period) {
+        log.debug("获取商家排名数据，商家ID：{}，指标：{}，周期：{}", merchantId, metric, period);
+        
+        try {
+            return R.ok(merchantRankingService.getRanking(merchantId, metric, period, LocalDate.now()));
+            
+        } catch (IllegalArgumentException e) {
+            return R.fail(e.getMessage());
+        } catch (Exception e) {
+            log.error("获取商家排名数据失败，商家ID：{}，错误信息：{}", merchantId, e.getMessage(), e);
+            return R.fail("获取商家排名数据失败");
+        }
+    }
+    
     /**
      * 获取商家对比数据
      * 
@@ -791,19 +841,34 @@ public class MerchantStatisticsServiceImpl implements MerchantStatisticsService
      */
     @Override
     public R<Map<String, Object>> getComparisonData(Long merchantId, Integer compareType) {
-        log.debug("获取商家对比数据，商家ID：{}，对比类型：{}", merchantId, compareType);
+        return getComparisonData(merchantId, compareType,
+                MerchantRankingService.METRIC_GMV, MerchantRankingService.PERIOD_MONTHLY);
+    }
+    
+    /**
+     * 获取商家指定指标的对比数据
+     * 同行业按商家经营类目划分
+     * 
+     * @param merchantId 商家ID
+     * @param compareType 对比类型：1-同行业平均，2-平台平均
+     * @param metric 对比指标（gmv/orders/conversion）
+     * @param period 统计周期（daily/monthly）
+     * @return 对比数据
+     */
+    @Override
+    public R<Map<String, Object>> getComparisonData(Long merchantId, Integer compareType, String metric, String period) {
+        log.debug("获取商家对比数据，商家ID：{}，对比类型：{}，指标：{}，周期：{}", merchantId, compareType, metric, period);
+        
+        if (compareType == null || (compareType != 1 && compareType != 2)) {
+            return R.fail("不支持的对比类型");
+        }
         
         try {
-            // 这里应该实现对比逻辑，需要查询行业或平台的平均数据
-            // 暂时返回模拟数据
-            Map<String, Object> comparisonData = new HashMap<>();
-            comparisonData.put("merchantValue", BigDecimal.valueOf(10000));
-            comparisonData.put("averageValue", BigDecimal.valueOf(8000));
-            comparisonData.put("difference", BigDecimal.valueOf(2000));
-            comparisonData.put("differencePercent", BigDecimal.valueOf(25));
-            
-            return R.ok(comparisonData);
+            return R.ok(merchantRankingService.getComparison(
+                    merchantId, metric, period, LocalDate.now(), compareType == 1));
             
+        } catch (IllegalArgumentException e) {
+            return R.fail(e.getMessage());
         } catch (Exception e) {
             log.error("获取商家对比数据失败，商家ID：{}，错误信息：{}", merchantId, e.getMessage(), e);
             return R.fail("获取商家对比数据失败");
@@ -881,15 +946,15 @@ public class MerchantStatisticsServiceImpl implements MerchantStatisticsService
      * @return 计算结果
      */
     @Override
-    @Transactional
     public R<Void> calculateStatistics(Long merchantId, LocalDate statDate, Integer statType) {
         log.info("手动触发统计数据计算，商家ID：{}，日期：{}，类型：{}", merchantId, statDate, statType);
+        if (merchantId == null || statDate == null || !MerchantStatisticsCalculator.isSupported(statType)) {
+            return R.fail("统计参数无效");
+        }
         
         try {
-            // 这里应该实现统计数据计算逻辑
-            // 从订单、商品、访问等数据中计算统计指标
-            // 暂时只记录日志
-            log.info("统计数据计算完成，商家ID：{}，日期：{}，类型：{}", merchantId, statDate, statType);
+            int written = statisticsCalculator.calculate(Collections.singletonList(merchantId), statDate, statDate, statType);
+            log.info("统计数据计算完成，商家ID：{}，日期：{}，类型：{}，写入行数：{}", merchantId, statDate, statType, written);
             return R.ok();
             
         } catch (Exception e) {
@@ -900,6 +965,7 @@ public class MerchantStatisticsServiceImpl implements MerchantStatisticsService
     
     /**
      * 批量计算统计数据
+     * 整个日期范围只执行一次分组聚合，不再逐日计算
      * 
      * @param merchantId 商家ID
      * @param startDate 开始日期
@@ -908,46 +974,19 @@ public class MerchantStatisticsServiceImpl implements MerchantStatisticsService
      * @return 计算结果
      */
     @Override
-    @Transactional
     public R<Void> batchCalculateStatistics(Long merchantId, LocalDate startDate, LocalDate endDate, Integer statType) {
         log.info("批量计算统计数据，商家ID：{}，开始日期：{}，结束日期：{}，类型：{}", 
                 merchantId, startDate, endDate, statType);
+        if (!MerchantStatisticsCalculator.isSupported(statType)) {
+            return R.fail("不支持的统计类型");
+        }
+        if (merchantId == null || startDate == null || endDate == null || startDate.isAfter(endDate)) {
+            return R.fail("统计参数无效");
+        }
         
         try {
-            int successCount = 0;
-            int failCount = 0;
-            
-            LocalDate currentDate = startDate;
-            while (!currentDate.isAfter(endDate)) {
-                try {
-                    R<Void> result = calculateStatistics(merchantId, currentDate, statType);
-                    if (result.isSuccess()) {
-                        successCount++;
-                    } else {
-                        failCount++;
-                    }
-                } catch (Exception e) {
-                    failCount++;
-                    log.error("计算统计数据异常，商家ID：{}，日期：{}，错误信息：{}", merchantId, currentDate, e.getMessage(), e);
-                }
-                
-                // 根据统计类型递增日期
-                switch (statType) {
-                    case 1: // 日
-                        currentDate = currentDate.plusDays(1);
-                        break;
-                    case 2: // 月
-                        currentDate = currentDate.plusMonths(1);
-                        break;
-                    case 3: // 年
-                        currentDate = currentDate.plusYears(1);
-                        break;
-                    default:
-                        return R.fail("不支持的统计类型");
-                }
-            }
-            
-            log.info("批量计算统计数据完成，商家ID：{}，成功：{}，失败：{}", merchantId, successCount, failCount);
+            int written = statisticsCalculator.calculate(Collections.singletonList(merchantId), startDate, endDate, statType);
+            log.info("批量计算统计数据完成，商家ID：{}，写入行数：{}", merchantId, written);
             return R.ok();
             
         } catch (Exception e) {
@@ -956,6 +995,73 @@ public class MerchantStatisticsServiceImpl implements MerchantStatisticsService
         }
     }
     
+    /**
+     * 批量计算多个商家的统计数据
+     * 商家按批次计算，每批一次分组聚合、一次批量写入
+     * 
+     * @param merchantIds 商家ID列表
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @param statType 统计类型：1-日，2-月，3-年
+     * @return 计算结果
+     */
+    @Override
+    public R<Map<String, Object>> batchCalculateStatistics(List<Long> merchantIds, LocalDate startDate, LocalDate endDate, Integer statType) {
+        log.info("批量计算多商家统计数据，商家数量：{}，开始日期：{}，结束日期：{}，类型：{}", 
+                merchantIds != null ? merchantIds.size() : 0, startDate, endDate, statType);
+        if (!MerchantStatisticsCalculator.isSupported(statType)) {
+            return R.fail("不支持的统计类型");
+        }
+        if (merchantIds == null || merchantIds.isEmpty() || startDate == null || endDate == null || startDate.isAfter(endDate)) {
+            return R.fail("统计参数无效");
+        }
+        return R.ok(statisticsBackfillRunner.runSync(merchantIds, startDate, endDate, statType));
+    }
+    
+    /**
+     * 提交统计回填任务
+     * 
+     * @param merchantIds 商家ID列表，为空时回填全部商家
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @param statType 统计类型：1-日，2-月，3-年
+     * @return 任务进度
+     */
+    @Override
+    public R<Map<String, Object>> startStatisticsBackfill(List<Long> merchantIds, LocalDate startDate, LocalDate endDate, Integer statType) {
+        log.info("提交统计回填任务，商家数量：{}，开始日期：{}，结束日期：{}，类型：{}", 
+                merchantIds != null && !merchantIds.isEmpty() ? merchantIds.size() : "全部", startDate, endDate, statType);
+        if (!MerchantStatisticsCalculator.isSupported(statType)) {
+            return R.fail("不支持的统计类型");
+        }
+        if (startDate == null || endDate == null || startDate.isAfter(endDate)) {
+            return R.fail("统计日期范围无效");
+        }
+        
+        MerchantStatisticsBackfillRunner.BackfillJob job = 
+                statisticsBackfillRunner.submit(merchantIds, startDate, endDate, statType);
+        if (job == null) {
+            String runningJobId = statisticsBackfillRunner.getRunningJobId();
+            return R.fail("已有统计回填任务正在执行" + (runningJobId != null ? "，任务ID：" + runningJobId : ""));
+        }
+        return R.ok(job.toProgress());
+    }
+    
+    /**
+     * 查询统计回填任务进度
+     * 
+     * @param jobId 任务ID
+     * @return 任务进度
+     */
+    @Override
+    public R<Map<String, Object>> getStatisticsBackfillProgress(String jobId) {
+        Map<String, Object> progress = statisticsBackfillRunner.getProgress(jobId);
+        if (progress == null) {
+            return R.fail("回填任务不存在或已过期");
+        }
+        return R.ok(progress);
+    }
+    
     /**
      * 获取汇总统计数据
      * 根据指定的统计类型和日期范围获取汇总数据
@@ -1055,15 +1161,7 @@ public class MerchantStatisticsServiceImpl implements MerchantStatisticsService
         log.debug("获取实时统计数据，商家ID：{}", merchantId);
         
         try {
-            // 这里应该从缓存或实时数据源获取最新的统计数据
-            // 暂时返回模拟数据
-            Map<String, Object> realTimeStats = new HashMap<>();
-            realTimeStats.put("onlineVisitors", 10);
-            realTimeStats.put("todayOrders", 5);
-            realTimeStats.put("todaySales", BigDecimal.valueOf(1000));
-            realTimeStats.put("pendingOrders", 3);
-            
-            return R.ok(realTimeStats);
+            return R.ok(merchantRealtimeStatsService.getRealtimeStatistics(merchantId));
             
         } catch (Exception e) {
             log.error("获取实时统计数据失败，商家ID：{}，错误信息：{}", merchantId, e.getMessage(), e);
@@ -0,0 +1,410 @@
+package com.mall.merchant.statistics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mall.merchant.repository.MerchantRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 商家统计回填执行器
+ * 将商家按ID分批，由有界线程池并行执行 {@link MerchantStatisticsCalculator}，并记录任务进度
+ *
+ * <p>所有实例同一时间只运行一个回填任务：运行中的任务持有Redis锁，锁的值为任务ID，
+ * 任务推进时续期，续期和释放通过Lua脚本校验任务ID。任务进度写入Redis并保留若干天，
+ * 任一实例都可以查询任务进度和正在运行的任务。</p>
+ *
+ * <p>未指定商家时按ID游标分页遍历全部商家，线程池队列满时由调度线程直接执行当前批次，形成背压，
+ * 不会一次性把全部商家读入内存。单批失败只记录失败批次和商家ID，不影响其它批次。</p>
+ *
+ * @author lingbai
+ * @version 1.1
+ * @since 2026-10-19
+ *
+ * 修改日志：
+ * V1.1 2026-10-19：运行中的任务改为Redis锁，任务进度保存到Redis，多实例部署时互斥并可在任一实例查询
+ */
+@Component
+@RequiredArgsConstructor
+public class MerchantStatisticsBackfillRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(MerchantStatisticsBackfillRunner.class);
+
+    /** 回填锁，值为运行中的任务ID */
+    private static final String LOCK_KEY = "merchant:stats:backfill:lock";
+    private static final Duration LOCK_TTL = Duration.ofMinutes(10);
+
+    /** 任务进度，merchant:stats:backfill:job:{任务ID}，值为进度JSON */
+    private static final String JOB_KEY_PREFIX = "merchant:stats:backfill:job:";
+    private static final Duration JOB_RETENTION = Duration.ofDays(7);
+
+    /**
+     * 锁仍由该任务持有时续期：KEYS[1]锁键，ARGV[1]任务ID，ARGV[2]过期毫秒数
+     */
+    private static final DefaultRedisScript<Long> EXTEND_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end "
+            + "return 0", Long.class);
+
+    /**
+     * 锁仍由该任务持有时删除：KEYS[1]锁键，ARGV[1]任务ID
+     */
+    private static final DefaultRedisScript<Long> RELEASE_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end "
+            + "return 0", Long.class);
+
+    /** 每个任务记录的失败商家ID上限 */
+    private static final int MAX_FAILED_MERCHANT_IDS = 200;
+
+    private final MerchantStatisticsCalculator calculator;
+    private final MerchantRepository merchantRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Value("${merchant.statistics.backfill.pool-size:4}")
+    private int poolSize;
+
+    @Value("${merchant.statistics.backfill.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${merchant.statistics.backfill.chunk-size:100}")
+    private int chunkSize;
+
+    /**
+     * 回填工作线程池，队列满时由调度线程直接执行
+     */
+    private ThreadPoolExecutor workerExecutor;
+
+    /**
+     * 本实例正在运行的任务
+     */
+    private final AtomicReference<BackfillJob> runningJob = new AtomicReference<>();
+
+    @PostConstruct
+    public void initWorkerExecutor() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        workerExecutor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "merchant-stats-backfill-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        workerExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdownWorkerExecutor() {
+        workerExecutor.shutdownNow();
+    }
+
+    /**
+     * 同步计算一组商家的统计数据，按批次依次执行
+     *
+     * @param merchantIds 商家ID列表
+     * @param startDate 开始日期
+     * @param endDate 结束日期（包含）
+     * @param statType 统计类型：1-日，2-月，3-年
+     * @return 执行结果：total、success、failure、rowsWritten
+     */
+    public Map<String, Object> runSync(List<Long> merchantIds, LocalDate startDate, LocalDate endDate, int statType) {
+        int success = 0;
+        int failure = 0;
+        long rowsWritten = 0;
+        for (int from = 0; from < merchantIds.size(); from += chunkSize) {
+            List<Long> chunk = merchantIds.subList(from, Math.min(from + chunkSize, merchantIds.size()));
+            try {
+                rowsWritten += calculator.calculate(chunk, startDate, endDate, statType);
+                success += chunk.size();
+            } catch (Exception e) {
+                failure += chunk.size();
+                log.error("商家统计计算失败: 商家={}, 范围={}~{}, 类型={}", chunk, startDate, endDate, statType, e);
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("total", merchantIds.size());
+        result.put("success", success);
+        result.put("failure", failure);
+        result.put("rowsWritten", rowsWritten);
+        return result;
+    }
+
+    /**
+     * 提交回填任务，立即返回
+     *
+     * @param merchantIds 商家ID列表，为空时回填全部商家
+     * @param startDate 开始日期
+     * @param endDate 结束日期（包含）
+     * @param statType 统计类型：1-日，2-月，3-年
+     * @return 新任务；本实例或其他实例已有任务在运行时返回null
+     */
+    public BackfillJob submit(List<Long> merchantIds, LocalDate startDate, LocalDate endDate, int statType) {
+        BackfillJob job = new BackfillJob(UUID.randomUUID().toString().replace("-", ""), startDate, endDate, statType);
+        if (!runningJob.compareAndSet(null, job)) {
+            return null;
+        }
+        boolean locked;
+        try {
+            locked = Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(LOCK_KEY, job.jobId, LOCK_TTL));
+        } catch (RuntimeException e) {
+            runningJob.set(null);
+            throw e;
+        }
+        if (!locked) {
+            runningJob.set(null);
+            return null;
+        }
+        saveProgress(job);
+        Thread coordinator = new Thread(() -> run(job, merchantIds), "merchant-stats-backfill-coordinator");
+        coordinator.setDaemon(true);
+        coordinator.start();
+        return job;
+    }
+
+    /**
+     * 查询任务进度，本实例运行的任务直接读取内存，其他任务读取Redis
+     *
+     * @param jobId 任务ID
+     * @return 任务进度，不存在或已过期时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getProgress(String jobId) {
+        BackfillJob local = runningJob.get();
+        if (local != null && local.jobId.equals(jobId)) {
+            return local.toProgress();
+        }
+        String json = stringRedisTemplate.opsForValue().get(JOB_KEY_PREFIX + jobId);
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, LinkedHashMap.class);
+        } catch (Exception e) {
+            log.warn("商家统计回填进度解析失败: jobId={}, 原因={}", jobId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 查询正在运行的任务ID（任一实例）
+     *
+     * @return 持有回填锁的任务ID，没有时返回null
+     */
+    public String getRunningJobId() {
+        return stringRedisTemplate.opsForValue().get(LOCK_KEY);
+    }
+
+    private void run(BackfillJob job, List<Long> merchantIds) {
+        log.info("商家统计回填开始: jobId={}, 范围={}~{}, 类型={}", job.jobId, job.startDate, job.endDate, job.statType);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try {
+            if (merchantIds != null && !merchantIds.isEmpty()) {
+                job.totalMerchants = merchantIds.size();
+                job.totalChunks = (merchantIds.size() + chunkSize - 1) / chunkSize;
+                for (int from = 0; from < merchantIds.size(); from += chunkSize) {
+                    List<Long> chunk = new ArrayList<>(
+                            merchantIds.subList(from, Math.min(from + chunkSize, merchantIds.size())));
+                    futures.add(submitChunk(job, chunk));
+                }
+            } else {
+                long total = merchantRepository.count();
+                job.totalMerchants = total;
+                job.totalChunks = (int) ((total + chunkSize - 1) / chunkSize);
+                Long lastId = 0L;
+                while (!job.lockLost) {
+                    List<Long> chunk = merchantRepository.findIdsAfter(lastId, PageRequest.of(0, chunkSize));
+                    if (chunk.isEmpty()) {
+                        break;
+                    }
+                    lastId = chunk.get(chunk.size() - 1);
+                    futures.add(submitChunk(job, chunk));
+                }
+                // 回填期间新入驻的商家也会被遍历到
+                job.totalChunks = Math.max(job.totalChunks, futures.size());
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            if (job.lockLost) {
+                job.status = BackfillJob.STATUS_FAILED;
+                job.errorMessage = "回填锁已失效，任务中止";
+            } else {
+                job.status = job.failedChunks.get() > 0 ? BackfillJob.STATUS_PARTIAL_FAILED : BackfillJob.STATUS_COMPLETED;
+            }
+        } catch (Exception e) {
+            job.status = BackfillJob.STATUS_FAILED;
+            job.errorMessage = e.getMessage();
+            log.error("商家统计回填异常终止: jobId={}", job.jobId, e);
+        } finally {
+            job.finishTime = LocalDateTime.now();
+            saveProgress(job);
+            try {
+                stringRedisTemplate.execute(RELEASE_LOCK_SCRIPT, List.of(LOCK_KEY), job.jobId);
+            } catch (Exception e) {
+                log.warn("释放商家统计回填锁失败: jobId={}, 原因={}", job.jobId, e.getMessage());
+            }
+            runningJob.compareAndSet(job, null);
+        }
+        log.info("商家统计回填结束: jobId={}, 状态={}, 完成批次={}/{}, 失败批次={}, 写入行数={}, 耗时={}s",
+                job.jobId, job.status, job.completedChunks.get(), job.totalChunks, job.failedChunks.get(),
+                job.rowsWritten.get(), Duration.between(job.startTime, job.finishTime).getSeconds());
+    }
+
+    private CompletableFuture<Void> submitChunk(BackfillJob job, List<Long> chunk) {
+        return CompletableFuture.runAsync(() -> {
+            if (job.lockLost) {
+                // 锁已失效，其他实例可能已开始新的回填，剩余批次不再执行
+                return;
+            }
+            try {
+                job.rowsWritten.addAndGet(calculator.calculate(chunk, job.startDate, job.endDate, job.statType));
+                job.processedMerchants.addAndGet(chunk.size());
+                job.completedChunks.incrementAndGet();
+            } catch (Exception e) {
+                job.failedChunks.incrementAndGet();
+                job.recordFailedMerchants(chunk);
+                log.error("商家统计回填批次失败: jobId={}, 商家={}", job.jobId, chunk, e);
+            }
+            extendLock(job);
+            saveProgress(job);
+        }, workerExecutor);
+    }
+
+    /**
+     * 为任务续期回填锁，锁已不属于该任务时标记失效
+     */
+    private void extendLock(BackfillJob job) {
+        try {
+            Long extended = stringRedisTemplate.execute(EXTEND_LOCK_SCRIPT, List.of(LOCK_KEY),
+                    job.jobId, String.valueOf(LOCK_TTL.toMillis()));
+            if (extended == null || extended == 0) {
+                if (!job.lockLost) {
+                    log.warn("商家统计回填锁已失效，停止提交剩余批次: jobId={}", job.jobId);
+                }
+                job.lockLost = true;
+            }
+        } catch (Exception e) {
+            // Redis暂时不可用时不中止任务，锁在过期前由后续批次续期
+            log.warn("商家统计回填锁续期失败: jobId={}, 原因={}", job.jobId, e.getMessage());
+        }
+    }
+
+    /**
+     * 把任务进度写入Redis，供其他实例查询；写入失败只记录日志
+     */
+    private void saveProgress(BackfillJob job) {
+        try {
+            // 按任务串行写入，较早的进度不会覆盖较新的进度
+            synchronized (job) {
+                String json = objectMapper.writeValueAsString(job.toProgress());
+                stringRedisTemplate.opsForValue().set(JOB_KEY_PREFIX + job.jobId, json, JOB_RETENTION);
+            }
+        } catch (Exception e) {
+            log.warn("保存商家统计回填进度失败: jobId={}, 原因={}", job.jobId, e.getMessage());
+        }
+    }
+
+    /**
+     * 回填任务进度
+     */
+    public static class BackfillJob {
+
+        public static final String STATUS_RUNNING = "RUNNING";
+        public static final String STATUS_COMPLETED = "COMPLETED";
+        public static final String STATUS_PARTIAL_FAILED = "PARTIAL_FAILED";
+        public static final String STATUS_FAILED = "FAILED";
+
+        private final String jobId;
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+        private final int statType;
+        private final LocalDateTime startTime = LocalDateTime.now();
+        private volatile LocalDateTime finishTime;
+        private volatile String status = STATUS_RUNNING;
+        private volatile String errorMessage;
+        private volatile long totalMerchants;
+        private volatile boolean lockLost;
+        private volatile int totalChunks;
+        private final AtomicLong processedMerchants = new AtomicLong();
+        private final AtomicInteger completedChunks = new AtomicInteger();
+        private final AtomicInteger failedChunks = new AtomicInteger();
+        private final AtomicLong rowsWritten = new AtomicLong();
+        private final List<Long> failedMerchantIds = new ArrayList<>();
+
+        BackfillJob(String jobId, LocalDate startDate, LocalDate endDate, int statType) {
+            this.jobId = jobId;
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.statType = statType;
+        }
+
+        public String getJobId() {
+            return jobId;
+        }
+
+        private synchronized void recordFailedMerchants(List<Long> merchantIds) {
+            for (Long merchantId : merchantIds) {
+                if (failedMerchantIds.size() >= MAX_FAILED_MERCHANT_IDS) {
+                    return;
+                }
+                failedMerchantIds.add(merchantId);
+            }
+        }
+
+        /**
+         * 转换为进度数据
+         *
+         * @return 进度数据
+         */
+        public synchronized Map<String, Object> toProgress() {
+            int finishedChunks = completedChunks.get() + failedChunks.get();
+            LocalDateTime end = finishTime != null ? finishTime : LocalDateTime.now();
+            Map<String, Object> progress = new LinkedHashMap<>();
+            progress.put("jobId", jobId);
+            progress.put("status", status);
+            progress.put("statType", statType);
+            progress.put("startDate", startDate);
+            progress.put("endDate", endDate);
+            progress.put("totalMerchants", totalMerchants);
+            progress.put("processedMerchants", processedMerchants.get());
+            progress.put("totalChunks", totalChunks);
+            progress.put("completedChunks", completedChunks.get());
+            progress.put("failedChunks", failedChunks.get());
+            progress.put("percent", totalChunks == 0 ? (STATUS_RUNNING.equals(status) ? 0 : 100)
+                    : Math.min(100, finishedChunks * 100 / totalChunks));
+            progress.put("rowsWritten", rowsWritten.get());
+            progress.put("failedMerchantIds", new ArrayList<>(failedMerchantIds));
+            progress.put("startTime", startTime);
+            progress.put("finishTime", finishTime);
+            progress.put("elapsedSeconds", Duration.between(startTime, end).getSeconds());
+            progress.put("errorMessage", errorMessage);
+            return progress;
+        }
+    }
+}
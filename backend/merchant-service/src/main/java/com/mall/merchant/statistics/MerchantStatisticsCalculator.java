@@ -0,0 +1,245 @@
+package com.mall.merchant.statistics;
+
+import com.mall.merchant.domain.entity.MerchantStatistics;
+import com.mall.merchant.repository.MerchantStatisticsRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 商家统计计算器
+ * 按商家集合和日期范围一次分组聚合订单数据，批量写入商家统计表
+ *
+ * <p>一批商家、一个日期范围只执行一条按 (商家ID, 统计周期) 分组的聚合SQL，
+ * 再一次性读出范围内已有的统计行，在同一事务内更新已有行、补建缺失行，
+ * 范围内已无订单的已有行的订单指标清零。访问量、商品数、评价等非订单指标不由本计算器维护，保持原值。</p>
+ *
+ * <p>订单按下单时间 create_time 归入统计周期。</p>
+ *
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Component
+@RequiredArgsConstructor
+public class MerchantStatisticsCalculator {
+
+    private static final Logger log = LoggerFactory.getLogger(MerchantStatisticsCalculator.class);
+
+    /** 统计类型：日统计 */
+    public static final int STAT_TYPE_DAILY = 1;
+
+    /** 统计类型：月统计 */
+    public static final int STAT_TYPE_MONTHLY = 2;
+
+    /** 统计类型：年统计 */
+    public static final int STAT_TYPE_YEARLY = 3;
+
+    /**
+     * 聚合SQL，{bucket} 替换为统计周期起始日期的格式串。
+     * 销售额、销量按已支付订单（待发货及之后的状态，不含已取消）计算，实际收入按已完成订单的实付金额计算
+     */
+    private static final String AGGREGATE_SQL = "SELECT merchant_id, DATE_FORMAT(create_time, '{bucket}') AS bucket, "
+            + "COUNT(*) AS total_orders, "
+            + "SUM(CASE WHEN status = 5 THEN 1 ELSE 0 END) AS completed_orders, "
+            + "SUM(CASE WHEN status = 6 THEN 1 ELSE 0 END) AS cancelled_orders, "
+            + "SUM(CASE WHEN refund_status = 2 THEN 1 ELSE 0 END) AS refund_orders, "
+            + "COALESCE(SUM(CASE WHEN status >= 2 AND status <> 6 THEN total_amount END), 0) AS total_sales, "
+            + "COALESCE(SUM(CASE WHEN status = 5 THEN paid_amount END), 0) AS actual_income, "
+            + "COALESCE(SUM(CASE WHEN refund_status = 2 THEN refund_amount END), 0) AS refund_amount, "
+            + "COALESCE(SUM(CASE WHEN status >= 2 AND status <> 6 THEN quantity END), 0) AS product_sales_count "
+            + "FROM merchant_order "
+            + "WHERE merchant_id IN (:merchantIds) AND create_time >= :startTime AND create_time < :endTime "
+            + "GROUP BY merchant_id, bucket";
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final MerchantStatisticsRepository statisticsRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 判断统计类型是否受支持
+     *
+     * @param statType 统计类型
+     * @return 是否为日、月、年统计
+     */
+    public static boolean isSupported(Integer statType) {
+        return statType != null && statType >= STAT_TYPE_DAILY && statType <= STAT_TYPE_YEARLY;
+    }
+
+    /**
+     * 取日期所在统计周期的起始日期
+     *
+     * @param date 日期
+     * @param statType 统计类型
+     * @return 当日、当月1日或当年1月1日
+     */
+    public static LocalDate periodStart(LocalDate date, int statType) {
+        switch (statType) {
+            case STAT_TYPE_MONTHLY:
+                return date.withDayOfMonth(1);
+            case STAT_TYPE_YEARLY:
+                return date.withDayOfYear(1);
+            default:
+                return date;
+        }
+    }
+
+    private static LocalDate nextPeriodStart(LocalDate periodStart, int statType) {
+        switch (statType) {
+            case STAT_TYPE_MONTHLY:
+                return periodStart.plusMonths(1);
+            case STAT_TYPE_YEARLY:
+                return periodStart.plusYears(1);
+            default:
+                return periodStart.plusDays(1);
+        }
+    }
+
+    private static String bucketFormat(int statType) {
+        switch (statType) {
+            case STAT_TYPE_MONTHLY:
+                return "%Y-%m-01";
+            case STAT_TYPE_YEARLY:
+                return "%Y-01-01";
+            default:
+                return "%Y-%m-%d";
+        }
+    }
+
+    /**
+     * 计算一批商家在日期范围内各统计周期的统计数据并写入统计表
+     * 起止日期分别扩展到所在统计周期的起始和结束
+     *
+     * @param merchantIds 商家ID集合
+     * @param startDate 开始日期
+     * @param endDate 结束日期（包含）
+     * @param statType 统计类型：1-日，2-月，3-年
+     * @return 写入（新增或更新）的统计行数
+     */
+    public int calculate(Collection<Long> merchantIds, LocalDate startDate, LocalDate endDate, int statType) {
+        if (merchantIds == null || merchantIds.isEmpty()) {
+            return 0;
+        }
+        if (!isSupported(statType)) {
+            throw new IllegalArgumentException("不支持的统计类型: " + statType);
+        }
+        if (startDate == null || endDate == null || startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("统计日期范围无效");
+        }
+        LocalDate firstPeriod = periodStart(startDate, statType);
+        LocalDate lastPeriod = periodStart(endDate, statType);
+        LocalDate endExclusive = nextPeriodStart(lastPeriod, statType);
+
+        long begin = System.currentTimeMillis();
+        Map<String, OrderAggregate> aggregates = aggregate(merchantIds, firstPeriod, endExclusive, statType);
+        Integer written = transactionTemplate.execute(status ->
+                upsert(merchantIds, firstPeriod, lastPeriod, statType, aggregates));
+        log.debug("商家统计计算完成: 商家数={}, 范围={}~{}, 类型={}, 聚合行数={}, 写入行数={}, 耗时={}ms",
+                merchantIds.size(), firstPeriod, lastPeriod, statType, aggregates.size(), written,
+                System.currentTimeMillis() - begin);
+        return written != null ? written : 0;
+    }
+
+    private Map<String, OrderAggregate> aggregate(Collection<Long> merchantIds, LocalDate firstPeriod,
+                                                  LocalDate endExclusive, int statType) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("merchantIds", merchantIds)
+                .addValue("startTime", Timestamp.valueOf(firstPeriod.atStartOfDay()))
+                .addValue("endTime", Timestamp.valueOf(endExclusive.atStartOfDay()));
+        Map<String, OrderAggregate> aggregates = new HashMap<>();
+        namedParameterJdbcTemplate.query(AGGREGATE_SQL.replace("{bucket}", bucketFormat(statType)), params, rs -> {
+            OrderAggregate aggregate = new OrderAggregate();
+            aggregate.totalOrders = rs.getInt("total_orders");
+            aggregate.completedOrders = rs.getInt("completed_orders");
+            aggregate.cancelledOrders = rs.getInt("cancelled_orders");
+            aggregate.refundOrders = rs.getInt("refund_orders");
+            aggregate.totalSales = rs.getBigDecimal("total_sales");
+            aggregate.actualIncome = rs.getBigDecimal("actual_income");
+            aggregate.refundAmount = rs.getBigDecimal("refund_amount");
+            aggregate.productSalesCount = rs.getInt("product_sales_count");
+            aggregates.put(key(rs.getLong("merchant_id"), LocalDate.parse(rs.getString("bucket"))), aggregate);
+        });
+        return aggregates;
+    }
+
+    private int upsert(Collection<Long> merchantIds, LocalDate firstPeriod, LocalDate lastPeriod, int statType,
+                       Map<String, OrderAggregate> aggregates) {
+        List<MerchantStatistics> existing = statisticsRepository.findByMerchantIdInAndStatTypeAndStatDateBetween(
+                merchantIds, statType, firstPeriod, lastPeriod);
+        Map<String, MerchantStatistics> existingByKey = new HashMap<>(existing.size() * 2);
+        for (MerchantStatistics stats : existing) {
+            existingByKey.put(key(stats.getMerchantId(), stats.getStatDate()), stats);
+        }
+
+        List<MerchantStatistics> changed = new ArrayList<>(aggregates.size());
+        for (Map.Entry<String, OrderAggregate> entry : aggregates.entrySet()) {
+            MerchantStatistics stats = existingByKey.remove(entry.getKey());
+            if (stats == null) {
+                String[] parts = entry.getKey().split(":");
+                stats = new MerchantStatistics();
+                stats.setMerchantId(Long.valueOf(parts[0]));
+                stats.setStatDate(LocalDate.parse(parts[1]));
+                stats.setStatType(statType);
+            }
+            entry.getValue().applyTo(stats);
+            changed.add(stats);
+        }
+        // 范围内已无订单的已有统计行，订单指标清零
+        for (MerchantStatistics stats : existingByKey.values()) {
+            if (stats.getTotalOrders() != null && stats.getTotalOrders() > 0) {
+                OrderAggregate.EMPTY.applyTo(stats);
+                changed.add(stats);
+            }
+        }
+        statisticsRepository.saveAll(changed);
+        return changed.size();
+    }
+
+    private static String key(Long merchantId, LocalDate periodStart) {
+        return merchantId + ":" + periodStart;
+    }
+
+    /**
+     * 单个商家单个统计周期的订单聚合结果
+     */
+    private static class OrderAggregate {
+
+        private static final OrderAggregate EMPTY = new OrderAggregate();
+
+        private int totalOrders;
+        private int completedOrders;
+        private int cancelledOrders;
+        private int refundOrders;
+        private BigDecimal totalSales = BigDecimal.ZERO;
+        private BigDecimal actualIncome = BigDecimal.ZERO;
+        private BigDecimal refundAmount = BigDecimal.ZERO;
+        private int productSalesCount;
+
+        private void applyTo(MerchantStatistics stats) {
+            stats.setTotalOrders(totalOrders);
+            stats.setCompletedOrders(completedOrders);
+            stats.setCancelledOrders(cancelledOrders);
+            stats.setRefundOrders(refundOrders);
+            stats.setTotalSales(totalSales);
+            stats.setActualIncome(actualIncome);
+            stats.setRefundAmount(refundAmount);
+            stats.setProductSalesCount(productSalesCount);
+            stats.updateAvgOrderValue();
+            stats.updateRefundRate();
+            stats.updateConversionRate();
+        }
+    }
+}
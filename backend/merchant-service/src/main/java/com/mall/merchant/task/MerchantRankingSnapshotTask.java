@@ -0,0 +1,56 @@
+package com.mall.merchant.task;
+
+import com.mall.merchant.service.MerchantRankingService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 商家排行榜快照定时任务
+ * 每小时将当前日榜、月榜快照到数据库；跨天后的第一次执行补齐上一日（跨月时上一月）的最终榜单
+ *
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Component
+@RequiredArgsConstructor
+public class MerchantRankingSnapshotTask {
+
+    private static final Logger log = LoggerFactory.getLogger(MerchantRankingSnapshotTask.class);
+
+    private final MerchantRankingService merchantRankingService;
+
+    /**
+     * 快照商家排行榜
+     * 每小时第5分钟执行
+     */
+    @Scheduled(cron = "0 5 * * * ?")
+    public void snapshotRankings() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDate today = now.toLocalDate();
+        snapshot(MerchantRankingService.PERIOD_DAILY, today);
+        snapshot(MerchantRankingService.PERIOD_MONTHLY, today);
+        if (now.getHour() == 0) {
+            LocalDate yesterday = today.minusDays(1);
+            snapshot(MerchantRankingService.PERIOD_DAILY, yesterday);
+            if (yesterday.getMonthValue() != today.getMonthValue()) {
+                snapshot(MerchantRankingService.PERIOD_MONTHLY, yesterday);
+            }
+        }
+    }
+
+    private void snapshot(String period, LocalDate date) {
+        try {
+            int count = merchantRankingService.snapshot(period, date);
+            log.info("商家排行榜快照任务完成: period={}, date={}, 记录数={}", period, date, count);
+        } catch (Exception e) {
+            log.error("商家排行榜快照任务失败: period={}, date={}", period, date, e);
+        }
+    }
+}
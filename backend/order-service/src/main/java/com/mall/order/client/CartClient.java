@@ -4,6 +4,8 @@ import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
@@ -14,10 +16,14 @@ import java.util.Map;
  * 用于调用购物车服务的相关接口
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.4
  * @since 2025-01-21
+ * 修改日志：V1.1 2026-10-19：修正服务内路径为/cart（/api前缀仅存在于网关），新增批量加购接口
+ *          V1.2 2026-10-19：新增结算快照领取/完成接口
+ *          V1.3 2026-10-19：新增结算快照只读获取接口
+ *          V1.4 2026-10-19：新增结算快照释放接口
  */
-@FeignClient(name = "cart-service", path = "/api/cart")
+@FeignClient(name = "cart-service", path = "/cart")
 public interface CartClient {
     
     /**
@@ -58,4 +64,59 @@ public interface CartClient {
      */
     @DeleteMapping("/{userId}/selected")
     Boolean clearSelectedItems(@PathVariable("userId") Long userId);
-}
\ No newline at end of file
+    
+    /**
+     * 批量添加商品到购物车
+     * 
+     * @param userId 用户ID
+     * @param items 商品列表，每项包含productId、quantity、specifications
+     * @return 统一响应结果（code、message、data）
+     */
+    @PostMapping("/batch/add")
+    Map<String, Object> batchAddToCart(@RequestParam("userId") Long userId, 
+                                       @RequestBody List<Map<String, Object>> items);
+    
+    /**
+     * 获取结算快照（不领取，用于领取前验签）
+     * 
+     * @param snapshotId 快照ID
+     * @param userId 用户ID
+     * @return 统一响应结果，data为结算快照
+     */
+    @GetMapping("/checkout/snapshot/{snapshotId}")
+    Map<String, Object> getCheckoutSnapshot(@PathVariable("snapshotId") String snapshotId,
+                                            @RequestParam("userId") Long userId);
+    
+    /**
+     * 领取结算快照（每个快照只能领取一次）
+     * 
+     * @param snapshotId 快照ID
+     * @param userId 用户ID
+     * @return 统一响应结果，data为结算快照
+     */
+    @PostMapping("/checkout/snapshot/{snapshotId}/claim")
+    Map<String, Object> claimCheckoutSnapshot(@PathVariable("snapshotId") String snapshotId,
+                                              @RequestParam("userId") Long userId);
+    
+    /**
+     * 释放结算快照的领取标记，订单创建失败后快照可重新使用
+     * 
+     * @param snapshotId 快照ID
+     * @param userId 用户ID
+     * @return 统一响应结果
+     */
+    @PostMapping("/checkout/snapshot/{snapshotId}/release")
+    Map<String, Object> releaseCheckoutSnapshot(@PathVariable("snapshotId") String snapshotId,
+                                                @RequestParam("userId") Long userId);
+    
+    /**
+     * 完成结算快照，删除快照对应的购物车项
+     * 
+     * @param snapshotId 快照ID
+     * @param userId 用户ID
+     * @return 统一响应结果
+     */
+    @PostMapping("/checkout/snapshot/{snapshotId}/complete")
+    Map<String, Object> completeCheckoutSnapshot(@PathVariable("snapshotId") String snapshotId,
+                                                 @RequestParam("userId") Long userId);
+}
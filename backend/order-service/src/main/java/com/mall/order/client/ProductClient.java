@@ -15,9 +15,10 @@ import java.util.Map;
  * 调用 product-service 获取商品信息和管理库存
  * 
  * @author lingbai
- * @version 2.0
+ * @version 2.1
  * @since 2025-01-21
  * 修改日志：V2.0 2025-12-01：从 merchant-service 改为调用 product-service
+ *          V2.1 2026-10-19：新增批量获取商品交易版本号接口
  */
 @FeignClient(name = "product-service", path = "/api")
 public interface ProductClient {
@@ -40,6 +41,15 @@ public interface ProductClient {
     @PostMapping("/products/batch")
     List<Map<String, Object>> getProductsBatch(@RequestBody List<Long> productIds);
     
+    /**
+     * 批量获取商品交易版本号（价格或状态变化时版本号变化）
+     * 
+     * @param productIds 商品ID列表
+     * @return 商品ID -> 版本号
+     */
+    @PostMapping("/products/versions")
+    Map<Long, Long> getProductVersions(@RequestBody List<Long> productIds);
+    
     /**
      * 检查商品库存
      * 
@@ -237,6 +237,24 @@ public class OrderController {
         return R.ok(newOrder);
     }
 
+    /**
+     * 再次购买（加入购物车）
+     * 
+     * @param id     订单ID
+     * @param userId 用户ID
+     * @return 加入购物车的商品项数量
+     */
+    @PostMapping("/{id}/reorder-to-cart")
+    public R<Integer> reorderToCart(
+            @PathVariable Long id,
+            @RequestParam Long userId) {
+
+        log.info("再次购买加入购物车，订单ID: {}, 用户ID: {}", id, userId);
+
+        Integer count = orderService.reorderToCart(id, userId);
+        return R.ok(count);
+    }
+
     /**
      * 支付成功回调（内部接口）
      * 
@@ -4,7 +4,6 @@ import lombok.Data;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
-import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import java.math.BigDecimal;
@@ -15,8 +14,9 @@ import java.util.List;
  * 用于接收前端创建订单的请求参数
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.1
  * @since 2025-01-21
+ * 修改日志：V1.1 2026-10-19：新增结算快照ID，携带快照时订单项由快照提供
  */
 @Data
 public class CreateOrderRequest {
@@ -61,9 +61,13 @@ public class CreateOrderRequest {
     private String remark;
     
     /**
-     * 订单项列表
+     * 结算快照ID（由购物车服务生成，携带时以快照中的商品和价格为准）
+     */
+    private String checkoutSnapshotId;
+    
+    /**
+     * 订单项列表（未携带结算快照时必填）
      */
-    @NotEmpty(message = "订单项不能为空")
     @Valid
     private List<OrderItemRequest> orderItems;
     
@@ -43,7 +43,7 @@ public class Order {
     private Long userId;
     
     /**
-     * 商家ID
+     * 商家ID（多商家订单为首个商品的商家，各商家的份额见订单项的商家ID）
      */
     @Column(name = "merchant_id")
     private Long merchantId;
@@ -13,8 +13,9 @@ import java.time.LocalDateTime;
  * 表示订单中的具体商品项，包含商品信息、数量、价格等
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.1
  * @since 2025-01-21
+ * 修改日志：V1.1 2026-10-19：记录商品所属商家，多商家订单按商家拆分事件
  */
 @Data
 @EqualsAndHashCode(callSuper = false)
@@ -41,6 +42,12 @@ public class OrderItem {
     @Column(name = "product_id", nullable = false)
     private Long productId;
     
+    /**
+     * 商品所属商家ID
+     */
+    @Column(name = "merchant_id")
+    private Long merchantId;
+    
     /**
      * 商品名称
      */
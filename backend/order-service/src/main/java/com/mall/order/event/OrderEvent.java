@@ -14,8 +14,11 @@ import java.time.LocalDateTime;
  * 用于订单状态变更的事件通知
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.1
  * @since 2025-01-21
+ * 
+ * 修改日志：
+ * V1.1 2026-10-19：增加商家ID，供商家服务按商家汇总订单事件
  */
 @Data
 @Builder
@@ -45,6 +48,11 @@ public class OrderEvent implements Serializable {
      */
     private Long userId;
     
+    /**
+     * 商家ID
+     */
+    private Long merchantId;
+    
     /**
      * 订单金额
      */
@@ -154,6 +154,16 @@ public interface OrderService {
      */
     Order reorder(Long orderId, Long userId);
 
+    /**
+     * 再次购买（加入购物车）
+     * 将历史订单的全部商品通过一次批量调用加入购物车
+     * 
+     * @param orderId 原订单ID
+     * @param userId  用户ID
+     * @return 加入购物车的商品项数量
+     */
+    Integer reorderToCart(Long orderId, Long userId);
+
     /**
      * 获取用户订单统计信息
      * 
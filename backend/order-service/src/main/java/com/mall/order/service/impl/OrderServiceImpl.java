@@ -2,6 +2,7 @@ package com.mall.order.service.impl;
 
 import cn.hutool.core.util.IdUtil;
 import cn.hutool.core.util.StrUtil;
+import com.mall.common.core.utils.CheckoutSnapshotSigner;
 import com.mall.order.client.CartClient;
 import com.mall.order.client.PaymentClient;
 import com.mall.order.client.ProductClient;
@@ -25,6 +26,7 @@ import com.mall.order.service.OrderService;
 import com.mall.order.service.OrderValidator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -33,8 +35,11 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -47,8 +52,13 @@ import org.springframework.data.domain.Sort;
  * 实现订单相关的业务逻辑
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.5
  * @since 2025-01-21
+ * 修改日志：V1.1 2026-10-19：支持基于购物车结算快照创建订单，仅校验商品版本号
+ * V1.2 2026-10-19：订单事件携带商家ID，状态变更事件携带应付金额
+ * V1.3 2026-10-19：结算快照先验签和校验版本号再领取；签名密钥不再提供默认值
+ * V1.4 2026-10-19：订单事务未提交时释放结算快照领取标记
+ * V1.5 2026-10-19：订单项记录商品所属商家，订单事件按商家拆分，金额按商家商品小计分摊
  */
 @Slf4j
 @Service
@@ -74,6 +84,17 @@ public class OrderServiceImpl implements OrderService {
     @Value("${order.number-prefix:ORD}")
     private String orderNumberPrefix;
 
+    /**
+     * 结算快照签名密钥，必须通过 CHECKOUT_SNAPSHOT_SECRET 配置，未配置时拒绝启动
+     */
+    @Value("${cart.checkout.snapshot-secret:}")
+    private String checkoutSnapshotSecret;
+
+    @PostConstruct
+    public void checkCheckoutSnapshotSecret() {
+        CheckoutSnapshotSigner.requireSecret(checkoutSnapshotSecret);
+    }
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public Order createOrder(CreateOrderRequest request) {
@@ -101,26 +122,34 @@ public class OrderServiceImpl implements OrderService {
         long startTime = System.currentTimeMillis();
 
         try {
-            // 1. 验证订单项不为空
-            if (request.getOrderItems() == null || request.getOrderItems().isEmpty()) {
-                throw new IllegalArgumentException("订单项不能为空");
-            }
+            boolean fromSnapshot = StrUtil.isNotBlank(request.getCheckoutSnapshotId());
+            List<Map<String, Object>> products;
 
-            // 2. 获取商品信息并验证库存
-            List<Long> productIds = request.getOrderItems().stream()
-                    .map(CreateOrderRequest.OrderItemRequest::getProductId)
-                    .toList();
+            if (fromSnapshot) {
+                // 1-3. 结算快照已包含商品、价格和数量，只需校验签名和商品版本号，库存由扣减接口原子保证
+                products = loadCheckoutSnapshot(request);
+            } else {
+                // 1. 验证订单项不为空
+                if (request.getOrderItems() == null || request.getOrderItems().isEmpty()) {
+                    throw new IllegalArgumentException("订单项不能为空");
+                }
 
-            List<Map<String, Object>> products = productClient.getProductsBatch(productIds);
-            if (products.size() != productIds.size()) {
-                throw new IllegalArgumentException("部分商品不存在");
-            }
+                // 2. 获取商品信息并验证库存
+                List<Long> productIds = request.getOrderItems().stream()
+                        .map(CreateOrderRequest.OrderItemRequest::getProductId)
+                        .toList();
 
-            // 3. 验证库存充足
-            for (CreateOrderRequest.OrderItemRequest item : request.getOrderItems()) {
-                Boolean stockSufficient = productClient.checkStock(item.getProductId(), item.getQuantity());
-                if (!stockSufficient) {
-                    throw new InsufficientStockException(item.getProductId());
+                products = productClient.getProductsBatch(productIds);
+                if (products.size() != productIds.size()) {
+                    throw new IllegalArgumentException("部分商品不存在");
+                }
+
+                // 3. 验证库存充足
+                for (CreateOrderRequest.OrderItemRequest item : request.getOrderItems()) {
+                    Boolean stockSufficient = productClient.checkStock(item.getProductId(), item.getQuantity());
+                    if (!stockSufficient) {
+                        throw new InsufficientStockException(item.getProductId());
+                    }
                 }
             }
 
@@ -137,7 +166,8 @@ public class OrderServiceImpl implements OrderService {
                     request.getDiscountAmount() != null ? request.getDiscountAmount() : BigDecimal.ZERO);
             order.setRemark(request.getRemark());
 
-            // 设置商家ID（从第一个商品获取，假设订单中所有商品属于同一商家）
+            // 设置订单商家ID（取第一个商品的商家，用于商家端订单查询和发货）；
+            // 订单可能包含多个商家的商品，商家统计和排行榜按订单项的商家拆分事件
             if (!products.isEmpty()) {
                 Object merchantIdObj = products.get(0).get("merchantId");
                 if (merchantIdObj instanceof Number) {
@@ -163,6 +193,10 @@ public class OrderServiceImpl implements OrderService {
                 OrderItem orderItem = new OrderItem();
                 orderItem.setOrder(order);
                 orderItem.setProductId(itemRequest.getProductId());
+                Object itemMerchantId = product.get("merchantId");
+                if (itemMerchantId instanceof Number) {
+                    orderItem.setMerchantId(((Number) itemMerchantId).longValue());
+                }
                 orderItem.setProductName((String) product.get("name"));
                 orderItem.setProductImage((String) product.get("image"));
                 orderItem.setProductSpec(itemRequest.getProductSpec());
@@ -196,9 +230,12 @@ public class OrderServiceImpl implements OrderService {
 
             // 发布订单创建事件
             try {
-                OrderEvent orderCreatedEvent = OrderEvent.createOrderCreatedEvent(
-                        savedOrder.getId(), savedOrder.getOrderNo(), request.getUserId(), totalAmount);
-                orderEventPublisher.publishOrderCreatedEvent(orderCreatedEvent);
+                for (Map.Entry<Long, BigDecimal> share : merchantShares(savedOrder, totalAmount).entrySet()) {
+                    OrderEvent orderCreatedEvent = OrderEvent.createOrderCreatedEvent(
+                            savedOrder.getId(), savedOrder.getOrderNo(), request.getUserId(), share.getValue());
+                    orderCreatedEvent.setMerchantId(share.getKey());
+                    orderEventPublisher.publishOrderCreatedEvent(orderCreatedEvent);
+                }
                 log.debug("订单创建事件发布成功: orderId={}", savedOrder.getId());
             } catch (Exception e) {
                 log.error("发布订单创建事件失败: orderId={}, error={}", savedOrder.getId(), e.getMessage(), e);
@@ -218,9 +255,13 @@ public class OrderServiceImpl implements OrderService {
                 }
             }
 
-            // 9. 清空购物车中的选中商品
+            // 9. 清空购物车中的选中商品（使用快照时只删除快照中的购物车项）
             try {
-                cartClient.clearSelectedItems(request.getUserId());
+                if (fromSnapshot) {
+                    cartClient.completeCheckoutSnapshot(request.getCheckoutSnapshotId(), request.getUserId());
+                } else {
+                    cartClient.clearSelectedItems(request.getUserId());
+                }
             } catch (Exception e) {
                 log.warn("清空购物车失败，用户ID: {}", request.getUserId(), e);
             }
@@ -337,6 +378,129 @@ public class OrderServiceImpl implements OrderService {
         return orderRepository.findByUserIdAndStatusOrderByCreateTimeDesc(userId, status, pageable);
     }
 
+    /**
+     * 校验并领取结算快照，将快照行转换为订单项
+     * 先读取快照验证签名、有效期和商品版本号（一次批量查询），全部通过后才领取，
+     * 伪造或已失效的快照不会占用领取标记
+     * 
+     * @param request 创建订单请求（订单项将被快照内容覆盖）
+     * @return 商品信息列表（id、name、image、price、merchantId）
+     */
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> loadCheckoutSnapshot(CreateOrderRequest request) {
+        String snapshotId = request.getCheckoutSnapshotId();
+        Map<String, Object> result = cartClient.getCheckoutSnapshot(snapshotId, request.getUserId());
+        requireCartSuccess(result, "结算快照无效: ");
+        if (!(result.get("data") instanceof Map)) {
+            throw new OrderException("结算快照无效: 快照内容为空");
+        }
+
+        Map<String, Object> snapshot = (Map<String, Object>) result.get("data");
+        long expireTime = ((Number) snapshot.get("expireTime")).longValue();
+        if (expireTime < System.currentTimeMillis()) {
+            throw new OrderException("结算快照已过期，请重新确认订单");
+        }
+
+        List<Map<String, Object>> snapshotItems = (List<Map<String, Object>>) snapshot.get("items");
+        if (snapshotItems == null || snapshotItems.isEmpty()) {
+            throw new OrderException("结算快照中没有商品");
+        }
+
+        List<String> lines = new ArrayList<>(snapshotItems.size());
+        List<Long> productIds = new ArrayList<>(snapshotItems.size());
+        List<Map<String, Object>> products = new ArrayList<>(snapshotItems.size());
+        List<CreateOrderRequest.OrderItemRequest> orderItems = new ArrayList<>(snapshotItems.size());
+        for (Map<String, Object> item : snapshotItems) {
+            Long productId = ((Number) item.get("productId")).longValue();
+            Integer quantity = ((Number) item.get("quantity")).intValue();
+            String specifications = (String) item.get("specifications");
+            BigDecimal price = new BigDecimal(item.get("price").toString());
+            Long version = item.get("version") instanceof Number ? ((Number) item.get("version")).longValue() : null;
+            lines.add(CheckoutSnapshotSigner.line(productId, specifications, quantity, price, version));
+            productIds.add(productId);
+
+            Map<String, Object> product = new HashMap<>();
+            product.put("id", productId);
+            product.put("name", item.get("productName"));
+            product.put("image", item.get("productImage"));
+            product.put("price", price);
+            product.put("merchantId", item.get("merchantId"));
+            product.put("version", version);
+            products.add(product);
+
+            CreateOrderRequest.OrderItemRequest orderItem = new CreateOrderRequest.OrderItemRequest();
+            orderItem.setProductId(productId);
+            orderItem.setProductSpec(specifications);
+            orderItem.setQuantity(quantity);
+            orderItems.add(orderItem);
+        }
+
+        if (!CheckoutSnapshotSigner.verify(snapshotId, request.getUserId(), expireTime, lines,
+                checkoutSnapshotSecret, (String) snapshot.get("signature"))) {
+            log.warn("结算快照签名校验失败: snapshotId={}, userId={}", snapshotId, request.getUserId());
+            throw new OrderException("结算快照签名校验失败");
+        }
+
+        // 一次批量查询确认商品价格和状态与快照一致
+        Map<Long, Long> currentVersions = productClient.getProductVersions(productIds);
+        for (Map<String, Object> product : products) {
+            Long current = currentVersions != null ? currentVersions.get((Long) product.get("id")) : null;
+            if (current == null || !current.equals(product.get("version"))) {
+                log.info("结算快照商品版本已变化: snapshotId={}, productId={}", snapshotId, product.get("id"));
+                throw new OrderException("商品价格或状态已变更，请重新确认订单");
+            }
+        }
+
+        // 校验全部通过后再领取，保证同一快照只能下单一次；订单未能提交时释放领取标记
+        requireCartSuccess(cartClient.claimCheckoutSnapshot(snapshotId, request.getUserId()), "结算快照领取失败: ");
+        releaseSnapshotOnRollback(snapshotId, request.getUserId());
+
+        request.setOrderItems(orderItems);
+        log.info("结算快照校验通过: snapshotId={}, userId={}, 商品项数={}", snapshotId, request.getUserId(), orderItems.size());
+        return products;
+    }
+
+    /**
+     * 订单事务未提交（扣减库存失败、保存失败等）时释放结算快照的领取标记，
+     * 否则快照在过期前无法再次下单
+     * 
+     * @param snapshotId 快照ID
+     * @param userId 用户ID
+     */
+    private void releaseSnapshotOnRollback(String snapshotId, Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    return;
+                }
+                try {
+                    cartClient.releaseCheckoutSnapshot(snapshotId, userId);
+                    log.info("订单创建失败，已释放结算快照: snapshotId={}, userId={}", snapshotId, userId);
+                } catch (Exception e) {
+                    log.warn("释放结算快照失败: snapshotId={}, userId={}", snapshotId, userId, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 检查购物车服务调用结果，失败时抛出订单异常
+     * 
+     * @param result 购物车服务返回结果
+     * @param messagePrefix 异常信息前缀
+     */
+    private void requireCartSuccess(Map<String, Object> result, String messagePrefix) {
+        Object code = result != null ? result.get("code") : null;
+        if (!(code instanceof Number) || ((Number) code).intValue() != 200) {
+            String message = result != null ? String.valueOf(result.get("message")) : "购物车服务无响应";
+            throw new OrderException(messagePrefix + message);
+        }
+    }
+
     /**
      * 生成订单号
      * 格式：前缀 + 时间戳 + 随机数
@@ -376,6 +540,56 @@ public class OrderServiceImpl implements OrderService {
      * @param event  订单事件
      * @param status 订单状态
      */
+    /**
+     * 计算订单中各商家的金额份额
+     * 订单项按商品所属商家分组（历史订单项未记录商家时归入订单商家），amount 按各商家商品小计占比分摊，
+     * 分摊的尾差计入最后一个商家；只有一个商家时份额即为 amount
+     * 
+     * @param order 订单（需包含订单项）
+     * @param amount 待分摊金额，为null时各份额均为null
+     * @return 商家ID到金额份额的映射，顺序与订单项一致
+     */
+    private Map<Long, BigDecimal> merchantShares(Order order, BigDecimal amount) {
+        Map<Long, BigDecimal> subtotals = new LinkedHashMap<>();
+        if (order.getOrderItems() != null) {
+            for (OrderItem item : order.getOrderItems()) {
+                Long merchantId = item.getMerchantId() != null ? item.getMerchantId() : order.getMerchantId();
+                if (merchantId != null) {
+                    BigDecimal subtotal = item.getSubtotal() != null ? item.getSubtotal() : BigDecimal.ZERO;
+                    subtotals.merge(merchantId, subtotal, BigDecimal::add);
+                }
+            }
+        }
+        if (subtotals.size() <= 1) {
+            Map<Long, BigDecimal> shares = new LinkedHashMap<>();
+            Long merchantId = subtotals.isEmpty() ? order.getMerchantId() : subtotals.keySet().iterator().next();
+            if (merchantId != null) {
+                shares.put(merchantId, amount);
+            }
+            return shares;
+        }
+
+        BigDecimal total = subtotals.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+        Map<Long, BigDecimal> shares = new LinkedHashMap<>();
+        BigDecimal allocated = BigDecimal.ZERO;
+        int index = 0;
+        for (Map.Entry<Long, BigDecimal> entry : subtotals.entrySet()) {
+            BigDecimal share = null;
+            if (amount != null) {
+                if (++index == subtotals.size()) {
+                    share = amount.subtract(allocated);
+                } else if (total.signum() == 0) {
+                    share = BigDecimal.ZERO;
+                } else {
+                    share = amount.multiply(entry.getValue()).divide(total, 2, RoundingMode.HALF_UP);
+                    allocated = allocated.add(share);
+                }
+            }
+            shares.put(entry.getKey(), share);
+        }
+        return shares;
+    }
+
     private void publishEventByStatus(OrderEvent event, OrderStatus status) {
         switch (status) {
             case PENDING:
@@ -471,9 +685,12 @@ public class OrderServiceImpl implements OrderService {
 
             // 7. 发布订单取消事件
             try {
-                OrderEvent orderCancelledEvent = OrderEvent.createOrderCancelledEvent(
-                        orderId, order.getOrderNo(), userId, reason);
-                orderEventPublisher.publishOrderCancelledEvent(orderCancelledEvent);
+                for (Long merchantId : merchantShares(order, null).keySet()) {
+                    OrderEvent orderCancelledEvent = OrderEvent.createOrderCancelledEvent(
+                            orderId, order.getOrderNo(), userId, reason);
+                    orderCancelledEvent.setMerchantId(merchantId);
+                    orderEventPublisher.publishOrderCancelledEvent(orderCancelledEvent);
+                }
                 log.debug("订单取消事件发布成功: orderId={}", orderId);
             } catch (Exception e) {
                 log.error("发布订单取消事件失败: orderId={}, error={}", orderId, e.getMessage(), e);
@@ -513,9 +730,12 @@ public class OrderServiceImpl implements OrderService {
 
             // 5. 发布订单完成事件
             try {
-                OrderEvent orderCompletedEvent = OrderEvent.createOrderCompletedEvent(
-                        orderId, order.getOrderNo(), userId);
-                orderEventPublisher.publishOrderCompletedEvent(orderCompletedEvent);
+                for (Long merchantId : merchantShares(order, null).keySet()) {
+                    OrderEvent orderCompletedEvent = OrderEvent.createOrderCompletedEvent(
+                            orderId, order.getOrderNo(), userId);
+                    orderCompletedEvent.setMerchantId(merchantId);
+                    orderEventPublisher.publishOrderCompletedEvent(orderCompletedEvent);
+                }
                 log.debug("订单完成事件发布成功: orderId={}", orderId);
             } catch (Exception e) {
                 log.error("发布订单完成事件失败: orderId={}, error={}", orderId, e.getMessage(), e);
@@ -666,9 +886,12 @@ public class OrderServiceImpl implements OrderService {
 
             // 4. 发布订单支付成功事件
             try {
-                OrderEvent orderPaidEvent = OrderEvent.createOrderPaidEvent(
-                        order.getId(), orderNo, order.getUserId(), order.getPayableAmount());
-                orderEventPublisher.publishOrderPaidEvent(orderPaidEvent);
+                for (Map.Entry<Long, BigDecimal> share : merchantShares(order, order.getPayableAmount()).entrySet()) {
+                    OrderEvent orderPaidEvent = OrderEvent.createOrderPaidEvent(
+                            order.getId(), orderNo, order.getUserId(), share.getValue());
+                    orderPaidEvent.setMerchantId(share.getKey());
+                    orderEventPublisher.publishOrderPaidEvent(orderPaidEvent);
+                }
                 log.debug("订单支付成功事件发布成功: orderNo={}", orderNo);
             } catch (Exception e) {
                 log.error("发布订单支付成功事件失败: orderNo={}, error={}", orderNo, e.getMessage(), e);
@@ -784,6 +1007,43 @@ public class OrderServiceImpl implements OrderService {
         }
     }
 
+    @Override
+    public Integer reorderToCart(Long orderId, Long userId) {
+        log.info("再次购买加入购物车，订单ID: {}, 用户ID: {}", orderId, userId);
+
+        Order originalOrder = orderRepository.findById(orderId)
+                .orElseThrow(() -> new IllegalArgumentException("原订单不存在"));
+        if (!originalOrder.getUserId().equals(userId)) {
+            throw new IllegalArgumentException("无权限操作此订单");
+        }
+
+        List<OrderItem> originalItems = orderItemRepository.findByOrderId(orderId);
+        if (originalItems.isEmpty()) {
+            throw new IllegalArgumentException("原订单无商品信息");
+        }
+
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (OrderItem item : originalItems) {
+            Map<String, Object> cartItem = new HashMap<>();
+            cartItem.put("productId", item.getProductId());
+            cartItem.put("quantity", item.getQuantity());
+            cartItem.put("specifications", item.getProductSpec());
+            items.add(cartItem);
+        }
+
+        // 购物车服务一次批量校验商品并一次写入，避免逐个商品调用
+        Map<String, Object> result = cartClient.batchAddToCart(userId, items);
+        Object code = result != null ? result.get("code") : null;
+        if (!(code instanceof Number) || ((Number) code).intValue() != 200) {
+            String message = result != null ? String.valueOf(result.get("message")) : "购物车服务无响应";
+            log.warn("再次购买加入购物车失败，订单ID: {}, 原因: {}", orderId, message);
+            throw new OrderException("加入购物车失败: " + message);
+        }
+
+        log.info("再次购买加入购物车成功，订单ID: {}, 商品项数: {}", orderId, items.size());
+        return items.size();
+    }
+
     @Override
     public Map<String, Object> getOrderStats(Long userId) {
         log.info("获取用户订单统计，用户ID: {}", userId);
@@ -968,15 +1228,19 @@ public class OrderServiceImpl implements OrderService {
             // 发布订单状态变更事件
             try {
                 // 根据新状态发布相应事件
-                OrderEvent event = OrderEvent.builder()
-                        .eventType(getEventTypeByStatus(status))
-                        .orderId(orderId)
-                        .orderNo(order.getOrderNo())
-                        .userId(order.getUserId())
-                        .eventTime(LocalDateTime.now())
-                        .message("订单状态更新")
-                        .build();
-                publishEventByStatus(event, status);
+                for (Map.Entry<Long, BigDecimal> share : merchantShares(order, order.getPayableAmount()).entrySet()) {
+                    OrderEvent event = OrderEvent.builder()
+                            .eventType(getEventTypeByStatus(status))
+                            .orderId(orderId)
+                            .orderNo(order.getOrderNo())
+                            .userId(order.getUserId())
+                            .merchantId(share.getKey())
+                            .amount(share.getValue())
+                            .eventTime(LocalDateTime.now())
+                            .message("订单状态更新")
+                            .build();
+                    publishEventByStatus(event, status);
+                }
                 log.debug("订单状态变更事件发布成功: orderId={}, status={}", orderId, status);
             } catch (Exception e) {
                 log.error("发布订单状态变更事件失败: orderId={}, status={}, error={}",
@@ -1038,10 +1302,13 @@ public class OrderServiceImpl implements OrderService {
 
             // 发布订单发货事件
             try {
-                OrderEvent event = OrderEvent.createOrderShippedEvent(
-                        orderId, order.getOrderNo(), order.getUserId());
-                event.setMessage("物流公司: " + logisticsCompany + ", 物流单号: " + logisticsNo);
-                orderEventPublisher.publishOrderShippedEvent(event);
+                for (Long shippedMerchantId : merchantShares(order, null).keySet()) {
+                    OrderEvent event = OrderEvent.createOrderShippedEvent(
+                            orderId, order.getOrderNo(), order.getUserId());
+                    event.setMerchantId(shippedMerchantId);
+                    event.setMessage("物流公司: " + logisticsCompany + ", 物流单号: " + logisticsNo);
+                    orderEventPublisher.publishOrderShippedEvent(event);
+                }
             } catch (Exception e) {
                 log.error("发布订单发货事件失败: orderId={}", orderId, e);
             }
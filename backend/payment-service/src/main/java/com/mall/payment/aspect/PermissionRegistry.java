@@ -0,0 +1,303 @@
+package com.mall.payment.aspect;
+
+import com.mall.payment.annotation.RequirePermission;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 权限注册表
+ * 为@RequirePermission中出现的权限/角色名分配编号，权限检查按位运算完成
+ *
+ * <p>预计算内容：</p>
+ * <ul>
+ *   <li>权限编号：每个权限/角色名一个位，最多64个</li>
+ *   <li>权限授予表：用户的每个authority字符串可满足哪些权限位，匹配规则与原先的角色/权限判断一致</li>
+ *   <li>方法元数据：所需权限位、是否需要全部、所有者字段访问句柄，启动时扫描控制器生成</li>
+ * </ul>
+ *
+ * <p>用户权限位按认证对象解析一次，同一请求内的多次检查复用结果。</p>
+ *
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Component
+public class PermissionRegistry implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(PermissionRegistry.class);
+
+    private static final int MAX_PERMISSIONS = Long.SIZE;
+
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    /**
+     * 权限名到编号，只在持有本对象锁时修改
+     */
+    private final Map<String, Integer> permissionIds = new HashMap<>();
+
+    /**
+     * authority字符串到可满足的权限位，写时复制
+     */
+    private volatile Map<String, Long> authorityMasks = Map.of();
+
+    /**
+     * 权限表版本，新增权限后递增，使已解析的用户权限位失效
+     */
+    private volatile int version;
+
+    private final Map<Method, MethodPermission> methodPermissions = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<ResolvedAuthorities> resolvedAuthorities = ThreadLocal.withInitial(ResolvedAuthorities::new);
+
+    /**
+     * 启动完成后扫描控制器上的权限注解，预先生成方法元数据
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (Object bean : applicationContext.getBeansWithAnnotation(Controller.class).values()) {
+            Class<?> targetClass = AopUtils.getTargetClass(bean);
+            ReflectionUtils.doWithMethods(targetClass, method -> {
+                RequirePermission annotation = method.getAnnotation(RequirePermission.class);
+                if (annotation != null) {
+                    methodPermissions.computeIfAbsent(method, m -> build(m, annotation));
+                }
+            });
+        }
+        logger.info("权限注册表初始化完成，方法数: {}, 权限数: {}", methodPermissions.size(), permissionIds.size());
+    }
+
+    /**
+     * 获取方法的权限元数据，启动时未扫描到的方法在首次调用时生成
+     *
+     * @param method 被调用的方法
+     * @param annotation 方法上的权限注解
+     * @return 权限元数据
+     */
+    public MethodPermission getMethodPermission(Method method, RequirePermission annotation) {
+        MethodPermission permission = methodPermissions.get(method);
+        return permission != null ? permission : methodPermissions.computeIfAbsent(method, m -> build(m, annotation));
+    }
+
+    /**
+     * 解析认证对象拥有的权限位，同一线程内对同一认证对象只解析一次
+     *
+     * @param authentication 认证对象
+     * @return 权限位
+     */
+    public long resolveMask(Authentication authentication) {
+        ResolvedAuthorities resolved = resolvedAuthorities.get();
+        int currentVersion = version;
+        if (resolved.authentication == authentication && resolved.version == currentVersion) {
+            return resolved.mask;
+        }
+        Map<String, Long> masks = authorityMasks;
+        long mask = 0;
+        if (authentication.getAuthorities() != null) {
+            for (GrantedAuthority authority : authentication.getAuthorities()) {
+                Long granted = masks.get(authority.getAuthority());
+                if (granted != null) {
+                    mask |= granted;
+                }
+            }
+        }
+        resolved.authentication = authentication;
+        resolved.version = currentVersion;
+        resolved.mask = mask;
+        return mask;
+    }
+
+    private MethodPermission build(Method method, RequirePermission annotation) {
+        String[] required = annotation.value();
+        long requiredMask = 0;
+        for (String permission : required) {
+            requiredMask |= 1L << register(permission);
+        }
+        MethodHandle[] ownerAccessors = annotation.allowOwner()
+                ? buildOwnerAccessors(method, annotation.ownerField()) : new MethodHandle[0];
+        String message = StringUtils.hasText(annotation.message()) ? annotation.message() : "权限不足，无法访问该资源";
+        return new MethodPermission(required.length > 0, requiredMask, annotation.requireAll(),
+                annotation.allowOwner(), ownerAccessors, message, Arrays.toString(required));
+    }
+
+    /**
+     * 登记权限名，新权限写入授予表
+     */
+    private synchronized int register(String permission) {
+        Integer id = permissionIds.get(permission);
+        if (id != null) {
+            return id;
+        }
+        if (permissionIds.size() >= MAX_PERMISSIONS) {
+            throw new IllegalStateException("权限数量超过上限" + MAX_PERMISSIONS + "，无法登记权限: " + permission);
+        }
+        id = permissionIds.size();
+        permissionIds.put(permission, id);
+
+        long bit = 1L << id;
+        Map<String, Long> masks = new HashMap<>(authorityMasks);
+        for (String authority : grantingAuthorities(permission)) {
+            masks.merge(authority, bit, (a, b) -> a | b);
+        }
+        authorityMasks = masks;
+        version++;
+        return id;
+    }
+
+    /**
+     * 可满足指定权限的authority字符串，与原先的判断规则等价：
+     * 以ROLE_开头时匹配同名authority或去掉前缀后的角色；否则匹配同名authority或大写后的角色
+     */
+    private static String[] grantingAuthorities(String permission) {
+        String role = permission.startsWith("ROLE_") ? permission.substring(5) : permission.toUpperCase();
+        // 角色由authority去掉ROLE_前缀得到，因此"ROLE_X"和不带前缀的"X"都对应角色X
+        if (role.startsWith("ROLE_")) {
+            return new String[]{permission, "ROLE_" + role};
+        }
+        return new String[]{permission, "ROLE_" + role, role};
+    }
+
+    /**
+     * 为方法的每个参数生成所有者字段访问句柄，参数类型不含该字段时为null
+     */
+    private MethodHandle[] buildOwnerAccessors(Method method, String ownerField) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        MethodHandle[] accessors = new MethodHandle[parameterTypes.length];
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Class<?> type = parameterTypes[i];
+            try {
+                if (type == String.class) {
+                    // 字符串参数本身即为ID
+                    accessors[i] = "id".equals(ownerField) ? MethodHandles.identity(Object.class) : null;
+                    continue;
+                }
+                if (!StringUtils.hasText(ownerField)) {
+                    continue;
+                }
+                String getterName = "get" + ownerField.substring(0, 1).toUpperCase() + ownerField.substring(1);
+                try {
+                    Method getter = type.getMethod(getterName);
+                    getter.setAccessible(true);
+                    accessors[i] = lookup.unreflect(getter).asType(ACCESSOR_TYPE);
+                } catch (NoSuchMethodException e) {
+                    Field field = type.getDeclaredField(ownerField);
+                    field.setAccessible(true);
+                    accessors[i] = lookup.unreflectGetter(field).asType(ACCESSOR_TYPE);
+                }
+            } catch (NoSuchFieldException e) {
+                accessors[i] = null;
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                logger.debug("无法为参数类型 {} 生成所有者字段 {} 的访问句柄: {}", type.getSimpleName(), ownerField, e.getMessage());
+                accessors[i] = null;
+            }
+        }
+        return accessors;
+    }
+
+    /**
+     * 方法权限元数据
+     */
+    public static final class MethodPermission {
+
+        private final boolean hasRequirements;
+        private final long requiredMask;
+        private final boolean requireAll;
+        private final boolean allowOwner;
+        private final MethodHandle[] ownerAccessors;
+        private final String message;
+        private final String description;
+
+        MethodPermission(boolean hasRequirements, long requiredMask, boolean requireAll, boolean allowOwner,
+                         MethodHandle[] ownerAccessors, String message, String description) {
+            this.hasRequirements = hasRequirements;
+            this.requiredMask = requiredMask;
+            this.requireAll = requireAll;
+            this.allowOwner = allowOwner;
+            this.ownerAccessors = ownerAccessors;
+            this.message = message;
+            this.description = description;
+        }
+
+        /**
+         * 是否指定了权限要求，未指定时只需认证
+         */
+        public boolean hasRequirements() {
+            return hasRequirements;
+        }
+
+        /**
+         * 用户权限位是否满足要求
+         */
+        public boolean isGranted(long userMask) {
+            return requireAll ? (userMask & requiredMask) == requiredMask : (userMask & requiredMask) != 0;
+        }
+
+        public boolean isAllowOwner() {
+            return allowOwner;
+        }
+
+        /**
+         * 从调用参数中提取第一个非空的所有者ID
+         *
+         * @param args 调用参数
+         * @return 所有者ID，未找到时返回null
+         */
+        public String extractOwnerId(Object[] args) {
+            for (int i = 0; i < ownerAccessors.length && i < args.length; i++) {
+                MethodHandle accessor = ownerAccessors[i];
+                if (accessor == null || args[i] == null) {
+                    continue;
+                }
+                try {
+                    Object value = (Object) accessor.invokeExact(args[i]);
+                    if (value != null) {
+                        return value.toString();
+                    }
+                } catch (Throwable e) {
+                    logger.debug("提取所有者ID失败，参数序号: {}, 错误: {}", i, e.getMessage());
+                }
+            }
+            return null;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    /**
+     * 线程内最近一次解析的认证对象及其权限位
+     */
+    private static final class ResolvedAuthorities {
+        private Authentication authentication;
+        private int version;
+        private long mask;
+    }
+}
@@ -0,0 +1,395 @@
+package com.mall.payment.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mall.payment.dto.response.PaymentOrderResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 支付订单缓存
+ * 支付订单查询的唯一缓存层：本地内存（L1）+ Redis（L2），读穿透加载
+ *
+ * <p>一致性：</p>
+ * <ul>
+ *   <li>每个订单在Redis中维护一个版本号，订单变更提交后版本号加一并删除L2数据，同时广播失效通知</li>
+ *   <li>加载前先读取版本号，回写L2时只有版本号未变化才写入，慢查询不会用旧状态覆盖新状态</li>
+ *   <li>L1失效时保留带版本号的墓碑，版本号更低的回写被拒绝；L1条目设有较短的过期时间兜底丢失的通知</li>
+ * </ul>
+ *
+ * <p>防击穿：同一实例内同一订单的并发未命中只由一个线程加载，其它线程等待同一结果。</p>
+ *
+ * <p>返回的对象在L1中共享，调用方不得修改。</p>
+ *
+ * @author lingbai
+ * @version 1.1
+ * @since 2026-10-19
+ *
+ * <p>修改日志：</p>
+ * <ul>
+ *   <li>V1.1 2026-10-19：增加管道批量失效</li>
+ * </ul>
+ */
+@Component
+public class PaymentOrderCache implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentOrderCache.class);
+
+    /**
+     * 失效通知频道，消息格式：订单ID:版本号
+     */
+    public static final String INVALIDATED_CHANNEL = "payment:order:cache:invalidated";
+
+    private static final String DATA_KEY_PREFIX = "payment:order:";
+    private static final String VERSION_KEY_PREFIX = "payment:order:version:";
+
+    /**
+     * 读取脚本：返回 {数据, 数据版本号, 当前版本号}
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> READ_SCRIPT = new DefaultRedisScript<>(
+            "return {redis.call('HGET', KEYS[1], 'd'), redis.call('HGET', KEYS[1], 'v'), redis.call('GET', KEYS[2])}",
+            List.class);
+
+    /**
+     * 回写脚本：ARGV依次为加载前读到的版本号、数据、过期毫秒数；版本号已变化时不写入
+     */
+    private static final DefaultRedisScript<Long> PUT_SCRIPT = new DefaultRedisScript<>(
+            "local current = tonumber(redis.call('GET', KEYS[2]) or '0') "
+            + "if current ~= tonumber(ARGV[1]) then return 0 end "
+            + "redis.call('HSET', KEYS[1], 'v', ARGV[1], 'd', ARGV[2]) "
+            + "redis.call('PEXPIRE', KEYS[1], ARGV[3]) "
+            + "return 1",
+            Long.class);
+
+    /**
+     * 失效脚本：版本号加一、删除数据并广播；ARGV依次为版本号过期毫秒数、通知频道、订单ID
+     */
+    private static final DefaultRedisScript<Long> INVALIDATE_SCRIPT = new DefaultRedisScript<>(
+            "local version = redis.call('INCR', KEYS[2]) "
+            + "redis.call('PEXPIRE', KEYS[2], ARGV[1]) "
+            + "redis.call('DEL', KEYS[1]) "
+            + "redis.call('PUBLISH', ARGV[2], ARGV[3] .. ':' .. version) "
+            + "return version",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${payment.order-cache.local-ttl-ms:10000}")
+    private long localTtlMs;
+
+    @Value("${payment.order-cache.local-max-size:10000}")
+    private int localMaxSize;
+
+    @Value("${payment.order-cache.redis-ttl-ms:300000}")
+    private long redisTtlMs;
+
+    /**
+     * 版本号保留时长，需大于数据过期时间，否则版本号重置后旧数据可能被当作最新
+     */
+    @Value("${payment.order-cache.version-ttl-ms:86400000}")
+    private long versionTtlMs;
+
+    private final Map<String, LocalEntry> localEntries = new ConcurrentHashMap<>();
+
+    private final Map<String, CompletableFuture<PaymentOrderResponse>> loading = new ConcurrentHashMap<>();
+
+    private Counter localHits;
+    private Counter redisHits;
+    private Counter misses;
+    private Counter staleWritesRejected;
+    private Timer loadTimer;
+
+    @PostConstruct
+    public void init() {
+        localHits = Counter.builder("payment.order.cache.requests").tag("result", "hit").tag("level", "local")
+                .description("支付订单缓存请求数").register(meterRegistry);
+        redisHits = Counter.builder("payment.order.cache.requests").tag("result", "hit").tag("level", "redis")
+                .description("支付订单缓存请求数").register(meterRegistry);
+        misses = Counter.builder("payment.order.cache.requests").tag("result", "miss").tag("level", "database")
+                .description("支付订单缓存请求数").register(meterRegistry);
+        staleWritesRejected = Counter.builder("payment.order.cache.stale.rejected")
+                .description("因版本号落后被拒绝的缓存回写数").register(meterRegistry);
+        loadTimer = Timer.builder("payment.order.cache.load")
+                .description("缓存未命中时从数据库加载支付订单的耗时").register(meterRegistry);
+        meterRegistry.gaugeMapSize("payment.order.cache.local.size", Collections.emptyList(), localEntries);
+
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATED_CHANNEL));
+    }
+
+    /**
+     * 读取支付订单，依次查询L1、L2，均未命中时调用加载函数并回写
+     *
+     * @param paymentOrderId 支付订单ID
+     * @param loader 从数据库加载订单的函数，订单不存在时返回null（不缓存）
+     * @return 支付订单，不存在时为null
+     */
+    public PaymentOrderResponse get(String paymentOrderId, Function<String, PaymentOrderResponse> loader) {
+        LocalEntry local = localEntries.get(paymentOrderId);
+        if (local != null && local.value != null && local.expireAtMillis > System.currentTimeMillis()) {
+            localHits.increment();
+            return local.value;
+        }
+
+        CompletableFuture<PaymentOrderResponse> future = new CompletableFuture<>();
+        CompletableFuture<PaymentOrderResponse> existing = loading.putIfAbsent(paymentOrderId, future);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            PaymentOrderResponse value = loadThrough(paymentOrderId, loader);
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(paymentOrderId, future);
+        }
+    }
+
+    /**
+     * 订单变更后使缓存失效，在当前事务提交后执行（无事务时立即执行）
+     *
+     * @param paymentOrderId 支付订单ID
+     */
+    public void invalidate(String paymentOrderId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doInvalidate(paymentOrderId);
+                }
+            });
+        } else {
+            doInvalidate(paymentOrderId);
+        }
+    }
+
+    /**
+     * 批量使缓存失效，所有订单的失效脚本通过一次管道发送，在当前事务提交后执行（无事务时立即执行）
+     *
+     * @param paymentOrderIds 支付订单ID
+     */
+    public void invalidateAll(Collection<String> paymentOrderIds) {
+        if (paymentOrderIds.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>(paymentOrderIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doInvalidateAll(ids);
+                }
+            });
+        } else {
+            doInvalidateAll(ids);
+        }
+    }
+
+    /**
+     * 接收其它实例（以及本实例）的失效通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.lastIndexOf(':');
+        if (separator <= 0) {
+            return;
+        }
+        try {
+            invalidateLocal(body.substring(0, separator), Long.parseLong(body.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            logger.warn("忽略格式错误的支付订单缓存失效通知: {}", body);
+        }
+    }
+
+    private PaymentOrderResponse loadThrough(String paymentOrderId, Function<String, PaymentOrderResponse> loader) {
+        String dataKey = dataKey(paymentOrderId);
+        String versionKey = versionKey(paymentOrderId);
+
+        long version = -1;
+        try {
+            List<?> result = stringRedisTemplate.execute(READ_SCRIPT, Arrays.asList(dataKey, versionKey));
+            Object data = result != null && result.size() > 0 ? result.get(0) : null;
+            Object dataVersion = result != null && result.size() > 1 ? result.get(1) : null;
+            Object currentVersion = result != null && result.size() > 2 ? result.get(2) : null;
+            version = currentVersion != null ? Long.parseLong(currentVersion.toString()) : 0;
+            if (data != null && dataVersion != null && Long.parseLong(dataVersion.toString()) == version) {
+                PaymentOrderResponse value = objectMapper.readValue(data.toString(), PaymentOrderResponse.class);
+                putLocal(paymentOrderId, version, value);
+                redisHits.increment();
+                return value;
+            }
+        } catch (Exception e) {
+            logger.warn("读取支付订单Redis缓存失败，订单ID: {}, 错误: {}", paymentOrderId, e.getMessage());
+        }
+
+        misses.increment();
+        PaymentOrderResponse value = loadTimer.record(() -> loader.apply(paymentOrderId));
+        if (value == null || version < 0) {
+            // Redis不可用时不回写，避免无版本保护的数据进入缓存
+            return value;
+        }
+
+        try {
+            String json = objectMapper.writeValueAsString(value);
+            Long written = stringRedisTemplate.execute(PUT_SCRIPT, Arrays.asList(dataKey, versionKey),
+                    String.valueOf(version), json, String.valueOf(redisTtlMs));
+            if (written != null && written == 1L) {
+                putLocal(paymentOrderId, version, value);
+            } else {
+                staleWritesRejected.increment();
+                logger.debug("支付订单在加载期间已变更，放弃回写缓存，订单ID: {}", paymentOrderId);
+            }
+        } catch (Exception e) {
+            logger.warn("回写支付订单Redis缓存失败，订单ID: {}, 错误: {}", paymentOrderId, e.getMessage());
+        }
+        return value;
+    }
+
+    private void doInvalidate(String paymentOrderId) {
+        try {
+            Long version = stringRedisTemplate.execute(INVALIDATE_SCRIPT,
+                    Arrays.asList(dataKey(paymentOrderId), versionKey(paymentOrderId)),
+                    String.valueOf(versionTtlMs), INVALIDATED_CHANNEL, paymentOrderId);
+            invalidateLocal(paymentOrderId, version != null ? version : Long.MAX_VALUE);
+            logger.debug("支付订单缓存已失效，订单ID: {}, 版本号: {}", paymentOrderId, version);
+        } catch (Exception e) {
+            // Redis不可用时至少清除本地缓存，L2数据由过期时间兜底
+            invalidateLocal(paymentOrderId, Long.MAX_VALUE);
+            logger.warn("清除支付订单缓存失败，订单ID: {}, 错误: {}", paymentOrderId, e.getMessage());
+        }
+    }
+
+    private void doInvalidateAll(List<String> ids) {
+        try {
+            byte[] script = INVALIDATE_SCRIPT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+            byte[] versionTtl = String.valueOf(versionTtlMs).getBytes(StandardCharsets.UTF_8);
+            byte[] channel = INVALIDATED_CHANNEL.getBytes(StandardCharsets.UTF_8);
+            List<Object> versions = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String id : ids) {
+                    connection.scriptingCommands().eval(script, ReturnType.INTEGER, 2,
+                            dataKey(id).getBytes(StandardCharsets.UTF_8), versionKey(id).getBytes(StandardCharsets.UTF_8),
+                            versionTtl, channel, id.getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+            for (int i = 0; i < ids.size(); i++) {
+                Object version = i < versions.size() ? versions.get(i) : null;
+                invalidateLocal(ids.get(i), version instanceof Long ? (Long) version : Long.MAX_VALUE);
+            }
+            logger.debug("批量清除支付订单缓存完成，数量: {}", ids.size());
+        } catch (Exception e) {
+            ids.forEach(id -> invalidateLocal(id, Long.MAX_VALUE));
+            logger.warn("批量清除支付订单缓存失败，数量: {}, 错误: {}", ids.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 以墓碑替换本地条目，墓碑保留一个本地过期周期，期间版本号更低的回写被拒绝
+     */
+    private void invalidateLocal(String paymentOrderId, long version) {
+        long expireAt = System.currentTimeMillis() + localTtlMs;
+        localEntries.compute(paymentOrderId, (key, current) ->
+                current != null && current.version > version ? current : new LocalEntry(version, null, expireAt));
+    }
+
+    private void putLocal(String paymentOrderId, long version, PaymentOrderResponse value) {
+        if (localEntries.size() >= localMaxSize) {
+            evictLocal();
+        }
+        long now = System.currentTimeMillis();
+        localEntries.compute(paymentOrderId, (key, current) -> {
+            if (current != null && current.version > version && current.expireAtMillis > now) {
+                // 已收到更新版本的失效通知，丢弃本次回写
+                staleWritesRejected.increment();
+                return current;
+            }
+            return new LocalEntry(version, value, now + localTtlMs);
+        });
+    }
+
+    /**
+     * 本地条目超过上限时先清理过期条目，仍超过则随机淘汰约十分之一
+     */
+    private void evictLocal() {
+        long now = System.currentTimeMillis();
+        localEntries.values().removeIf(entry -> entry.expireAtMillis <= now);
+        int toRemove = localEntries.size() - localMaxSize * 9 / 10;
+        Iterator<String> iterator = localEntries.keySet().iterator();
+        while (toRemove-- > 0 && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static String dataKey(String paymentOrderId) {
+        // 数据与版本号使用相同的哈希标签，集群模式下落在同一个槽位
+        return DATA_KEY_PREFIX + "{" + paymentOrderId + "}";
+    }
+
+    private static String versionKey(String paymentOrderId) {
+        return VERSION_KEY_PREFIX + "{" + paymentOrderId + "}";
+    }
+
+    /**
+     * 本地缓存条目，value为null表示墓碑
+     */
+    private static final class LocalEntry {
+        final long version;
+        final PaymentOrderResponse value;
+        final long expireAtMillis;
+
+        LocalEntry(long version, PaymentOrderResponse value, long expireAtMillis) {
+            this.version = version;
+            this.value = value;
+            this.expireAtMillis = expireAtMillis;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.mall.payment.callback;
+
+import com.mall.payment.dto.PaymentCallbackInfo;
+import com.mall.payment.dto.response.PaymentOrderResponse;
+import com.mall.payment.enums.PaymentMethod;
+import com.mall.payment.enums.PaymentStatus;
+import com.mall.payment.enums.RefundStatus;
+import com.mall.payment.service.PaymentService;
+import com.mall.payment.service.RefundChannelService;
+import com.mall.payment.service.RefundService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 支付回调收件箱
+ * 回调接口验签后只把回调写入收件箱即应答渠道，订单状态由工作线程池异步推进
+ *
+ * <p>幂等保证：</p>
+ * <ul>
+ *   <li>按渠道 + 回调类型 + 渠道交易号 + 目标状态唯一入队，渠道重试只会命中唯一索引，不会重复入队</li>
+ *   <li>工作线程通过条件更新抢占记录（PENDING → PROCESSING），多实例和补偿任务并发时同一记录只处理一次</li>
+ *   <li>订单已支付成功后到达的失败回调直接忽略，不会覆盖成功状态</li>
+ * </ul>
+ *
+ * <p>可靠性：</p>
+ * <ul>
+ *   <li>记录先落库再应答，进程退出时未处理的记录由补偿任务继续处理</li>
+ *   <li>处理失败按指数退避重试，超过最大次数后置为FAILED等待人工处理</li>
+ *   <li>处理中超过租约时间的记录视为实例崩溃遗留，重新置为待处理</li>
+ * </ul>
+ *
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Component
+public class CallbackInbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(CallbackInbox.class);
+
+    public static final String TYPE_PAYMENT = "PAYMENT";
+
+    public static final String TYPE_REFUND = "REFUND";
+
+    private static final String STATUS_PENDING = "PENDING";
+
+    private static final String STATUS_PROCESSING = "PROCESSING";
+
+    private static final String STATUS_DONE = "DONE";
+
+    private static final String STATUS_FAILED = "FAILED";
+
+    /**
+     * 重复回调命中唯一索引时影响行数为0（ON DUPLICATE KEY UPDATE在found-rows模式下仍会返回1，无法区分）
+     */
+    private static final String INSERT_SQL = "INSERT IGNORE INTO payment_callback_inbox (id, channel, callback_type, trade_no, "
+            + "target_status, refund_order_id, amount, failure_reason, raw_data, status, attempts, next_attempt_at, "
+            + "created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, '" + STATUS_PENDING + "', 0, ?, ?, ?)";
+
+    private static final String CLAIM_SQL = "UPDATE payment_callback_inbox SET status = '" + STATUS_PROCESSING + "', "
+            + "attempts = attempts + 1, updated_at = ? WHERE id = ? AND status = '" + STATUS_PENDING + "'";
+
+    private static final String SELECT_SQL = "SELECT id, channel, callback_type, trade_no, target_status, "
+            + "refund_order_id, amount, failure_reason, raw_data, attempts FROM payment_callback_inbox WHERE id = ?";
+
+    private static final String COMPLETE_SQL = "UPDATE payment_callback_inbox SET status = ?, next_attempt_at = ?, "
+            + "last_error = ?, updated_at = ? WHERE id = ?";
+
+    private static final String PENDING_IDS_SQL = "SELECT id FROM payment_callback_inbox WHERE status = '"
+            + STATUS_PENDING + "' AND next_attempt_at <= ? ORDER BY next_attempt_at LIMIT ?";
+
+    private static final String RELEASE_STALE_SQL = "UPDATE payment_callback_inbox SET status = '" + STATUS_PENDING
+            + "', updated_at = ? WHERE status = '" + STATUS_PROCESSING + "' AND updated_at < ?";
+
+    private static final String PURGE_SQL = "DELETE FROM payment_callback_inbox WHERE status = '" + STATUS_DONE
+            + "' AND updated_at < ? LIMIT ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private RefundService refundService;
+
+    @Value("${payment.callback-inbox.worker-threads:8}")
+    private int workerThreads;
+
+    @Value("${payment.callback-inbox.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${payment.callback-inbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${payment.callback-inbox.retry-base-ms:5000}")
+    private long retryBaseMs;
+
+    @Value("${payment.callback-inbox.retry-max-ms:600000}")
+    private long retryMaxMs;
+
+    @Value("${payment.callback-inbox.lease-ms:300000}")
+    private long leaseMs;
+
+    @Value("${payment.callback-inbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${payment.callback-inbox.retention-days:30}")
+    private int retentionDays;
+
+    private ThreadPoolExecutor executor;
+
+    /**
+     * 已提交到线程池尚未处理完的记录，避免补偿任务重复提交
+     */
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workerThreads, workerThreads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "callback-inbox-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 未处理的记录仍为PENDING，处理中的记录租约到期后由补偿任务接管
+        executor.shutdownNow();
+    }
+
+    /**
+     * 支付回调入队
+     *
+     * @param channel 支付渠道
+     * @param info 已验签的回调信息
+     * @param targetStatus 回调通知的支付结果
+     * @return true表示新入队，false表示重复回调
+     */
+    public boolean enqueuePayment(PaymentMethod channel, PaymentCallbackInfo info, PaymentStatus targetStatus) {
+        return enqueue(channel, TYPE_PAYMENT, info.getThirdPartyOrderNo(), targetStatus.name(), null,
+                info.getActualAmount(), info.getFailureReason(), info.getRawData());
+    }
+
+    /**
+     * 退款回调入队
+     *
+     * @param channel 支付渠道
+     * @param info 已验签的退款回调信息
+     * @return true表示新入队，false表示重复回调
+     */
+    public boolean enqueueRefund(PaymentMethod channel, RefundChannelService.RefundCallbackInfo info) {
+        String tradeNo = StringUtils.hasText(info.getThirdPartyRefundNo())
+                ? info.getThirdPartyRefundNo() : info.getRefundOrderId();
+        RefundStatus targetStatus = info.getRefundStatus() == RefundStatus.SUCCESS ? RefundStatus.SUCCESS : RefundStatus.FAILED;
+        return enqueue(channel, TYPE_REFUND, tradeNo, targetStatus.name(), info.getRefundOrderId(),
+                info.getActualRefundAmount(), info.getFailureReason(), info.getOriginalData());
+    }
+
+    private boolean enqueue(PaymentMethod channel, String type, String tradeNo, String targetStatus,
+                            String refundOrderId, BigDecimal amount, String failureReason, String rawData) {
+        if (!StringUtils.hasText(tradeNo)) {
+            throw new IllegalArgumentException("回调缺少渠道交易号");
+        }
+        String id = UUID.randomUUID().toString();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int inserted = jdbcTemplate.update(INSERT_SQL, id, channel.name(), type, tradeNo, targetStatus, refundOrderId,
+                amount, truncate(failureReason), rawData, now, now, now);
+        if (inserted != 1) {
+            logger.info("重复回调，已忽略，渠道: {}, 类型: {}, 交易号: {}, 目标状态: {}", channel, type, tradeNo, targetStatus);
+            return false;
+        }
+        dispatch(id);
+        return true;
+    }
+
+    /**
+     * 补偿任务：接管租约过期的记录，并提交到期的待处理记录
+     */
+    @Scheduled(fixedDelayString = "${payment.callback-inbox.poll-interval-ms:5000}")
+    public void pollPending() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            int released = jdbcTemplate.update(RELEASE_STALE_SQL, Timestamp.valueOf(now),
+                    Timestamp.valueOf(now.minusNanos(leaseMs * 1_000_000L)));
+            if (released > 0) {
+                logger.warn("回调收件箱接管租约过期的记录: {}", released);
+            }
+
+            int capacity = Math.min(batchSize, executor.getQueue().remainingCapacity());
+            if (capacity <= 0) {
+                return;
+            }
+            List<String> ids = jdbcTemplate.queryForList(PENDING_IDS_SQL, String.class, Timestamp.valueOf(now), capacity);
+            for (String id : ids) {
+                dispatch(id);
+            }
+        } catch (Exception e) {
+            logger.error("回调收件箱补偿任务异常", e);
+        }
+    }
+
+    /**
+     * 清理超过保留期的已完成记录
+     * 每天凌晨3点30分执行
+     */
+    @Scheduled(cron = "0 30 3 * * ?")
+    public void purgeCompleted() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minusDays(retentionDays));
+        long purged = 0;
+        try {
+            int deleted;
+            do {
+                deleted = jdbcTemplate.update(PURGE_SQL, cutoff, batchSize);
+                purged += deleted;
+            } while (deleted >= batchSize);
+            logger.info("回调收件箱清理完成，删除记录数: {}", purged);
+        } catch (Exception e) {
+            logger.error("回调收件箱清理异常，已删除记录数: {}", purged, e);
+        }
+    }
+
+    private void dispatch(String id) {
+        if (!inFlight.add(id)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    process(id);
+                } finally {
+                    inFlight.remove(id);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 线程池已满，记录保持PENDING，由补偿任务稍后提交
+            inFlight.remove(id);
+            logger.warn("回调处理线程池已满，记录ID: {} 等待补偿任务处理", id);
+        }
+    }
+
+    private void process(String id) {
+        LocalDateTime now = LocalDateTime.now();
+        if (jdbcTemplate.update(CLAIM_SQL, Timestamp.valueOf(now), id) != 1) {
+            return;
+        }
+        InboxEntry entry = jdbcTemplate.queryForObject(SELECT_SQL, ENTRY_MAPPER, id);
+        String error;
+        try {
+            error = TYPE_PAYMENT.equals(entry.type) ? applyPayment(entry) : applyRefund(entry);
+        } catch (Exception e) {
+            logger.error("处理回调记录异常，记录ID: {}", id, e);
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+
+        Timestamp updatedAt = Timestamp.valueOf(LocalDateTime.now());
+        if (error == null) {
+            jdbcTemplate.update(COMPLETE_SQL, STATUS_DONE, updatedAt, null, updatedAt, id);
+            return;
+        }
+        if (entry.attempts >= maxAttempts) {
+            logger.error("回调记录处理失败次数已达上限，记录ID: {}, 渠道: {}, 交易号: {}, 原因: {}",
+                    id, entry.channel, entry.tradeNo, error);
+            jdbcTemplate.update(COMPLETE_SQL, STATUS_FAILED, updatedAt, truncate(error), updatedAt, id);
+            return;
+        }
+        long delay = Math.min(retryMaxMs, retryBaseMs << Math.min(entry.attempts - 1, 20));
+        Timestamp nextAttemptAt = Timestamp.valueOf(LocalDateTime.now().plusNanos(delay * 1_000_000L));
+        logger.warn("回调记录处理失败，稍后重试，记录ID: {}, 第{}次, 原因: {}", id, entry.attempts, error);
+        jdbcTemplate.update(COMPLETE_SQL, STATUS_PENDING, nextAttemptAt, truncate(error), updatedAt, id);
+    }
+
+    /**
+     * 推进支付订单状态
+     *
+     * @return 失败原因，成功时为null
+     */
+    private String applyPayment(InboxEntry entry) {
+        PaymentOrderResponse paymentOrder = paymentService.getPaymentOrderByThirdPartyOrderNo(entry.tradeNo);
+        if (paymentOrder == null) {
+            return "未找到对应的支付订单";
+        }
+
+        boolean processed;
+        if (PaymentStatus.SUCCESS.name().equals(entry.targetStatus)) {
+            processed = paymentService.handlePaymentSuccess(paymentOrder.getId(), entry.tradeNo, entry.amount, entry.rawData);
+        } else {
+            // 已支付订单的失败回调由 handlePaymentFailure 在锁内判断并忽略
+            processed = paymentService.handlePaymentFailure(paymentOrder.getId(), entry.failureReason, entry.rawData);
+        }
+        logger.info("处理{}支付回调，支付订单ID: {}, 第三方订单号: {}, 目标状态: {}, 处理结果: {}", entry.channel,
+                paymentOrder.getId(), entry.tradeNo, entry.targetStatus, processed ? "成功" : "失败");
+        return processed ? null : "支付回调处理失败";
+    }
+
+    /**
+     * 推进退款订单状态
+     *
+     * @return 失败原因，成功时为null
+     */
+    private String applyRefund(InboxEntry entry) {
+        boolean processed;
+        if (RefundStatus.SUCCESS.name().equals(entry.targetStatus)) {
+            processed = refundService.handleRefundSuccess(entry.refundOrderId, entry.tradeNo, entry.amount, entry.rawData);
+        } else {
+            processed = refundService.handleRefundFailure(entry.refundOrderId, entry.failureReason, entry.rawData);
+        }
+        logger.info("处理{}退款回调，退款订单ID: {}, 目标状态: {}, 处理结果: {}", entry.channel,
+                entry.refundOrderId, entry.targetStatus, processed ? "成功" : "失败");
+        return processed ? null : "退款回调处理失败";
+    }
+
+    private static String truncate(String text) {
+        return text != null && text.length() > 500 ? text.substring(0, 500) : text;
+    }
+
+    private static final RowMapper<InboxEntry> ENTRY_MAPPER = (rs, rowNum) -> {
+        InboxEntry entry = new InboxEntry();
+        entry.id = rs.getString("id");
+        entry.channel = rs.getString("channel");
+        entry.type = rs.getString("callback_type");
+        entry.tradeNo = rs.getString("trade_no");
+        entry.targetStatus = rs.getString("target_status");
+        entry.refundOrderId = rs.getString("refund_order_id");
+        entry.amount = rs.getBigDecimal("amount");
+        entry.failureReason = rs.getString("failure_reason");
+        entry.rawData = rs.getString("raw_data");
+        entry.attempts = rs.getInt("attempts");
+        return entry;
+    };
+
+    /**
+     * 收件箱记录
+     */
+    private static final class InboxEntry {
+        String id;
+        String channel;
+        String type;
+        String tradeNo;
+        String targetStatus;
+        String refundOrderId;
+        BigDecimal amount;
+        String failureReason;
+        String rawData;
+        int attempts;
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
@@ -26,13 +27,15 @@ import org.springframework.data.redis.serializer.StringRedisSerializer;
  *   <li>分布式锁：防止重复支付的并发控制</li>
  *   <li>会话存储：存储用户支付会话信息</li>
  *   <li>计数器：支付统计和限流计数</li>
+ *   <li>发布订阅：风控规则变更等跨实例通知</li>
  * </ul>
  * 
  * @author lingbai
- * @version 1.2
+ * @version 1.3
  * @since 2025-11-01
  * 
  * 修改日志：
+ * V1.3 2026-10-19：新增Redis消息监听容器，用于跨实例通知
  * V1.2 2025-11-01：完善Javadoc注释，增加配置功能和使用场景说明
  * V1.1 2024-12-20：优化序列化配置，提升性能
  * V1.0 2024-12-01：初始版本，基础Redis配置
@@ -69,4 +72,18 @@ public class RedisConfig {
         template.afterPropertiesSet();
         return template;
     }
-}
\ No newline at end of file
+
+    /**
+     * 配置Redis消息监听容器
+     * 各组件自行注册监听的频道
+     * 
+     * @param connectionFactory Redis连接工厂
+     * @return 消息监听容器
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+}
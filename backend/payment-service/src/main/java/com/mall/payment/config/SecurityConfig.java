@@ -1,5 +1,6 @@
 package com.mall.payment.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
@@ -21,8 +22,13 @@ import java.util.Arrays;
  * 配置支付服务的安全策略和权限控制
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.1
  * @since 2024-12-01
+ * 
+ * <p>修改日志：</p>
+ * <ul>
+ *   <li>V1.1 2026-10-19：放行异步结果分派，支持支付状态长轮询接口</li>
+ * </ul>
  */
 @Configuration
 @EnableWebSecurity
@@ -56,6 +62,9 @@ public class SecurityConfig {
             
             // 配置URL访问权限
             .authorizeHttpRequests(authz -> authz
+                // 异步结果分派（长轮询）沿用原请求的鉴权结果
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                 // 公开接口 - 不需要认证
                 .requestMatchers(
                     "/api/payment/health",           // 健康检查
@@ -1,18 +1,16 @@
 package com.mall.payment.controller;
 
+import com.mall.payment.callback.CallbackInbox;
 import com.mall.payment.dto.PaymentCallbackInfo;
-import com.mall.payment.dto.response.PaymentOrderResponse;
 import com.mall.payment.enums.PaymentMethod;
 import com.mall.payment.enums.PaymentStatus;
-import com.mall.payment.enums.RefundStatus;
 import com.mall.payment.service.PaymentChannelService;
-import com.mall.payment.service.PaymentService;
 import com.mall.payment.service.RefundChannelService;
-import com.mall.payment.service.RefundService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -46,13 +44,13 @@ import java.util.Map;
  *   <li>提取回调参数和签名信息</li>
  *   <li>验证回调签名的有效性</li>
  *   <li>解析回调数据获取订单状态</li>
- *   <li>查找对应的本地支付订单</li>
- *   <li>更新订单状态并处理业务逻辑</li>
+ *   <li>按渠道交易号去重写入回调收件箱</li>
  *   <li>返回符合第三方要求的响应格式</li>
+ *   <li>工作线程查找本地订单，更新订单状态并处理业务逻辑</li>
  * </ol>
  * 
  * @author lingbai
- * @version 1.2
+ * @version 1.3
  * @since 2025-11-01
  * 
  * <p>修改日志：</p>
@@ -60,6 +58,7 @@ import java.util.Map;
  *   <li>V1.0 2024-12-01：初始版本，实现基础回调处理功能</li>
  *   <li>V1.1 2025-01-20：增加退款回调处理和签名验证增强</li>
  *   <li>V1.2 2025-11-01：完善Javadoc注释，优化异常处理</li>
+ *   <li>V1.3 2026-10-19：回调验签后写入收件箱即应答，状态推进改由CallbackInbox工作线程异步执行</li>
  * </ul>
  */
 @RestController
@@ -68,17 +67,14 @@ public class PaymentCallbackController {
 
     private static final Logger logger = LoggerFactory.getLogger(PaymentCallbackController.class);
 
-    @Autowired
-    private PaymentService paymentService;
-
     @Autowired
     private PaymentChannelService paymentChannelService;
 
     @Autowired
-    private RefundService refundService;
+    private RefundChannelService refundChannelService;
 
     @Autowired
-    private RefundChannelService refundChannelService;
+    private CallbackInbox callbackInbox;
 
     /**
      * 支付宝支付回调处理
@@ -89,15 +85,14 @@ public class PaymentCallbackController {
      *   <li>提取支付宝回调参数</li>
      *   <li>验证支付宝回调签名</li>
      *   <li>解析回调数据获取支付状态</li>
-     *   <li>根据第三方订单号查找本地支付订单</li>
-     *   <li>根据支付状态更新订单并处理业务逻辑</li>
-     *   <li>返回支付宝要求的响应格式</li>
+     *   <li>按第三方订单号去重写入回调收件箱</li>
+     *   <li>返回支付宝要求的响应格式，订单由工作线程异步更新</li>
      * </ol>
      * 
      * <p>响应格式：</p>
      * <ul>
-     *   <li>成功：返回"success"字符串</li>
-     *   <li>失败：返回"fail"字符串</li>
+     *   <li>成功：返回"success"字符串（已受理，包括重复回调）</li>
+     *   <li>失败：返回"fail"字符串（验签、解析或入队失败，渠道会重试）</li>
      * </ul>
      * 
      * @param request HTTP请求对象，包含支付宝回调的所有参数和签名信息
@@ -131,38 +126,18 @@ public class PaymentCallbackController {
                 return ResponseEntity.badRequest().body("fail");
             }
 
-            // 通过第三方订单号查找支付订单
-            PaymentOrderResponse paymentOrder = paymentService.getPaymentOrderByThirdPartyOrderNo(callbackInfo.getThirdPartyOrderNo());
-            if (paymentOrder == null) {
-                logger.warn("未找到对应的支付订单，第三方订单号: {}", callbackInfo.getThirdPartyOrderNo());
+            if (!StringUtils.hasText(callbackInfo.getThirdPartyOrderNo())) {
+                logger.warn("支付宝支付回调缺少第三方订单号");
                 return ResponseEntity.badRequest().body("fail");
             }
 
-            // 处理支付回调
-            boolean processed = false;
-            if (callbackInfo.getStatus() == PaymentStatus.SUCCESS) {
-                // 支付成功
-                processed = paymentService.handlePaymentSuccess(
-                    paymentOrder.getId(),
-                    callbackInfo.getThirdPartyOrderNo(),
-                    callbackInfo.getActualAmount(),
-                    callbackInfo.getRawData()
-                );
-                logger.info("处理支付宝支付成功回调，支付订单ID: {}, 第三方订单号: {}, 处理结果: {}", 
-                           paymentOrder.getId(), callbackInfo.getThirdPartyOrderNo(), processed ? "成功" : "失败");
-            } else {
-                // 支付失败
-                processed = paymentService.handlePaymentFailure(
-                    paymentOrder.getId(),
-                    callbackInfo.getFailureReason(),
-                    callbackInfo.getRawData()
-                );
-                logger.info("处理支付宝支付失败回调，支付订单ID: {}, 第三方订单号: {}, 失败原因: {}, 处理结果: {}", 
-                           paymentOrder.getId(), callbackInfo.getThirdPartyOrderNo(), callbackInfo.getFailureReason(), 
-                           processed ? "成功" : "失败");
-            }
+            // 写入回调收件箱后立即应答，订单状态由工作线程推进；重复回调同样应答成功
+            PaymentStatus targetStatus = callbackInfo.getStatus() == PaymentStatus.SUCCESS ? PaymentStatus.SUCCESS : PaymentStatus.FAILED;
+            boolean accepted = callbackInbox.enqueuePayment(PaymentMethod.ALIPAY, callbackInfo, targetStatus);
+            logger.info("支付宝支付回调已受理，第三方订单号: {}, 目标状态: {}, 是否新回调: {}",
+                       callbackInfo.getThirdPartyOrderNo(), targetStatus, accepted);
 
-            return processed ? ResponseEntity.ok("success") : ResponseEntity.badRequest().body("fail");
+            return ResponseEntity.ok("success");
 
         } catch (Exception e) {
             logger.error("处理支付宝支付回调异常", e);
@@ -203,40 +178,18 @@ public class PaymentCallbackController {
                 return ResponseEntity.badRequest().body(buildWechatFailResponse("数据解析失败"));
             }
 
-            // 通过第三方订单号查找支付订单
-            PaymentOrderResponse paymentOrder = paymentService.getPaymentOrderByThirdPartyOrderNo(callbackInfo.getThirdPartyOrderNo());
-            if (paymentOrder == null) {
-                logger.warn("未找到对应的支付订单，第三方订单号: {}", callbackInfo.getThirdPartyOrderNo());
-                return ResponseEntity.badRequest().body(buildWechatFailResponse("订单不存在"));
+            if (!StringUtils.hasText(callbackInfo.getThirdPartyOrderNo())) {
+                logger.warn("微信支付回调缺少第三方订单号");
+                return ResponseEntity.badRequest().body(buildWechatFailResponse("缺少交易号"));
             }
 
-            // 处理支付回调
-            boolean processed = false;
-            if ("SUCCESS".equals(callbackInfo.getPaymentStatus())) {
-                // 支付成功
-                processed = paymentService.handlePaymentSuccess(
-                    paymentOrder.getId(),
-                    callbackInfo.getThirdPartyOrderNo(),
-                    callbackInfo.getActualAmount(),
-                    callbackInfo.getRawData()
-                );
-                logger.info("处理微信支付成功回调，支付订单ID: {}, 第三方订单号: {}, 处理结果: {}", 
-                           paymentOrder.getId(), callbackInfo.getThirdPartyOrderNo(), processed ? "成功" : "失败");
-            } else {
-                // 支付失败
-                processed = paymentService.handlePaymentFailure(
-                    paymentOrder.getId(),
-                    callbackInfo.getFailureReason(),
-                    callbackInfo.getRawData()
-                );
-                logger.info("处理微信支付失败回调，支付订单ID: {}, 第三方订单号: {}, 失败原因: {}, 处理结果: {}", 
-                           paymentOrder.getId(), callbackInfo.getThirdPartyOrderNo(), callbackInfo.getFailureReason(), 
-                           processed ? "成功" : "失败");
-            }
+            // 写入回调收件箱后立即应答，订单状态由工作线程推进；重复回调同样应答成功
+            PaymentStatus targetStatus = "SUCCESS".equals(callbackInfo.getPaymentStatus()) ? PaymentStatus.SUCCESS : PaymentStatus.FAILED;
+            boolean accepted = callbackInbox.enqueuePayment(PaymentMethod.WECHAT, callbackInfo, targetStatus);
+            logger.info("微信支付回调已受理，第三方订单号: {}, 目标状态: {}, 是否新回调: {}",
+                       callbackInfo.getThirdPartyOrderNo(), targetStatus, accepted);
 
-            return processed ? 
-                ResponseEntity.ok(buildWechatSuccessResponse()) : 
-                ResponseEntity.badRequest().body(buildWechatFailResponse("处理失败"));
+            return ResponseEntity.ok(buildWechatSuccessResponse());
 
         } catch (Exception e) {
             logger.error("处理微信支付回调异常", e);
@@ -277,38 +230,18 @@ public class PaymentCallbackController {
                 return ResponseEntity.badRequest().body("FAIL");
             }
 
-            // 通过第三方订单号查找支付订单
-            PaymentOrderResponse paymentOrder = paymentService.getPaymentOrderByThirdPartyOrderNo(callbackInfo.getThirdPartyOrderNo());
-            if (paymentOrder == null) {
-                logger.warn("未找到对应的支付订单，第三方订单号: {}", callbackInfo.getThirdPartyOrderNo());
+            if (!StringUtils.hasText(callbackInfo.getThirdPartyOrderNo())) {
+                logger.warn("银行卡支付回调缺少第三方订单号");
                 return ResponseEntity.badRequest().body("FAIL");
             }
 
-            // 处理支付回调
-            boolean processed = false;
-            if (PaymentStatus.SUCCESS.equals(callbackInfo.getStatus())) {
-                // 支付成功（银行返回码00表示成功）
-                processed = paymentService.handlePaymentSuccess(
-                    paymentOrder.getId(),
-                    callbackInfo.getThirdPartyOrderNo(),
-                    callbackInfo.getActualAmount(),
-                    callbackInfo.getRawData()
-                );
-                logger.info("处理银行卡支付成功回调，支付订单ID: {}, 第三方订单号: {}, 处理结果: {}", 
-                           paymentOrder.getId(), callbackInfo.getThirdPartyOrderNo(), processed ? "成功" : "失败");
-            } else {
-                // 支付失败
-                processed = paymentService.handlePaymentFailure(
-                    paymentOrder.getId(),
-                    callbackInfo.getFailureReason(),
-                    callbackInfo.getRawData()
-                );
-                logger.info("处理银行卡支付失败回调，支付订单ID: {}, 第三方订单号: {}, 失败原因: {}, 处理结果: {}", 
-                           paymentOrder.getId(), callbackInfo.getThirdPartyOrderNo(), callbackInfo.getFailureReason(), 
-                           processed ? "成功" : "失败");
-            }
+            // 写入回调收件箱后立即应答，订单状态由工作线程推进；重复回调同样应答成功
+            PaymentStatus targetStatus = PaymentStatus.SUCCESS.equals(callbackInfo.getStatus()) ? PaymentStatus.SUCCESS : PaymentStatus.FAILED;
+            boolean accepted = callbackInbox.enqueuePayment(PaymentMethod.BANK_CARD, callbackInfo, targetStatus);
+            logger.info("银行卡支付回调已受理，第三方订单号: {}, 目标状态: {}, 是否新回调: {}",
+                       callbackInfo.getThirdPartyOrderNo(), targetStatus, accepted);
 
-            return processed ? ResponseEntity.ok("SUCCESS") : ResponseEntity.badRequest().body("FAIL");
+            return ResponseEntity.ok("SUCCESS");
 
         } catch (Exception e) {
             logger.error("处理银行卡支付回调异常", e);
@@ -351,31 +284,12 @@ public class PaymentCallbackController {
                 return ResponseEntity.badRequest().body("fail");
             }
 
-            // 处理退款回调
-            boolean processed = false;
-            if (callbackInfo.getRefundStatus() == RefundStatus.SUCCESS) {
-                // 退款成功
-                processed = refundService.handleRefundSuccess(
-                    callbackInfo.getRefundOrderId(),
-                    callbackInfo.getThirdPartyRefundNo(),
-                    callbackInfo.getActualRefundAmount(),
-                    callbackInfo.getOriginalData()
-                );
-                logger.info("处理支付宝退款成功回调，退款订单ID: {}, 处理结果: {}", 
-                           callbackInfo.getRefundOrderId(), processed ? "成功" : "失败");
-            } else {
-                // 退款失败
-                processed = refundService.handleRefundFailure(
-                    callbackInfo.getRefundOrderId(),
-                    callbackInfo.getFailureReason(),
-                    callbackInfo.getOriginalData()
-                );
-                logger.info("处理支付宝退款失败回调，退款订单ID: {}, 失败原因: {}, 处理结果: {}", 
-                           callbackInfo.getRefundOrderId(), callbackInfo.getFailureReason(), 
-                           processed ? "成功" : "失败");
-            }
+            // 写入回调收件箱后立即应答，退款状态由工作线程推进；重复回调同样应答成功
+            boolean accepted = callbackInbox.enqueueRefund(PaymentMethod.ALIPAY, callbackInfo);
+            logger.info("支付宝退款回调已受理，退款订单ID: {}, 退款状态: {}, 是否新回调: {}",
+                       callbackInfo.getRefundOrderId(), callbackInfo.getRefundStatus(), accepted);
 
-            return processed ? ResponseEntity.ok("success") : ResponseEntity.badRequest().body("fail");
+            return ResponseEntity.ok("success");
 
         } catch (Exception e) {
             logger.error("处理支付宝退款回调异常", e);
@@ -417,33 +331,12 @@ public class PaymentCallbackController {
                 return ResponseEntity.badRequest().body(buildWechatFailResponse("数据解析失败"));
             }
 
-            // 处理退款回调
-            boolean processed = false;
-            if (callbackInfo.getRefundStatus() == RefundStatus.SUCCESS) {
-                // 退款成功
-                processed = refundService.handleRefundSuccess(
-                    callbackInfo.getRefundOrderId(),
-                    callbackInfo.getThirdPartyRefundNo(),
-                    callbackInfo.getActualRefundAmount(),
-                    callbackInfo.getOriginalData()
-                );
-                logger.info("处理微信退款成功回调，退款订单ID: {}, 处理结果: {}", 
-                           callbackInfo.getRefundOrderId(), processed ? "成功" : "失败");
-            } else {
-                // 退款失败
-                processed = refundService.handleRefundFailure(
-                    callbackInfo.getRefundOrderId(),
-                    callbackInfo.getFailureReason(),
-                    callbackInfo.getOriginalData()
-                );
-                logger.info("处理微信退款失败回调，退款订单ID: {}, 失败原因: {}, 处理结果: {}", 
-                           callbackInfo.getRefundOrderId(), callbackInfo.getFailureReason(), 
-                           processed ? "成功" : "失败");
-            }
+            // 写入回调收件箱后立即应答，退款状态由工作线程推进；重复回调同样应答成功
+            boolean accepted = callbackInbox.enqueueRefund(PaymentMethod.WECHAT, callbackInfo);
+            logger.info("微信退款回调已受理，退款订单ID: {}, 退款状态: {}, 是否新回调: {}",
+                       callbackInfo.getRefundOrderId(), callbackInfo.getRefundStatus(), accepted);
 
-            return processed ? 
-                ResponseEntity.ok(buildWechatSuccessResponse()) : 
-                ResponseEntity.badRequest().body(buildWechatFailResponse("处理失败"));
+            return ResponseEntity.ok(buildWechatSuccessResponse());
 
         } catch (Exception e) {
             logger.error("处理微信退款回调异常", e);
@@ -486,31 +379,12 @@ public class PaymentCallbackController {
                 return ResponseEntity.badRequest().body("FAIL");
             }
 
-            // 处理退款回调
-            boolean processed = false;
-            if (callbackInfo.getRefundStatus() == RefundStatus.SUCCESS) {
-                // 退款成功
-                processed = refundService.handleRefundSuccess(
-                    callbackInfo.getRefundOrderId(),
-                    callbackInfo.getThirdPartyRefundNo(),
-                    callbackInfo.getActualRefundAmount(),
-                    callbackInfo.getOriginalData()
-                );
-                logger.info("处理银行卡退款成功回调，退款订单ID: {}, 处理结果: {}", 
-                           callbackInfo.getRefundOrderId(), processed ? "成功" : "失败");
-            } else {
-                // 退款失败
-                processed = refundService.handleRefundFailure(
-                    callbackInfo.getRefundOrderId(),
-                    callbackInfo.getFailureReason(),
-                    callbackInfo.getOriginalData()
-                );
-                logger.info("处理银行卡退款失败回调，退款订单ID: {}, 失败原因: {}, 处理结果: {}", 
-                           callbackInfo.getRefundOrderId(), callbackInfo.getFailureReason(), 
-                           processed ? "成功" : "失败");
-            }
+            // 写入回调收件箱后立即应答，退款状态由工作线程推进；重复回调同样应答成功
+            boolean accepted = callbackInbox.enqueueRefund(PaymentMethod.BANK_CARD, callbackInfo);
+            logger.info("银行卡退款回调已受理，退款订单ID: {}, 退款状态: {}, 是否新回调: {}",
+                       callbackInfo.getRefundOrderId(), callbackInfo.getRefundStatus(), accepted);
 
-            return processed ? ResponseEntity.ok("SUCCESS") : ResponseEntity.badRequest().body("FAIL");
+            return ResponseEntity.ok("SUCCESS");
 
         } catch (Exception e) {
             logger.error("处理银行卡退款回调异常", e);
@@ -6,15 +6,18 @@ import com.mall.payment.dto.request.PaymentQueryRequest;
 import com.mall.payment.dto.response.PaymentOrderResponse;
 import com.mall.payment.dto.response.PageResponse;
 import com.mall.payment.enums.PaymentStatus;
+import com.mall.payment.notify.PaymentStatusNotifier;
 import com.mall.payment.service.PaymentService;
 import com.mall.payment.util.SecurityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
@@ -45,7 +48,7 @@ import java.util.Map;
  * </ul>
  * 
  * @author lingbai
- * @version 1.2
+ * @version 1.3
  * @since 2025-11-01
  * 
  * <p>修改日志：</p>
@@ -53,6 +56,7 @@ import java.util.Map;
  *   <li>V1.0 2024-12-01：初始版本，实现基础支付功能</li>
  *   <li>V1.1 2025-01-15：增加支付重试和状态查询功能</li>
  *   <li>V1.2 2025-11-01：完善Javadoc注释，增强权限控制</li>
+ *   <li>V1.3 2026-10-19：增加支付状态长轮询接口，替代客户端反复查询</li>
  * </ul>
  */
 @RestController
@@ -65,6 +69,12 @@ public class PaymentController {
     @Autowired
     private PaymentService paymentService;
 
+    @Autowired
+    private PaymentStatusNotifier statusNotifier;
+
+    @Value("${payment.status-notify.max-wait-ms:30000}")
+    private long maxStatusWaitMs;
+
     /**
      * 创建支付订单
      * 根据业务订单信息创建支付订单，返回支付订单详情
@@ -403,6 +413,65 @@ public class PaymentController {
         }
     }
 
+    /**
+     * 等待支付状态变更（长轮询）
+     * 订单状态与客户端已知状态不同或已是终态时立即返回；否则挂起请求，直到收到状态变更通知或超时。
+     * 只读取本地缓存的订单状态，不调用第三方渠道，客户端收到响应后可立即发起下一次等待
+     * 
+     * @param paymentOrderId 支付订单ID
+     * @param knownStatus 客户端已知的状态，为空时只在终态时立即返回
+     * @param timeoutMs 最长等待时间（毫秒），不超过服务端上限
+     * @return 当前支付状态，changed表示是否与已知状态不同
+     */
+    @GetMapping("/orders/{paymentOrderId}/status/wait")
+    @RequirePermission(value = {"USER", "ADMIN"})
+    public DeferredResult<ResponseEntity<Map<String, Object>>> waitPaymentStatus(
+            @PathVariable @NotBlank(message = "支付订单ID不能为空") String paymentOrderId,
+            @RequestParam(required = false) PaymentStatus knownStatus,
+            @RequestParam(defaultValue = "25000") long timeoutMs) {
+
+        long timeout = Math.max(1000, Math.min(timeoutMs, maxStatusWaitMs));
+        DeferredResult<ResponseEntity<Map<String, Object>>> deferred = new DeferredResult<>(timeout);
+
+        try {
+            // 先订阅再读取当前状态，读取期间发生的变更不会丢失
+            PaymentStatusNotifier.Subscription subscription = statusNotifier.subscribe(paymentOrderId,
+                    status -> deferred.setResult(ResponseEntity.ok(createStatusResponse(paymentOrderId, status, knownStatus))));
+
+            PaymentOrderResponse order = paymentService.getPaymentOrder(paymentOrderId);
+            if (order == null) {
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+                deferred.setResult(ResponseEntity.notFound().build());
+                return deferred;
+            }
+
+            PaymentStatus current = order.getStatus();
+            if (subscription == null || current.isFinalStatus() || (knownStatus != null && current != knownStatus)) {
+                // 等待者已满时直接返回当前状态，客户端退化为普通轮询
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+                deferred.setResult(ResponseEntity.ok(createStatusResponse(paymentOrderId, current, knownStatus)));
+                return deferred;
+            }
+
+            deferred.onTimeout(() -> {
+                // 兜底通知丢失：超时时再读取一次缓存中的状态
+                PaymentOrderResponse latest = paymentService.getPaymentOrder(paymentOrderId);
+                PaymentStatus status = latest != null ? latest.getStatus() : current;
+                deferred.setResult(ResponseEntity.ok(createStatusResponse(paymentOrderId, status, knownStatus)));
+            });
+            deferred.onCompletion(subscription::cancel);
+
+        } catch (Exception e) {
+            logger.error("等待支付状态异常，支付订单ID: {}", paymentOrderId, e);
+            deferred.setResult(ResponseEntity.internalServerError().body(createErrorResponse("系统异常", "查询支付状态失败")));
+        }
+        return deferred;
+    }
+
     /**
      * 重试失败的支付订单
      * 对于支付失败但可以重试的订单，重新发起支付
@@ -514,6 +583,17 @@ public class PaymentController {
         return ip;
     }
 
+    /**
+     * 创建支付状态响应
+     */
+    private Map<String, Object> createStatusResponse(String paymentOrderId, PaymentStatus status, PaymentStatus knownStatus) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("data", Map.of("paymentOrderId", paymentOrderId, "status", status,
+                "changed", knownStatus != null && status != knownStatus));
+        return result;
+    }
+
     /**
      * 创建错误响应
      */
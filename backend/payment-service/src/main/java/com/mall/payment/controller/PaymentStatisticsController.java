@@ -389,6 +389,32 @@ public class PaymentStatisticsController {
         }
     }
 
+    /**
+     * 回填用户首次支付时间
+     * 
+     * @return 回填结果
+     */
+    @PostMapping("/user/first-payment/rebuild")
+    @RequirePermission(value = {"ADMIN"})
+    public ResponseEntity<Map<String, Object>> rebuildUserFirstPayments() {
+        logger.info("回填用户首次支付时间");
+        
+        try {
+            long processedUsers = statisticsService.rebuildUserFirstPayments();
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", processedUsers >= 0);
+            response.put("processedUsers", processedUsers);
+            response.put("message", processedUsers >= 0 ? "用户首次支付时间回填成功" : "回填任务正在执行中");
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            logger.error("回填用户首次支付时间异常", e);
+            return createErrorResponse("回填用户首次支付时间失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 导出统计报表
      * 
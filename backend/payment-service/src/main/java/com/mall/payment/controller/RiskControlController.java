@@ -30,8 +30,13 @@ import java.util.Map;
  * 提供风控规则和风控记录的管理接口
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.1
  * @since 2024-12-01
+ * 
+ * <p>修改日志：</p>
+ * <ul>
+ *   <li>V1.1 2026-10-19：新增审核队列游标分页、领取和释放接口</li>
+ * </ul>
  */
 @RestController
 @RequestMapping("/api/risk")
@@ -215,6 +220,108 @@ public class RiskControlController {
         }
     }
 
+    /**
+     * 按游标查询待审核的风控记录
+     * 翻页时传入上一页返回的 nextCreatedAt 和 nextRecordId，深翻页不会变慢
+     * 
+     * @param afterCreatedAt 上一页最后一条的创建时间，首页不传
+     * @param afterRecordId 上一页最后一条的记录ID，首页不传
+     * @param size 页大小
+     * @return 待审核的风控记录和下一页游标
+     */
+    @GetMapping("/records/review-queue")
+    @RequirePermission(value = {"ADMIN"})
+    public ResponseEntity<Map<String, Object>> getReviewQueue(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterCreatedAt,
+            @RequestParam(required = false) String afterRecordId,
+            @RequestParam(defaultValue = "20") @Min(1) int size) {
+        
+        logger.info("按游标查询待审核的风控记录，游标: {} / {}", afterCreatedAt, afterRecordId);
+        
+        try {
+            List<RiskRecord> records = riskControlService.getPendingReviewRecords(afterCreatedAt, afterRecordId, size);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "查询成功");
+            response.put("data", records);
+            response.put("pageSize", size);
+            response.put("hasMore", records.size() == size);
+            if (!records.isEmpty()) {
+                RiskRecord last = records.get(records.size() - 1);
+                response.put("nextCreatedAt", last.getCreatedAt());
+                response.put("nextRecordId", last.getRecordId());
+            }
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            logger.error("按游标查询待审核风控记录异常", e);
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * 领取待审核的风控记录
+     * 
+     * @param reviewer 审核人
+     * @param size 领取数量
+     * @return 领取到的风控记录
+     */
+    @PostMapping("/records/review-queue/claim")
+    @RequirePermission(value = {"ADMIN"})
+    public ResponseEntity<Map<String, Object>> claimReviewRecords(
+            @RequestParam @NotBlank String reviewer,
+            @RequestParam(defaultValue = "10") @Min(1) int size) {
+        
+        logger.info("领取待审核风控记录，审核人: {}, 数量: {}", reviewer, size);
+        
+        try {
+            List<RiskRecord> records = riskControlService.claimReviewRecords(reviewer, size);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", records.isEmpty() ? "暂无待审核记录" : "领取成功");
+            response.put("data", records);
+            response.put("claimedCount", records.size());
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            logger.error("领取待审核风控记录异常", e);
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * 释放已领取但未审核的风控记录
+     * 
+     * @param request 释放请求
+     * @return 释放结果
+     */
+    @PostMapping("/records/review-queue/release")
+    @RequirePermission(value = {"ADMIN"})
+    public ResponseEntity<Map<String, Object>> releaseReviewRecords(
+            @RequestBody @Valid ReleaseRequest request) {
+        
+        logger.info("释放待审核风控记录，审核人: {}", request.getReviewer());
+        
+        try {
+            int releasedCount = riskControlService.releaseReviewRecords(request.getReviewer(), request.getRecordIds());
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "释放完成");
+            response.put("releasedCount", releasedCount);
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            logger.error("释放待审核风控记录异常", e);
+            return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
+        }
+    }
+
     /**
      * 审核风控记录
      * 
@@ -629,6 +736,33 @@ public class RiskControlController {
         }
     }
 
+    /**
+     * 审核记录释放请求
+     */
+    public static class ReleaseRequest {
+        @NotBlank
+        private String reviewer;
+        
+        @NotNull
+        private List<String> recordIds;
+
+        public String getReviewer() {
+            return reviewer;
+        }
+
+        public void setReviewer(String reviewer) {
+            this.reviewer = reviewer;
+        }
+
+        public List<String> getRecordIds() {
+            return recordIds;
+        }
+
+        public void setRecordIds(List<String> recordIds) {
+            this.recordIds = recordIds;
+        }
+    }
+
     /**
      * 误报标记请求
      */
@@ -11,8 +11,11 @@ import java.time.LocalDateTime;
  * 用于封装支付处理的结果信息
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.1
  * @since 2024-12-01
+ * 
+ * 修改日志：
+ * V1.1 2026-10-19：增加处理支付的收单端点名称，由调用方记录到支付订单
  */
 @Data
 public class PaymentResult {
@@ -62,6 +65,11 @@ public class PaymentResult {
      */
     private String rawData;
 
+    /**
+     * 处理支付的收单端点名称，未经路由的支付方式为空
+     */
+    private String channelEndpoint;
+
     /**
      * 构造函数
      */
@@ -0,0 +1,130 @@
+package com.mall.payment.entity;
+
+import lombok.Data;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 支付回调收件箱实体类
+ * 验签通过的渠道回调先写入收件箱再应答渠道，由后台工作线程按收件箱记录推进订单状态
+ *
+ * <p>数据表结构：</p>
+ * <ul>
+ *   <li>表名：payment_callback_inbox</li>
+ *   <li>主键：id（UUID，入队时生成）</li>
+ *   <li>唯一索引：channel + callback_type + trade_no + target_status，同一笔交易的同一结果只入队一次</li>
+ *   <li>索引：status + next_attempt_at，供补偿任务扫描待处理记录</li>
+ * </ul>
+ *
+ * <p>处理状态：</p>
+ * <ul>
+ *   <li>PENDING（待处理）→ PROCESSING（处理中）→ DONE（已完成）</li>
+ *   <li>处理失败时回到PENDING并推迟next_attempt_at，超过最大次数后置为FAILED</li>
+ * </ul>
+ *
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Data
+@Entity
+@Table(name = "payment_callback_inbox", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_callback_dedupe", columnNames = {"channel", "callback_type", "trade_no", "target_status"})
+}, indexes = {
+    @Index(name = "idx_status_next_attempt", columnList = "status, nextAttemptAt")
+})
+public class PaymentCallbackInbox {
+
+    /**
+     * 记录ID
+     */
+    @Id
+    @Column(name = "id", length = 36)
+    private String id;
+
+    /**
+     * 支付渠道
+     */
+    @Column(name = "channel", nullable = false, length = 20)
+    private String channel;
+
+    /**
+     * 回调类型：PAYMENT（支付）、REFUND（退款）
+     */
+    @Column(name = "callback_type", nullable = false, length = 20)
+    private String callbackType;
+
+    /**
+     * 渠道交易号（支付为第三方订单号，退款为第三方退款单号）
+     */
+    @Column(name = "trade_no", nullable = false, length = 64)
+    private String tradeNo;
+
+    /**
+     * 回调通知的目标状态
+     */
+    @Column(name = "target_status", nullable = false, length = 20)
+    private String targetStatus;
+
+    /**
+     * 退款订单ID（仅退款回调）
+     */
+    @Column(name = "refund_order_id", length = 36)
+    private String refundOrderId;
+
+    /**
+     * 实际金额
+     */
+    @Column(name = "amount", precision = 10, scale = 2)
+    private BigDecimal amount;
+
+    /**
+     * 失败原因
+     */
+    @Column(name = "failure_reason", length = 500)
+    private String failureReason;
+
+    /**
+     * 原始回调数据
+     */
+    @Column(name = "raw_data", columnDefinition = "TEXT")
+    private String rawData;
+
+    /**
+     * 处理状态
+     */
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    /**
+     * 已处理次数
+     */
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts;
+
+    /**
+     * 下次处理时间
+     */
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    /**
+     * 最近一次处理失败的原因
+     */
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    /**
+     * 创建时间
+     */
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * 更新时间
+     */
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
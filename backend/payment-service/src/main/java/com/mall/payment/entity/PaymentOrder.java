@@ -23,7 +23,7 @@ import java.util.List;
  * <ul>
  *   <li>表名：payment_orders</li>
  *   <li>主键：id（UUID）</li>
- *   <li>索引：order_id、user_id、status、created_at</li>
+ *   <li>索引：order_id、user_id、status、created_at、status + expire_time</li>
  * </ul>
  * 
  * <p>业务关系：</p>
@@ -48,10 +48,12 @@ import java.util.List;
  * </ul>
  * 
  * @author lingbai
- * @version 1.2
+ * @version 1.4
  * @since 2025-11-01
  * 
  * 修改日志：
+ * V1.4 2026-10-19：增加发起支付时选中的收单端点，后续查询、取消、同步和退款发往同一端点
+ * V1.3 2026-10-19：增加status + expire_time联合索引，支持过期订单键集扫描
  * V1.2 2025-11-01：完善Javadoc注释，增加数据表结构和业务关系说明
  * V1.1 2024-12-10：增加软删除功能和审计字段
  * V1.0 2024-12-01：初始版本，定义基本支付订单结构
@@ -63,7 +65,8 @@ import java.util.List;
     @Index(name = "idx_order_id", columnList = "orderId"),
     @Index(name = "idx_user_id", columnList = "userId"),
     @Index(name = "idx_status", columnList = "status"),
-    @Index(name = "idx_created_at", columnList = "createdAt")
+    @Index(name = "idx_created_at", columnList = "createdAt"),
+    @Index(name = "idx_status_expire_time", columnList = "status, expireTime")
 })
 @EntityListeners(AuditingEntityListener.class)
 public class PaymentOrder {
@@ -139,6 +142,12 @@ public class PaymentOrder {
     @Column(name = "third_party_order_no", length = 64)
     private String thirdPartyOrderNo;
 
+    /**
+     * 收单端点 - 发起支付时路由选中的端点名称，交易只存在于该端点，为空表示使用渠道默认网关
+     */
+    @Column(name = "channel_endpoint", length = 64)
+    private String channelEndpoint;
+
     /**
      * 支付完成时间
      */
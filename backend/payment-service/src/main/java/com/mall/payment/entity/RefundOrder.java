@@ -22,7 +22,7 @@ import java.util.List;
  * <ul>
  *   <li>表名：refund_orders</li>
  *   <li>主键：id（UUID）</li>
- *   <li>索引：payment_order_id、refund_no、status、created_at</li>
+ *   <li>索引：payment_order_id、refund_no、status、created_at、status + next_retry_at</li>
  * </ul>
  * 
  * <p>业务关系：</p>
@@ -56,10 +56,11 @@ import java.util.List;
  * </ul>
  * 
  * @author lingbai
- * @version 1.2
+ * @version 1.3
  * @since 2025-11-01
  * 
  * 修改日志：
+ * V1.3 2026-10-19：增加下次提交时间及status + next_retry_at联合索引，供退款提交调度按退避时间扫描
  * V1.2 2025-11-01：完善Javadoc注释，增加数据表结构和退款流程说明
  * V1.1 2024-12-18：增加人工审核和异常处理流程
  * V1.0 2024-12-01：初始版本，定义基本退款订单结构
@@ -71,7 +72,8 @@ import java.util.List;
     @Index(name = "idx_payment_order_id", columnList = "paymentOrderId"),
     @Index(name = "idx_refund_no", columnList = "refundNo"),
     @Index(name = "idx_status", columnList = "status"),
-    @Index(name = "idx_created_at", columnList = "createdAt")
+    @Index(name = "idx_created_at", columnList = "createdAt"),
+    @Index(name = "idx_status_next_retry", columnList = "status, nextRetryAt")
 })
 @EntityListeners(AuditingEntityListener.class)
 public class RefundOrder {
@@ -207,6 +209,12 @@ public class RefundOrder {
     @Column(name = "retry_count")
     private Integer retryCount = 0;
 
+    /**
+     * 下次提交时间 - 提交渠道失败后按退避策略计算，为空表示立即可提交
+     */
+    @Column(name = "next_retry_at")
+    private LocalDateTime nextRetryAt;
+
     /**
      * 预计到账时间 - 退款预计到账的时间
      */
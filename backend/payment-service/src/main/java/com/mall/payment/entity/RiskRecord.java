@@ -11,11 +11,20 @@ import java.time.LocalDateTime;
  * 记录支付风控检查的结果和处理过程
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.2
  * @since 2024-12-01
+ * 
+ * <p>修改日志：</p>
+ * <ul>
+ *   <li>V1.1 2026-10-19：增加created_at索引，供风控小时统计按时间范围聚合</li>
+ *   <li>V1.2 2026-10-19：增加审核队列索引和领取租约字段，审核人按游标分页、领取互不重叠的待审核记录</li>
+ * </ul>
  */
 @Entity
-@Table(name = "risk_records")
+@Table(name = "risk_records", indexes = {
+    @Index(name = "idx_created_at", columnList = "createdAt"),
+    @Index(name = "idx_review_queue", columnList = "result, reviewStatus, createdAt")
+})
 public class RiskRecord {
 
     /**
@@ -163,6 +172,18 @@ public class RiskRecord {
     @Column(name = "review_comment", length = 500)
     private String reviewComment;
 
+    /**
+     * 领取审核的审核人
+     */
+    @Column(name = "claimed_by", length = 64)
+    private String claimedBy;
+
+    /**
+     * 领取租约到期时间，到期后其他审核人可重新领取
+     */
+    @Column(name = "claim_expires_at")
+    private LocalDateTime claimExpiresAt;
+
     /**
      * 创建时间
      */
@@ -209,6 +230,18 @@ public class RiskRecord {
         return reviewStatus != null && reviewStatus != ReviewStatus.PENDING;
     }
 
+    /**
+     * 检查是否被其他审核人领取且租约未到期
+     * 
+     * @param reviewer 当前审核人
+     * @param now 当前时间
+     * @return 是否被他人领取
+     */
+    public boolean isClaimedByOther(String reviewer, LocalDateTime now) {
+        return claimedBy != null && !claimedBy.equals(reviewer)
+                && claimExpiresAt != null && claimExpiresAt.isAfter(now);
+    }
+
     /**
      * 检查审核是否通过
      * 
@@ -250,6 +283,8 @@ public class RiskRecord {
      */
     public void completeReview(ReviewStatus status, String reviewer, String comment) {
         this.reviewStatus = status;
+        this.claimedBy = null;
+        this.claimExpiresAt = null;
         this.reviewer = reviewer;
         this.reviewComment = comment;
         this.reviewedAt = LocalDateTime.now();
@@ -434,6 +469,22 @@ public class RiskRecord {
         this.reviewComment = reviewComment;
     }
 
+    public String getClaimedBy() {
+        return claimedBy;
+    }
+
+    public void setClaimedBy(String claimedBy) {
+        this.claimedBy = claimedBy;
+    }
+
+    public LocalDateTime getClaimExpiresAt() {
+        return claimExpiresAt;
+    }
+
+    public void setClaimExpiresAt(LocalDateTime claimExpiresAt) {
+        this.claimExpiresAt = claimExpiresAt;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,115 @@
+package com.mall.payment.entity;
+
+import lombok.Data;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 风控小时统计实体类
+ * 按小时、风控结果和风险等级汇总风控记录，风控统计查询只需读取时间范围内的汇总行
+ *
+ * <p>数据表结构：</p>
+ * <ul>
+ *   <li>表名：risk_statistics_hourly</li>
+ *   <li>主键：stat_id（小时_结果_等级）</li>
+ *   <li>索引：stat_hour</li>
+ * </ul>
+ *
+ * <p>维护方式：</p>
+ * <ul>
+ *   <li>风控记录批量落库后按桶累加，标记误报时累加误报数</li>
+ *   <li>定时任务按风控记录表重新计算最近几个小时，校准写入失败造成的偏差</li>
+ * </ul>
+ *
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Data
+@Entity
+@Table(name = "risk_statistics_hourly", indexes = {
+    @Index(name = "idx_stat_hour", columnList = "statHour")
+})
+public class RiskStatisticsHourly {
+
+    /**
+     * 统计ID
+     */
+    @Id
+    @Column(name = "stat_id", length = 64)
+    private String statId;
+
+    /**
+     * 统计小时（整点）
+     */
+    @Column(name = "stat_hour", nullable = false)
+    private LocalDateTime statHour;
+
+    /**
+     * 风控结果
+     */
+    @Column(name = "result", nullable = false, length = 20)
+    private String result;
+
+    /**
+     * 风险等级
+     */
+    @Column(name = "risk_level", nullable = false, length = 20)
+    private String riskLevel;
+
+    /**
+     * 记录数
+     */
+    @Column(name = "total_count", nullable = false)
+    private Long totalCount;
+
+    /**
+     * 有风险评分的记录数
+     */
+    @Column(name = "score_count", nullable = false)
+    private Long scoreCount;
+
+    /**
+     * 风险评分合计
+     */
+    @Column(name = "score_sum", precision = 15, scale = 2, nullable = false)
+    private BigDecimal scoreSum;
+
+    /**
+     * 最高风险评分
+     */
+    @Column(name = "max_score", precision = 5, scale = 2, nullable = false)
+    private BigDecimal maxScore;
+
+    /**
+     * 处理耗时合计（毫秒）
+     */
+    @Column(name = "processing_time_sum", nullable = false)
+    private Long processingTimeSum;
+
+    /**
+     * 有处理耗时的记录数
+     */
+    @Column(name = "processing_time_count", nullable = false)
+    private Long processingTimeCount;
+
+    /**
+     * 误报数
+     */
+    @Column(name = "false_positive_count", nullable = false)
+    private Long falsePositiveCount;
+
+    /**
+     * 创建时间
+     */
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * 更新时间
+     */
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,54 @@
+package com.mall.payment.entity;
+
+import lombok.Data;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 用户首次支付实体类
+ * 每个用户一行，记录其首次支付成功的时间，新用户统计只需对首次支付时间做一次索引范围计数
+ * 
+ * <p>数据表结构：</p>
+ * <ul>
+ *   <li>表名：user_first_payments</li>
+ *   <li>主键：user_id</li>
+ *   <li>索引：first_paid_at</li>
+ * </ul>
+ * 
+ * <p>维护方式：</p>
+ * <ul>
+ *   <li>订单支付成功时UPSERT，保留较早的时间，重复回调和乱序到达不影响结果</li>
+ *   <li>历史数据由回填任务从支付订单表按用户分组聚合生成</li>
+ * </ul>
+ * 
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Data
+@Entity
+@Table(name = "user_first_payments", indexes = {
+    @Index(name = "idx_first_paid_at", columnList = "firstPaidAt")
+})
+public class UserFirstPayment {
+
+    /**
+     * 用户ID
+     */
+    @Id
+    @Column(name = "user_id", length = 36)
+    private String userId;
+
+    /**
+     * 首次支付成功时间
+     */
+    @Column(name = "first_paid_at", nullable = false)
+    private LocalDateTime firstPaidAt;
+
+    /**
+     * 记录创建时间
+     */
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
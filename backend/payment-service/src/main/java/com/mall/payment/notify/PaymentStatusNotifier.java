@@ -0,0 +1,196 @@
+package com.mall.payment.notify;
+
+import com.mall.payment.enums.PaymentStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 支付状态变更通知
+ * 订单状态变更提交后通过Redis发布订阅广播，等待中的长轮询请求在收到通知后立即返回，客户端无需反复查询
+ *
+ * <p>使用方式：</p>
+ * <ul>
+ *   <li>写入方在状态变更后调用 {@link #publish(String, PaymentStatus)}，在当前事务提交后发布（无事务时立即发布）</li>
+ *   <li>等待方先 {@link #subscribe(String, Consumer)} 再读取当前状态，避免读取与订阅之间的通知丢失</li>
+ *   <li>等待结束（收到通知、超时或连接断开）后必须调用 {@link Subscription#cancel()}</li>
+ * </ul>
+ *
+ * <p>本实例等待者数量达到 max-waiters 后不再接受订阅，调用方应直接返回当前状态。</p>
+ *
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Component
+public class PaymentStatusNotifier implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentStatusNotifier.class);
+
+    /**
+     * 状态变更频道，消息格式：订单ID:状态
+     */
+    public static final String STATUS_CHANNEL = "payment:order:status";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${payment.status-notify.max-waiters:10000}")
+    private int maxWaiters;
+
+    private final Map<String, Queue<Subscription>> waiters = new ConcurrentHashMap<>();
+
+    private final AtomicInteger waiterCount = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        meterRegistry.gauge("payment.status.notify.waiters", Collections.emptyList(), waiterCount);
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(STATUS_CHANNEL));
+    }
+
+    /**
+     * 广播订单状态变更，在当前事务提交后执行（无事务时立即执行）
+     *
+     * @param paymentOrderId 支付订单ID
+     * @param status 变更后的状态
+     */
+    public void publish(String paymentOrderId, PaymentStatus status) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doPublish(paymentOrderId, status);
+                }
+            });
+        } else {
+            doPublish(paymentOrderId, status);
+        }
+    }
+
+    /**
+     * 订阅订单状态变更，每个订阅最多收到一次通知
+     *
+     * @param paymentOrderId 支付订单ID
+     * @param listener 收到通知时的回调（在Redis监听线程中执行，不得阻塞）
+     * @return 订阅句柄，等待者已满时返回null
+     */
+    public Subscription subscribe(String paymentOrderId, Consumer<PaymentStatus> listener) {
+        if (waiterCount.incrementAndGet() > maxWaiters) {
+            waiterCount.decrementAndGet();
+            return null;
+        }
+        Subscription subscription = new Subscription(paymentOrderId, listener);
+        // 与onMessage中的remove互斥，不会加入已被取走的队列
+        waiters.compute(paymentOrderId, (id, queue) -> {
+            Queue<Subscription> target = queue != null ? queue : new ConcurrentLinkedQueue<>();
+            target.add(subscription);
+            return target;
+        });
+        return subscription;
+    }
+
+    /**
+     * 接收其它实例（以及本实例）发布的状态变更
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.lastIndexOf(':');
+        if (separator <= 0) {
+            return;
+        }
+        PaymentStatus status;
+        try {
+            status = PaymentStatus.valueOf(body.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            logger.warn("忽略格式错误的支付状态通知: {}", body);
+            return;
+        }
+        Queue<Subscription> queue = waiters.remove(body.substring(0, separator));
+        if (queue == null) {
+            return;
+        }
+        for (Subscription subscription : queue) {
+            subscription.fire(status);
+        }
+    }
+
+    private void doPublish(String paymentOrderId, PaymentStatus status) {
+        try {
+            stringRedisTemplate.convertAndSend(STATUS_CHANNEL, paymentOrderId + ":" + status.name());
+        } catch (Exception e) {
+            // 通知丢失时等待方超时后读取最新状态，不影响正确性
+            logger.warn("发布支付状态通知失败，支付订单ID: {}, 错误: {}", paymentOrderId, e.getMessage());
+        }
+    }
+
+    /**
+     * 订阅句柄
+     */
+    public final class Subscription {
+
+        private final String paymentOrderId;
+        private final Consumer<PaymentStatus> listener;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Subscription(String paymentOrderId, Consumer<PaymentStatus> listener) {
+            this.paymentOrderId = paymentOrderId;
+            this.listener = listener;
+        }
+
+        /**
+         * 取消订阅，可重复调用
+         */
+        public void cancel() {
+            if (done.compareAndSet(false, true)) {
+                release();
+            }
+        }
+
+        private void fire(PaymentStatus status) {
+            if (done.compareAndSet(false, true)) {
+                release();
+                try {
+                    listener.accept(status);
+                } catch (Exception e) {
+                    logger.warn("处理支付状态通知失败，支付订单ID: {}, 错误: {}", paymentOrderId, e.getMessage());
+                }
+            }
+        }
+
+        private void release() {
+            waiterCount.decrementAndGet();
+            waiters.computeIfPresent(paymentOrderId, (id, queue) -> {
+                queue.remove(this);
+                return queue.isEmpty() ? null : queue;
+            });
+        }
+    }
+}
@@ -48,10 +48,13 @@ import java.util.Optional;
  * </ul>
  * 
  * @author lingbai
- * @version 1.2
+ * @version 1.5
  * @since 2025-11-01
  * 
  * 修改日志：
+ * V1.5 2026-10-19：新增过期订单和待清理订单的键集分页查询
+ * V1.4 2026-10-19：新增状态同步的键集分页查询
+ * V1.3 2026-10-19：新增按状态分组的聚合统计查询
  * V1.2 2025-11-01：完善Javadoc注释，增加功能分类和性能优化说明
  * V1.1 2024-12-20：增加统计查询和自定义查询方法
  * V1.0 2024-12-01：初始版本，定义基础查询方法
@@ -141,6 +144,23 @@ public interface PaymentOrderRepository extends JpaRepository<PaymentOrder, Stri
     @Query("SELECT p FROM PaymentOrder p WHERE p.status = :status AND p.expireTime < :currentTime")
     List<PaymentOrder> findExpiredOrders(@Param("status") PaymentStatus status, @Param("currentTime") LocalDateTime currentTime);
 
+    /**
+     * 按（过期时间, ID）键集分页查找已过期的待支付订单
+     * 
+     * @param currentTime 当前时间
+     * @param lastExpireTime 上一页最后一条的过期时间，首页传早于所有订单的时间
+     * @param lastId 上一页最后一条的ID，首页传空字符串
+     * @param pageable 分页参数（只使用页大小）
+     * @return 已过期的待支付订单列表
+     */
+    @Query("SELECT p FROM PaymentOrder p WHERE p.status = 'PENDING' AND p.expireTime < :currentTime " +
+           "AND (p.expireTime > :lastExpireTime OR (p.expireTime = :lastExpireTime AND p.id > :lastId)) " +
+           "ORDER BY p.expireTime ASC, p.id ASC")
+    List<PaymentOrder> findExpiredOrdersAfter(@Param("currentTime") LocalDateTime currentTime,
+                                              @Param("lastExpireTime") LocalDateTime lastExpireTime,
+                                              @Param("lastId") String lastId,
+                                              Pageable pageable);
+
     /**
      * 查找需要重试的失败订单
      * 
@@ -201,6 +221,25 @@ public interface PaymentOrderRepository extends JpaRepository<PaymentOrder, Stri
                                                        @Param("startTime") LocalDateTime startTime, 
                                                        @Param("endTime") LocalDateTime endTime);
 
+    /**
+     * 按状态分组统计订单数量和金额（数据库端聚合，不加载订单实体）
+     * 返回每行：状态、订单数、订单金额合计、实付金额合计（实付金额为空时按订单金额计）
+     * 
+     * @param startTime 开始时间（为空时不限制）
+     * @param endTime 结束时间（为空时不限制）
+     * @param userId 用户ID（为空时统计全部用户）
+     * @return 状态统计结果
+     */
+    @Query("SELECT p.status, COUNT(p), COALESCE(SUM(p.amount), 0), COALESCE(SUM(COALESCE(p.actualAmount, p.amount)), 0) " +
+           "FROM PaymentOrder p WHERE p.deleted = false " +
+           "AND (:startTime IS NULL OR p.createdAt >= :startTime) " +
+           "AND (:endTime IS NULL OR p.createdAt <= :endTime) " +
+           "AND (:userId IS NULL OR p.userId = :userId) " +
+           "GROUP BY p.status")
+    List<Object[]> aggregateByStatus(@Param("startTime") LocalDateTime startTime,
+                                     @Param("endTime") LocalDateTime endTime,
+                                     @Param("userId") String userId);
+
     /**
      * 统计各支付方式的订单数量
      * 
@@ -364,6 +403,25 @@ public interface PaymentOrderRepository extends JpaRepository<PaymentOrder, Stri
            "AND p.thirdPartyOrderNo IS NOT NULL ORDER BY p.createdAt ASC")
     List<PaymentOrder> findProcessingOrdersForSync(@Param("cutoffTime") LocalDateTime cutoffTime);
 
+    /**
+     * 按（创建时间, ID）键集分页查找处理中状态的支付订单用于状态同步
+     * 同步后离开处理中状态的订单不会导致后续页跳过数据
+     * 
+     * @param cutoffTime 截止时间（创建时间在此时间之后的订单）
+     * @param lastCreatedAt 上一页最后一条的创建时间，首页传截止时间
+     * @param lastId 上一页最后一条的ID，首页传空字符串
+     * @param pageable 分页参数（只使用页大小）
+     * @return 处理中的支付订单列表
+     */
+    @Query("SELECT p FROM PaymentOrder p WHERE p.status = 'PROCESSING' AND p.createdAt >= :cutoffTime " +
+           "AND p.thirdPartyOrderNo IS NOT NULL " +
+           "AND (p.createdAt > :lastCreatedAt OR (p.createdAt = :lastCreatedAt AND p.id > :lastId)) " +
+           "ORDER BY p.createdAt ASC, p.id ASC")
+    List<PaymentOrder> findProcessingOrdersForSyncAfter(@Param("cutoffTime") LocalDateTime cutoffTime,
+                                                        @Param("lastCreatedAt") LocalDateTime lastCreatedAt,
+                                                        @Param("lastId") String lastId,
+                                                        Pageable pageable);
+
     /**
      * 统计指定时间范围内不同用户数量
      * 
@@ -463,6 +521,25 @@ public interface PaymentOrderRepository extends JpaRepository<PaymentOrder, Stri
      */
     List<PaymentOrder> findByStatusAndCreatedAtBefore(PaymentStatus status, LocalDateTime cutoffTime);
 
+    /**
+     * 按（创建时间, ID）键集分页查找早于截止时间的指定状态订单，只返回ID和创建时间
+     * 
+     * @param status 支付状态
+     * @param cutoffTime 截止时间
+     * @param lastCreatedAt 上一页最后一条的创建时间，首页传早于所有订单的时间
+     * @param lastId 上一页最后一条的ID，首页传空字符串
+     * @param pageable 分页参数（只使用页大小）
+     * @return [订单ID, 创建时间] 列表
+     */
+    @Query("SELECT p.id, p.createdAt FROM PaymentOrder p WHERE p.status = :status AND p.createdAt < :cutoffTime " +
+           "AND (p.createdAt > :lastCreatedAt OR (p.createdAt = :lastCreatedAt AND p.id > :lastId)) " +
+           "ORDER BY p.createdAt ASC, p.id ASC")
+    List<Object[]> findCleanupCandidatesAfter(@Param("status") PaymentStatus status,
+                                              @Param("cutoffTime") LocalDateTime cutoffTime,
+                                              @Param("lastCreatedAt") LocalDateTime lastCreatedAt,
+                                              @Param("lastId") String lastId,
+                                              Pageable pageable);
+
     /**
      * 根据订单号和删除状态查找支付订单
      * 
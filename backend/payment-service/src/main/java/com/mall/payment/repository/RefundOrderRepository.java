@@ -36,6 +36,15 @@ public interface RefundOrderRepository extends JpaRepository<RefundOrder, String
      */
     Optional<RefundOrder> findByRefundNo(String refundNo);
 
+    /**
+     * 根据ID查找退款订单，同时抓取关联的支付订单
+     * 
+     * @param id 退款订单ID
+     * @return 退款订单（可能为空）
+     */
+    @Query("SELECT r FROM RefundOrder r JOIN FETCH r.paymentOrder WHERE r.id = :id")
+    Optional<RefundOrder> findWithPaymentOrderById(@Param("id") String id);
+
     /**
      * 根据支付订单ID查找退款订单列表
      * 
@@ -505,4 +514,65 @@ public interface RefundOrderRepository extends JpaRepository<RefundOrder, String
     @Query("SELECT r FROM RefundOrder r WHERE r.status = 'PROCESSING' AND r.createdAt >= :cutoffTime " +
            "AND r.thirdPartyRefundNo IS NOT NULL ORDER BY r.createdAt ASC")
     List<RefundOrder> findProcessingRefundsForSync(@Param("cutoffTime") LocalDateTime cutoffTime);
+
+    /**
+     * 按（创建时间, ID）键集分页查找处理中状态的退款订单用于状态同步
+     * 同时抓取关联的支付订单，查询渠道时不再触发懒加载
+     * 
+     * @param cutoffTime 截止时间（创建时间在此时间之后的订单）
+     * @param lastCreatedAt 上一页最后一条的创建时间，首页传截止时间
+     * @param lastId 上一页最后一条的ID，首页传空字符串
+     * @param pageable 分页参数（只使用页大小）
+     * @return 处理中的退款订单列表
+     */
+    @Query("SELECT r FROM RefundOrder r JOIN FETCH r.paymentOrder WHERE r.status = 'PROCESSING' " +
+           "AND r.createdAt >= :cutoffTime AND r.thirdPartyRefundNo IS NOT NULL " +
+           "AND (r.createdAt > :lastCreatedAt OR (r.createdAt = :lastCreatedAt AND r.id > :lastId)) " +
+           "ORDER BY r.createdAt ASC, r.id ASC")
+    List<RefundOrder> findProcessingRefundsForSyncAfter(@Param("cutoffTime") LocalDateTime cutoffTime,
+                                                        @Param("lastCreatedAt") LocalDateTime lastCreatedAt,
+                                                        @Param("lastId") String lastId,
+                                                        Pageable pageable);
+
+    /**
+     * 按（创建时间, ID）键集分页查找指定状态的退款订单
+     * 
+     * @param status 退款状态
+     * @param lastCreatedAt 上一页最后一条的创建时间，首页传早于所有订单的时间
+     * @param lastId 上一页最后一条的ID，首页传空字符串
+     * @param pageable 分页参数（只使用页大小）
+     * @return 退款订单列表
+     */
+    @Query("SELECT r FROM RefundOrder r WHERE r.status = :status " +
+           "AND (r.createdAt > :lastCreatedAt OR (r.createdAt = :lastCreatedAt AND r.id > :lastId)) " +
+           "ORDER BY r.createdAt ASC, r.id ASC")
+    List<RefundOrder> findByStatusAfter(@Param("status") RefundStatus status,
+                                        @Param("lastCreatedAt") LocalDateTime lastCreatedAt,
+                                        @Param("lastId") String lastId,
+                                        Pageable pageable);
+
+    /**
+     * 按（创建时间, ID）键集分页查找到期待提交渠道的退款订单
+     * 包括审核通过尚未提交的订单、提交失败且已到下次提交时间的订单，
+     * 以及已认领为处理中但认领已过期仍未写回第三方退款单号的订单，均不超过最大次数
+     * 
+     * @param now 当前时间
+     * @param claimExpiredBefore 认领过期时间点，处理时间早于此时间的未受理订单视为认领已过期
+     * @param maxRetryCount 最大失败次数
+     * @param lastCreatedAt 上一页最后一条的创建时间，首页传早于所有订单的时间
+     * @param lastId 上一页最后一条的ID，首页传空字符串
+     * @param pageable 分页参数（只使用页大小）
+     * @return 待提交的退款订单列表（已抓取关联的支付订单）
+     */
+    @Query("SELECT r FROM RefundOrder r JOIN FETCH r.paymentOrder WHERE r.retryCount < :maxRetryCount " +
+           "AND ((r.status IN ('APPROVED', 'FAILED') AND (r.nextRetryAt IS NULL OR r.nextRetryAt <= :now)) " +
+           "OR (r.status = 'PROCESSING' AND r.thirdPartyRefundNo IS NULL AND r.processTime < :claimExpiredBefore)) " +
+           "AND (r.createdAt > :lastCreatedAt OR (r.createdAt = :lastCreatedAt AND r.id > :lastId)) " +
+           "ORDER BY r.createdAt ASC, r.id ASC")
+    List<RefundOrder> findDueRefundsForDispatchAfter(@Param("now") LocalDateTime now,
+                                                     @Param("claimExpiredBefore") LocalDateTime claimExpiredBefore,
+                                                     @Param("maxRetryCount") Integer maxRetryCount,
+                                                     @Param("lastCreatedAt") LocalDateTime lastCreatedAt,
+                                                     @Param("lastId") String lastId,
+                                                     Pageable pageable);
 }
\ No newline at end of file
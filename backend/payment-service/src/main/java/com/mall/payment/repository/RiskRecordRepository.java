@@ -87,6 +87,39 @@ public interface RiskRecordRepository extends JpaRepository<RiskRecord, String>
     @Query("SELECT r FROM RiskRecord r WHERE r.result = 'MANUAL_REVIEW' AND r.reviewStatus = 'PENDING' ORDER BY r.createdAt ASC")
     Page<RiskRecord> findPendingReviewRecords(Pageable pageable);
 
+    /**
+     * 按游标查询待审核的风控记录，沿审核队列索引顺序读取，不做OFFSET扫描和总数统计
+     * 
+     * @param lastCreatedAt 上一页最后一条的创建时间
+     * @param lastId 上一页最后一条的记录ID
+     * @param pageable 分页参数（只使用页大小）
+     * @return 待审核的风控记录列表
+     */
+    @Query("SELECT r FROM RiskRecord r WHERE r.result = 'MANUAL_REVIEW' AND r.reviewStatus = 'PENDING' " +
+           "AND (r.createdAt > :lastCreatedAt OR (r.createdAt = :lastCreatedAt AND r.recordId > :lastId)) " +
+           "ORDER BY r.createdAt ASC, r.recordId ASC")
+    List<RiskRecord> findPendingReviewAfter(@Param("lastCreatedAt") LocalDateTime lastCreatedAt,
+                                            @Param("lastId") String lastId,
+                                            Pageable pageable);
+
+    /**
+     * 按游标查询超时的待审核记录，只返回自动处理需要的列
+     * 
+     * @param cutoffTime 超时时间点，早于该时间创建的记录视为超时
+     * @param lastCreatedAt 上一页最后一条的创建时间
+     * @param lastId 上一页最后一条的记录ID
+     * @param pageable 分页参数（只使用页大小）
+     * @return [记录ID, 创建时间, 风险等级] 列表
+     */
+    @Query("SELECT r.recordId, r.createdAt, r.riskLevel FROM RiskRecord r " +
+           "WHERE r.result = 'MANUAL_REVIEW' AND r.reviewStatus = 'PENDING' AND r.createdAt < :cutoffTime " +
+           "AND (r.createdAt > :lastCreatedAt OR (r.createdAt = :lastCreatedAt AND r.recordId > :lastId)) " +
+           "ORDER BY r.createdAt ASC, r.recordId ASC")
+    List<Object[]> findReviewTimeoutCandidatesAfter(@Param("cutoffTime") LocalDateTime cutoffTime,
+                                                     @Param("lastCreatedAt") LocalDateTime lastCreatedAt,
+                                                     @Param("lastId") String lastId,
+                                                     Pageable pageable);
+
     /**
      * 根据用户ID和时间范围查询风控记录数量
      * 
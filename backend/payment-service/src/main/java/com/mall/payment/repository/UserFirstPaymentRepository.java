@@ -0,0 +1,32 @@
+package com.mall.payment.repository;
+
+import com.mall.payment.entity.UserFirstPayment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户首次支付数据访问层接口
+ * 
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Repository
+public interface UserFirstPaymentRepository extends JpaRepository<UserFirstPayment, String> {
+
+    /**
+     * 统计时间范围内首次支付成功的用户数
+     * 
+     * @param startTime 开始时间（包含）
+     * @param endTime 结束时间（不包含）
+     * @return 新用户数
+     */
+    @Query("SELECT COUNT(u) FROM UserFirstPayment u " +
+           "WHERE u.firstPaidAt >= :startTime AND u.firstPaidAt < :endTime")
+    long countByFirstPaidAtRange(@Param("startTime") LocalDateTime startTime,
+                                 @Param("endTime") LocalDateTime endTime);
+}
@@ -0,0 +1,241 @@
+package com.mall.payment.risk;
+
+import com.mall.payment.entity.RiskRule;
+
+import java.math.BigDecimal;
+
+/**
+ * 预编译的风控规则
+ * 由 {@link RiskRule} 实体编译而来的不可变对象，阈值、时间窗口、IP黑名单在编译时解析完成，
+ * 风控检查时直接使用，不再访问数据库或解析配置字符串
+ * 
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+public final class CompiledRiskRule {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final String ruleId;
+    private final String ruleName;
+    private final RiskRule.RuleType ruleType;
+    private final RiskRule.RiskLevel riskLevel;
+    private final RiskRule.RiskAction action;
+    private final BigDecimal riskWeight;
+
+    /**
+     * 处理动作的严重程度：BLOCK > MANUAL_REVIEW > WARN > ALLOW
+     */
+    private final int actionSeverity;
+
+    /**
+     * 阈值（金额类规则直接比较）
+     */
+    private final BigDecimal thresholdValue;
+
+    /**
+     * 阈值（次数类规则使用的整数形式）
+     */
+    private final long thresholdCount;
+
+    /**
+     * 时间窗口（秒），未配置时为0
+     */
+    private final int timeWindowSeconds;
+
+    /**
+     * IP黑名单匹配器，仅IP_BLACKLIST规则有值
+     */
+    private final IpBlacklistMatcher ipBlacklist;
+
+    /**
+     * 禁止时段的起止分钟数（0-1439），仅TIME_LIMIT规则有效
+     */
+    private final int forbiddenStartMinute;
+    private final int forbiddenEndMinute;
+
+    /**
+     * 规则配置是否完整有效，无效规则在检查时直接视为未触发
+     */
+    private final boolean effective;
+
+    private CompiledRiskRule(RiskRule rule, IpBlacklistMatcher ipBlacklist,
+                             int forbiddenStartMinute, int forbiddenEndMinute, boolean effective) {
+        this.ruleId = rule.getRuleId();
+        this.ruleName = rule.getRuleName();
+        this.ruleType = rule.getRuleType();
+        this.riskLevel = rule.getRiskLevel();
+        this.action = rule.getAction();
+        this.riskWeight = BigDecimal.valueOf(rule.getRiskWeight());
+        this.actionSeverity = severityOf(rule.getAction());
+        this.thresholdValue = rule.getThresholdValue();
+        this.thresholdCount = rule.getThresholdValue() != null ? rule.getThresholdValue().longValue() : 0L;
+        this.timeWindowSeconds = rule.getTimeWindowSeconds() != null ? rule.getTimeWindowSeconds() : 0;
+        this.ipBlacklist = ipBlacklist;
+        this.forbiddenStartMinute = forbiddenStartMinute;
+        this.forbiddenEndMinute = forbiddenEndMinute;
+        this.effective = effective;
+    }
+
+    /**
+     * 编译风控规则
+     * 
+     * @param rule 风控规则实体
+     * @return 预编译规则
+     */
+    public static CompiledRiskRule compile(RiskRule rule) {
+        IpBlacklistMatcher ipBlacklist = null;
+        int startMinute = -1;
+        int endMinute = -1;
+        boolean effective;
+
+        switch (rule.getRuleType()) {
+            case AMOUNT_LIMIT:
+                effective = rule.getThresholdValue() != null;
+                break;
+            case FREQUENCY_LIMIT:
+            case DEVICE_LIMIT:
+            case VELOCITY_CHECK:
+                effective = rule.getThresholdValue() != null
+                        && rule.getTimeWindowSeconds() != null && rule.getTimeWindowSeconds() > 0;
+                break;
+            case IP_BLACKLIST:
+                ipBlacklist = IpBlacklistMatcher.parse(rule.getRuleConfig());
+                effective = ipBlacklist.size() > 0;
+                break;
+            case TIME_LIMIT:
+                // 配置格式：22-06 或 22:30-06:00，表示禁止支付的时段
+                String config = rule.getRuleConfig();
+                String[] timeParts = config != null ? config.split("-") : new String[0];
+                if (timeParts.length == 2) {
+                    startMinute = parseMinuteOfDay(timeParts[0]);
+                    endMinute = parseMinuteOfDay(timeParts[1]);
+                }
+                effective = startMinute >= 0 && endMinute >= 0;
+                break;
+            default:
+                effective = false;
+                break;
+        }
+        return new CompiledRiskRule(rule, ipBlacklist, startMinute, endMinute, effective);
+    }
+
+    /**
+     * 判断指定时刻是否处于禁止时段
+     * 
+     * @param minuteOfDay 当天的分钟数（0-1439）
+     * @return 是否处于禁止时段
+     */
+    public boolean isForbiddenAt(int minuteOfDay) {
+        if (forbiddenStartMinute <= forbiddenEndMinute) {
+            return minuteOfDay >= forbiddenStartMinute && minuteOfDay < forbiddenEndMinute;
+        }
+        return minuteOfDay >= forbiddenStartMinute || minuteOfDay < forbiddenEndMinute;
+    }
+
+    /**
+     * 是否依赖滑动窗口计数（需要访问Redis），其余规则只做内存计算
+     * 
+     * @return 是否为计数类规则
+     */
+    public boolean isCounterBased() {
+        return ruleType == RiskRule.RuleType.FREQUENCY_LIMIT
+                || ruleType == RiskRule.RuleType.DEVICE_LIMIT
+                || ruleType == RiskRule.RuleType.VELOCITY_CHECK;
+    }
+
+    /**
+     * 获取处理动作的严重程度
+     * 
+     * @param action 处理动作
+     * @return 严重程度，数值越大越严重
+     */
+    public static int severityOf(RiskRule.RiskAction action) {
+        if (action == null) {
+            return 0;
+        }
+        switch (action) {
+            case BLOCK:
+                return 3;
+            case MANUAL_REVIEW:
+                return 2;
+            case WARN:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * 解析 HH 或 HH:mm 格式的时间为当天分钟数
+     * 
+     * @return 分钟数，格式不正确时返回-1
+     */
+    private static int parseMinuteOfDay(String text) {
+        try {
+            String value = text.trim();
+            int colon = value.indexOf(':');
+            int hour = Integer.parseInt(colon >= 0 ? value.substring(0, colon) : value);
+            int minute = colon >= 0 ? Integer.parseInt(value.substring(colon + 1)) : 0;
+            int minuteOfDay = hour * 60 + minute;
+            return hour >= 0 && minute >= 0 && minute < 60 && minuteOfDay <= MINUTES_PER_DAY ? minuteOfDay : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // ==================== Getter方法 ====================
+
+    public String getRuleId() {
+        return ruleId;
+    }
+
+    public String getRuleName() {
+        return ruleName;
+    }
+
+    public RiskRule.RuleType getRuleType() {
+        return ruleType;
+    }
+
+    public RiskRule.RiskLevel getRiskLevel() {
+        return riskLevel;
+    }
+
+    public RiskRule.RiskAction getAction() {
+        return action;
+    }
+
+    public BigDecimal getRiskWeight() {
+        return riskWeight;
+    }
+
+    public int getActionSeverity() {
+        return actionSeverity;
+    }
+
+    public boolean isBlocking() {
+        return action == RiskRule.RiskAction.BLOCK;
+    }
+
+    public BigDecimal getThresholdValue() {
+        return thresholdValue;
+    }
+
+    public long getThresholdCount() {
+        return thresholdCount;
+    }
+
+    public int getTimeWindowSeconds() {
+        return timeWindowSeconds;
+    }
+
+    public IpBlacklistMatcher getIpBlacklist() {
+        return ipBlacklist;
+    }
+
+    public boolean isEffective() {
+        return effective;
+    }
+}
@@ -0,0 +1,221 @@
+package com.mall.payment.risk;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * IP黑名单匹配器
+ * 规则创建时一次性解析：IPv4地址和CIDR网段构建为前缀树，其它地址（如IPv6）放入哈希集合，
+ * 匹配时不再拆分配置字符串，IPv4匹配过程不产生对象分配
+ * 
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+public final class IpBlacklistMatcher {
+
+    /**
+     * 前缀树节点的子节点数组，0表示无子节点（根节点下标为0，不会作为子节点出现）
+     */
+    private final int[] zeroChildren;
+    private final int[] oneChildren;
+
+    /**
+     * 节点是否为某个网段的终点
+     */
+    private final boolean[] terminals;
+
+    /**
+     * 非IPv4格式的精确匹配地址
+     */
+    private final Set<String> exactAddresses;
+
+    private final int size;
+
+    private IpBlacklistMatcher(int[] zeroChildren, int[] oneChildren, boolean[] terminals,
+                               Set<String> exactAddresses, int size) {
+        this.zeroChildren = zeroChildren;
+        this.oneChildren = oneChildren;
+        this.terminals = terminals;
+        this.exactAddresses = exactAddresses;
+        this.size = size;
+    }
+
+    /**
+     * 解析逗号分隔的黑名单配置，支持 1.2.3.4、10.0.0.0/8 以及其它格式的精确地址
+     * 
+     * @param config 黑名单配置
+     * @return 匹配器
+     */
+    public static IpBlacklistMatcher parse(String config) {
+        Builder builder = new Builder();
+        if (config != null) {
+            for (String token : config.split(",")) {
+                String entry = token.trim();
+                if (!entry.isEmpty()) {
+                    builder.add(entry);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 判断客户端IP是否命中黑名单
+     * 
+     * @param clientIp 客户端IP
+     * @return 是否命中
+     */
+    public boolean matches(String clientIp) {
+        if (clientIp == null || size == 0) {
+            return false;
+        }
+        long address = parseIpv4(clientIp, 0, clientIp.length());
+        if (address >= 0) {
+            int node = 0;
+            for (int bit = 31; bit >= 0; bit--) {
+                node = ((address >>> bit) & 1L) == 0 ? zeroChildren[node] : oneChildren[node];
+                if (node == 0) {
+                    return false;
+                }
+                if (terminals[node]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return !exactAddresses.isEmpty() && exactAddresses.contains(clientIp.trim());
+    }
+
+    /**
+     * 黑名单条目数量
+     * 
+     * @return 条目数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 解析IPv4地址（忽略首尾空白）
+     * 
+     * @return 32位无符号地址，格式不正确时返回-1
+     */
+    static long parseIpv4(String text, int start, int end) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        long address = 0;
+        int octets = 0;
+        int value = -1;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && value >= 0 && octets < 3) {
+                address = (address << 8) | value;
+                octets++;
+                value = -1;
+            } else {
+                return -1;
+            }
+        }
+        if (value < 0 || octets != 3) {
+            return -1;
+        }
+        return (address << 8) | value;
+    }
+
+    /**
+     * 匹配器构建器
+     */
+    private static final class Builder {
+
+        private int[] zeroChildren = new int[64];
+        private int[] oneChildren = new int[64];
+        private boolean[] terminals = new boolean[64];
+        private int nodeCount = 1;
+        private final Set<String> exactAddresses = new HashSet<>();
+        private int size;
+
+        void add(String entry) {
+            int slash = entry.indexOf('/');
+            long address = parseIpv4(entry, 0, slash >= 0 ? slash : entry.length());
+            if (address < 0) {
+                exactAddresses.add(entry);
+                size++;
+                return;
+            }
+            int prefixLength = 32;
+            if (slash >= 0) {
+                try {
+                    prefixLength = Integer.parseInt(entry.substring(slash + 1).trim());
+                } catch (NumberFormatException e) {
+                    return;
+                }
+                if (prefixLength < 0 || prefixLength > 32) {
+                    return;
+                }
+            }
+            insert(address, prefixLength);
+            size++;
+        }
+
+        private void insert(long address, int prefixLength) {
+            if (prefixLength == 0) {
+                // 0.0.0.0/0 匹配所有IPv4地址，用根节点的两个子节点表示
+                int zero = child(0, 0);
+                int one = child(0, 1);
+                terminals[zero] = true;
+                terminals[one] = true;
+                return;
+            }
+            int node = 0;
+            for (int i = 0; i < prefixLength; i++) {
+                int bit = (int) ((address >>> (31 - i)) & 1L);
+                node = child(node, bit);
+                if (terminals[node]) {
+                    // 已被更短的网段覆盖
+                    return;
+                }
+            }
+            terminals[node] = true;
+        }
+
+        private int child(int node, int bit) {
+            int[] children = bit == 0 ? zeroChildren : oneChildren;
+            if (children[node] == 0) {
+                ensureCapacity();
+                children = bit == 0 ? zeroChildren : oneChildren;
+                children[node] = nodeCount++;
+            }
+            return children[node];
+        }
+
+        private void ensureCapacity() {
+            if (nodeCount == terminals.length) {
+                int capacity = terminals.length * 2;
+                zeroChildren = Arrays.copyOf(zeroChildren, capacity);
+                oneChildren = Arrays.copyOf(oneChildren, capacity);
+                terminals = Arrays.copyOf(terminals, capacity);
+            }
+        }
+
+        IpBlacklistMatcher build() {
+            return new IpBlacklistMatcher(
+                    Arrays.copyOf(zeroChildren, nodeCount),
+                    Arrays.copyOf(oneChildren, nodeCount),
+                    Arrays.copyOf(terminals, nodeCount),
+                    exactAddresses.isEmpty() ? Collections.emptySet() : Set.copyOf(exactAddresses),
+                    size);
+        }
+    }
+}
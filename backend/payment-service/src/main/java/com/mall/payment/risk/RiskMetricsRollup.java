@@ -0,0 +1,450 @@
+package com.mall.payment.risk;
+
+import com.mall.payment.entity.RiskRecord;
+import com.mall.payment.entity.RiskRule;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 风控指标小时汇总器
+ * 风控记录落库后按（小时，风控结果，风险等级）累加到小时统计表，风控统计查询读取汇总行，耗时与记录总量无关
+ *
+ * <p>统计口径与原先按风控记录表实时计算一致：</p>
+ * <ul>
+ *   <li>平均风险评分只统计有评分的记录，平均处理耗时只统计有耗时的记录</li>
+ *   <li>误报数按风控记录的创建时间归桶，标记误报时累加</li>
+ * </ul>
+ *
+ * <p>查询时整点小时读取汇总行，查询范围首尾不足一小时的部分直接对风控记录表分组聚合（最多各一小时的数据）。</p>
+ *
+ * <p>累加失败只记录日志，由定时任务按风控记录表重新计算最近几个小时校准；汇总表为空时回填最近若干天。
+ * 校准由Redis锁保证同一时刻只有一个实例执行。</p>
+ *
+ * @author lingbai
+ * @version 1.1
+ * @since 2026-10-19
+ *
+ * <p>修改日志：</p>
+ * <ul>
+ *   <li>V1.1 2026-10-19：重算小时的聚合读取移入删除和写入所在的事务；校准加Redis锁</li>
+ * </ul>
+ */
+@Component
+public class RiskMetricsRollup {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiskMetricsRollup.class);
+
+    private static final DateTimeFormatter STAT_HOUR_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHH");
+
+    private static final String INSERT_SQL = "INSERT INTO risk_statistics_hourly (stat_id, stat_hour, result, "
+            + "risk_level, total_count, score_count, score_sum, max_score, processing_time_sum, "
+            + "processing_time_count, false_positive_count, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INCREMENT_SQL = INSERT_SQL + " ON DUPLICATE KEY UPDATE "
+            + "total_count = total_count + VALUES(total_count), "
+            + "score_count = score_count + VALUES(score_count), "
+            + "score_sum = score_sum + VALUES(score_sum), "
+            + "max_score = GREATEST(max_score, VALUES(max_score)), "
+            + "processing_time_sum = processing_time_sum + VALUES(processing_time_sum), "
+            + "processing_time_count = processing_time_count + VALUES(processing_time_count), "
+            + "false_positive_count = false_positive_count + VALUES(false_positive_count), "
+            + "updated_at = VALUES(updated_at)";
+
+    private static final String DELETE_HOUR_SQL = "DELETE FROM risk_statistics_hourly WHERE stat_hour = ?";
+
+    private static final String RECORD_AGGREGATE_COLUMNS = "SELECT result, risk_level, COUNT(*), COUNT(risk_score), "
+            + "COALESCE(SUM(risk_score), 0), COALESCE(MAX(risk_score), 0), COALESCE(SUM(processing_time_ms), 0), "
+            + "COUNT(processing_time_ms), COALESCE(SUM(CASE WHEN is_false_positive THEN 1 ELSE 0 END), 0) "
+            + "FROM risk_records ";
+
+    private static final String RECORD_AGGREGATE_SQL = RECORD_AGGREGATE_COLUMNS
+            + "WHERE created_at >= ? AND created_at < ? GROUP BY result, risk_level";
+
+    private static final String RECORD_AGGREGATE_INCLUSIVE_SQL = RECORD_AGGREGATE_COLUMNS
+            + "WHERE created_at >= ? AND created_at <= ? GROUP BY result, risk_level";
+
+    private static final String HOURLY_SUM_SQL = "SELECT result, risk_level, SUM(total_count), SUM(score_count), "
+            + "SUM(score_sum), MAX(max_score), SUM(processing_time_sum), SUM(processing_time_count), "
+            + "SUM(false_positive_count) FROM risk_statistics_hourly "
+            + "WHERE stat_hour >= ? AND stat_hour < ? GROUP BY result, risk_level";
+
+    private static final String EXISTS_SQL = "SELECT COUNT(*) FROM (SELECT 1 FROM risk_statistics_hourly LIMIT 1) t";
+
+    /**
+     * 校准锁，值为持有实例的令牌，每重算一个小时续期一次
+     */
+    private static final String RECONCILE_LOCK_KEY = "payment:risk:metrics-reconcile:lock";
+    private static final Duration RECONCILE_LOCK_TTL = Duration.ofMinutes(10);
+
+    /**
+     * 令牌一致时续期：KEYS[1]锁键，ARGV[1]令牌，ARGV[2]过期毫秒数
+     */
+    private static final DefaultRedisScript<Long> EXTEND_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end "
+            + "return 0", Long.class);
+
+    /**
+     * 令牌一致时删除：KEYS[1]锁键，ARGV[1]令牌
+     */
+    private static final DefaultRedisScript<Long> RELEASE_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end "
+            + "return 0", Long.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private TransactionTemplate writeTemplate;
+
+    @PostConstruct
+    public void init() {
+        writeTemplate = new TransactionTemplate(transactionManager);
+        writeTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // ==================== 增量事件 ====================
+
+    /**
+     * 累加已落库的风控记录，同一批记录合并为每个桶一行
+     *
+     * @param records 已成功写入的风控记录
+     */
+    public void recordInserted(List<RiskRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        Map<String, Bucket> buckets = new HashMap<>();
+        for (RiskRecord record : records) {
+            if (record.getCreatedAt() == null) {
+                continue;
+            }
+            LocalDateTime statHour = record.getCreatedAt().truncatedTo(ChronoUnit.HOURS);
+            String result = record.getResult() != null ? record.getResult().name() : "UNKNOWN";
+            String level = record.getRiskLevel() != null ? record.getRiskLevel().name() : "UNKNOWN";
+            buckets.computeIfAbsent(statId(statHour, result, level), k -> new Bucket(statHour, result, level))
+                    .add(record);
+        }
+        increment(new ArrayList<>(buckets.values()));
+    }
+
+    /**
+     * 累加一条误报，在当前事务提交后写入（无事务时立即写入）
+     *
+     * @param record 新标记为误报的风控记录
+     */
+    public void recordFalsePositive(RiskRecord record) {
+        if (record.getCreatedAt() == null) {
+            return;
+        }
+        Bucket bucket = new Bucket(record.getCreatedAt().truncatedTo(ChronoUnit.HOURS),
+                record.getResult() != null ? record.getResult().name() : "UNKNOWN",
+                record.getRiskLevel() != null ? record.getRiskLevel().name() : "UNKNOWN");
+        bucket.falsePositiveCount = 1;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment(List.of(bucket));
+                }
+            });
+        } else {
+            increment(List.of(bucket));
+        }
+    }
+
+    // ==================== 查询 ====================
+
+    /**
+     * 汇总时间范围内的风控指标，范围两端均包含
+     *
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @return 指标汇总
+     */
+    public Summary query(LocalDateTime startTime, LocalDateTime endTime) {
+        Summary summary = new Summary();
+        LocalDateTime firstHour = startTime.truncatedTo(ChronoUnit.HOURS);
+        if (firstHour.isBefore(startTime)) {
+            firstHour = firstHour.plusHours(1);
+        }
+        LocalDateTime lastHour = endTime.truncatedTo(ChronoUnit.HOURS);
+
+        if (!firstHour.isBefore(lastHour)) {
+            // 范围内没有完整的小时
+            jdbcTemplate.query(RECORD_AGGREGATE_INCLUSIVE_SQL, rs -> {
+                summary.add(readBucket(rs));
+            }, Timestamp.valueOf(startTime), Timestamp.valueOf(endTime));
+            return summary;
+        }
+
+        if (startTime.isBefore(firstHour)) {
+            jdbcTemplate.query(RECORD_AGGREGATE_SQL, rs -> {
+                summary.add(readBucket(rs));
+            }, Timestamp.valueOf(startTime), Timestamp.valueOf(firstHour));
+        }
+        jdbcTemplate.query(HOURLY_SUM_SQL, rs -> {
+            summary.add(readBucket(rs));
+        }, Timestamp.valueOf(firstHour), Timestamp.valueOf(lastHour));
+        jdbcTemplate.query(RECORD_AGGREGATE_INCLUSIVE_SQL, rs -> {
+            summary.add(readBucket(rs));
+        }, Timestamp.valueOf(lastHour), Timestamp.valueOf(endTime));
+        return summary;
+    }
+
+    // ==================== 校准与回填 ====================
+
+    /**
+     * 按风控记录表重新计算最近若干个完整小时；汇总表为空时改为回填最近若干天
+     *
+     * @param recentHours 校准的小时数
+     * @param backfillDays 汇总表为空时回填的天数
+     * @return 重新计算的小时数，其他实例正在校准时返回0
+     */
+    public int reconcile(int recentHours, int backfillDays) {
+        String token = UUID.randomUUID().toString();
+        if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                .setIfAbsent(RECONCILE_LOCK_KEY, token, RECONCILE_LOCK_TTL))) {
+            logger.info("其他实例正在校准风控小时统计，跳过本次校准");
+            return 0;
+        }
+        try {
+            LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+            Integer existing = jdbcTemplate.queryForObject(EXISTS_SQL, Integer.class);
+            int hours = existing != null && existing > 0 ? recentHours : backfillDays * 24;
+            int rebuilt = 0;
+            for (int i = hours; i >= 1; i--) {
+                rebuildHour(currentHour.minusHours(i));
+                rebuilt++;
+                Long extended = stringRedisTemplate.execute(EXTEND_LOCK_SCRIPT, List.of(RECONCILE_LOCK_KEY),
+                        token, String.valueOf(RECONCILE_LOCK_TTL.toMillis()));
+                if (extended == null || extended == 0) {
+                    // 锁已过期并可能被其他实例取得，停止以免两个实例同时重算
+                    logger.warn("风控小时统计校准锁已失效，停止校准，已重算小时数: {}", rebuilt);
+                    break;
+                }
+            }
+            return rebuilt;
+        } finally {
+            try {
+                stringRedisTemplate.execute(RELEASE_LOCK_SCRIPT, List.of(RECONCILE_LOCK_KEY), token);
+            } catch (Exception e) {
+                logger.warn("释放风控小时统计校准锁失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 按风控记录表重新计算一个小时的汇总行
+     * 先删除该小时的汇总行再聚合读取，两者与写入在同一事务内：删除持有的行锁使并发累加等待到提交之后，
+     * 聚合读取不会早于删除，避免读取后、删除前的累加被覆盖丢失
+     *
+     * @param statHour 统计小时（整点）
+     */
+    public void rebuildHour(LocalDateTime statHour) {
+        writeTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update(DELETE_HOUR_SQL, Timestamp.valueOf(statHour));
+            List<Bucket> buckets = new ArrayList<>();
+            jdbcTemplate.query(RECORD_AGGREGATE_SQL, rs -> {
+                Bucket bucket = readBucket(rs);
+                buckets.add(new Bucket(statHour, bucket.result, bucket.riskLevel).merge(bucket));
+            }, Timestamp.valueOf(statHour), Timestamp.valueOf(statHour.plusHours(1)));
+            if (!buckets.isEmpty()) {
+                LocalDateTime now = LocalDateTime.now();
+                jdbcTemplate.batchUpdate(INSERT_SQL, buckets, buckets.size(), (ps, bucket) -> bindBucket(ps, bucket, now));
+            }
+        });
+    }
+
+    // ==================== 私有方法 ====================
+
+    private void increment(List<Bucket> buckets) {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            jdbcTemplate.batchUpdate(INCREMENT_SQL, buckets, buckets.size(), (ps, bucket) -> bindBucket(ps, bucket, now));
+        } catch (Exception e) {
+            logger.warn("累加风控小时统计失败，等待定时校准，桶数: {}, 原因: {}", buckets.size(), e.getMessage());
+        }
+    }
+
+    private static void bindBucket(PreparedStatement ps, Bucket bucket, LocalDateTime now) throws SQLException {
+        Timestamp timestamp = Timestamp.valueOf(now);
+        ps.setString(1, statId(bucket.statHour, bucket.result, bucket.riskLevel));
+        ps.setTimestamp(2, Timestamp.valueOf(bucket.statHour));
+        ps.setString(3, bucket.result);
+        ps.setString(4, bucket.riskLevel);
+        ps.setLong(5, bucket.totalCount);
+        ps.setLong(6, bucket.scoreCount);
+        ps.setBigDecimal(7, bucket.scoreSum);
+        ps.setBigDecimal(8, bucket.maxScore);
+        ps.setLong(9, bucket.processingTimeSum);
+        ps.setLong(10, bucket.processingTimeCount);
+        ps.setLong(11, bucket.falsePositiveCount);
+        ps.setTimestamp(12, timestamp);
+        ps.setTimestamp(13, timestamp);
+    }
+
+    private static Bucket readBucket(ResultSet rs) throws SQLException {
+        Bucket bucket = new Bucket(null, rs.getString(1), rs.getString(2));
+        bucket.totalCount = rs.getLong(3);
+        bucket.scoreCount = rs.getLong(4);
+        bucket.scoreSum = nullToZero(rs.getBigDecimal(5));
+        bucket.maxScore = nullToZero(rs.getBigDecimal(6));
+        bucket.processingTimeSum = rs.getLong(7);
+        bucket.processingTimeCount = rs.getLong(8);
+        bucket.falsePositiveCount = rs.getLong(9);
+        return bucket;
+    }
+
+    private static String statId(LocalDateTime statHour, String result, String riskLevel) {
+        return statHour.format(STAT_HOUR_FORMATTER) + '_' + result + '_' + riskLevel;
+    }
+
+    private static BigDecimal nullToZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    /**
+     * 一个统计桶的计数（增量或绝对值）
+     */
+    private static final class Bucket {
+
+        final LocalDateTime statHour;
+        final String result;
+        final String riskLevel;
+        long totalCount;
+        long scoreCount;
+        BigDecimal scoreSum = BigDecimal.ZERO;
+        BigDecimal maxScore = BigDecimal.ZERO;
+        long processingTimeSum;
+        long processingTimeCount;
+        long falsePositiveCount;
+
+        Bucket(LocalDateTime statHour, String result, String riskLevel) {
+            this.statHour = statHour;
+            this.result = result;
+            this.riskLevel = riskLevel;
+        }
+
+        void add(RiskRecord record) {
+            totalCount++;
+            if (record.getRiskScore() != null) {
+                scoreCount++;
+                scoreSum = scoreSum.add(record.getRiskScore());
+                maxScore = maxScore.max(record.getRiskScore());
+            }
+            if (record.getProcessingTimeMs() != null) {
+                processingTimeSum += record.getProcessingTimeMs();
+                processingTimeCount++;
+            }
+            if (Boolean.TRUE.equals(record.getIsFalsePositive())) {
+                falsePositiveCount++;
+            }
+        }
+
+        Bucket merge(Bucket other) {
+            totalCount += other.totalCount;
+            scoreCount += other.scoreCount;
+            scoreSum = scoreSum.add(other.scoreSum);
+            maxScore = maxScore.max(other.maxScore);
+            processingTimeSum += other.processingTimeSum;
+            processingTimeCount += other.processingTimeCount;
+            falsePositiveCount += other.falsePositiveCount;
+            return this;
+        }
+    }
+
+    /**
+     * 时间范围内的风控指标汇总
+     */
+    public static final class Summary {
+
+        private final Map<RiskRecord.RiskResult, Long> countByResult = new EnumMap<>(RiskRecord.RiskResult.class);
+        private final Map<RiskRule.RiskLevel, Long> countByLevel = new EnumMap<>(RiskRule.RiskLevel.class);
+        private final Bucket total = new Bucket(null, null, null);
+
+        private void add(Bucket bucket) {
+            total.merge(bucket);
+            try {
+                countByResult.merge(RiskRecord.RiskResult.valueOf(bucket.result), bucket.totalCount, Long::sum);
+            } catch (IllegalArgumentException | NullPointerException e) {
+                // 未知结果只计入总数
+            }
+            try {
+                countByLevel.merge(RiskRule.RiskLevel.valueOf(bucket.riskLevel), bucket.totalCount, Long::sum);
+            } catch (IllegalArgumentException | NullPointerException e) {
+                // 未知等级只计入总数
+            }
+        }
+
+        public long getTotalCount() {
+            return total.totalCount;
+        }
+
+        public long getCount(RiskRecord.RiskResult result) {
+            return countByResult.getOrDefault(result, 0L);
+        }
+
+        public long getCount(RiskRule.RiskLevel riskLevel) {
+            return countByLevel.getOrDefault(riskLevel, 0L);
+        }
+
+        /**
+         * 平均风险评分，没有评分时为0
+         */
+        public BigDecimal getAvgRiskScore() {
+            if (total.scoreCount == 0) {
+                return BigDecimal.ZERO;
+            }
+            return total.scoreSum.divide(BigDecimal.valueOf(total.scoreCount), 2, RoundingMode.HALF_UP);
+        }
+
+        public BigDecimal getMaxRiskScore() {
+            return total.maxScore;
+        }
+
+        /**
+         * 平均处理耗时（毫秒），没有耗时记录时为0
+         */
+        public double getAvgProcessingTime() {
+            return total.processingTimeCount == 0 ? 0.0 : (double) total.processingTimeSum / total.processingTimeCount;
+        }
+
+        public long getFalsePositives() {
+            return total.falsePositiveCount;
+        }
+    }
+}
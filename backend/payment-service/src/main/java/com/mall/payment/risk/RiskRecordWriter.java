@@ -0,0 +1,194 @@
+package com.mall.payment.risk;
+
+import com.mall.payment.entity.RiskRecord;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 风控记录异步写入器
+ * 风控检查只把记录放入有界队列，由后台线程使用JDBC批量插入落库，支付创建的关键路径上不再有数据库写入
+ *
+ * <p>审计完整性：</p>
+ * <ul>
+ *   <li>队列已满时由调用线程同步写入，不丢弃记录</li>
+ *   <li>批量写入失败时逐条重试，只有被数据库拒绝的记录才会记录错误日志</li>
+ *   <li>应用关闭时写完队列中剩余的记录</li>
+ * </ul>
+ *
+ * <p>写入成功的记录随即累加到风控小时统计（见 {@link RiskMetricsRollup}）。</p>
+ *
+ * @author lingbai
+ * @version 1.1
+ * @since 2026-10-19
+ *
+ * <p>修改日志：</p>
+ * <ul>
+ *   <li>V1.1 2026-10-19：写入成功后累加风控小时统计</li>
+ * </ul>
+ */
+@Component
+public class RiskRecordWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiskRecordWriter.class);
+
+    private static final String INSERT_SQL = "INSERT INTO risk_records (record_id, payment_order_id, business_order_id, "
+            + "user_id, payment_method, payment_amount, client_ip, user_agent, device_fingerprint, triggered_rules, "
+            + "risk_score, risk_level, result, action, reason, details, processing_time_ms, is_false_positive, "
+            + "review_status, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private RiskMetricsRollup metricsRollup;
+
+    @Value("${payment.risk.record-writer.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${payment.risk.record-writer.batch-size:200}")
+    private int batchSize;
+
+    private BlockingQueue<RiskRecord> queue;
+
+    private Thread writerThread;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writerThread = new Thread(this::runWriter, "risk-record-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 写入剩余记录
+        List<RiskRecord> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            logger.info("应用关闭，写入剩余风控记录: {}", remaining.size());
+            writeBatch(remaining);
+        }
+    }
+
+    /**
+     * 提交风控记录，队列已满时同步写入
+     *
+     * @param record 风控记录（记录ID必须已生成）
+     */
+    public void submit(RiskRecord record) {
+        if (running && queue.offer(record)) {
+            return;
+        }
+        logger.warn("风控记录写入队列已满，同步写入，记录ID: {}", record.getRecordId());
+        writeBatch(Collections.singletonList(record));
+    }
+
+    /**
+     * 当前待写入的记录数
+     *
+     * @return 队列长度
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    private void runWriter() {
+        List<RiskRecord> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                RiskRecord first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            } catch (Exception e) {
+                logger.error("风控记录写入线程异常", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<RiskRecord> records) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, records, records.size(), this::bindRecord);
+            logger.debug("批量写入风控记录完成，数量: {}", records.size());
+            metricsRollup.recordInserted(records);
+        } catch (Exception e) {
+            logger.warn("批量写入风控记录失败，改为逐条写入，数量: {}, 原因: {}", records.size(), e.getMessage());
+            List<RiskRecord> written = new ArrayList<>(records.size());
+            for (RiskRecord record : records) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, ps -> bindRecord(ps, record));
+                    written.add(record);
+                } catch (Exception ex) {
+                    logger.error("写入风控记录失败，记录ID: {}, 支付订单ID: {}",
+                            record.getRecordId(), record.getPaymentOrderId(), ex);
+                }
+            }
+            metricsRollup.recordInserted(written);
+        }
+    }
+
+    private void bindRecord(PreparedStatement ps, RiskRecord record) throws SQLException {
+        ps.setString(1, record.getRecordId());
+        ps.setString(2, record.getPaymentOrderId());
+        ps.setString(3, record.getBusinessOrderId());
+        ps.setString(4, record.getUserId());
+        ps.setString(5, record.getPaymentMethod() != null ? record.getPaymentMethod().name() : null);
+        ps.setBigDecimal(6, record.getPaymentAmount());
+        ps.setString(7, record.getClientIp());
+        ps.setString(8, record.getUserAgent());
+        ps.setString(9, record.getDeviceFingerprint());
+        ps.setString(10, record.getTriggeredRules());
+        ps.setBigDecimal(11, record.getRiskScore());
+        ps.setString(12, record.getRiskLevel() != null ? record.getRiskLevel().name() : null);
+        ps.setString(13, record.getResult() != null ? record.getResult().name() : null);
+        ps.setString(14, record.getAction() != null ? record.getAction().name() : null);
+        ps.setString(15, record.getReason());
+        ps.setString(16, record.getDetails());
+        if (record.getProcessingTimeMs() != null) {
+            ps.setLong(17, record.getProcessingTimeMs());
+        } else {
+            ps.setNull(17, Types.BIGINT);
+        }
+        ps.setBoolean(18, Boolean.TRUE.equals(record.getIsFalsePositive()));
+        ps.setString(19, record.getReviewStatus() != null ? record.getReviewStatus().name() : null);
+        ps.setTimestamp(20, Timestamp.valueOf(record.getCreatedAt()));
+        ps.setTimestamp(21, Timestamp.valueOf(record.getUpdatedAt()));
+    }
+}
@@ -0,0 +1,240 @@
+package com.mall.payment.risk;
+
+import com.mall.payment.entity.RiskRecord;
+import com.mall.payment.entity.RiskRule;
+import com.mall.payment.repository.RiskRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 风控人工审核队列
+ * 待审核记录沿 (result, review_status, created_at) 索引按创建时间排队，
+ * 审核人按游标分页浏览，按租约领取互不重叠的记录
+ *
+ * <p>领取规则：</p>
+ * <ul>
+ *   <li>领取时使用 FOR UPDATE SKIP LOCKED 锁定队首未被领取（或租约已过期）的记录，
+ *       多个审核人、多个实例并发领取时互相跳过对方正在领取的行，不会拿到同一条记录</li>
+ *   <li>领取后记录在 lease-ms 内归该审核人，其他审核人不能审核；租约到期未完成的记录可被重新领取</li>
+ *   <li>审核完成或主动释放时清除领取信息；完成审核为条件更新，只有记录仍待审核且未被他人持有有效租约时才生效</li>
+ * </ul>
+ *
+ * <p>超时自动处理按游标分页读取超时记录，逐页批量条件更新，正在被领取的记录留给审核人处理。</p>
+ *
+ * @author lingbai
+ * @version 1.1
+ * @since 2026-10-19
+ *
+ * 修改日志：
+ * V1.1 2026-10-19：人工审核完成改为条件更新；游标须同时提供创建时间和记录ID
+ */
+@Component
+public class RiskReviewQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiskReviewQueue.class);
+
+    /**
+     * 游标起点，早于任何风控记录的创建时间
+     */
+    public static final LocalDateTime CURSOR_START_TIME = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    private static final String SYSTEM_REVIEWER = "SYSTEM";
+
+    private static final String CLAIM_SELECT_SQL = "SELECT record_id FROM risk_records "
+            + "WHERE result = 'MANUAL_REVIEW' AND review_status = 'PENDING' "
+            + "AND (claim_expires_at IS NULL OR claim_expires_at < ?) "
+            + "ORDER BY created_at ASC, record_id ASC LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String CLAIM_UPDATE_SQL = "UPDATE risk_records SET claimed_by = ?, claim_expires_at = ?, "
+            + "updated_at = ? WHERE record_id = ?";
+
+    private static final String RELEASE_SQL = "UPDATE risk_records SET claimed_by = NULL, claim_expires_at = NULL, "
+            + "updated_at = ? WHERE record_id = ? AND claimed_by = ? AND review_status = 'PENDING'";
+
+    private static final String COMPLETE_REVIEW_SQL = "UPDATE risk_records SET review_status = ?, reviewer = ?, "
+            + "review_comment = ?, reviewed_at = ?, updated_at = ?, claimed_by = NULL, claim_expires_at = NULL "
+            + "WHERE record_id = ? AND result = 'MANUAL_REVIEW' AND review_status = 'PENDING' "
+            + "AND (claimed_by IS NULL OR claimed_by = ? OR claim_expires_at < ?)";
+
+    private static final String TIMEOUT_REVIEW_SQL = "UPDATE risk_records SET review_status = ?, reviewer = '"
+            + SYSTEM_REVIEWER + "', review_comment = ?, reviewed_at = ?, updated_at = ?, claimed_by = NULL, "
+            + "claim_expires_at = NULL WHERE record_id = ? AND review_status = 'PENDING' "
+            + "AND (claim_expires_at IS NULL OR claim_expires_at < ?)";
+
+    @Autowired
+    private RiskRecordRepository riskRecordRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${payment.risk.review.lease-ms:900000}")
+    private long leaseMs;
+
+    @Value("${payment.risk.review.max-claim:50}")
+    private int maxClaim;
+
+    @Value("${payment.risk.review.timeout-batch-size:500}")
+    private int timeoutBatchSize;
+
+    /**
+     * 按游标读取一页待审核记录
+     *
+     * @param afterCreatedAt 上一页最后一条的创建时间，首页传null
+     * @param afterRecordId 上一页最后一条的记录ID，首页传null
+     * @param size 页大小
+     * @return 待审核记录，按创建时间升序
+     * @throws IllegalArgumentException 创建时间和记录ID只提供了其中一个时
+     */
+    public List<RiskRecord> page(LocalDateTime afterCreatedAt, String afterRecordId, int size) {
+        boolean hasRecordId = afterRecordId != null && !afterRecordId.isEmpty();
+        if ((afterCreatedAt != null) != hasRecordId) {
+            throw new IllegalArgumentException("游标的创建时间和记录ID必须同时提供或同时为空");
+        }
+        LocalDateTime lastCreatedAt = afterCreatedAt != null ? afterCreatedAt : CURSOR_START_TIME;
+        String lastId = hasRecordId ? afterRecordId : "";
+        return riskRecordRepository.findPendingReviewAfter(lastCreatedAt, lastId, PageRequest.of(0, size));
+    }
+
+    /**
+     * 完成人工审核
+     * 只有记录仍待审核，且未被领取、由本人领取或他人租约已过期时才更新
+     *
+     * @param recordId 记录ID
+     * @param status 审核结果
+     * @param reviewer 审核人
+     * @param comment 审核备注
+     * @return 是否更新成功，记录已被审核或被他人持有有效租约时返回false
+     */
+    public boolean completeReview(String recordId, RiskRecord.ReviewStatus status, String reviewer, String comment) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.update(COMPLETE_REVIEW_SQL, status.name(), reviewer, comment, now, now,
+                recordId, reviewer, now) > 0;
+    }
+
+    /**
+     * 领取队首的待审核记录
+     *
+     * @param reviewer 审核人
+     * @param size 领取数量，超过 max-claim 时按 max-claim 处理
+     * @return 领取到的记录，按创建时间升序，队列为空时为空列表
+     */
+    public List<RiskRecord> claim(String reviewer, int size) {
+        int limit = Math.max(1, Math.min(size, maxClaim));
+        List<RiskRecord> claimed = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<String> ids = jdbcTemplate.queryForList(CLAIM_SELECT_SQL, String.class,
+                    Timestamp.valueOf(now), limit);
+            if (ids.isEmpty()) {
+                return Collections.<RiskRecord>emptyList();
+            }
+            Timestamp expiresAt = Timestamp.valueOf(now.plusNanos(leaseMs * 1_000_000L));
+            Timestamp updatedAt = Timestamp.valueOf(now);
+            jdbcTemplate.batchUpdate(CLAIM_UPDATE_SQL, ids, ids.size(), (ps, id) -> {
+                ps.setString(1, reviewer);
+                ps.setTimestamp(2, expiresAt);
+                ps.setTimestamp(3, updatedAt);
+                ps.setString(4, id);
+            });
+            List<RiskRecord> records = new ArrayList<>(riskRecordRepository.findAllById(ids));
+            records.sort(Comparator.comparing(RiskRecord::getCreatedAt).thenComparing(RiskRecord::getRecordId));
+            return records;
+        });
+        logger.info("审核人领取待审核记录，审核人: {}, 数量: {}", reviewer, claimed.size());
+        return claimed;
+    }
+
+    /**
+     * 释放审核人领取但未审核的记录
+     *
+     * @param reviewer 审核人
+     * @param recordIds 记录ID
+     * @return 释放的记录数
+     */
+    public int release(String reviewer, Collection<String> recordIds) {
+        if (recordIds.isEmpty()) {
+            return 0;
+        }
+        List<String> ids = new ArrayList<>(recordIds);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int[] counts = jdbcTemplate.batchUpdate(RELEASE_SQL, ids, ids.size(), (ps, id) -> {
+            ps.setTimestamp(1, now);
+            ps.setString(2, id);
+            ps.setString(3, reviewer);
+        })[0];
+        int released = 0;
+        for (int count : counts) {
+            if (count != 0) {
+                released++;
+            }
+        }
+        return released;
+    }
+
+    /**
+     * 自动处理超时的待审核记录：严重风险自动拒绝，其余自动通过
+     *
+     * @param timeoutHours 超时小时数
+     * @return 处理的记录数
+     */
+    public int processTimedOut(int timeoutHours) {
+        LocalDateTime cutoffTime = LocalDateTime.now().minusHours(timeoutHours);
+        LocalDateTime lastCreatedAt = CURSOR_START_TIME;
+        String lastId = "";
+        int processed = 0;
+        while (true) {
+            List<Object[]> candidates = riskRecordRepository.findReviewTimeoutCandidatesAfter(
+                    cutoffTime, lastCreatedAt, lastId, PageRequest.of(0, timeoutBatchSize));
+            if (candidates.isEmpty()) {
+                break;
+            }
+            processed += autoReview(candidates);
+            Object[] last = candidates.get(candidates.size() - 1);
+            lastId = (String) last[0];
+            lastCreatedAt = (LocalDateTime) last[1];
+            if (candidates.size() < timeoutBatchSize) {
+                break;
+            }
+        }
+        return processed;
+    }
+
+    private int autoReview(List<Object[]> candidates) {
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp timestamp = Timestamp.valueOf(now);
+        int[] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(TIMEOUT_REVIEW_SQL,
+                candidates, candidates.size(), (ps, candidate) -> {
+                    boolean critical = candidate[2] == RiskRule.RiskLevel.CRITICAL;
+                    ps.setString(1, critical ? RiskRecord.ReviewStatus.REJECTED.name()
+                            : RiskRecord.ReviewStatus.APPROVED.name());
+                    ps.setString(2, critical ? "系统自动拒绝：严重风险交易超时未审核" : "系统自动通过：超时未审核");
+                    ps.setTimestamp(3, timestamp);
+                    ps.setTimestamp(4, timestamp);
+                    ps.setString(5, (String) candidate[0]);
+                    ps.setTimestamp(6, timestamp);
+                })[0]);
+        int processed = 0;
+        for (int count : counts) {
+            if (count != 0) {
+                processed++;
+            }
+        }
+        return processed;
+    }
+}
@@ -0,0 +1,219 @@
+package com.mall.payment.risk;
+
+import com.mall.payment.entity.RiskRule;
+import com.mall.payment.enums.PaymentMethod;
+import com.mall.payment.repository.RiskRuleRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 风控规则注册表
+ * 在内存中维护按支付方式分组的预编译规则集，规则变更时整体替换（原子切换引用），
+ * 并通过Redis发布订阅通知其它实例重新加载；定时全量刷新兜底丢失的通知
+ * 
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Component
+public class RiskRuleRegistry implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiskRuleRegistry.class);
+
+    /**
+     * 规则变更通知频道
+     */
+    public static final String RULE_CHANGED_CHANNEL = "payment:risk:rule:changed";
+
+    @Autowired
+    private RiskRuleRepository riskRuleRepository;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * 当前实例标识，用于忽略自己发出的变更通知
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /**
+     * 当前生效的规则集，为null表示尚未加载成功
+     */
+    private volatile RuleSet ruleSet;
+
+    private TransactionTemplate reloadTemplate;
+
+    @PostConstruct
+    public void init() {
+        reloadTemplate = new TransactionTemplate(transactionManager);
+        reloadTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        reloadTemplate.setReadOnly(true);
+
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(RULE_CHANGED_CHANNEL));
+
+        try {
+            reload();
+        } catch (Exception e) {
+            // 首次检查时会再次尝试加载
+            logger.error("初始化加载风控规则失败", e);
+        }
+    }
+
+    /**
+     * 获取适用于指定支付方式的规则（已按优先级排序）
+     * 
+     * @param paymentMethod 支付方式，为null时仅返回不限支付方式的规则
+     * @return 不可变规则列表
+     */
+    public List<CompiledRiskRule> getRules(PaymentMethod paymentMethod) {
+        RuleSet current = ruleSet;
+        if (current == null) {
+            // 尚未加载成功时同步加载，失败则抛出异常，避免在无规则的情况下放行
+            current = reload();
+        }
+        return paymentMethod != null ? current.rulesByMethod.get(paymentMethod) : current.globalRules;
+    }
+
+    /**
+     * 规则变更后刷新：在当前事务提交后重新加载本地规则集并通知其它实例
+     */
+    public void refreshAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reloadAndBroadcast();
+                }
+            });
+        } else {
+            reloadAndBroadcast();
+        }
+    }
+
+    /**
+     * 从数据库全量加载启用的规则，编译后原子替换当前规则集
+     * 
+     * @return 新的规则集
+     */
+    public synchronized RuleSet reload() {
+        List<RiskRule> rules = reloadTemplate.execute(status -> riskRuleRepository.findEnabledRulesOrderByPriority());
+
+        List<CompiledRiskRule> globalRules = new ArrayList<>();
+        Map<PaymentMethod, List<CompiledRiskRule>> methodRules = new EnumMap<>(PaymentMethod.class);
+        for (PaymentMethod method : PaymentMethod.values()) {
+            methodRules.put(method, new ArrayList<>());
+        }
+
+        for (RiskRule rule : rules) {
+            CompiledRiskRule compiled;
+            try {
+                compiled = CompiledRiskRule.compile(rule);
+            } catch (Exception e) {
+                logger.error("编译风控规则失败，规则ID: {}", rule.getRuleId(), e);
+                continue;
+            }
+            if (!compiled.isEffective()) {
+                logger.warn("风控规则配置不完整，已忽略，规则ID: {}, 规则类型: {}", rule.getRuleId(), rule.getRuleType());
+                continue;
+            }
+            if (rule.getPaymentMethod() == null) {
+                globalRules.add(compiled);
+                methodRules.values().forEach(list -> list.add(compiled));
+            } else {
+                methodRules.get(rule.getPaymentMethod()).add(compiled);
+            }
+        }
+
+        Map<PaymentMethod, List<CompiledRiskRule>> rulesByMethod = new EnumMap<>(PaymentMethod.class);
+        methodRules.forEach((method, list) -> rulesByMethod.put(method, List.copyOf(list)));
+
+        RuleSet newRuleSet = new RuleSet(Collections.unmodifiableMap(rulesByMethod), List.copyOf(globalRules));
+        ruleSet = newRuleSet;
+        logger.info("风控规则加载完成，启用规则数: {}", rules.size());
+        return newRuleSet;
+    }
+
+    /**
+     * 定时全量刷新，兜底处理丢失的变更通知
+     */
+    @Scheduled(fixedDelayString = "${payment.risk.rule-refresh-interval-ms:300000}",
+               initialDelayString = "${payment.risk.rule-refresh-interval-ms:300000}")
+    public void scheduledRefresh() {
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.error("定时刷新风控规则失败", e);
+        }
+    }
+
+    /**
+     * 接收其它实例的规则变更通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Object sender = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (instanceId.equals(sender)) {
+                return;
+            }
+            logger.info("收到风控规则变更通知，重新加载规则");
+            reload();
+        } catch (Exception e) {
+            logger.error("处理风控规则变更通知失败", e);
+        }
+    }
+
+    private void reloadAndBroadcast() {
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.error("重新加载风控规则失败", e);
+        }
+        try {
+            redisTemplate.convertAndSend(RULE_CHANGED_CHANNEL, instanceId);
+        } catch (Exception e) {
+            logger.error("发布风控规则变更通知失败", e);
+        }
+    }
+
+    /**
+     * 不可变规则集
+     */
+    public static final class RuleSet {
+
+        private final Map<PaymentMethod, List<CompiledRiskRule>> rulesByMethod;
+        private final List<CompiledRiskRule> globalRules;
+
+        private RuleSet(Map<PaymentMethod, List<CompiledRiskRule>> rulesByMethod, List<CompiledRiskRule> globalRules) {
+            this.rulesByMethod = rulesByMethod;
+            this.globalRules = globalRules;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.mall.payment.risk;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 风控滑动窗口计数器
+ * 按用户、设备、IP维度记录支付次数和金额，替代风控检查时对风控记录表的COUNT/SUM查询
+ *
+ * <p>存储结构：</p>
+ * <ul>
+ *   <li>Redis：每个维度一个Hash，按两级桶计数：细粒度桶 c:{桶号}/a:{桶号}（默认1分钟）和小时桶 hc:{小时号}/ha:{小时号}，
+ *       写入由Lua脚本同时累加两级桶，并借助清理游标字段 t 逐桶删除超出保留时长的字段；
+ *       窗口求和时按窗口拆成“头部不足一小时的细粒度桶 + 整小时桶 + 当前小时的细粒度桶”，
+ *       只用一次HMGET读取所需字段，读取字段数与保留时长无关</li>
+ *   <li>本地：每个维度一个细粒度环形缓冲区（覆盖最近两小时）和一个小时环形缓冲区，始终同步写入，
+ *       Redis不可用时作为降级数据源（仅包含本实例的流量；超过两小时的窗口头部按整小时计）</li>
+ * </ul>
+ *
+ * <p>窗口按细粒度桶对齐，统计结果最多多包含一个桶的数据，桶宽度应不大于规则中最短的时间窗口。</p>
+ *
+ * @author lingbai
+ * @version 1.1
+ * @since 2026-10-19
+ *
+ * 修改日志：
+ * V1.1 2026-10-19：改为细粒度桶与小时桶两级计数，写入时按游标清理过期字段，求和改为HMGET读取所需字段；
+ * 本地降级计数器改为细粒度与小时两级环形缓冲区，短窗口不再按粗粒度槽位多算
+ */
+@Component
+public class RiskVelocityCounterStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(RiskVelocityCounterStore.class);
+
+    /**
+     * 两级桶结构与旧版单级桶字段不兼容，使用新前缀，旧key随过期时间自然清除
+     */
+    private static final String KEY_PREFIX = "payment:risk:velocity:v2:";
+    private static final String USER_DIMENSION = "user:";
+    private static final String DEVICE_DIMENSION = "device:";
+    private static final String IP_DIMENSION = "ip:";
+
+    private static final String FINE_COUNT_FIELD = "c:";
+    private static final String FINE_AMOUNT_FIELD = "a:";
+    private static final String HOUR_COUNT_FIELD = "hc:";
+    private static final String HOUR_AMOUNT_FIELD = "ha:";
+
+    private static final int SECONDS_PER_HOUR = 3600;
+
+    /**
+     * 窗口不超过该小时数时只读细粒度桶，本地细粒度环形缓冲区也覆盖这一时长
+     */
+    private static final int FINE_ONLY_HOURS = 2;
+
+    /**
+     * 写入脚本：KEYS为各维度计数器，ARGV依次为细粒度桶号、小时号、金额（分）、过期秒数、保留的最小细粒度桶号、
+     * 每小时的细粒度桶数、单次最多清理的桶数。
+     * 清理游标 t 记录已清理到的细粒度桶号，每次写入只删除游标之后新过期的桶，
+     * 某小时最后一个细粒度桶过期时一并删除该小时桶
+     */
+    private static final DefaultRedisScript<Long> RECORD_SCRIPT = new DefaultRedisScript<>(
+            "local minBucket = tonumber(ARGV[5]) "
+            + "local perHour = tonumber(ARGV[6]) "
+            + "for _, key in ipairs(KEYS) do "
+            + "redis.call('HINCRBY', key, 'c:' .. ARGV[1], 1) "
+            + "redis.call('HINCRBY', key, 'a:' .. ARGV[1], ARGV[3]) "
+            + "redis.call('HINCRBY', key, 'hc:' .. ARGV[2], 1) "
+            + "redis.call('HINCRBY', key, 'ha:' .. ARGV[2], ARGV[3]) "
+            + "redis.call('EXPIRE', key, ARGV[4]) "
+            + "local trimmed = tonumber(redis.call('HGET', key, 't')) "
+            + "if trimmed then "
+            + "  for b = math.max(trimmed + 1, minBucket - tonumber(ARGV[7])), minBucket - 1 do "
+            + "    redis.call('HDEL', key, 'c:' .. b, 'a:' .. b) "
+            + "    if (b + 1) % perHour == 0 then "
+            + "      local hour = (b + 1) / perHour - 1 "
+            + "      redis.call('HDEL', key, 'hc:' .. hour, 'ha:' .. hour) "
+            + "    end "
+            + "  end "
+            + "end "
+            + "if not trimmed or trimmed < minBucket - 1 then redis.call('HSET', key, 't', minBucket - 1) end "
+            + "end "
+            + "return #KEYS",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 细粒度计数桶宽度（秒），需整除3600
+     */
+    @Value("${payment.risk.velocity.bucket-seconds:60}")
+    private int bucketSeconds;
+
+    /**
+     * 计数保留时长（秒），应不小于规则中最大的时间窗口
+     */
+    @Value("${payment.risk.velocity.retention-seconds:86400}")
+    private int retentionSeconds;
+
+    /**
+     * 本地降级计数器的最大维度数量
+     */
+    @Value("${payment.risk.velocity.local-max-keys:10000}")
+    private int localMaxKeys;
+
+    private final Map<String, LocalWindowCounter> localCounters = new ConcurrentHashMap<>();
+
+    /**
+     * 每小时的细粒度桶数
+     */
+    private int bucketsPerHour;
+
+    @PostConstruct
+    public void validateConfig() {
+        if (bucketSeconds <= 0 || SECONDS_PER_HOUR % bucketSeconds != 0) {
+            throw new IllegalStateException("payment.risk.velocity.bucket-seconds 必须整除3600: " + bucketSeconds);
+        }
+        if (retentionSeconds < SECONDS_PER_HOUR) {
+            throw new IllegalStateException("payment.risk.velocity.retention-seconds 不能小于3600: " + retentionSeconds);
+        }
+        bucketsPerHour = SECONDS_PER_HOUR / bucketSeconds;
+    }
+
+    /**
+     * 记录一次支付尝试
+     *
+     * @param userId 用户ID
+     * @param deviceFingerprint 设备指纹（可为空）
+     * @param clientIp 客户端IP（可为空）
+     * @param amount 支付金额
+     */
+    public void record(String userId, String deviceFingerprint, String clientIp, BigDecimal amount) {
+        long nowSeconds = System.currentTimeMillis() / 1000;
+        long amountCents = toCents(amount);
+
+        List<String> keys = new ArrayList<>(3);
+        if (StringUtils.hasText(userId)) {
+            keys.add(KEY_PREFIX + USER_DIMENSION + userId);
+        }
+        if (StringUtils.hasText(deviceFingerprint)) {
+            keys.add(KEY_PREFIX + DEVICE_DIMENSION + deviceFingerprint);
+        }
+        if (StringUtils.hasText(clientIp)) {
+            keys.add(KEY_PREFIX + IP_DIMENSION + clientIp.trim());
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        for (String key : keys) {
+            recordLocal(key, nowSeconds, amountCents);
+        }
+
+        try {
+            long bucket = nowSeconds / bucketSeconds;
+            long retentionBuckets = retentionSeconds / bucketSeconds + 1;
+            stringRedisTemplate.execute(RECORD_SCRIPT, keys,
+                    String.valueOf(bucket),
+                    String.valueOf(nowSeconds / SECONDS_PER_HOUR),
+                    String.valueOf(amountCents),
+                    String.valueOf(retentionSeconds + SECONDS_PER_HOUR),
+                    String.valueOf(bucket - retentionBuckets),
+                    String.valueOf(bucketsPerHour),
+                    String.valueOf(retentionBuckets + bucketsPerHour));
+        } catch (Exception e) {
+            logger.warn("写入风控滑动窗口计数失败，仅保留本地计数: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 统计用户在时间窗口内的支付次数
+     */
+    public long countByUser(String userId, int windowSeconds) {
+        return query(KEY_PREFIX + USER_DIMENSION + userId, windowSeconds)[0];
+    }
+
+    /**
+     * 统计用户在时间窗口内的支付金额
+     */
+    public BigDecimal sumAmountByUser(String userId, int windowSeconds) {
+        return BigDecimal.valueOf(query(KEY_PREFIX + USER_DIMENSION + userId, windowSeconds)[1], 2);
+    }
+
+    /**
+     * 统计设备在时间窗口内的支付次数
+     */
+    public long countByDevice(String deviceFingerprint, int windowSeconds) {
+        return query(KEY_PREFIX + DEVICE_DIMENSION + deviceFingerprint, windowSeconds)[0];
+    }
+
+    /**
+     * 统计IP在时间窗口内的支付次数
+     */
+    public long countByIp(String clientIp, int windowSeconds) {
+        return query(KEY_PREFIX + IP_DIMENSION + clientIp.trim(), windowSeconds)[0];
+    }
+
+    /**
+     * 清理长时间未更新的本地计数器
+     */
+    @Scheduled(fixedDelay = 60 * 1000)
+    public void evictIdleLocalCounters() {
+        long expireBefore = System.currentTimeMillis() / 1000 - retentionSeconds;
+        localCounters.values().removeIf(counter -> counter.lastUpdateSeconds() < expireBefore);
+    }
+
+    /**
+     * 查询窗口内的次数和金额，Redis不可用时使用本地计数
+     *
+     * @return {次数, 金额（分）}
+     */
+    private long[] query(String key, int windowSeconds) {
+        long nowSeconds = System.currentTimeMillis() / 1000;
+        int window = Math.min(windowSeconds, retentionSeconds);
+        try {
+            long toBucket = nowSeconds / bucketSeconds;
+            long fromBucket = (nowSeconds - window) / bucketSeconds;
+            List<String> fields = new ArrayList<>();
+            if (toBucket - fromBucket < (long) FINE_ONLY_HOURS * bucketsPerHour) {
+                addFields(fields, FINE_COUNT_FIELD, FINE_AMOUNT_FIELD, fromBucket, toBucket);
+            } else {
+                long firstWholeHour = (fromBucket + bucketsPerHour - 1) / bucketsPerHour;
+                long currentHour = toBucket / bucketsPerHour;
+                addFields(fields, FINE_COUNT_FIELD, FINE_AMOUNT_FIELD, fromBucket, firstWholeHour * bucketsPerHour - 1);
+                addFields(fields, HOUR_COUNT_FIELD, HOUR_AMOUNT_FIELD, firstWholeHour, currentHour - 1);
+                addFields(fields, FINE_COUNT_FIELD, FINE_AMOUNT_FIELD, currentHour * bucketsPerHour, toBucket);
+            }
+            HashOperations<String, String, String> hashOperations = stringRedisTemplate.opsForHash();
+            List<String> values = hashOperations.multiGet(key, fields);
+            long[] result = new long[2];
+            for (int i = 0; i < values.size(); i++) {
+                String value = values.get(i);
+                if (value != null) {
+                    result[i % 2] += Long.parseLong(value);
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            logger.warn("查询风控滑动窗口计数失败，使用本地计数: {}", e.getMessage());
+        }
+        LocalWindowCounter counter = localCounters.get(key);
+        return counter != null ? counter.sum(nowSeconds, window) : new long[2];
+    }
+
+    /**
+     * 按桶号区间追加字段，次数字段和金额字段交替排列
+     */
+    private static void addFields(List<String> fields, String countField, String amountField, long from, long to) {
+        for (long bucket = from; bucket <= to; bucket++) {
+            fields.add(countField + bucket);
+            fields.add(amountField + bucket);
+        }
+    }
+
+    private void recordLocal(String key, long nowSeconds, long amountCents) {
+        LocalWindowCounter counter = localCounters.get(key);
+        if (counter == null) {
+            if (localCounters.size() >= localMaxKeys) {
+                return;
+            }
+            int hourSlots = (retentionSeconds + SECONDS_PER_HOUR - 1) / SECONDS_PER_HOUR + 1;
+            counter = localCounters.computeIfAbsent(key,
+                    k -> new LocalWindowCounter(bucketSeconds, bucketsPerHour, hourSlots));
+        }
+        counter.add(nowSeconds, amountCents);
+    }
+
+    private static long toCents(BigDecimal amount) {
+        if (amount == null) {
+            return 0L;
+        }
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    /**
+     * 本地两级环形缓冲区计数器
+     * 细粒度缓冲区覆盖最近两小时，更长的窗口由小时缓冲区加当前小时的细粒度桶组成，窗口头部按整小时计
+     */
+    private static final class LocalWindowCounter {
+
+        private final int bucketSeconds;
+        private final int bucketsPerHour;
+        private final Ring fineRing;
+        private final Ring hourRing;
+        private volatile long lastUpdateSeconds;
+
+        LocalWindowCounter(int bucketSeconds, int bucketsPerHour, int hourSlots) {
+            this.bucketSeconds = bucketSeconds;
+            this.bucketsPerHour = bucketsPerHour;
+            this.fineRing = new Ring(FINE_ONLY_HOURS * bucketsPerHour);
+            this.hourRing = new Ring(hourSlots);
+        }
+
+        synchronized void add(long nowSeconds, long amountCents) {
+            fineRing.add(nowSeconds / bucketSeconds, amountCents);
+            hourRing.add(nowSeconds / SECONDS_PER_HOUR, amountCents);
+            lastUpdateSeconds = nowSeconds;
+        }
+
+        synchronized long[] sum(long nowSeconds, int windowSeconds) {
+            long toBucket = nowSeconds / bucketSeconds;
+            long fromBucket = (nowSeconds - windowSeconds) / bucketSeconds;
+            long[] result = new long[2];
+            if (toBucket - fromBucket < fineRing.size()) {
+                fineRing.sum(fromBucket, toBucket, result);
+            } else {
+                long currentHour = toBucket / bucketsPerHour;
+                hourRing.sum(fromBucket / bucketsPerHour, currentHour - 1, result);
+                fineRing.sum(currentHour * bucketsPerHour, toBucket, result);
+            }
+            return result;
+        }
+
+        long lastUpdateSeconds() {
+            return lastUpdateSeconds;
+        }
+    }
+
+    /**
+     * 固定槽位的环形缓冲区，槽位按编号取模复用
+     */
+    private static final class Ring {
+
+        private final long[] slotIds;
+        private final long[] counts;
+        private final long[] amounts;
+
+        Ring(int slots) {
+            slotIds = new long[slots];
+            counts = new long[slots];
+            amounts = new long[slots];
+            Arrays.fill(slotIds, -1L);
+        }
+
+        int size() {
+            return slotIds.length;
+        }
+
+        void add(long slotId, long amountCents) {
+            int index = (int) (slotId % slotIds.length);
+            if (slotIds[index] != slotId) {
+                slotIds[index] = slotId;
+                counts[index] = 0;
+                amounts[index] = 0;
+            }
+            counts[index]++;
+            amounts[index] += amountCents;
+        }
+
+        void sum(long fromSlot, long toSlot, long[] result) {
+            for (int i = 0; i < slotIds.length; i++) {
+                if (slotIds[i] >= fromSlot && slotIds[i] <= toSlot) {
+                    result[0] += counts[i];
+                    result[1] += amounts[i];
+                }
+            }
+        }
+    }
+}
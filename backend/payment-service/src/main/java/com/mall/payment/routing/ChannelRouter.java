@@ -0,0 +1,347 @@
+package com.mall.payment.routing;
+
+import com.mall.payment.enums.PaymentMethod;
+import com.mall.payment.exception.PaymentException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 支付渠道路由器
+ * 同一支付方式配置多个收单端点时，按健康度选择端点发起支付，某个上游劣化时流量自动转移到其余端点
+ *
+ * <p>选路规则：</p>
+ * <ul>
+ *   <li>熔断打开的端点不参与选路；到半开时间的端点优先获得探测调用</li>
+ *   <li>窗口内调用数不足 min-calls 的端点视为待观测，优先获得调用，使恢复后的端点能重新积累数据</li>
+ *   <li>其余端点按 p95耗时 + 失败率 × failure-penalty-ms 打分，取分数最低者；
+ *       配置顺序靠前的端点只有在分数高出 switch-margin 比例时才被替换，避免在相近端点间来回切换</li>
+ *   <li>所有端点都不可用时快速失败，不等待上游超时</li>
+ * </ul>
+ *
+ * <p>端点配置格式为逗号分隔的 名称=网关地址，未配置端点的支付方式（如余额支付）不经过路由。
+ * 路由只用于发起支付；选中的端点名称记录在支付订单上，查询、取消、同步和退款经 findEndpoint 找回该端点，
+ * 发往创建交易的收单方，不参与选路。</p>
+ *
+ * <p>本地模拟端点只能独占路由（stub.exclusive），或在 stub.mixed-profiles 列出的非生产环境中与真实端点混合，
+ * 否则启动失败，避免模拟端点在生产环境分走真实支付流量。</p>
+ *
+ * @author lingbai
+ * @version 1.2
+ * @since 2026-10-19
+ *
+ * 修改日志：
+ * V1.1 2026-10-19：模拟端点只允许独占路由或在非生产环境中与真实端点混合
+ * V1.2 2026-10-19：按名称找回发起支付时选中的端点，供后续调用使用
+ */
+@Component
+public class ChannelRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChannelRouter.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${payment.routing.alipay-endpoints:primary=https://openapi.alipay.com/gateway.do}")
+    private String[] alipayEndpoints;
+
+    @Value("${payment.routing.wechat-endpoints:primary=https://api.mch.weixin.qq.com/pay/unifiedorder}")
+    private String[] wechatEndpoints;
+
+    @Value("${payment.routing.bank-card-endpoints:primary=https://payment.bank.com/pay}")
+    private String[] bankCardEndpoints;
+
+    @Value("${payment.routing.window-size:200}")
+    private int windowSize;
+
+    @Value("${payment.routing.window-ms:60000}")
+    private long windowMs;
+
+    @Value("${payment.routing.min-calls:20}")
+    private int minCalls;
+
+    @Value("${payment.routing.failure-rate-threshold:0.5}")
+    private double failureRateThreshold;
+
+    @Value("${payment.routing.slow-call-ms:3000}")
+    private long slowCallMs;
+
+    @Value("${payment.routing.open-duration-ms:30000}")
+    private long openDurationMs;
+
+    @Value("${payment.routing.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    @Value("${payment.routing.failure-penalty-ms:2000}")
+    private long failurePenaltyMs;
+
+    @Value("${payment.routing.switch-margin:0.2}")
+    private double switchMargin;
+
+    @Value("${payment.routing.refresh-interval-ms:500}")
+    private long refreshIntervalMs;
+
+    @Value("${payment.routing.stub.enabled:false}")
+    private boolean stubEnabled;
+
+    @Value("${payment.routing.stub.exclusive:false}")
+    private boolean stubExclusive;
+
+    @Value("${payment.routing.stub.mixed-profiles:dev,test,local}")
+    private String[] stubMixedProfiles;
+
+    @Autowired
+    private Environment environment;
+
+    private final Map<PaymentMethod, List<ChannelEndpoint>> endpoints = new EnumMap<>(PaymentMethod.class);
+
+    private ScheduledExecutorService refresher;
+
+    @PostConstruct
+    public void init() {
+        if (stubEnabled && !stubExclusive && !environment.acceptsProfiles(Profiles.of(stubMixedProfiles))) {
+            throw new IllegalStateException("模拟渠道端点只能独占路由，或在以下环境中与真实端点混合: "
+                    + String.join(",", stubMixedProfiles));
+        }
+        EndpointHealth.Settings settings = new EndpointHealth.Settings(windowSize, windowMs, minCalls,
+                failureRateThreshold, slowCallMs, openDurationMs, halfOpenCalls);
+        register(PaymentMethod.ALIPAY, alipayEndpoints, settings);
+        register(PaymentMethod.WECHAT, wechatEndpoints, settings);
+        register(PaymentMethod.BANK_CARD, bankCardEndpoints, settings);
+
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "channel-router-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshAll, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+        logger.info("支付渠道路由初始化完成，端点: {}", endpoints);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * 在选中的端点上执行渠道调用，并记录耗时和结果
+     *
+     * @param paymentMethod 支付方式
+     * @param call 渠道调用，未配置端点的支付方式传入null
+     * @param failed 判断返回结果是否为失败，为null时只以异常计为失败
+     * @param <T> 调用结果类型
+     * @return 调用结果
+     * @throws PaymentException 所有端点都不可用时
+     */
+    public <T> T execute(PaymentMethod paymentMethod, Function<ChannelEndpoint, T> call, Predicate<T> failed) {
+        List<ChannelEndpoint> candidates = endpoints.get(paymentMethod);
+        if (candidates == null) {
+            return call.apply(null);
+        }
+        ChannelEndpoint endpoint = select(candidates);
+        if (endpoint == null) {
+            throw PaymentException.thirdPartyPaymentError(paymentMethod.name(), "CHANNEL_UNAVAILABLE",
+                    "所有渠道端点均已熔断");
+        }
+
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = call.apply(endpoint);
+            success = failed == null || !failed.test(result);
+            return result;
+        } finally {
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            endpoint.health.record(latencyMs, success, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 支付方式的端点列表
+     *
+     * @param paymentMethod 支付方式
+     * @return 端点列表，未配置时为空
+     */
+    public List<ChannelEndpoint> getEndpoints(PaymentMethod paymentMethod) {
+        return endpoints.getOrDefault(paymentMethod, Collections.emptyList());
+    }
+
+    /**
+     * 按名称找回支付订单发起时选中的端点
+     *
+     * @param paymentMethod 支付方式
+     * @param name 端点名称
+     * @return 端点，名称为空或端点已不在配置中时返回null
+     */
+    public ChannelEndpoint findEndpoint(PaymentMethod paymentMethod, String name) {
+        if (!StringUtils.hasText(name)) {
+            return null;
+        }
+        for (ChannelEndpoint endpoint : getEndpoints(paymentMethod)) {
+            if (endpoint.name.equals(name)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    private ChannelEndpoint select(List<ChannelEndpoint> candidates) {
+        long now = System.currentTimeMillis();
+        // 第一轮：半开探测和待观测端点
+        for (ChannelEndpoint candidate : candidates) {
+            EndpointHealth.Snapshot snapshot = candidate.health.getSnapshot();
+            boolean probing = snapshot.getState() != EndpointHealth.CircuitState.CLOSED || snapshot.getCalls() < minCalls;
+            if (probing && candidate.health.isAvailable(now) && candidate.health.tryAcquire(now)) {
+                return candidate;
+            }
+        }
+        // 第二轮：按分数从低到高尝试
+        List<ChannelEndpoint> ranked = new ArrayList<>(candidates.size());
+        for (ChannelEndpoint candidate : candidates) {
+            if (candidate.health.isAvailable(now)) {
+                ranked.add(candidate);
+            }
+        }
+        while (!ranked.isEmpty()) {
+            int bestIndex = 0;
+            double bestScore = score(ranked.get(0));
+            for (int i = 1; i < ranked.size(); i++) {
+                double candidateScore = score(ranked.get(i));
+                if (candidateScore < bestScore * (1 - switchMargin)) {
+                    bestIndex = i;
+                    bestScore = candidateScore;
+                }
+            }
+            ChannelEndpoint best = ranked.remove(bestIndex);
+            if (best.health.tryAcquire(now)) {
+                return best;
+            }
+        }
+        return null;
+    }
+
+    private double score(ChannelEndpoint endpoint) {
+        EndpointHealth.Snapshot snapshot = endpoint.health.getSnapshot();
+        return snapshot.getP95() + snapshot.getFailureRate() * failurePenaltyMs;
+    }
+
+    private void refreshAll() {
+        long now = System.currentTimeMillis();
+        for (List<ChannelEndpoint> list : endpoints.values()) {
+            for (ChannelEndpoint endpoint : list) {
+                try {
+                    EndpointHealth.CircuitState previous = endpoint.health.getSnapshot().getState();
+                    EndpointHealth.Snapshot snapshot = endpoint.health.refresh(now);
+                    if (snapshot.getState() != previous) {
+                        logger.warn("渠道端点熔断状态变更，端点: {}, {} -> {}, 失败率: {}, p95: {}ms",
+                                endpoint, previous, snapshot.getState(), snapshot.getFailureRate(), snapshot.getP95());
+                    }
+                } catch (Exception e) {
+                    logger.warn("刷新渠道端点健康度失败，端点: {}, 错误: {}", endpoint, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void register(PaymentMethod paymentMethod, String[] specs, EndpointHealth.Settings settings) {
+        List<ChannelEndpoint> list = new ArrayList<>();
+        if (!stubExclusive) {
+            for (String spec : specs) {
+                if (!StringUtils.hasText(spec)) {
+                    continue;
+                }
+                int separator = spec.indexOf('=');
+                if (separator <= 0) {
+                    throw new IllegalStateException("渠道端点配置格式错误，应为 名称=网关地址: " + spec);
+                }
+                list.add(new ChannelEndpoint(paymentMethod, spec.substring(0, separator).trim(),
+                        spec.substring(separator + 1).trim(), false, new EndpointHealth(settings)));
+            }
+        }
+        if (stubEnabled || stubExclusive) {
+            list.add(new ChannelEndpoint(paymentMethod, "stub", StubPaymentChannel.GATEWAY, true,
+                    new EndpointHealth(settings)));
+        }
+        if (list.isEmpty()) {
+            return;
+        }
+        for (ChannelEndpoint endpoint : list) {
+            Tags tags = Tags.of("method", paymentMethod.name(), "endpoint", endpoint.name);
+            meterRegistry.gauge("payment.channel.endpoint.latency.p50", tags, endpoint.health, h -> h.getSnapshot().getP50());
+            meterRegistry.gauge("payment.channel.endpoint.latency.p95", tags, endpoint.health, h -> h.getSnapshot().getP95());
+            meterRegistry.gauge("payment.channel.endpoint.latency.p99", tags, endpoint.health, h -> h.getSnapshot().getP99());
+            meterRegistry.gauge("payment.channel.endpoint.failure.rate", tags, endpoint.health, h -> h.getSnapshot().getFailureRate());
+            meterRegistry.gauge("payment.channel.endpoint.circuit.state", tags, endpoint.health,
+                    h -> h.getSnapshot().getState().ordinal());
+        }
+        endpoints.put(paymentMethod, List.copyOf(list));
+    }
+
+    /**
+     * 收单端点
+     */
+    public static final class ChannelEndpoint {
+
+        private final PaymentMethod paymentMethod;
+        private final String name;
+        private final String gateway;
+        private final boolean stub;
+        private final EndpointHealth health;
+
+        ChannelEndpoint(PaymentMethod paymentMethod, String name, String gateway, boolean stub, EndpointHealth health) {
+            this.paymentMethod = paymentMethod;
+            this.name = name;
+            this.gateway = gateway;
+            this.stub = stub;
+            this.health = health;
+        }
+
+        public PaymentMethod getPaymentMethod() {
+            return paymentMethod;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getGateway() {
+            return gateway;
+        }
+
+        /**
+         * 是否为本地模拟端点
+         */
+        public boolean isStub() {
+            return stub;
+        }
+
+        public EndpointHealth getHealth() {
+            return health;
+        }
+
+        @Override
+        public String toString() {
+            return paymentMethod + "/" + name;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.mall.payment.routing;
+
+import java.util.Arrays;
+
+/**
+ * 渠道端点健康度
+ * 记录单个端点最近的调用耗时和结果，计算耗时分位数与失败率，并维护熔断状态
+ *
+ * <p>滑动窗口：</p>
+ * <ul>
+ *   <li>环形缓冲保留最近 window-size 次调用，早于 window-ms 的调用不参与统计</li>
+ *   <li>调用失败或耗时不低于 slow-call-ms 计为失败</li>
+ * </ul>
+ *
+ * <p>熔断状态：</p>
+ * <ul>
+ *   <li>CLOSED（关闭）：窗口内调用数不少于 min-calls 且失败率达到阈值时打开</li>
+ *   <li>OPEN（打开）：拒绝调用，open-duration-ms 后进入半开</li>
+ *   <li>HALF_OPEN（半开）：放行 half-open-calls 个探测调用，全部成功后关闭并清空窗口，任一失败重新打开</li>
+ * </ul>
+ *
+ * <p>状态变更在对象锁内完成；分位数计算较重，由路由器定时调用 {@link #refresh(long)} 生成快照，选路时只读快照。</p>
+ *
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+public final class EndpointHealth {
+
+    /**
+     * 熔断状态
+     */
+    public enum CircuitState {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final Settings settings;
+
+    private final long[] latencies;
+    private final long[] timestamps;
+    private final boolean[] failures;
+    private int cursor;
+    private int size;
+
+    private CircuitState state = CircuitState.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    EndpointHealth(Settings settings) {
+        this.settings = settings;
+        this.latencies = new long[settings.windowSize];
+        this.timestamps = new long[settings.windowSize];
+        this.failures = new boolean[settings.windowSize];
+    }
+
+    /**
+     * 申请一次调用许可
+     *
+     * @param now 当前时间（毫秒）
+     * @return 熔断打开或半开探测已满时返回false
+     */
+    synchronized boolean tryAcquire(long now) {
+        if (state == CircuitState.OPEN) {
+            if (now - openedAt < settings.openDurationMs) {
+                return false;
+            }
+            state = CircuitState.HALF_OPEN;
+            halfOpenPermits = settings.halfOpenCalls;
+            halfOpenSuccesses = 0;
+        }
+        if (state == CircuitState.HALF_OPEN) {
+            if (halfOpenPermits <= 0) {
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    /**
+     * 熔断打开且未到半开时间时不可用
+     *
+     * @param now 当前时间（毫秒）
+     * @return 是否可用
+     */
+    synchronized boolean isAvailable(long now) {
+        return state != CircuitState.OPEN || now - openedAt >= settings.openDurationMs;
+    }
+
+    /**
+     * 记录一次调用结果，调用前必须已通过 {@link #tryAcquire(long)}
+     *
+     * @param latencyMs 调用耗时（毫秒）
+     * @param success 调用是否成功
+     * @param now 当前时间（毫秒）
+     */
+    synchronized void record(long latencyMs, boolean success, long now) {
+        boolean failed = !success || latencyMs >= settings.slowCallMs;
+        latencies[cursor] = latencyMs;
+        timestamps[cursor] = now;
+        failures[cursor] = failed;
+        cursor = (cursor + 1) % latencies.length;
+        if (size < latencies.length) {
+            size++;
+        }
+
+        if (state == CircuitState.HALF_OPEN) {
+            if (failed) {
+                open(now);
+            } else if (++halfOpenSuccesses >= settings.halfOpenCalls) {
+                state = CircuitState.CLOSED;
+                // 打开前的失败不再计入，避免刚恢复又被旧数据打开
+                cursor = 0;
+                size = 0;
+            }
+        } else if (state == CircuitState.CLOSED && failed) {
+            int calls = 0;
+            int failedCalls = 0;
+            long since = now - settings.windowMs;
+            for (int i = 0; i < size; i++) {
+                if (timestamps[i] >= since) {
+                    calls++;
+                    if (failures[i]) {
+                        failedCalls++;
+                    }
+                }
+            }
+            if (calls >= settings.minCalls && failedCalls >= calls * settings.failureRateThreshold) {
+                open(now);
+            }
+        }
+    }
+
+    /**
+     * 重新计算健康度快照
+     *
+     * @param now 当前时间（毫秒）
+     * @return 新快照
+     */
+    Snapshot refresh(long now) {
+        long[] window;
+        int calls = 0;
+        int failedCalls = 0;
+        CircuitState currentState;
+        synchronized (this) {
+            window = new long[size];
+            long since = now - settings.windowMs;
+            for (int i = 0; i < size; i++) {
+                if (timestamps[i] >= since) {
+                    window[calls++] = latencies[i];
+                    if (failures[i]) {
+                        failedCalls++;
+                    }
+                }
+            }
+            currentState = state;
+        }
+        Snapshot result;
+        if (calls == 0) {
+            result = new Snapshot(0, 0, 0, 0, 0, currentState);
+        } else {
+            Arrays.sort(window, 0, calls);
+            result = new Snapshot(calls, (double) failedCalls / calls, percentile(window, calls, 0.50),
+                    percentile(window, calls, 0.95), percentile(window, calls, 0.99), currentState);
+        }
+        snapshot = result;
+        return result;
+    }
+
+    /**
+     * 最近一次刷新的快照
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    private void open(long now) {
+        state = CircuitState.OPEN;
+        openedAt = now;
+    }
+
+    private static long percentile(long[] sorted, int count, double quantile) {
+        int index = (int) Math.ceil(quantile * count) - 1;
+        return sorted[Math.max(0, Math.min(index, count - 1))];
+    }
+
+    /**
+     * 健康度快照
+     */
+    public static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, 0, CircuitState.CLOSED);
+
+        private final int calls;
+        private final double failureRate;
+        private final long p50;
+        private final long p95;
+        private final long p99;
+        private final CircuitState state;
+
+        Snapshot(int calls, double failureRate, long p50, long p95, long p99, CircuitState state) {
+            this.calls = calls;
+            this.failureRate = failureRate;
+            this.p50 = p50;
+            this.p95 = p95;
+            this.p99 = p99;
+            this.state = state;
+        }
+
+        public int getCalls() {
+            return calls;
+        }
+
+        public double getFailureRate() {
+            return failureRate;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP95() {
+            return p95;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public CircuitState getState() {
+            return state;
+        }
+    }
+
+    /**
+     * 窗口与熔断参数，所有端点共用
+     */
+    static final class Settings {
+
+        final int windowSize;
+        final long windowMs;
+        final int minCalls;
+        final double failureRateThreshold;
+        final long slowCallMs;
+        final long openDurationMs;
+        final int halfOpenCalls;
+
+        Settings(int windowSize, long windowMs, int minCalls, double failureRateThreshold,
+                 long slowCallMs, long openDurationMs, int halfOpenCalls) {
+            this.windowSize = Math.max(1, windowSize);
+            this.windowMs = windowMs;
+            this.minCalls = Math.max(1, minCalls);
+            this.failureRateThreshold = failureRateThreshold;
+            this.slowCallMs = slowCallMs;
+            this.openDurationMs = openDurationMs;
+            this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        }
+    }
+}
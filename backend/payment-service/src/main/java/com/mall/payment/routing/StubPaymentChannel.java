@@ -0,0 +1,184 @@
+package com.mall.payment.routing;
+
+import com.mall.payment.dto.PaymentResult;
+import com.mall.payment.enums.PaymentMethod;
+import com.mall.payment.enums.PaymentStatus;
+import com.mall.payment.enums.RefundStatus;
+import com.mall.payment.service.PaymentChannelService;
+import com.mall.payment.service.RefundChannelService;
+import org.springframework.util.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 本地模拟支付渠道
+ * 不访问任何外部网关，按配置的耗时和失败率返回结果，用于本地联调和验证路由、熔断行为
+ *
+ * <p>payment.routing.stub.enabled=true 时作为每个可路由支付方式的一个端点参与选路；
+ * exclusive=true 时只使用本端点。耗时和失败率可在运行时修改，用于模拟上游劣化。
+ * 在本端点创建的交易，其查询、取消和退款也由本端点模拟。</p>
+ *
+ * @author lingbai
+ * @version 1.1
+ * @since 2026-10-19
+ *
+ * 修改日志：
+ * V1.1 2026-10-19：增加查询、取消和退款模拟，处理在模拟端点创建的交易的后续调用
+ */
+@Component
+public class StubPaymentChannel {
+
+    /**
+     * 模拟端点的网关地址
+     */
+    public static final String GATEWAY = "stub://local";
+
+    @Value("${payment.routing.stub.latency-ms:50}")
+    private volatile long latencyMs;
+
+    @Value("${payment.routing.stub.failure-rate:0}")
+    private volatile double failureRate;
+
+    /**
+     * 模拟发起支付
+     *
+     * @param paymentMethod 支付方式
+     * @param orderId 支付订单ID
+     * @return 模拟支付URL
+     */
+    public String initiatePayment(PaymentMethod paymentMethod, String orderId) {
+        simulate(paymentMethod);
+        return paymentUrl(paymentMethod, orderId);
+    }
+
+    /**
+     * 模拟处理支付
+     *
+     * @param paymentMethod 支付方式
+     * @param amount 支付金额
+     * @param orderId 支付订单ID
+     * @return 模拟支付结果
+     */
+    public PaymentResult processPayment(PaymentMethod paymentMethod, BigDecimal amount, String orderId) {
+        try {
+            simulate(paymentMethod);
+        } catch (RuntimeException e) {
+            return PaymentResult.failure("STUB_ERROR", e.getMessage());
+        }
+        return PaymentResult.success(PaymentStatus.PROCESSING, "stub_" + System.currentTimeMillis(),
+                paymentUrl(paymentMethod, orderId), amount);
+    }
+
+    /**
+     * 模拟查询支付状态
+     *
+     * @param paymentMethod 支付方式
+     * @param thirdPartyOrderNo 第三方订单号
+     * @param currentStatus 支付订单当前状态
+     * @return 有第三方订单号时为支付成功，否则保持当前状态
+     */
+    public PaymentStatus queryPaymentStatus(PaymentMethod paymentMethod, String thirdPartyOrderNo,
+                                            PaymentStatus currentStatus) {
+        simulate(paymentMethod);
+        return StringUtils.hasText(thirdPartyOrderNo) ? PaymentStatus.SUCCESS : currentStatus;
+    }
+
+    /**
+     * 模拟按第三方订单号查询支付状态
+     *
+     * @param paymentMethod 支付方式
+     * @param thirdPartyOrderNo 第三方订单号
+     * @return 模拟查询结果
+     */
+    public PaymentChannelService.PaymentQueryResult queryPaymentStatus(PaymentMethod paymentMethod,
+                                                                       String thirdPartyOrderNo) {
+        simulate(paymentMethod);
+        return new PaymentChannelService.PaymentQueryResult(PaymentStatus.SUCCESS, null, null,
+                "{\"stub\":true,\"out_trade_no\":\"" + thirdPartyOrderNo + "\"}");
+    }
+
+    /**
+     * 模拟取消支付
+     *
+     * @param paymentMethod 支付方式
+     * @param orderId 支付订单ID
+     * @return 是否取消成功
+     */
+    public boolean cancelPayment(PaymentMethod paymentMethod, String orderId) {
+        simulate(paymentMethod);
+        return true;
+    }
+
+    /**
+     * 模拟退款
+     *
+     * @param paymentMethod 支付方式
+     * @param refundAmount 退款金额
+     * @return 模拟退款结果
+     */
+    public RefundChannelService.RefundResult processRefund(PaymentMethod paymentMethod, BigDecimal refundAmount) {
+        try {
+            simulate(paymentMethod);
+        } catch (RuntimeException e) {
+            return RefundChannelService.RefundResult.failure(e.getMessage(), null);
+        }
+        String thirdPartyRefundNo = "stub_rf_" + System.currentTimeMillis();
+        return RefundChannelService.RefundResult.success(thirdPartyRefundNo, refundAmount,
+                "{\"stub\":true,\"refund_no\":\"" + thirdPartyRefundNo + "\"}");
+    }
+
+    /**
+     * 模拟查询退款状态
+     *
+     * @param paymentMethod 支付方式
+     * @param thirdPartyRefundNo 第三方退款单号
+     * @return 模拟查询结果
+     */
+    public RefundChannelService.RefundQueryResult queryRefundStatus(PaymentMethod paymentMethod,
+                                                                    String thirdPartyRefundNo) {
+        simulate(paymentMethod);
+        return new RefundChannelService.RefundQueryResult(RefundStatus.SUCCESS, null, null,
+                "{\"stub\":true,\"refund_no\":\"" + thirdPartyRefundNo + "\"}");
+    }
+
+    public long getLatencyMs() {
+        return latencyMs;
+    }
+
+    public void setLatencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    private String paymentUrl(PaymentMethod paymentMethod, String orderId) {
+        return GATEWAY + "/pay?method=" + paymentMethod.name() + "&order_id=" + orderId;
+    }
+
+    private void simulate(PaymentMethod paymentMethod) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyMs;
+        if (delay > 0) {
+            // 上下浮动20%，使分位数有区分度
+            delay += (long) (delay * (random.nextDouble() * 0.4 - 0.2));
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("模拟渠道调用被中断");
+            }
+        }
+        if (random.nextDouble() < failureRate) {
+            throw new IllegalStateException("模拟渠道调用失败，支付方式: " + paymentMethod);
+        }
+    }
+}
@@ -32,10 +32,11 @@ import java.util.Map;
  * - 可扩展性：支持新增支付渠道的快速接入
  * 
  * @author lingbai
- * @version 1.2
+ * @version 1.3
  * @since 2025-11-01
  * 
  * 修改日志：
+ * V1.3 2026-10-19：按第三方订单号查询支付状态时传入发起支付的收单端点
  * V1.2 2025-11-01：完善Javadoc注释，添加详细的方法说明和设计原则
  * V1.1 2025-01-01：添加支付回调验证和解析功能
  * V1.0 2024-12-01：初始版本，基础支付渠道功能
@@ -155,10 +156,11 @@ public interface PaymentChannelService {
      * 主动查询第三方支付平台的支付状态
      * 
      * @param paymentMethod 支付方式
+     * @param channelEndpoint 发起支付时选中的收单端点，为空时使用渠道默认网关
      * @param thirdPartyOrderNo 第三方订单号
      * @return 支付查询结果
      */
-    PaymentQueryResult queryPaymentStatus(PaymentMethod paymentMethod, String thirdPartyOrderNo);
+    PaymentQueryResult queryPaymentStatus(PaymentMethod paymentMethod, String channelEndpoint, String thirdPartyOrderNo);
 
     /**
      * 支付查询结果内部类
@@ -173,6 +173,13 @@ public interface PaymentStatisticsService {
      */
     int cleanExpiredStatistics(int retentionDays, PaymentStatistics.StatType statType);
 
+    /**
+     * 从支付订单回填用户首次支付时间
+     * 
+     * @return 处理的用户数，已有回填在执行时返回-1
+     */
+    long rebuildUserFirstPayments();
+
     // ==================== 内部类定义 ====================
 
     /**
@@ -10,8 +10,11 @@ import java.math.BigDecimal;
  * 定义与第三方支付平台退款相关的接口方法，用于处理不同支付渠道的退款操作
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.1
  * @since 2024-12-01
+ * 
+ * 修改日志：
+ * V1.1 2026-10-19：退款和退款查询传入发起支付的收单端点，发往创建交易的收单方
  */
 public interface RefundChannelService {
 
@@ -20,6 +23,7 @@ public interface RefundChannelService {
      * 调用第三方支付平台的退款接口，发起退款流程
      * 
      * @param paymentMethod 支付方式
+     * @param channelEndpoint 发起支付时选中的收单端点，为空时使用渠道默认网关
      * @param thirdPartyOrderNo 第三方支付订单号
      * @param refundOrderId 退款订单ID
      * @param refundAmount 退款金额
@@ -28,7 +32,7 @@ public interface RefundChannelService {
      * @throws IllegalArgumentException 当参数无效时抛出
      * @throws RuntimeException 当调用第三方接口失败时抛出
      */
-    RefundResult processRefund(PaymentMethod paymentMethod, String thirdPartyOrderNo, 
+    RefundResult processRefund(PaymentMethod paymentMethod, String channelEndpoint, String thirdPartyOrderNo, 
                               String refundOrderId, BigDecimal refundAmount, String refundReason);
 
 
@@ -176,10 +180,11 @@ public interface RefundChannelService {
      * 主动查询第三方支付平台的退款状态
      * 
      * @param paymentMethod 支付方式
+     * @param channelEndpoint 发起支付时选中的收单端点，为空时使用渠道默认网关
      * @param thirdPartyRefundNo 第三方退款单号
      * @return 退款查询结果
      */
-    RefundQueryResult queryRefundStatus(PaymentMethod paymentMethod, String thirdPartyRefundNo);
+    RefundQueryResult queryRefundStatus(PaymentMethod paymentMethod, String channelEndpoint, String thirdPartyRefundNo);
 
     /**
      * 退款查询结果内部类
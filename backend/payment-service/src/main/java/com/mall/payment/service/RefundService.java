@@ -123,12 +123,11 @@ public interface RefundService {
 
     /**
      * 处理退款申请
-     * 发起实际的退款流程，调用第三方支付平台退款接口
+     * 认领退款订单后调用第三方支付平台退款接口，最终结果由回调或状态同步确认
      * 
      * @param refundOrderId 退款订单ID
-     * @return 处理结果
-     * @throws IllegalStateException 当退款订单状态不允许处理时抛出
-     * @throws RuntimeException 当调用第三方退款接口失败时抛出
+     * @return 渠道是否受理
+     * @throws IllegalStateException 当退款订单状态不允许处理或已被其他流程认领时抛出
      */
     boolean processRefund(String refundOrderId);
 
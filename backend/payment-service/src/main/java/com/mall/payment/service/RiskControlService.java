@@ -15,8 +15,13 @@ import java.util.List;
  * 提供支付风控相关的业务功能
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.1
  * @since 2024-12-01
+ * 
+ * <p>修改日志：</p>
+ * <ul>
+ *   <li>V1.1 2026-10-19：新增审核队列游标分页、领取和释放</li>
+ * </ul>
  */
 public interface RiskControlService {
 
@@ -71,6 +76,35 @@ public interface RiskControlService {
      */
     Page<RiskRecord> getPendingReviewRecords(Pageable pageable);
 
+    /**
+     * 按游标查询待审核的风控记录
+     * 
+     * @param afterCreatedAt 上一页最后一条的创建时间，首页传null
+     * @param afterRecordId 上一页最后一条的记录ID，首页传null
+     * @param size 页大小
+     * @return 待审核的风控记录，按创建时间升序
+     */
+    List<RiskRecord> getPendingReviewRecords(LocalDateTime afterCreatedAt, String afterRecordId, int size);
+
+    /**
+     * 领取待审核的风控记录
+     * 领取的记录在租约期内只能由该审核人审核
+     * 
+     * @param reviewer 审核人
+     * @param size 领取数量
+     * @return 领取到的风控记录
+     */
+    List<RiskRecord> claimReviewRecords(String reviewer, int size);
+
+    /**
+     * 释放已领取但未审核的风控记录
+     * 
+     * @param reviewer 审核人
+     * @param recordIds 记录ID列表
+     * @return 释放的记录数量
+     */
+    int releaseReviewRecords(String reviewer, List<String> recordIds);
+
     /**
      * 审核风控记录
      * 
@@ -227,6 +261,11 @@ public interface RiskControlService {
          */
         private Long processingTimeMs;
 
+        /**
+         * 是否因命中阻止规则而提前结束检查（其余规则未执行）
+         */
+        private boolean shortCircuited;
+
         // ==================== 构造函数 ====================
 
         public RiskCheckResult() {}
@@ -334,6 +373,14 @@ public interface RiskControlService {
         public void setProcessingTimeMs(Long processingTimeMs) {
             this.processingTimeMs = processingTimeMs;
         }
+
+        public boolean isShortCircuited() {
+            return shortCircuited;
+        }
+
+        public void setShortCircuited(boolean shortCircuited) {
+            this.shortCircuited = shortCircuited;
+        }
     }
 
     /**
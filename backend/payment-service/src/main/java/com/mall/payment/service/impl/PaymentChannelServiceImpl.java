@@ -6,7 +6,10 @@ import com.mall.payment.dto.PaymentQueryResult;
 import com.mall.payment.entity.PaymentOrder;
 import com.mall.payment.enums.PaymentMethod;
 import com.mall.payment.enums.PaymentStatus;
+import com.mall.payment.routing.ChannelRouter;
+import com.mall.payment.routing.StubPaymentChannel;
 import com.mall.payment.service.PaymentChannelService;
+import com.mall.payment.sign.ChannelSigner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
@@ -15,7 +18,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
-import java.security.MessageDigest;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
@@ -42,15 +44,23 @@ import java.util.TreeMap;
  *   <li>余额支付：内部账户余额扣款</li>
  * </ul>
  * 
+ * <p>渠道路由：</p>
+ * <ul>
+ *   <li>发起支付经ChannelRouter在同一支付方式的多个收单端点中选择健康度最好的端点，并记录耗时和结果</li>
+ *   <li>端点熔断时流量转移到其余端点，全部熔断时快速失败</li>
+ *   <li>开启本地模拟渠道后由StubPaymentChannel处理路由到模拟端点的调用</li>
+ *   <li>选中的端点记录在支付订单上，查询、取消和状态同步发往同一端点，不再参与选路</li>
+ * </ul>
+ * 
  * <p>注意事项：</p>
  * <ul>
  *   <li>当前为模拟实现，生产环境需集成真实的第三方SDK</li>
- *   <li>签名验证使用模拟算法，实际需要使用平台提供的验签方法</li>
+ *   <li>签名和验签由ChannelSigner完成，未配置有效密钥的渠道使用模拟模式</li>
  *   <li>支付结果为模拟数据，实际需要调用真实的支付接口</li>
  * </ul>
  * 
  * @author lingbai
- * @version 1.2
+ * @version 1.6
  * @since 2025-11-01
  * 
  * <p>修改日志：</p>
@@ -58,6 +68,10 @@ import java.util.TreeMap;
  *   <li>V1.0 2024-12-01：初始版本，实现基础支付渠道功能</li>
  *   <li>V1.1 2025-01-15：增加状态查询和回调验证功能</li>
  *   <li>V1.2 2025-11-01：完善Javadoc注释，优化错误处理</li>
+ *   <li>V1.3 2026-10-19：签名和回调验签改由ChannelSigner完成，密钥启动时解析，按线程复用摘要实例和缓冲区</li>
+ *   <li>V1.4 2026-10-19：发起支付经ChannelRouter按端点健康度选路，支持熔断和本地模拟渠道</li>
+ *   <li>V1.5 2026-10-19：微信支付同样使用路由端点的网关地址</li>
+ *   <li>V1.6 2026-10-19：记录发起和处理支付时选中的端点，查询、取消和状态同步发往该端点</li>
  * </ul>
  */
 @Slf4j
@@ -69,17 +83,22 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
     
     private final ObjectMapper objectMapper;
 
+    private final ChannelSigner channelSigner;
+
+    private final ChannelRouter channelRouter;
+
+    private final StubPaymentChannel stubPaymentChannel;
+
     // 模拟的第三方支付平台配置
     private static final String ALIPAY_APP_ID = "2021000000000000";
-    private static final String ALIPAY_PRIVATE_KEY = "MIIEvQIBADANBgkqhkiG9w0BAQEFAASCBKcwggSjAgEAAoIBAQC...";
-    private static final String ALIPAY_PUBLIC_KEY = "MIIBIjANBgkqhkiG9w0BAQEFAAOCAQ8AMIIBCgKCAQEA...";
     private static final String ALIPAY_GATEWAY = "https://openapi.alipay.com/gateway.do";
     
     private static final String WECHAT_APP_ID = "wx1234567890abcdef";
     private static final String WECHAT_MCH_ID = "1234567890";
-    private static final String WECHAT_API_KEY = "abcdefghijklmnopqrstuvwxyz123456";
     private static final String WECHAT_GATEWAY = "https://api.mch.weixin.qq.com/pay/unifiedorder";
 
+    private static final String BANK_CARD_GATEWAY = "https://payment.bank.com/pay";
+
     /**
      * 发起支付
      * 
@@ -91,24 +110,43 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
         log.info("发起第三方支付，订单ID: {}, 支付方式: {}", paymentOrder.getId(), paymentOrder.getPaymentMethod());
 
         try {
-            switch (paymentOrder.getPaymentMethod()) {
-                case ALIPAY:
-                    return initiateAlipayPayment(paymentOrder);
-                case WECHAT:
-                    return initiateWechatPayment(paymentOrder);
-                case BANK_CARD:
-                    return initiateBankCardPayment(paymentOrder);
-                case BALANCE:
-                    return initiateBalancePayment(paymentOrder);
-                default:
-                    throw new UnsupportedOperationException("不支持的支付方式: " + paymentOrder.getPaymentMethod());
-            }
+            return channelRouter.execute(paymentOrder.getPaymentMethod(), endpoint -> {
+                String paymentUrl = initiatePayment(paymentOrder, endpoint);
+                // 交易只存在于选中的端点，由调用方随订单一起保存
+                paymentOrder.setChannelEndpoint(endpoint != null ? endpoint.getName() : null);
+                return paymentUrl;
+            }, null);
         } catch (Exception e) {
             log.error("发起第三方支付失败，订单ID: {}", paymentOrder.getId(), e);
             throw new RuntimeException("发起支付失败: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * 在路由选中的端点上发起支付
+     *
+     * @param paymentOrder 支付订单信息
+     * @param endpoint 收单端点，未配置路由的支付方式为null
+     * @return 支付结果
+     */
+    private String initiatePayment(PaymentOrder paymentOrder, ChannelRouter.ChannelEndpoint endpoint) {
+        if (endpoint != null && endpoint.isStub()) {
+            return stubPaymentChannel.initiatePayment(paymentOrder.getPaymentMethod(), paymentOrder.getId());
+        }
+        switch (paymentOrder.getPaymentMethod()) {
+            case ALIPAY:
+                return initiateAlipayPayment(paymentOrder, gatewayOf(endpoint, ALIPAY_GATEWAY));
+            case WECHAT:
+                return initiateWechatPayment(paymentOrder, gatewayOf(endpoint, WECHAT_GATEWAY));
+            case BANK_CARD:
+                return initiateBankCardPayment(paymentOrder, gatewayOf(endpoint, BANK_CARD_GATEWAY));
+            case BALANCE:
+                return initiateBalancePayment(paymentOrder);
+            default:
+                throw new UnsupportedOperationException("不支持的支付方式: " + paymentOrder.getPaymentMethod());
+        }
+    }
+
     /**
      * 查询支付状态
      * 
@@ -120,13 +158,19 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
         log.debug("查询第三方支付状态，订单ID: {}, 支付方式: {}", paymentOrder.getId(), paymentOrder.getPaymentMethod());
 
         try {
+            ChannelRouter.ChannelEndpoint endpoint = endpointOf(paymentOrder.getPaymentMethod(),
+                    paymentOrder.getChannelEndpoint());
+            if (endpoint != null && endpoint.isStub()) {
+                return stubPaymentChannel.queryPaymentStatus(paymentOrder.getPaymentMethod(),
+                        paymentOrder.getThirdPartyOrderNo(), paymentOrder.getStatus());
+            }
             switch (paymentOrder.getPaymentMethod()) {
                 case ALIPAY:
-                    return queryAlipayStatus(paymentOrder);
+                    return queryAlipayStatus(paymentOrder, gatewayOf(endpoint, ALIPAY_GATEWAY));
                 case WECHAT:
-                    return queryWechatStatus(paymentOrder);
+                    return queryWechatStatus(paymentOrder, gatewayOf(endpoint, WECHAT_GATEWAY));
                 case BANK_CARD:
-                    return queryBankCardStatus(paymentOrder);
+                    return queryBankCardStatus(paymentOrder, gatewayOf(endpoint, BANK_CARD_GATEWAY));
                 case BALANCE:
                     return queryBalanceStatus(paymentOrder);
                 default:
@@ -150,13 +194,18 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
         log.info("取消第三方支付，订单ID: {}, 支付方式: {}", paymentOrder.getId(), paymentOrder.getPaymentMethod());
 
         try {
+            ChannelRouter.ChannelEndpoint endpoint = endpointOf(paymentOrder.getPaymentMethod(),
+                    paymentOrder.getChannelEndpoint());
+            if (endpoint != null && endpoint.isStub()) {
+                return stubPaymentChannel.cancelPayment(paymentOrder.getPaymentMethod(), paymentOrder.getId());
+            }
             switch (paymentOrder.getPaymentMethod()) {
                 case ALIPAY:
-                    return cancelAlipayPayment(paymentOrder);
+                    return cancelAlipayPayment(paymentOrder, gatewayOf(endpoint, ALIPAY_GATEWAY));
                 case WECHAT:
-                    return cancelWechatPayment(paymentOrder);
+                    return cancelWechatPayment(paymentOrder, gatewayOf(endpoint, WECHAT_GATEWAY));
                 case BANK_CARD:
-                    return cancelBankCardPayment(paymentOrder);
+                    return cancelBankCardPayment(paymentOrder, gatewayOf(endpoint, BANK_CARD_GATEWAY));
                 case BALANCE:
                     return cancelBalancePayment(paymentOrder);
                 default:
@@ -237,7 +286,7 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
     /**
      * 发起支付宝支付
      */
-    private String initiateAlipayPayment(PaymentOrder paymentOrder) {
+    private String initiateAlipayPayment(PaymentOrder paymentOrder, String gateway) {
         log.info("发起支付宝支付，订单ID: {}", paymentOrder.getId());
 
         // 构建支付宝支付参数
@@ -261,12 +310,12 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
         try {
             params.put("biz_content", objectMapper.writeValueAsString(bizContent));
             
-            // 生成签名（这里简化处理，实际应该使用RSA签名）
-            String sign = generateSign(params, ALIPAY_PRIVATE_KEY);
+            // 生成签名
+            String sign = channelSigner.signAlipay(params);
             params.put("sign", sign);
 
             // 构建支付URL
-            StringBuilder payUrl = new StringBuilder(ALIPAY_GATEWAY).append("?");
+            StringBuilder payUrl = new StringBuilder(gateway).append("?");
             for (Map.Entry<String, String> entry : params.entrySet()) {
                 payUrl.append(entry.getKey()).append("=").append(entry.getValue()).append("&");
             }
@@ -284,8 +333,8 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
     /**
      * 查询支付宝支付状态
      */
-    private PaymentStatus queryAlipayStatus(PaymentOrder paymentOrder) {
-        log.debug("查询支付宝支付状态，订单ID: {}", paymentOrder.getId());
+    private PaymentStatus queryAlipayStatus(PaymentOrder paymentOrder, String gateway) {
+        log.debug("查询支付宝支付状态，订单ID: {}, 网关: {}", paymentOrder.getId(), gateway);
 
         // 模拟查询逻辑
         // 实际应该调用支付宝的alipay.trade.query接口
@@ -303,8 +352,8 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
     /**
      * 取消支付宝支付
      */
-    private boolean cancelAlipayPayment(PaymentOrder paymentOrder) {
-        log.info("取消支付宝支付，订单ID: {}", paymentOrder.getId());
+    private boolean cancelAlipayPayment(PaymentOrder paymentOrder, String gateway) {
+        log.info("取消支付宝支付，订单ID: {}, 网关: {}", paymentOrder.getId(), gateway);
 
         // 模拟取消逻辑
         // 实际应该调用支付宝的alipay.trade.cancel接口
@@ -364,7 +413,7 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
     /**
      * 发起微信支付
      */
-    private String initiateWechatPayment(PaymentOrder paymentOrder) {
+    private String initiateWechatPayment(PaymentOrder paymentOrder, String gateway) {
         log.info("发起微信支付，订单ID: {}", paymentOrder.getId());
 
         // 构建微信支付参数
@@ -380,12 +429,13 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
         params.put("trade_type", "NATIVE"); // 扫码支付
 
         // 生成签名
-        String sign = generateWechatSign(params, WECHAT_API_KEY);
+        String sign = channelSigner.signWechat(params);
         params.put("sign", sign);
 
         try {
             // 构建XML请求
             String xmlRequest = buildWechatXmlRequest(params);
+            log.debug("微信统一下单请求，网关: {}, 订单ID: {}", gateway, paymentOrder.getId());
             
             // 这里应该发送HTTP请求到微信支付接口
             // 简化处理，直接返回模拟的二维码内容
@@ -403,8 +453,8 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
     /**
      * 查询微信支付状态
      */
-    private PaymentStatus queryWechatStatus(PaymentOrder paymentOrder) {
-        log.debug("查询微信支付状态，订单ID: {}", paymentOrder.getId());
+    private PaymentStatus queryWechatStatus(PaymentOrder paymentOrder, String gateway) {
+        log.debug("查询微信支付状态，订单ID: {}, 网关: {}", paymentOrder.getId(), gateway);
 
         // 模拟查询逻辑
         // 实际应该调用微信的orderquery接口
@@ -419,8 +469,8 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
     /**
      * 取消微信支付
      */
-    private boolean cancelWechatPayment(PaymentOrder paymentOrder) {
-        log.info("取消微信支付，订单ID: {}", paymentOrder.getId());
+    private boolean cancelWechatPayment(PaymentOrder paymentOrder, String gateway) {
+        log.info("取消微信支付，订单ID: {}, 网关: {}", paymentOrder.getId(), gateway);
 
         // 模拟取消逻辑
         // 实际应该调用微信的closeorder接口
@@ -468,13 +518,13 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
     /**
      * 发起银行卡支付
      */
-    private String initiateBankCardPayment(PaymentOrder paymentOrder) {
+    private String initiateBankCardPayment(PaymentOrder paymentOrder, String gateway) {
         log.info("发起银行卡支付，订单ID: {}", paymentOrder.getId());
 
         // 模拟银行卡支付
         // 实际应该集成银联或其他银行卡支付接口
         
-        String paymentUrl = "https://payment.bank.com/pay?orderId=" + paymentOrder.getId() + 
+        String paymentUrl = gateway + "?orderId=" + paymentOrder.getId() + 
                            "&amount=" + paymentOrder.getAmount();
         
         log.info("银行卡支付URL生成成功，订单ID: {}", paymentOrder.getId());
@@ -484,8 +534,8 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
     /**
      * 查询银行卡支付状态
      */
-    private PaymentStatus queryBankCardStatus(PaymentOrder paymentOrder) {
-        log.debug("查询银行卡支付状态，订单ID: {}", paymentOrder.getId());
+    private PaymentStatus queryBankCardStatus(PaymentOrder paymentOrder, String gateway) {
+        log.debug("查询银行卡支付状态，订单ID: {}, 网关: {}", paymentOrder.getId(), gateway);
         
         // 模拟查询逻辑
         return paymentOrder.getStatus();
@@ -494,8 +544,8 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
     /**
      * 取消银行卡支付
      */
-    private boolean cancelBankCardPayment(PaymentOrder paymentOrder) {
-        log.info("取消银行卡支付，订单ID: {}", paymentOrder.getId());
+    private boolean cancelBankCardPayment(PaymentOrder paymentOrder, String gateway) {
+        log.info("取消银行卡支付，订单ID: {}, 网关: {}", paymentOrder.getId(), gateway);
         
         // 模拟取消逻辑
         return true;
@@ -573,11 +623,12 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
     /**
      * 处理支付宝支付
      */
-    private com.mall.payment.dto.PaymentResult processAlipayPayment(BigDecimal amount, String orderId, String returnUrl, String notifyUrl) {
+    private com.mall.payment.dto.PaymentResult processAlipayPayment(BigDecimal amount, String orderId, String returnUrl, String notifyUrl,
+                                                                    String gateway) {
         try {
             // 模拟支付宝支付处理
             String thirdPartyOrderNo = "alipay_" + System.currentTimeMillis();
-            String paymentUrl = "https://openapi.alipay.com/gateway.do?order_id=" + orderId;
+            String paymentUrl = gateway + "?order_id=" + orderId;
             
             return com.mall.payment.dto.PaymentResult.success(PaymentStatus.PROCESSING, thirdPartyOrderNo, paymentUrl, amount);
         } catch (Exception e) {
@@ -588,9 +639,11 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
     /**
      * 处理微信支付
      */
-    private com.mall.payment.dto.PaymentResult processWechatPayment(BigDecimal amount, String orderId, String returnUrl, String notifyUrl) {
+    private com.mall.payment.dto.PaymentResult processWechatPayment(BigDecimal amount, String orderId, String returnUrl, String notifyUrl,
+                                                                    String gateway) {
         try {
-            // 模拟微信支付处理
+            // 模拟微信支付处理，实际应向网关发起统一下单
+            log.debug("微信统一下单请求，网关: {}, 订单ID: {}", gateway, orderId);
             String thirdPartyOrderNo = "wechat_" + System.currentTimeMillis();
             String paymentUrl = "weixin://wxpay/bizpayurl?pr=" + orderId;
             
@@ -603,11 +656,12 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
     /**
      * 处理银行卡支付
      */
-    private com.mall.payment.dto.PaymentResult processBankPayment(BigDecimal amount, String orderId, String returnUrl, String notifyUrl) {
+    private com.mall.payment.dto.PaymentResult processBankPayment(BigDecimal amount, String orderId, String returnUrl, String notifyUrl,
+                                                                  String gateway) {
         try {
             // 模拟银行卡支付处理
             String thirdPartyOrderNo = "bank_" + System.currentTimeMillis();
-            String paymentUrl = "https://bank.example.com/pay?order_id=" + orderId;
+            String paymentUrl = gateway + "?order_id=" + orderId;
             
             return com.mall.payment.dto.PaymentResult.success(PaymentStatus.PROCESSING, thirdPartyOrderNo, paymentUrl, amount);
         } catch (Exception e) {
@@ -633,64 +687,21 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
     // ==================== 工具方法 ====================
 
     /**
-     * 生成签名（简化实现）
+     * 路由端点的网关地址，未经路由时使用默认网关
      */
-    private String generateSign(Map<String, String> params, String privateKey) {
-        // 实际应该使用RSA私钥签名
-        // 这里简化处理，使用MD5
-        StringBuilder sb = new StringBuilder();
-        for (Map.Entry<String, String> entry : params.entrySet()) {
-            if (!"sign".equals(entry.getKey()) && StringUtils.hasText(entry.getValue())) {
-                sb.append(entry.getKey()).append("=").append(entry.getValue()).append("&");
-            }
-        }
-        
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] digest = md.digest(sb.toString().getBytes("UTF-8"));
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : digest) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            return hexString.toString();
-        } catch (Exception e) {
-            log.error("生成签名失败", e);
-            return "";
-        }
+    private String gatewayOf(ChannelRouter.ChannelEndpoint endpoint, String defaultGateway) {
+        return endpoint != null ? endpoint.getGateway() : defaultGateway;
     }
 
     /**
-     * 生成微信签名
+     * 支付订单发起时选中的端点，未记录或端点已不在配置中时返回null，按默认网关处理
      */
-    private String generateWechatSign(Map<String, String> params, String apiKey) {
-        StringBuilder sb = new StringBuilder();
-        for (Map.Entry<String, String> entry : params.entrySet()) {
-            if (StringUtils.hasText(entry.getValue())) {
-                sb.append(entry.getKey()).append("=").append(entry.getValue()).append("&");
-            }
-        }
-        sb.append("key=").append(apiKey);
-        
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] digest = md.digest(sb.toString().getBytes("UTF-8"));
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : digest) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            return hexString.toString().toUpperCase();
-        } catch (Exception e) {
-            log.error("生成微信签名失败", e);
-            return "";
+    private ChannelRouter.ChannelEndpoint endpointOf(PaymentMethod paymentMethod, String channelEndpoint) {
+        ChannelRouter.ChannelEndpoint endpoint = channelRouter.findEndpoint(paymentMethod, channelEndpoint);
+        if (endpoint == null && StringUtils.hasText(channelEndpoint)) {
+            log.warn("收单端点已不在路由配置中，改用默认网关，支付方式: {}, 端点: {}", paymentMethod, channelEndpoint);
         }
+        return endpoint;
     }
 
     /**
@@ -797,36 +808,62 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
         log.info("处理支付请求，支付方式: {}, 金额: {}, 订单ID: {}", paymentMethod, amount, orderId);
         
         try {
+            return channelRouter.execute(paymentMethod,
+                    endpoint -> processPayment(paymentMethod, amount, orderId, returnUrl, notifyUrl, endpoint),
+                    result -> !result.isSuccess());
+        } catch (Exception e) {
+            log.error("处理支付请求失败，支付方式: {}, 错误: {}", paymentMethod, e.getMessage(), e);
+            return com.mall.payment.dto.PaymentResult.failure("PAYMENT_ERROR", "支付处理失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 在路由选中的端点上处理支付
+     */
+    private com.mall.payment.dto.PaymentResult processPayment(PaymentMethod paymentMethod, BigDecimal amount, String orderId,
+                                                            String returnUrl, String notifyUrl,
+                                                            ChannelRouter.ChannelEndpoint endpoint) {
+        com.mall.payment.dto.PaymentResult result;
+        if (endpoint != null && endpoint.isStub()) {
+            result = stubPaymentChannel.processPayment(paymentMethod, amount, orderId);
+        } else {
             switch (paymentMethod) {
                 case ALIPAY:
-                    return processAlipayPayment(amount, orderId, returnUrl, notifyUrl);
+                    result = processAlipayPayment(amount, orderId, returnUrl, notifyUrl, gatewayOf(endpoint, ALIPAY_GATEWAY));
+                    break;
                 case WECHAT:
-                    return processWechatPayment(amount, orderId, returnUrl, notifyUrl);
+                    result = processWechatPayment(amount, orderId, returnUrl, notifyUrl, gatewayOf(endpoint, WECHAT_GATEWAY));
+                    break;
                 case BANK_CARD:
-                    return processBankPayment(amount, orderId, returnUrl, notifyUrl);
+                    result = processBankPayment(amount, orderId, returnUrl, notifyUrl, gatewayOf(endpoint, BANK_CARD_GATEWAY));
+                    break;
                 case BALANCE:
-                    return processBalancePayment(amount, orderId, returnUrl, notifyUrl);
+                    result = processBalancePayment(amount, orderId, returnUrl, notifyUrl);
+                    break;
                 default:
                     return com.mall.payment.dto.PaymentResult.failure("UNSUPPORTED_METHOD", "不支持的支付方式: " + paymentMethod);
             }
-        } catch (Exception e) {
-            log.error("处理支付请求失败，支付方式: {}, 错误: {}", paymentMethod, e.getMessage(), e);
-            return com.mall.payment.dto.PaymentResult.failure("PAYMENT_ERROR", "支付处理失败: " + e.getMessage());
         }
+        result.setChannelEndpoint(endpoint != null ? endpoint.getName() : null);
+        return result;
     }
 
     @Override
-    public PaymentQueryResult queryPaymentStatus(PaymentMethod paymentMethod, String thirdPartyOrderNo) {
-        log.info("查询支付状态，支付方式: {}, 第三方订单号: {}", paymentMethod, thirdPartyOrderNo);
+    public PaymentQueryResult queryPaymentStatus(PaymentMethod paymentMethod, String channelEndpoint, String thirdPartyOrderNo) {
+        log.info("查询支付状态，支付方式: {}, 端点: {}, 第三方订单号: {}", paymentMethod, channelEndpoint, thirdPartyOrderNo);
         
         try {
+            ChannelRouter.ChannelEndpoint endpoint = endpointOf(paymentMethod, channelEndpoint);
+            if (endpoint != null && endpoint.isStub()) {
+                return stubPaymentChannel.queryPaymentStatus(paymentMethod, thirdPartyOrderNo);
+            }
             switch (paymentMethod) {
                 case ALIPAY:
-                    return queryAlipayStatus(thirdPartyOrderNo);
+                    return queryAlipayStatus(thirdPartyOrderNo, gatewayOf(endpoint, ALIPAY_GATEWAY));
                 case WECHAT:
-                    return queryWechatStatus(thirdPartyOrderNo);
+                    return queryWechatStatus(thirdPartyOrderNo, gatewayOf(endpoint, WECHAT_GATEWAY));
                 case BANK_CARD:
-                    return queryBankCardStatus(thirdPartyOrderNo);
+                    return queryBankCardStatus(thirdPartyOrderNo, gatewayOf(endpoint, BANK_CARD_GATEWAY));
                 default:
                     log.warn("不支持的支付方式: {}", paymentMethod);
                     return new PaymentQueryResult(PaymentStatus.FAILED, null, 
@@ -843,8 +880,8 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
     /**
      * 查询支付宝支付状态
      */
-    private PaymentQueryResult queryAlipayStatus(String thirdPartyOrderNo) {
-        log.debug("查询支付宝支付状态，第三方订单号: {}", thirdPartyOrderNo);
+    private PaymentQueryResult queryAlipayStatus(String thirdPartyOrderNo, String gateway) {
+        log.debug("查询支付宝支付状态，第三方订单号: {}, 网关: {}", thirdPartyOrderNo, gateway);
         
         try {
             // 构建查询参数
@@ -862,7 +899,7 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
             params.put("biz_content", objectMapper.writeValueAsString(bizContent));
 
             // 生成签名
-            String sign = generateSign(params, ALIPAY_PRIVATE_KEY);
+            String sign = channelSigner.signAlipay(params);
             params.put("sign", sign);
 
             // 发送查询请求（这里简化处理，实际应该发送HTTP请求）
@@ -883,8 +920,8 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
     /**
      * 查询微信支付状态
      */
-    private PaymentQueryResult queryWechatStatus(String thirdPartyOrderNo) {
-        log.debug("查询微信支付状态，第三方订单号: {}", thirdPartyOrderNo);
+    private PaymentQueryResult queryWechatStatus(String thirdPartyOrderNo, String gateway) {
+        log.debug("查询微信支付状态，第三方订单号: {}, 网关: {}", thirdPartyOrderNo, gateway);
         
         try {
             // 构建查询参数
@@ -895,7 +932,7 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
             params.put("nonce_str", generateNonceStr());
 
             // 生成签名
-            String sign = generateWechatSign(params, WECHAT_API_KEY);
+            String sign = channelSigner.signWechat(params);
             params.put("sign", sign);
 
             // 构建XML请求
@@ -919,8 +956,8 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
     /**
      * 查询银行卡支付状态
      */
-    private PaymentQueryResult queryBankCardStatus(String thirdPartyOrderNo) {
-        log.debug("查询银行卡支付状态，第三方订单号: {}", thirdPartyOrderNo);
+    private PaymentQueryResult queryBankCardStatus(String thirdPartyOrderNo, String gateway) {
+        log.debug("查询银行卡支付状态，第三方订单号: {}, 网关: {}", thirdPartyOrderNo, gateway);
         
         try {
             // 构建查询参数（这里简化处理，实际应该根据具体银行接口）
@@ -930,7 +967,7 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
             params.put("timestamp", String.valueOf(System.currentTimeMillis()));
 
             // 生成签名
-            String sign = generateSign(params, "bankPrivateKey");
+            String sign = channelSigner.signBankCard(params);
             params.put("sign", sign);
 
             // 发送查询请求（这里简化处理，实际应该发送HTTP请求）
@@ -953,14 +990,7 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
      */
     private boolean verifyAlipayCallback(Map<String, String> params) {
         try {
-            String sign = params.get("sign");
-            if (!StringUtils.hasText(sign)) {
-                return false;
-            }
-            
-            // 模拟支付宝签名验证
-            // 实际实现中需要使用支付宝SDK进行签名验证
-            return true;
+            return channelSigner.verifyAlipay(params);
         } catch (Exception e) {
             log.error("验证支付宝回调异常", e);
             return false;
@@ -972,14 +1002,7 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
      */
     private boolean verifyWechatCallback(Map<String, String> params) {
         try {
-            String sign = params.get("sign");
-            if (!StringUtils.hasText(sign)) {
-                return false;
-            }
-            
-            // 模拟微信支付签名验证
-            // 实际实现中需要使用微信支付SDK进行签名验证
-            return true;
+            return channelSigner.verifyWechat(params);
         } catch (Exception e) {
             log.error("验证微信支付回调异常", e);
             return false;
@@ -991,13 +1014,7 @@ public class PaymentChannelServiceImpl implements PaymentChannelService {
      */
     private boolean verifyBankCardCallback(Map<String, String> params) {
         try {
-            String signature = params.get("signature");
-            if (!StringUtils.hasText(signature)) {
-                return false;
-            }
-            
-            // 模拟银行卡签名验证
-            return true;
+            return channelSigner.verifyBankCard(params);
         } catch (Exception e) {
             log.error("验证银行卡回调异常", e);
             return false;
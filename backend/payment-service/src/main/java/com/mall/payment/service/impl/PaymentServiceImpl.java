@@ -1,5 +1,6 @@
 package com.mall.payment.service.impl;
 
+import com.mall.payment.cache.PaymentOrderCache;
 import com.mall.payment.dto.request.PaymentCreateRequest;
 import com.mall.payment.dto.request.PaymentQueryRequest;
 import com.mall.payment.dto.response.PaymentOrderResponse;
@@ -10,11 +11,14 @@ import com.mall.payment.entity.PaymentRecord;
 import com.mall.payment.enums.PaymentMethod;
 import com.mall.payment.enums.PaymentStatus;
 import com.mall.payment.exception.PaymentException;
+import com.mall.payment.notify.PaymentStatusNotifier;
 import com.mall.payment.repository.PaymentOrderRepository;
 import com.mall.payment.repository.PaymentRecordRepository;
 import com.mall.payment.service.PaymentService;
 import com.mall.payment.service.PaymentChannelService;
 import com.mall.payment.service.RiskControlService;
+import com.mall.payment.statistics.PaymentStatisticsRollup;
+import com.mall.payment.sync.ChannelStatusSyncEngine;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
@@ -22,8 +26,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -32,16 +34,20 @@ import org.springframework.data.jpa.domain.Specification;
 import java.util.Map;
 import java.util.HashMap;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
 import jakarta.annotation.PostConstruct;
 
 import jakarta.persistence.criteria.Predicate;
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -70,7 +76,7 @@ import java.util.concurrent.TimeUnit;
  * 
  * <p>技术特性：</p>
  * <ul>
- *   <li>缓存策略：Redis缓存热点数据，提升查询性能</li>
+ *   <li>缓存策略：本地内存 + Redis两级缓存，带版本号防止旧数据回写</li>
  *   <li>分布式锁：防止并发支付导致的数据不一致</li>
  *   <li>监控指标：Micrometer集成，提供完整的业务监控</li>
  *   <li>风控集成：支付前风控检查，保障资金安全</li>
@@ -78,7 +84,7 @@ import java.util.concurrent.TimeUnit;
  * </ul>
  * 
  * @author lingbai
- * @version 1.2
+ * @version 2.2
  * @since 2025-11-01
  * 
  * <p>修改日志：</p>
@@ -86,6 +92,16 @@ import java.util.concurrent.TimeUnit;
  *   <li>V1.0 2024-12-01：初始版本，实现基础支付功能</li>
  *   <li>V1.1 2025-01-01：添加缓存支持、监控指标、风控集成和分布式锁</li>
  *   <li>V1.2 2025-11-01：完善Javadoc注释，优化异常处理和日志记录</li>
+ *   <li>V1.3 2026-10-19：支付统计改为数据库端按状态分组聚合</li>
+ *   <li>V1.4 2026-10-19：订单状态变化时增量累加日统计桶</li>
+ *   <li>V1.5 2026-10-19：支付状态同步改为分页、按渠道并发限流查询和批量更新</li>
+ *   <li>V1.6 2026-10-19：支付订单查询改用PaymentOrderCache单一缓存层，移除@Cacheable和手动Redis缓存</li>
+ *   <li>V1.7 2026-10-19：过期订单处理和过期记录清理改为键集分页、按批批量更新/删除</li>
+ *   <li>V1.8 2026-10-19：订单状态变更后广播状态通知，供长轮询接口等待</li>
+ *   <li>V1.9 2026-10-19：支付失败回调与成功回调共用同一把锁，并在锁内拒绝把已支付订单改为失败</li>
+ *   <li>V2.0 2026-10-19：发起支付、发起失败回退、重试重置和批量过期同样广播状态通知</li>
+ *   <li>V2.1 2026-10-19：保存发起和重试支付时选中的收单端点，状态同步按该端点查询</li>
+ *   <li>V2.2 2026-10-19：清理过期记录时先锁定仍为成功状态的订单，退款单、退款记录和支付记录只删除被锁定订单的数据</li>
  * </ul>
  */
 @Service
@@ -101,6 +117,12 @@ public class PaymentServiceImpl implements PaymentService {
     private final RiskControlService riskControlService;
     private final RedisTemplate<String, Object> redisTemplate;
     private final MeterRegistry meterRegistry;
+    private final PaymentStatisticsRollup statisticsRollup;
+    private final ChannelStatusSyncEngine channelStatusSyncEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final PaymentOrderCache paymentOrderCache;
+    private final PaymentStatusNotifier statusNotifier;
     
     // 监控指标
     private Counter paymentCreateCounter;
@@ -108,12 +130,39 @@ public class PaymentServiceImpl implements PaymentService {
     private Counter paymentFailureCounter;
     private Timer paymentProcessTimer;
     
-    // 缓存键前缀
-    private static final String PAYMENT_ORDER_CACHE_PREFIX = "payment:order:";
+    // 分布式锁键前缀
     private static final String PAYMENT_LOCK_PREFIX = "payment:lock:";
+
+    // 状态同步批量更新，只更新仍处于处理中的订单
+    private static final String SYNC_PAYMENT_STATUS_SQL = "UPDATE payment_orders SET status = ?, "
+            + "pay_time = COALESCE(pay_time, ?), actual_amount = COALESCE(?, actual_amount), updated_at = ? "
+            + "WHERE id = ? AND status = 'PROCESSING'";
+
+    // 过期订单批量更新，只更新仍处于待支付的订单
+    private static final String EXPIRE_PAYMENT_ORDER_SQL = "UPDATE payment_orders SET status = 'EXPIRED', "
+            + "failure_reason = ?, updated_at = ? WHERE id = ? AND status = 'PENDING'";
+
+    // 批量写入支付记录
+    private static final String INSERT_PAYMENT_RECORD_SQL = "INSERT INTO payment_records (id, payment_order_id, "
+            + "payment_method, amount, status, retry_count, action, description, created_at, updated_at) "
+            + "VALUES (?, ?, ?, ?, ?, 0, ?, ?, ?, ?)";
+
+    // 按批清理支付订单及其退款单、退款记录和支付记录：先锁定仍为成功状态的订单，其余删除只针对被锁定的订单
+    private static final String LOCK_CLEANUP_PAYMENT_ORDERS_SQL = "SELECT id FROM payment_orders WHERE id IN (%s) "
+            + "AND status = 'SUCCESS' FOR UPDATE";
+    private static final String DELETE_REFUND_RECORDS_SQL = "DELETE FROM refund_records WHERE refund_order_id IN "
+            + "(SELECT id FROM refund_orders WHERE payment_order_id IN (%s))";
+    private static final String DELETE_REFUND_ORDERS_SQL = "DELETE FROM refund_orders WHERE payment_order_id IN (%s)";
+    private static final String DELETE_PAYMENT_RECORDS_SQL = "DELETE FROM payment_records WHERE payment_order_id IN (%s)";
+    private static final String DELETE_PAYMENT_ORDERS_SQL = "DELETE FROM payment_orders WHERE id IN (%s)";
+
+    // 过期处理和记录清理每批处理的订单数
+    private static final int MAINTENANCE_BATCH_SIZE = 500;
+
+    // 键集分页首页的起始时间，早于所有订单
+    private static final LocalDateTime KEYSET_START_TIME = LocalDateTime.of(2000, 1, 1, 0, 0);
     
-    // 缓存过期时间（秒）
-    private static final long CACHE_EXPIRE_TIME = 300;
+    // 分布式锁过期时间（秒）
     private static final long LOCK_EXPIRE_TIME = 30;
     
     /**
@@ -176,6 +225,7 @@ public class PaymentServiceImpl implements PaymentService {
                 
                 // 5. 保存订单（先保存以获得ID）
                 paymentOrder = paymentOrderRepository.save(paymentOrder);
+                statisticsRollup.recordOrderTransition(paymentOrder, null);
 
                 // 6. 风控检查
                 performRiskControl(request, paymentOrder.getId());
@@ -183,10 +233,7 @@ public class PaymentServiceImpl implements PaymentService {
                 // 7. 创建支付记录
                 createPaymentRecord(paymentOrder, "订单创建", "支付订单创建成功");
 
-                // 8. 缓存支付订单
-                cachePaymentOrder(paymentOrder);
-
-                // 9. 更新监控指标
+                // 8. 更新监控指标
                 paymentCreateCounter.increment();
 
                 log.info("支付订单创建成功，支付订单ID: {}, 业务订单ID: {}", paymentOrder.getId(), request.getOrderId());
@@ -217,28 +264,13 @@ public class PaymentServiceImpl implements PaymentService {
      * @return 支付订单详情
      */
     @Override
-    @Transactional(readOnly = true)
-    @Cacheable(value = "paymentOrder", key = "#paymentOrderId", unless = "#result == null")
     public PaymentOrderResponse getPaymentOrder(String paymentOrderId) {
         log.debug("查询支付订单详情，支付订单ID: {}", paymentOrderId);
-        
-        // 先从缓存获取
-        PaymentOrderResponse cachedResponse = getCachedPaymentOrder(paymentOrderId);
-        if (cachedResponse != null) {
-            log.debug("从缓存获取支付订单，订单ID: {}", paymentOrderId);
-            return cachedResponse;
-        }
-        
-        // 缓存未命中，从数据库查询
-        Optional<PaymentOrder> orderOpt = paymentOrderRepository.findByIdAndDeletedFalse(paymentOrderId);
-        if (orderOpt.isPresent()) {
-            PaymentOrderResponse response = convertToResponse(orderOpt.get());
-            // 更新缓存
-            cachePaymentOrderResponse(paymentOrderId, response);
-            return response;
-        }
-        
-        return null;
+
+        // 缓存未命中时从数据库查询，同一订单的并发未命中只查询一次
+        return paymentOrderCache.get(paymentOrderId, id -> paymentOrderRepository.findByIdAndDeletedFalse(id)
+                .map(this::convertToResponse)
+                .orElse(null));
     }
 
     /**
@@ -338,7 +370,6 @@ public class PaymentServiceImpl implements PaymentService {
      * @throws PaymentException 当支付业务异常时
      */
     @Override
-    @CacheEvict(value = "paymentOrder", key = "#paymentOrderId")
     public Map<String, Object> initiatePayment(String paymentOrderId, String clientIp, String userAgent) {
         Timer.Sample sample = Timer.start(meterRegistry);
         log.info("发起支付，支付订单ID: {}", paymentOrderId);
@@ -366,11 +397,14 @@ public class PaymentServiceImpl implements PaymentService {
                 paymentOrder.updateStatus(PaymentStatus.PROCESSING);
                 paymentOrderRepository.save(paymentOrder);
                 
-                // 5. 清除缓存
-                evictPaymentOrderCache(paymentOrderId);
+                // 5. 清除缓存并广播状态变更
+                paymentOrderCache.invalidate(paymentOrderId);
+                statusNotifier.publish(paymentOrderId, paymentOrder.getStatus());
                 
                 // 6. 调用支付渠道服务发起支付
                 String paymentResult = paymentChannelService.initiatePayment(paymentOrder);
+                // 保存路由选中的收单端点，后续查询、取消、同步和退款发往同一端点
+                paymentOrderRepository.save(paymentOrder);
                 
                 // 7. 记录支付操作
                 createPaymentRecord(paymentOrder, "发起支付", "调用第三方支付接口成功");
@@ -395,6 +429,8 @@ public class PaymentServiceImpl implements PaymentService {
                 paymentOrder.updateStatus(PaymentStatus.PENDING);
                 paymentOrder.setFailureReason("支付发起失败: " + e.getMessage());
                 paymentOrderRepository.save(paymentOrder);
+                paymentOrderCache.invalidate(paymentOrderId);
+                statusNotifier.publish(paymentOrderId, paymentOrder.getStatus());
                 
                 // 记录失败信息
                 createPaymentRecord(paymentOrder, "发起支付失败", e.getMessage());
@@ -422,7 +458,6 @@ public class PaymentServiceImpl implements PaymentService {
      * @return 处理结果
      */
     @Override
-    @CacheEvict(value = "paymentOrder", key = "#paymentOrderId")
     public boolean handlePaymentSuccess(String paymentOrderId, String thirdPartyOrderNo, 
                                       BigDecimal actualAmount, String channelResponse) {
         log.info("处理支付成功回调，支付订单ID: {}, 第三方订单号: {}, 实际金额: {}", 
@@ -452,6 +487,7 @@ public class PaymentServiceImpl implements PaymentService {
             }
 
             // 3. 更新订单信息
+            PaymentStatus previousStatus = paymentOrder.getStatus();
             paymentOrder.updateStatus(PaymentStatus.SUCCESS);
             paymentOrder.setThirdPartyOrderNo(thirdPartyOrderNo);
             paymentOrder.setActualAmount(actualAmount);
@@ -464,9 +500,11 @@ public class PaymentServiceImpl implements PaymentService {
             
             // 5. 保存订单
             paymentOrderRepository.save(paymentOrder);
+            statisticsRollup.recordOrderTransition(paymentOrder, previousStatus);
             
             // 6. 清除缓存
-            evictPaymentOrderCache(paymentOrderId);
+            paymentOrderCache.invalidate(paymentOrderId);
+            statusNotifier.publish(paymentOrder.getId(), paymentOrder.getStatus());
             
             // 7. 记录支付成功
             createPaymentRecord(paymentOrder, "支付成功", "第三方支付回调成功");
@@ -487,6 +525,8 @@ public class PaymentServiceImpl implements PaymentService {
 
     /**
      * 处理支付失败回调
+     * 与支付成功回调使用同一把分布式锁，两者对同一订单串行执行；
+     * 已支付成功（含已退款、部分退款）的订单忽略失败回调，已失败的订单忽略重复回调，均不再发出状态通知
      * 
      * @param paymentOrderId 支付订单ID
      * @param failureReason 失败原因
@@ -497,20 +537,42 @@ public class PaymentServiceImpl implements PaymentService {
     public boolean handlePaymentFailure(String paymentOrderId, String failureReason, String channelResponse) {
         log.info("处理支付失败回调，支付订单ID: {}, 失败原因: {}", paymentOrderId, failureReason);
 
+        String lockKey = PAYMENT_LOCK_PREFIX + "success:" + paymentOrderId;
+        if (!acquireDistributedLock(lockKey, LOCK_EXPIRE_TIME)) {
+            log.warn("支付回调正在处理中，稍后重试失败回调，支付订单ID: {}", paymentOrderId);
+            return false;
+        }
+
         try {
             // 1. 查询支付订单
             PaymentOrder paymentOrder = getPaymentOrderEntity(paymentOrderId);
             
-            // 2. 更新订单状态
+            // 2. 验证订单状态
+            PaymentStatus current = paymentOrder.getStatus();
+            if (current == PaymentStatus.SUCCESS || current == PaymentStatus.REFUNDED
+                    || current == PaymentStatus.PARTIAL_REFUNDED) {
+                log.warn("订单已支付成功，忽略失败回调，支付订单ID: {}, 当前状态: {}", paymentOrderId, current);
+                return true;
+            }
+            if (current == PaymentStatus.FAILED) {
+                log.warn("订单已经是失败状态，忽略重复回调，支付订单ID: {}", paymentOrderId);
+                return true;
+            }
+            
+            // 3. 更新订单状态
+            PaymentStatus previousStatus = paymentOrder.getStatus();
             paymentOrder.updateStatus(PaymentStatus.FAILED);
             paymentOrder.setFailureReason(failureReason);
             paymentOrder.setChannelResponse(channelResponse);
             paymentOrder.incrementRetryCount();
             
-            // 3. 保存订单
+            // 4. 保存订单
             paymentOrderRepository.save(paymentOrder);
+            statisticsRollup.recordOrderTransition(paymentOrder, previousStatus);
+            paymentOrderCache.invalidate(paymentOrder.getId());
+            statusNotifier.publish(paymentOrder.getId(), paymentOrder.getStatus());
             
-            // 4. 记录支付失败
+            // 5. 记录支付失败
             createPaymentRecord(paymentOrder, "支付失败", failureReason);
             
             log.info("支付失败处理完成，支付订单ID: {}", paymentOrderId);
@@ -519,6 +581,8 @@ public class PaymentServiceImpl implements PaymentService {
         } catch (Exception e) {
             log.error("处理支付失败回调失败，支付订单ID: {}", paymentOrderId, e);
             return false;
+        } finally {
+            releaseDistributedLock(lockKey);
         }
     }
 
@@ -552,11 +616,15 @@ public class PaymentServiceImpl implements PaymentService {
             }
 
             // 4. 更新订单状态
+            PaymentStatus previousStatus = paymentOrder.getStatus();
             paymentOrder.updateStatus(PaymentStatus.CANCELLED);
             paymentOrder.setFailureReason(reason);
             
             // 5. 保存订单
             paymentOrderRepository.save(paymentOrder);
+            statisticsRollup.recordOrderTransition(paymentOrder, previousStatus);
+            paymentOrderCache.invalidate(paymentOrder.getId());
+            statusNotifier.publish(paymentOrder.getId(), paymentOrder.getStatus());
             
             // 6. 记录取消操作
             createPaymentRecord(paymentOrder, "订单取消", reason);
@@ -581,20 +649,30 @@ public class PaymentServiceImpl implements PaymentService {
         log.debug("查询支付状态，支付订单ID: {}", paymentOrderId);
 
         try {
-            // 1. 查询本地订单状态
+            // 1. 非处理中的订单直接返回缓存中的状态，结账页轮询不访问数据库
+            PaymentOrderResponse cachedOrder = getPaymentOrder(paymentOrderId);
+            if (cachedOrder != null && cachedOrder.getStatus() != PaymentStatus.PROCESSING) {
+                return cachedOrder.getStatus();
+            }
+
+            // 2. 查询本地订单状态
             PaymentOrder paymentOrder = getPaymentOrderEntity(paymentOrderId);
             
-            // 2. 如果订单是处理中状态，查询第三方平台状态
+            // 3. 如果订单是处理中状态，查询第三方平台状态
             if (paymentOrder.getStatus() == PaymentStatus.PROCESSING) {
                 PaymentStatus remoteStatus = paymentChannelService.queryPaymentStatus(paymentOrder);
                 
-                // 3. 如果远程状态与本地状态不一致，更新本地状态
+                // 4. 如果远程状态与本地状态不一致，更新本地状态
                 if (remoteStatus != null && remoteStatus != paymentOrder.getStatus()) {
                     log.info("同步远程支付状态，支付订单ID: {}, 本地状态: {}, 远程状态: {}", 
                             paymentOrderId, paymentOrder.getStatus(), remoteStatus);
                     
+                    PaymentStatus previousStatus = paymentOrder.getStatus();
                     paymentOrder.updateStatus(remoteStatus);
                     paymentOrderRepository.save(paymentOrder);
+                    statisticsRollup.recordOrderTransition(paymentOrder, previousStatus);
+                    paymentOrderCache.invalidate(paymentOrder.getId());
+                    statusNotifier.publish(paymentOrder.getId(), paymentOrder.getStatus());
                     
                     // 记录状态同步
                     createPaymentRecord(paymentOrder, "状态同步", "从第三方平台同步状态: " + remoteStatus);
@@ -613,6 +691,7 @@ public class PaymentServiceImpl implements PaymentService {
 
     /**
      * 处理过期订单
+     * 按（过期时间, ID）键集分页扫描，每批在一个事务内批量更新状态并写入支付记录
      * 
      * @return 处理的过期订单数量
      */
@@ -620,38 +699,90 @@ public class PaymentServiceImpl implements PaymentService {
     public int handleExpiredOrders() {
         log.info("开始处理过期订单");
 
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime lastExpireTime = KEYSET_START_TIME;
+        String lastId = "";
+        int count = 0;
         try {
-            // 查询所有过期的待支付订单
-            LocalDateTime now = LocalDateTime.now();
-            List<PaymentOrder> expiredOrders = paymentOrderRepository
-                    .findExpiredOrders(PaymentStatus.PENDING, now);
+            while (true) {
+                List<PaymentOrder> expiredOrders = paymentOrderRepository.findExpiredOrdersAfter(
+                        now, lastExpireTime, lastId, PageRequest.of(0, MAINTENANCE_BATCH_SIZE));
+                if (expiredOrders.isEmpty()) {
+                    break;
+                }
+                PaymentOrder last = expiredOrders.get(expiredOrders.size() - 1);
+                lastExpireTime = last.getExpireTime();
+                lastId = last.getId();
 
-            int count = 0;
-            for (PaymentOrder order : expiredOrders) {
                 try {
-                    // 更新订单状态为已过期
-                    order.updateStatus(PaymentStatus.EXPIRED);
-                    order.setFailureReason("订单已过期");
-                    paymentOrderRepository.save(order);
-                    
-                    // 记录过期操作
-                    createPaymentRecord(order, "订单过期", "订单超过有效期自动过期");
-                    
-                    count++;
-                    log.debug("订单过期处理完成，支付订单ID: {}", order.getId());
-                    
+                    count += expireOrders(expiredOrders, now);
                 } catch (Exception e) {
-                    log.error("处理过期订单失败，支付订单ID: {}", order.getId(), e);
+                    log.error("批量处理过期订单失败，本批订单数: {}", expiredOrders.size(), e);
+                }
+                if (expiredOrders.size() < MAINTENANCE_BATCH_SIZE) {
+                    break;
                 }
             }
-
-            log.info("过期订单处理完成，共处理 {} 个订单", count);
-            return count;
-            
         } catch (Exception e) {
             log.error("处理过期订单失败", e);
+        }
+
+        log.info("过期订单处理完成，共处理 {} 个订单", count);
+        return count;
+    }
+
+    /**
+     * 批量将一批订单置为已过期
+     * 已被其他流程推进的订单不会被更新，也不会写入支付记录
+     * 
+     * @param orders 待过期的订单
+     * @param now 处理时间
+     * @return 实际过期的订单数量
+     */
+    private int expireOrders(List<PaymentOrder> orders, LocalDateTime now) {
+        String reason = "订单已过期";
+        Timestamp updatedAt = Timestamp.valueOf(now);
+        List<PaymentOrder> expired = transactionTemplate.execute(status -> {
+            int[] counts = jdbcTemplate.batchUpdate(EXPIRE_PAYMENT_ORDER_SQL, orders, orders.size(),
+                    (ps, order) -> {
+                        ps.setString(1, reason);
+                        ps.setTimestamp(2, updatedAt);
+                        ps.setString(3, order.getId());
+                    })[0];
+            List<PaymentOrder> changed = new ArrayList<>();
+            for (int i = 0; i < orders.size(); i++) {
+                if (counts[i] == 0) {
+                    continue;
+                }
+                PaymentOrder order = orders.get(i);
+                order.setStatus(PaymentStatus.EXPIRED);
+                order.setFailureReason(reason);
+                order.setUpdatedAt(now);
+                statisticsRollup.recordOrderTransition(order, PaymentStatus.PENDING);
+                statusNotifier.publish(order.getId(), PaymentStatus.EXPIRED);
+                changed.add(order);
+            }
+            if (!changed.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_PAYMENT_RECORD_SQL, changed, changed.size(), (ps, order) -> {
+                    ps.setString(1, UUID.randomUUID().toString());
+                    ps.setString(2, order.getId());
+                    ps.setString(3, order.getPaymentMethod().name());
+                    ps.setBigDecimal(4, order.getAmount());
+                    ps.setString(5, PaymentStatus.EXPIRED.name());
+                    ps.setString(6, "订单过期");
+                    ps.setString(7, "订单超过有效期自动过期");
+                    ps.setTimestamp(8, updatedAt);
+                    ps.setTimestamp(9, updatedAt);
+                });
+            }
+            return changed;
+        });
+        if (expired == null || expired.isEmpty()) {
             return 0;
         }
+        paymentOrderCache.invalidateAll(expired.stream().map(PaymentOrder::getId).toList());
+        log.debug("本批过期订单处理完成，数量: {}", expired.size());
+        return expired.size();
     }
 
     /**
@@ -681,12 +812,16 @@ public class PaymentServiceImpl implements PaymentService {
             }
 
             // 4. 重置订单状态
+            PaymentStatus previousStatus = paymentOrder.getStatus();
             paymentOrder.updateStatus(PaymentStatus.PENDING);
             paymentOrder.setFailureReason(null);
             paymentOrder.setRetryCount(paymentOrder.getRetryCount() + 1);
             
             // 5. 保存订单
             paymentOrderRepository.save(paymentOrder);
+            statisticsRollup.recordOrderTransition(paymentOrder, previousStatus);
+            paymentOrderCache.invalidate(paymentOrder.getId());
+            statusNotifier.publish(paymentOrder.getId(), paymentOrder.getStatus());
             
             // 6. 记录重试操作
             createPaymentRecord(paymentOrder, "支付重试", "重置订单状态，准备重新支付");
@@ -717,49 +852,33 @@ public class PaymentServiceImpl implements PaymentService {
         log.debug("获取支付统计数据，开始时间: {}, 结束时间: {}, 用户ID: {}", startTime, endTime, userId);
 
         try {
-            // 构建查询条件
-            Specification<PaymentOrder> spec = (root, query, criteriaBuilder) -> {
-                List<Predicate> predicates = new ArrayList<>();
-                
-                // 时间范围
-                if (startTime != null) {
-                    predicates.add(criteriaBuilder.greaterThanOrEqualTo(root.get("createdAt"), startTime));
-                }
-                if (endTime != null) {
-                    predicates.add(criteriaBuilder.lessThanOrEqualTo(root.get("createdAt"), endTime));
-                }
-                
-                // 用户ID
-                if (StringUtils.hasText(userId)) {
-                    predicates.add(criteriaBuilder.equal(root.get("userId"), userId));
-                }
-                
-                // 未删除
-                predicates.add(criteriaBuilder.equal(root.get("deleted"), false));
-                
-                return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
-            };
-
-            // 查询所有订单
-            List<PaymentOrder> orders = paymentOrderRepository.findAll(spec);
+            // 数据库端按状态分组聚合，内存占用与时间范围无关
+            List<Object[]> rows = paymentOrderRepository.aggregateByStatus(
+                    startTime, endTime, StringUtils.hasText(userId) ? userId : null);
             
             // 统计数据
-            long totalOrders = orders.size();
-            long successOrders = orders.stream().mapToLong(o -> o.getStatus() == PaymentStatus.SUCCESS ? 1 : 0).sum();
-            long failedOrders = orders.stream().mapToLong(o -> o.getStatus() == PaymentStatus.FAILED ? 1 : 0).sum();
-            long cancelledOrders = orders.stream().mapToLong(o -> o.getStatus() == PaymentStatus.CANCELLED ? 1 : 0).sum();
-            
-            BigDecimal totalAmount = orders.stream()
-                    .map(PaymentOrder::getAmount)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-                    
-            BigDecimal successAmount = orders.stream()
-                    .filter(o -> o.getStatus() == PaymentStatus.SUCCESS)
-                    .map(o -> {
-                        BigDecimal actualAmount = o.getActualAmount();
-                        return actualAmount != null ? actualAmount : o.getAmount();
-                    })
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            long totalOrders = 0;
+            long successOrders = 0;
+            long failedOrders = 0;
+            long cancelledOrders = 0;
+            BigDecimal totalAmount = BigDecimal.ZERO;
+            BigDecimal successAmount = BigDecimal.ZERO;
+            
+            for (Object[] row : rows) {
+                PaymentStatus status = (PaymentStatus) row[0];
+                long count = ((Number) row[1]).longValue();
+                totalOrders += count;
+                totalAmount = totalAmount.add(toBigDecimal(row[2]));
+                
+                if (status == PaymentStatus.SUCCESS) {
+                    successOrders = count;
+                    successAmount = toBigDecimal(row[3]);
+                } else if (status == PaymentStatus.FAILED) {
+                    failedOrders = count;
+                } else if (status == PaymentStatus.CANCELLED) {
+                    cancelledOrders = count;
+                }
+            }
 
             return new PaymentStatistics(totalOrders, successOrders, failedOrders, 
                                        cancelledOrders, totalAmount, successAmount);
@@ -772,6 +891,16 @@ public class PaymentServiceImpl implements PaymentService {
 
     // ==================== 私有方法 ====================
 
+    /**
+     * 将聚合查询结果转换为BigDecimal
+     */
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        return value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+    }
+
     /**
      * 验证创建支付订单请求参数
      */
@@ -922,76 +1051,6 @@ public class PaymentServiceImpl implements PaymentService {
         return response;
     }
     
-    // ==================== 缓存相关方法 ====================
-    
-    /**
-     * 缓存支付订单
-     * 
-     * @param paymentOrder 支付订单
-     */
-    private void cachePaymentOrder(PaymentOrder paymentOrder) {
-        try {
-            String cacheKey = PAYMENT_ORDER_CACHE_PREFIX + paymentOrder.getId();
-            PaymentOrderResponse response = convertToResponse(paymentOrder);
-            redisTemplate.opsForValue().set(cacheKey, response, CACHE_EXPIRE_TIME, TimeUnit.SECONDS);
-            log.debug("缓存支付订单成功，订单ID: {}", paymentOrder.getId());
-        } catch (Exception e) {
-            log.warn("缓存支付订单失败，订单ID: {}, 错误: {}", paymentOrder.getId(), e.getMessage());
-        }
-    }
-    
-    /**
-     * 从缓存获取支付订单
-     * 
-     * @param paymentOrderId 支付订单ID
-     * @return 支付订单响应
-     */
-    private PaymentOrderResponse getCachedPaymentOrder(String paymentOrderId) {
-        try {
-            String cacheKey = PAYMENT_ORDER_CACHE_PREFIX + paymentOrderId;
-            Object cached = redisTemplate.opsForValue().get(cacheKey);
-            if (cached instanceof PaymentOrderResponse) {
-                return (PaymentOrderResponse) cached;
-            }
-        } catch (Exception e) {
-            log.warn("从缓存获取支付订单失败，订单ID: {}, 错误: {}", paymentOrderId, e.getMessage());
-        }
-        return null;
-    }
-    
-    /**
-     * 缓存支付订单响应
-     * 
-     * @param paymentOrderId 支付订单ID
-     * @param response 响应对象
-     */
-    private void cachePaymentOrderResponse(String paymentOrderId, PaymentOrderResponse response) {
-        try {
-            String cacheKey = PAYMENT_ORDER_CACHE_PREFIX + paymentOrderId;
-            redisTemplate.opsForValue().set(cacheKey, response, CACHE_EXPIRE_TIME, TimeUnit.SECONDS);
-            log.debug("缓存支付订单响应成功，订单ID: {}", paymentOrderId);
-        } catch (Exception e) {
-            log.warn("缓存支付订单响应失败，订单ID: {}, 错误: {}", paymentOrderId, e.getMessage());
-        }
-    }
-    
-    /**
-     * 清除支付订单缓存
-     * 
-     * @param paymentOrderId 支付订单ID
-     */
-    private void evictPaymentOrderCache(String paymentOrderId) {
-        try {
-            String cacheKey = PAYMENT_ORDER_CACHE_PREFIX + paymentOrderId;
-            redisTemplate.delete(cacheKey);
-            log.debug("清除支付订单缓存成功，订单ID: {}", paymentOrderId);
-        } catch (Exception e) {
-            log.warn("清除支付订单缓存失败，订单ID: {}, 错误: {}", paymentOrderId, e.getMessage());
-        }
-    }
-    
-    // ==================== 分布式锁相关方法 ====================
-    
     /**
      * 获取分布式锁
      * 
@@ -1140,10 +1199,15 @@ public class PaymentServiceImpl implements PaymentService {
                     
                     if (result.isSuccess()) {
                         // 更新订单状态为处理中
+                        PaymentStatus previousStatus = order.getStatus();
                         order.setStatus(PaymentStatus.PROCESSING);
                         order.setThirdPartyOrderNo(result.getThirdPartyOrderNo());
+                        order.setChannelEndpoint(result.getChannelEndpoint());
                         order.setUpdatedAt(LocalDateTime.now());
                         paymentOrderRepository.save(order);
+                        statisticsRollup.recordOrderTransition(order, previousStatus);
+                        paymentOrderCache.invalidate(order.getId());
+                        statusNotifier.publish(order.getId(), order.getStatus());
                         
                         successCount++;
                         log.info("支付订单重试成功，订单ID: {}, 第三方订单号: {}", 
@@ -1171,6 +1235,9 @@ public class PaymentServiceImpl implements PaymentService {
      * 同步支付状态
      * 定时任务调用，从第三方支付平台同步订单状态
      * 
+     * <p>按键集分页加载处理中的订单，每页由同步引擎按渠道并发、限流查询，
+     * 状态有变化的订单在一个事务内批量更新。</p>
+     * 
      * @return 同步成功的订单数量
      * @author lingbai
      * @since V1.0 2025-01-27: 新增定时任务同步支付状态功能
@@ -1178,61 +1245,49 @@ public class PaymentServiceImpl implements PaymentService {
     @Override
     public int syncPaymentStatus() {
         log.info("开始同步支付状态");
+        long startTime = System.currentTimeMillis();
         
         try {
             // 查询处理中状态的支付订单（创建时间在48小时内）
             LocalDateTime cutoffTime = LocalDateTime.now().minusHours(48);
-            List<PaymentOrder> processingOrders = paymentOrderRepository.findProcessingOrdersForSync(cutoffTime);
+            int pageSize = channelStatusSyncEngine.getPageSize();
+            LocalDateTime lastCreatedAt = cutoffTime;
+            String lastId = "";
+            int totalCount = 0;
+            int syncCount = 0;
             
-            if (processingOrders.isEmpty()) {
-                log.info("没有需要同步状态的支付订单");
-                return 0;
+            while (true) {
+                List<PaymentOrder> processingOrders = paymentOrderRepository.findProcessingOrdersForSyncAfter(
+                        cutoffTime, lastCreatedAt, lastId, PageRequest.of(0, pageSize));
+                if (processingOrders.isEmpty()) {
+                    break;
+                }
+                totalCount += processingOrders.size();
+                
+                // 并发查询第三方支付状态
+                List<PaymentChannelService.PaymentQueryResult> queryResults = channelStatusSyncEngine.queryAll(
+                        processingOrders,
+                        PaymentOrder::getPaymentMethod,
+                        order -> paymentChannelService.queryPaymentStatus(
+                                order.getPaymentMethod(), order.getChannelEndpoint(), order.getThirdPartyOrderNo()));
+                
+                syncCount += applyPaymentSyncResults(processingOrders, queryResults);
+                
+                PaymentOrder last = processingOrders.get(processingOrders.size() - 1);
+                lastCreatedAt = last.getCreatedAt();
+                lastId = last.getId();
+                if (processingOrders.size() < pageSize) {
+                    break;
+                }
             }
             
-            int syncCount = 0;
-            for (PaymentOrder order : processingOrders) {
-                try {
-                    log.debug("同步支付状态，订单ID: {}, 第三方订单号: {}", 
-                             order.getId(), order.getThirdPartyOrderNo());
-                    
-                    // 查询第三方支付状态
-                    PaymentChannelService.PaymentQueryResult queryResult = 
-                        paymentChannelService.queryPaymentStatus(
-                            order.getPaymentMethod(),
-                            order.getThirdPartyOrderNo()
-                        );
-                    
-                    if (queryResult != null && queryResult.getStatus() != null) {
-                        PaymentStatus newStatus = queryResult.getStatus();
-                        
-                        // 如果状态有变化，更新订单状态
-                        if (!order.getStatus().equals(newStatus)) {
-                            PaymentStatus oldStatus = order.getStatus();
-                            order.setStatus(newStatus);
-                            order.setUpdatedAt(LocalDateTime.now());
-                            
-                            // 如果支付成功，记录支付成功信息
-                            if (newStatus == PaymentStatus.SUCCESS) {
-                                order.setPaidAt(LocalDateTime.now());
-                                if (queryResult.getActualAmount() != null) {
-                                    order.setActualAmount(queryResult.getActualAmount());
-                                }
-                            }
-                            
-                            paymentOrderRepository.save(order);
-                            syncCount++;
-                            
-                            log.info("支付状态同步成功，订单ID: {}, 状态变更: {} -> {}", 
-                                    order.getId(), oldStatus, newStatus);
-                        }
-                    }
-                    
-                } catch (Exception e) {
-                    log.error("同步支付状态异常，订单ID: {}, 错误: {}", order.getId(), e.getMessage(), e);
-                }
+            if (totalCount == 0) {
+                log.info("没有需要同步状态的支付订单");
+                return 0;
             }
             
-            log.info("支付状态同步完成，总数: {}, 同步: {}", processingOrders.size(), syncCount);
+            log.info("支付状态同步完成，总数: {}, 同步: {}, 耗时: {}ms", 
+                    totalCount, syncCount, System.currentTimeMillis() - startTime);
             return syncCount;
             
         } catch (Exception e) {
@@ -1241,54 +1296,153 @@ public class PaymentServiceImpl implements PaymentService {
         }
     }
 
+    /**
+     * 批量写入一页订单的同步结果
+     * 更新条件带上处理中状态，期间已被支付回调更新的订单不会被覆盖
+     * 
+     * @param orders 本页订单
+     * @param queryResults 与订单一一对应的查询结果
+     * @return 实际更新的订单数量
+     */
+    private int applyPaymentSyncResults(List<PaymentOrder> orders, 
+                                        List<PaymentChannelService.PaymentQueryResult> queryResults) {
+        List<PaymentOrder> changedOrders = new ArrayList<>();
+        List<PaymentStatus> previousStatuses = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        
+        for (int i = 0; i < orders.size(); i++) {
+            PaymentOrder order = orders.get(i);
+            PaymentChannelService.PaymentQueryResult queryResult = queryResults.get(i);
+            if (queryResult == null || queryResult.getStatus() == null || queryResult.getStatus() == order.getStatus()) {
+                continue;
+            }
+            
+            previousStatuses.add(order.getStatus());
+            order.setStatus(queryResult.getStatus());
+            order.setUpdatedAt(now);
+            // 如果支付成功，记录支付成功信息
+            if (queryResult.getStatus() == PaymentStatus.SUCCESS) {
+                order.setPaidAt(now);
+                if (queryResult.getActualAmount() != null) {
+                    order.setActualAmount(queryResult.getActualAmount());
+                }
+            }
+            changedOrders.add(order);
+        }
+        
+        if (changedOrders.isEmpty()) {
+            return 0;
+        }
+        
+        int[] updateCounts = transactionTemplate.execute(status -> {
+            int[] counts = jdbcTemplate.batchUpdate(SYNC_PAYMENT_STATUS_SQL, changedOrders, changedOrders.size(),
+                    (ps, order) -> {
+                        ps.setString(1, order.getStatus().name());
+                        ps.setTimestamp(2, order.getPayTime() != null ? Timestamp.valueOf(order.getPayTime()) : null);
+                        ps.setBigDecimal(3, order.getActualAmount());
+                        ps.setTimestamp(4, Timestamp.valueOf(order.getUpdatedAt()));
+                        ps.setString(5, order.getId());
+                    })[0];
+            for (int i = 0; i < changedOrders.size(); i++) {
+                if (counts[i] != 0) {
+                    statisticsRollup.recordOrderTransition(changedOrders.get(i), previousStatuses.get(i));
+                }
+            }
+            return counts;
+        });
+        
+        int syncCount = 0;
+        for (int i = 0; i < changedOrders.size(); i++) {
+            PaymentOrder order = changedOrders.get(i);
+            if (updateCounts == null || updateCounts[i] == 0) {
+                log.info("支付订单状态已被其他流程更新，跳过同步结果，订单ID: {}", order.getId());
+                continue;
+            }
+            paymentOrderCache.invalidate(order.getId());
+            statusNotifier.publish(order.getId(), order.getStatus());
+            syncCount++;
+            log.info("支付状态同步成功，订单ID: {}, 状态变更: {} -> {}", 
+                    order.getId(), previousStatuses.get(i), order.getStatus());
+        }
+        return syncCount;
+    }
+
     /**
      * 清理过期的支付记录
-     * 清理指定时间之前的已完成支付记录
+     * 清理指定时间之前的已完成支付记录，按（创建时间, ID）键集分页，每批在独立事务内批量删除
      * 
      * @param cutoffTime 截止时间，早于此时间的记录将被清理
      * @return 清理的记录数量
      */
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public int cleanupExpiredRecords(LocalDateTime cutoffTime) {
         log.info("开始清理过期支付记录，截止时间: {}", cutoffTime);
-        
+
+        LocalDateTime lastCreatedAt = KEYSET_START_TIME;
+        String lastId = "";
+        int cleanedCount = 0;
         try {
-            // 查找需要清理的支付订单（已完成状态且创建时间早于截止时间）
-            List<PaymentOrder> expiredOrders = paymentOrderRepository.findByStatusAndCreatedAtBefore(
-                    PaymentStatus.SUCCESS, cutoffTime);
-            
-            if (expiredOrders.isEmpty()) {
-                log.info("没有找到需要清理的过期支付记录");
-                return 0;
-            }
-            
-            int cleanedCount = 0;
-            for (PaymentOrder order : expiredOrders) {
+            while (true) {
+                // 查找需要清理的支付订单（已完成状态且创建时间早于截止时间）
+                List<Object[]> candidates = paymentOrderRepository.findCleanupCandidatesAfter(PaymentStatus.SUCCESS,
+                        cutoffTime, lastCreatedAt, lastId, PageRequest.of(0, MAINTENANCE_BATCH_SIZE));
+                if (candidates.isEmpty()) {
+                    break;
+                }
+                Object[] last = candidates.get(candidates.size() - 1);
+                lastId = (String) last[0];
+                lastCreatedAt = (LocalDateTime) last[1];
+
+                List<String> orderIds = new ArrayList<>(candidates.size());
+                for (Object[] candidate : candidates) {
+                    orderIds.add((String) candidate[0]);
+                }
                 try {
-                    // 删除相关的支付记录
-                    paymentRecordRepository.deleteByPaymentOrderId(order.getId());
-                    
-                    // 删除支付订单
-                    paymentOrderRepository.delete(order);
-                    
-                    // 清理缓存
-                    evictPaymentOrderCache(order.getId());
-                    
-                    cleanedCount++;
-                    log.debug("清理过期支付记录成功，支付订单ID: {}", order.getId());
-                    
+                    cleanedCount += deleteOrders(orderIds);
                 } catch (Exception e) {
-                    log.error("清理过期支付记录失败，支付订单ID: {}", order.getId(), e);
+                    log.error("批量清理过期支付记录失败，本批订单数: {}", orderIds.size(), e);
+                }
+                if (candidates.size() < MAINTENANCE_BATCH_SIZE) {
+                    break;
                 }
             }
-            
-            log.info("过期支付记录清理完成，清理数量: {}", cleanedCount);
-            return cleanedCount;
-            
         } catch (Exception e) {
             log.error("清理过期支付记录异常", e);
-            return 0;
         }
+
+        if (cleanedCount == 0) {
+            log.info("没有找到需要清理的过期支付记录");
+        } else {
+            log.info("过期支付记录清理完成，清理数量: {}", cleanedCount);
+        }
+        return cleanedCount;
+    }
+
+    /**
+     * 在一个事务内删除一批支付订单及其关联的退款单、退款记录和支付记录
+     * 
+     * <p>候选订单在查询后可能已发起退款而不再是成功状态，先以 FOR UPDATE 锁定仍为成功状态的订单，
+     * 子表和订单只删除这些订单的数据，避免订单保留而退款单、支付记录已被删除。</p>
+     * 
+     * @param orderIds 支付订单ID
+     * @return 删除的支付订单数量
+     */
+    private int deleteOrders(List<String> orderIds) {
+        Integer deleted = transactionTemplate.execute(status -> {
+            List<String> lockedIds = jdbcTemplate.queryForList(String.format(LOCK_CLEANUP_PAYMENT_ORDERS_SQL,
+                    String.join(", ", Collections.nCopies(orderIds.size(), "?"))), String.class, orderIds.toArray());
+            if (lockedIds.isEmpty()) {
+                return 0;
+            }
+            String placeholders = String.join(", ", Collections.nCopies(lockedIds.size(), "?"));
+            Object[] args = lockedIds.toArray();
+            jdbcTemplate.update(String.format(DELETE_REFUND_RECORDS_SQL, placeholders), args);
+            jdbcTemplate.update(String.format(DELETE_REFUND_ORDERS_SQL, placeholders), args);
+            jdbcTemplate.update(String.format(DELETE_PAYMENT_RECORDS_SQL, placeholders), args);
+            return jdbcTemplate.update(String.format(DELETE_PAYMENT_ORDERS_SQL, placeholders), args);
+        });
+        paymentOrderCache.invalidateAll(orderIds);
+        log.debug("本批过期支付记录清理完成，数量: {}", deleted);
+        return deleted != null ? deleted : 0;
     }
 }
\ No newline at end of file
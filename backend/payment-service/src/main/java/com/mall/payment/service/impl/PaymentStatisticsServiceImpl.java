@@ -11,13 +11,17 @@ import com.mall.payment.repository.PaymentOrderRepository;
 import com.mall.payment.repository.PaymentStatisticsRepository;
 import com.mall.payment.repository.RefundOrderRepository;
 import com.mall.payment.repository.RiskRecordRepository;
+import com.mall.payment.repository.UserFirstPaymentRepository;
 import com.mall.payment.service.PaymentStatisticsService;
+import com.mall.payment.statistics.PaymentStatisticsRollup;
+import com.mall.payment.statistics.UserFirstPaymentTracker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
@@ -32,8 +36,15 @@ import java.util.stream.Collectors;
  * 提供支付相关的统计分析功能实现
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.2
  * @since 2024-12-01
+ * 
+ * <p>修改日志：</p>
+ * <ul>
+ *   <li>V1.0 2024-12-01：初始版本</li>
+ *   <li>V1.1 2026-10-19：统计改为日统计桶增量UPSERT，月/年统计由日统计求和，日统计回填改为数据库端分组聚合</li>
+ *   <li>V1.2 2026-10-19：新用户数改为按用户首次支付时间做范围计数</li>
+ * </ul>
  */
 @Service
 @Transactional
@@ -53,54 +64,32 @@ public class PaymentStatisticsServiceImpl implements PaymentStatisticsService {
     @Autowired
     private RiskRecordRepository riskRecordRepository;
 
+    @Autowired
+    private PaymentStatisticsRollup statisticsRollup;
+
+    @Autowired
+    private UserFirstPaymentRepository userFirstPaymentRepository;
+
+    @Autowired
+    private UserFirstPaymentTracker firstPaymentTracker;
+
     // ==================== 统计数据更新方法 ====================
 
     @Override
     public void updatePaymentStatistics(PaymentOrder order) {
         logger.debug("更新支付订单统计，订单ID: {}", order.getId());
         
-        try {
-            LocalDate orderDate = order.getCreatedAt().toLocalDate();
-            
-            // 更新日统计
-            updateDailyStatistics(order, orderDate);
-            
-            // 更新月统计
-            updateMonthlyStatistics(order, orderDate);
-            
-            // 更新年统计
-            updateYearlyStatistics(order, orderDate);
-            
-            logger.debug("支付订单统计更新完成，订单ID: {}", order.getId());
-            
-        } catch (Exception e) {
-            logger.error("更新支付订单统计异常，订单ID: {}", order.getId(), e);
-            throw e;
-        }
+        // 按订单当前状态一次性累加到日统计桶，月/年统计由日统计汇总
+        statisticsRollup.recordOrderTransition(order, null);
     }
 
     @Override
     public void updateRefundStatistics(RefundOrder refund) {
         logger.debug("更新退款订单统计，退款ID: {}", refund.getId());
         
-        try {
-            LocalDate refundDate = refund.getCreatedAt().toLocalDate();
-            
-            // 更新日统计
-            updateDailyRefundStatistics(refund, refundDate);
-            
-            // 更新月统计
-            updateMonthlyRefundStatistics(refund, refundDate);
-            
-            // 更新年统计
-            updateYearlyRefundStatistics(refund, refundDate);
-            
-            logger.debug("退款订单统计更新完成，退款ID: {}", refund.getId());
-            
-        } catch (Exception e) {
-            logger.error("更新退款订单统计异常，退款ID: {}", refund.getId(), e);
-            throw e;
-        }
+        String paymentMethod = refund.getPaymentOrder() != null && refund.getPaymentOrder().getPaymentMethod() != null
+                ? refund.getPaymentOrder().getPaymentMethod().name() : null;
+        statisticsRollup.recordRefundSuccess(refund, paymentMethod);
     }
 
     @Override
@@ -108,13 +97,12 @@ public class PaymentStatisticsServiceImpl implements PaymentStatisticsService {
         logger.info("批量生成统计数据，日期范围: {} - {}, 统计类型: {}", startDate, endDate, statType);
         
         try {
-            LocalDate currentDate = startDate;
+            LocalDate currentDate = normalizePeriodStart(startDate, statType);
             int generatedCount = 0;
             
             while (!currentDate.isAfter(endDate)) {
-                generateStatisticsForDate(currentDate, statType);
+                generatedCount += generateStatisticsForPeriod(currentDate, statType);
                 currentDate = getNextDate(currentDate, statType);
-                generatedCount++;
             }
             
             logger.info("批量生成统计数据完成，生成记录数: {}", generatedCount);
@@ -326,8 +314,8 @@ public class PaymentStatisticsServiceImpl implements PaymentStatisticsService {
                     PaymentStatus.SUCCESS, startDateTime, endDateTime);
             stats.setActiveUsers(activeUsers);
             
-            // 新用户数（首次支付的用户）
-            Long newUsers = calculateNewUsers(startDateTime, endDateTime);
+            // 新用户数（首次支付成功时间在范围内的用户）
+            long newUsers = userFirstPaymentRepository.countByFirstPaidAtRange(startDateTime, endDateTime);
             stats.setNewUsers(newUsers);
             
             // 平均订单金额
@@ -456,191 +444,44 @@ public class PaymentStatisticsServiceImpl implements PaymentStatisticsService {
         }
     }
 
-    // ==================== 私有方法 ====================
-
-    /**
-     * 更新日统计数据
-     */
-    private void updateDailyStatistics(PaymentOrder order, LocalDate orderDate) {
-        // 更新全部支付方式统计
-        updateStatistics(orderDate, PaymentStatistics.StatType.DAILY, null, order, null);
-        
-        // 更新具体支付方式统计
-        updateStatistics(orderDate, PaymentStatistics.StatType.DAILY, order.getPaymentMethod().name(), order, null);
-    }
-
-    /**
-     * 更新月统计数据
-     */
-    private void updateMonthlyStatistics(PaymentOrder order, LocalDate orderDate) {
-        LocalDate monthDate = orderDate.withDayOfMonth(1);
-        
-        // 更新全部支付方式统计
-        updateStatistics(monthDate, PaymentStatistics.StatType.MONTHLY, null, order, null);
-        
-        // 更新具体支付方式统计
-        updateStatistics(monthDate, PaymentStatistics.StatType.MONTHLY, order.getPaymentMethod().name(), order, null);
-    }
-
-    /**
-     * 更新年统计数据
-     */
-    private void updateYearlyStatistics(PaymentOrder order, LocalDate orderDate) {
-        LocalDate yearDate = orderDate.withDayOfYear(1);
-        
-        // 更新全部支付方式统计
-        updateStatistics(yearDate, PaymentStatistics.StatType.YEARLY, null, order, null);
-        
-        // 更新具体支付方式统计
-        updateStatistics(yearDate, PaymentStatistics.StatType.YEARLY, order.getPaymentMethod().name(), order, null);
-    }
-
-    /**
-     * 更新日退款统计数据
-     */
-    private void updateDailyRefundStatistics(RefundOrder refund, LocalDate refundDate) {
-        // 更新全部支付方式统计
-        updateStatistics(refundDate, PaymentStatistics.StatType.DAILY, null, null, refund);
-        
-        // 更新具体支付方式统计
-        if (refund.getPaymentOrder() != null) {
-            updateStatistics(refundDate, PaymentStatistics.StatType.DAILY, 
-                           refund.getPaymentOrder().getPaymentMethod().name(), null, refund);
-        }
-    }
-
-    /**
-     * 更新月退款统计数据
-     */
-    private void updateMonthlyRefundStatistics(RefundOrder refund, LocalDate refundDate) {
-        LocalDate monthDate = refundDate.withDayOfMonth(1);
-        
-        // 更新全部支付方式统计
-        updateStatistics(monthDate, PaymentStatistics.StatType.MONTHLY, null, null, refund);
-        
-        // 更新具体支付方式统计
-        if (refund.getPaymentOrder() != null) {
-            updateStatistics(monthDate, PaymentStatistics.StatType.MONTHLY, 
-                           refund.getPaymentOrder().getPaymentMethod().name(), null, refund);
-        }
-    }
-
-    /**
-     * 更新年退款统计数据
-     */
-    private void updateYearlyRefundStatistics(RefundOrder refund, LocalDate refundDate) {
-        LocalDate yearDate = refundDate.withDayOfYear(1);
-        
-        // 更新全部支付方式统计
-        updateStatistics(yearDate, PaymentStatistics.StatType.YEARLY, null, null, refund);
-        
-        // 更新具体支付方式统计
-        if (refund.getPaymentOrder() != null) {
-            updateStatistics(yearDate, PaymentStatistics.StatType.YEARLY, 
-                           refund.getPaymentOrder().getPaymentMethod().name(), null, refund);
-        }
-    }
-
-    /**
-     * 更新统计数据
-     */
-    private void updateStatistics(LocalDate statDate, PaymentStatistics.StatType statType, 
-                                 String paymentMethod, PaymentOrder order, RefundOrder refund) {
-        Optional<PaymentStatistics> optional;
-        if (paymentMethod != null) {
-            optional = statisticsRepository.findByStatDateAndStatTypeAndPaymentMethod(statDate, statType, paymentMethod);
-        } else {
-            optional = statisticsRepository.findByStatDateAndStatTypeAndPaymentMethodIsNull(statDate, statType);
-        }
-        
-        PaymentStatistics statistics;
-        if (optional.isPresent()) {
-            statistics = optional.get();
-        } else {
-            // 创建新的统计记录
-            String statId = generateStatId(statDate, statType, paymentMethod);
-            statistics = new PaymentStatistics(statId, statDate, statType, paymentMethod);
-        }
-        
-        // 更新统计数据
-        if (order != null) {
-            statistics.updateWithOrder(order);
-        }
-        if (refund != null) {
-            statistics.updateWithRefund(refund);
-        }
-        
-        statisticsRepository.save(statistics);
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long rebuildUserFirstPayments() {
+        logger.info("回填用户首次支付时间");
+        return firstPaymentTracker.backfill();
     }
 
-    /**
-     * 生成统计记录ID
-     */
-    private String generateStatId(LocalDate statDate, PaymentStatistics.StatType statType, String paymentMethod) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(statDate.format(DateTimeFormatter.ofPattern("yyyyMMdd")));
-        sb.append("_").append(statType.name());
-        if (paymentMethod != null) {
-            sb.append("_").append(paymentMethod);
-        }
-        return sb.toString();
-    }
+    // ==================== 私有方法 ====================
 
     /**
-     * 为指定日期生成统计数据
+     * 生成一个统计周期的数据
+     * 日统计按订单表分组聚合回填（同时校准增量汇总的误差），月/年统计由日统计求和
      */
-    private void generateStatisticsForDate(LocalDate date, PaymentStatistics.StatType statType) {
-        LocalDateTime startDateTime = date.atStartOfDay();
-        LocalDateTime endDateTime = date.plusDays(1).atStartOfDay();
-        
-        // 查询该日期的所有支付订单
-        List<PaymentOrder> orders = paymentOrderRepository.findByCreatedAtBetween(startDateTime, endDateTime);
-        
-        // 查询该日期的所有退款订单
-        List<RefundOrder> refunds = refundOrderRepository.findByCreatedAtBetween(startDateTime, endDateTime);
-        
-        // 按支付方式分组统计
-        Map<String, List<PaymentOrder>> ordersByMethod = orders.stream()
-                .collect(Collectors.groupingBy(order -> order.getPaymentMethod().name()));
-        
-        Map<String, List<RefundOrder>> refundsByMethod = refunds.stream()
-                .filter(refund -> refund.getPaymentOrder() != null)
-                .collect(Collectors.groupingBy(refund -> refund.getPaymentOrder().getPaymentMethod().name()));
-        
-        // 生成全部支付方式统计
-        generateStatisticsRecord(date, statType, null, orders, refunds);
-        
-        // 生成各支付方式统计
-        Set<String> allMethods = new HashSet<>();
-        allMethods.addAll(ordersByMethod.keySet());
-        allMethods.addAll(refundsByMethod.keySet());
-        
-        for (String method : allMethods) {
-            List<PaymentOrder> methodOrders = ordersByMethod.getOrDefault(method, Collections.emptyList());
-            List<RefundOrder> methodRefunds = refundsByMethod.getOrDefault(method, Collections.emptyList());
-            generateStatisticsRecord(date, statType, method, methodOrders, methodRefunds);
+    private int generateStatisticsForPeriod(LocalDate periodStart, PaymentStatistics.StatType statType) {
+        switch (statType) {
+            case MONTHLY:
+                return statisticsRollup.rollupFromDaily(periodStart,
+                        periodStart.withDayOfMonth(periodStart.lengthOfMonth()), statType);
+            case YEARLY:
+                return statisticsRollup.rollupFromDaily(periodStart,
+                        periodStart.withDayOfYear(periodStart.lengthOfYear()), statType);
+            default:
+                return statisticsRollup.rebuildDay(periodStart);
         }
     }
 
     /**
-     * 生成统计记录
+     * 获取统计周期的起始日期
      */
-    private void generateStatisticsRecord(LocalDate date, PaymentStatistics.StatType statType, 
-                                        String paymentMethod, List<PaymentOrder> orders, List<RefundOrder> refunds) {
-        String statId = generateStatId(date, statType, paymentMethod);
-        PaymentStatistics statistics = new PaymentStatistics(statId, date, statType, paymentMethod);
-        
-        // 统计支付订单数据
-        for (PaymentOrder order : orders) {
-            statistics.updateWithOrder(order);
-        }
-        
-        // 统计退款订单数据
-        for (RefundOrder refund : refunds) {
-            statistics.updateWithRefund(refund);
+    private LocalDate normalizePeriodStart(LocalDate date, PaymentStatistics.StatType statType) {
+        switch (statType) {
+            case MONTHLY:
+                return date.withDayOfMonth(1);
+            case YEARLY:
+                return date.withDayOfYear(1);
+            default:
+                return date;
         }
-        
-        statisticsRepository.save(statistics);
     }
 
     /**
@@ -753,25 +594,6 @@ public class PaymentStatisticsServiceImpl implements PaymentStatisticsService {
         return stats;
     }
 
-    /**
-     * 计算新用户数
-     */
-    private Long calculateNewUsers(LocalDateTime startDateTime, LocalDateTime endDateTime) {
-        // 查询在指定时间范围内首次支付的用户
-        List<String> userIds = paymentOrderRepository.findDistinctUserIdByCreatedAtBetween(startDateTime, endDateTime);
-        
-        long newUserCount = 0;
-        for (String userId : userIds) {
-            // 检查用户是否在此时间范围之前有支付记录
-            Long previousOrderCount = paymentOrderRepository.countByUserIdAndCreatedAtBefore(userId, startDateTime);
-            if (previousOrderCount == 0) {
-                newUserCount++;
-            }
-        }
-        
-        return newUserCount;
-    }
-
     /**
      * 生成报表文件名
      */
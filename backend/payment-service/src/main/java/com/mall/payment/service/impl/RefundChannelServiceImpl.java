@@ -2,9 +2,12 @@ package com.mall.payment.service.impl;
 
 import com.mall.payment.enums.PaymentMethod;
 import com.mall.payment.enums.RefundStatus;
+import com.mall.payment.routing.ChannelRouter;
+import com.mall.payment.routing.StubPaymentChannel;
 import com.mall.payment.service.RefundChannelService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -16,21 +19,36 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * 退款渠道服务实现类
  * 实现与第三方支付平台退款相关的接口方法，处理不同支付渠道的退款操作
  * 注意：这是一个模拟实现，实际项目中需要集成真实的第三方支付SDK
  * 
+ * <p>退款和退款查询发往支付订单发起时路由选中的收单端点，交易在模拟端点创建时由StubPaymentChannel处理。</p>
+ * 
  * @author lingbai
- * @version 1.0
+ * @version 1.2
  * @since 2024-12-01
+ * 
+ * <p>修改日志：</p>
+ * <ul>
+ *   <li>V1.1 2026-10-19：模拟渠道结果改用ThreadLocalRandom，不再每次调用创建Random</li>
+ *   <li>V1.2 2026-10-19：退款和退款查询发往支付订单发起时选中的收单端点</li>
+ * </ul>
  */
 @Service
 public class RefundChannelServiceImpl implements RefundChannelService {
 
     private static final Logger logger = LoggerFactory.getLogger(RefundChannelServiceImpl.class);
 
+    @Autowired
+    private ChannelRouter channelRouter;
+
+    @Autowired
+    private StubPaymentChannel stubPaymentChannel;
+
     // 模拟的第三方支付配置
     private static final Map<PaymentMethod, Map<String, String>> CHANNEL_CONFIGS = new HashMap<>();
     
@@ -76,23 +94,31 @@ public class RefundChannelServiceImpl implements RefundChannelService {
      * 根据不同的支付方式调用相应的第三方退款接口
      */
     @Override
-    public RefundResult processRefund(PaymentMethod paymentMethod, String thirdPartyOrderNo, 
+    public RefundResult processRefund(PaymentMethod paymentMethod, String channelEndpoint, String thirdPartyOrderNo, 
                                      String refundOrderId, BigDecimal refundAmount, String refundReason) {
-        logger.info("开始处理退款申请，支付方式: {}, 第三方订单号: {}, 退款订单ID: {}, 退款金额: {}", 
-                   paymentMethod, thirdPartyOrderNo, refundOrderId, refundAmount);
+        logger.info("开始处理退款申请，支付方式: {}, 端点: {}, 第三方订单号: {}, 退款订单ID: {}, 退款金额: {}", 
+                   paymentMethod, channelEndpoint, thirdPartyOrderNo, refundOrderId, refundAmount);
 
         // 参数验证
         validateRefundParams(paymentMethod, thirdPartyOrderNo, refundOrderId, refundAmount);
 
         try {
+            // 交易在哪个端点创建，退款就发往哪个端点
+            ChannelRouter.ChannelEndpoint endpoint = endpointOf(paymentMethod, channelEndpoint);
+            if (endpoint != null && endpoint.isStub()) {
+                return stubPaymentChannel.processRefund(paymentMethod, refundAmount);
+            }
             // 根据支付方式选择处理逻辑
             switch (paymentMethod) {
                 case ALIPAY:
-                    return processAlipayRefund(thirdPartyOrderNo, refundOrderId, refundAmount, refundReason);
+                    return processAlipayRefund(thirdPartyOrderNo, refundOrderId, refundAmount, refundReason,
+                            gatewayOf(endpoint, paymentMethod));
                 case WECHAT:
-                    return processWechatRefund(thirdPartyOrderNo, refundOrderId, refundAmount, refundReason);
+                    return processWechatRefund(thirdPartyOrderNo, refundOrderId, refundAmount, refundReason,
+                            gatewayOf(endpoint, paymentMethod));
                 case BANK_CARD:
-                    return processBankCardRefund(thirdPartyOrderNo, refundOrderId, refundAmount, refundReason);
+                    return processBankCardRefund(thirdPartyOrderNo, refundOrderId, refundAmount, refundReason,
+                            gatewayOf(endpoint, paymentMethod));
                 case BALANCE:
                     return processBalanceRefund(thirdPartyOrderNo, refundOrderId, refundAmount, refundReason);
                 case CREDIT_CARD:
@@ -114,17 +140,21 @@ public class RefundChannelServiceImpl implements RefundChannelService {
      * 查询退款状态
      */
     @Override
-    public RefundQueryResult queryRefundStatus(PaymentMethod paymentMethod, String thirdPartyRefundNo) {
-        logger.debug("查询退款状态，支付方式: {}, 第三方退款单号: {}", paymentMethod, thirdPartyRefundNo);
+    public RefundQueryResult queryRefundStatus(PaymentMethod paymentMethod, String channelEndpoint, String thirdPartyRefundNo) {
+        logger.debug("查询退款状态，支付方式: {}, 端点: {}, 第三方退款单号: {}", paymentMethod, channelEndpoint, thirdPartyRefundNo);
 
         if (!StringUtils.hasText(thirdPartyRefundNo)) {
             throw new IllegalArgumentException("第三方退款单号不能为空");
         }
 
         try {
+            ChannelRouter.ChannelEndpoint endpoint = endpointOf(paymentMethod, channelEndpoint);
+            if (endpoint != null && endpoint.isStub()) {
+                return stubPaymentChannel.queryRefundStatus(paymentMethod, thirdPartyRefundNo);
+            }
             // 模拟查询第三方退款状态
             // 实际实现中需要调用相应的第三方API
-            Random random = new Random();
+            Random random = ThreadLocalRandom.current();
             int statusCode = random.nextInt(100);
             
             if (statusCode < 80) {
@@ -218,7 +248,7 @@ public class RefundChannelServiceImpl implements RefundChannelService {
         try {
             // 模拟调用第三方取消退款接口
             // 实际实现中需要调用相应的第三方API
-            Random random = new Random();
+            Random random = ThreadLocalRandom.current();
             boolean success = random.nextBoolean();
             
             logger.info("取消退款申请结果: {}, 支付方式: {}, 第三方退款单号: {}", 
@@ -293,12 +323,30 @@ public class RefundChannelServiceImpl implements RefundChannelService {
         }
     }
 
+    /**
+     * 支付订单发起时选中的端点，未记录或端点已不在配置中时返回null，按默认网关处理
+     */
+    private ChannelRouter.ChannelEndpoint endpointOf(PaymentMethod paymentMethod, String channelEndpoint) {
+        ChannelRouter.ChannelEndpoint endpoint = channelRouter.findEndpoint(paymentMethod, channelEndpoint);
+        if (endpoint == null && StringUtils.hasText(channelEndpoint)) {
+            logger.warn("收单端点已不在路由配置中，改用默认网关，支付方式: {}, 端点: {}", paymentMethod, channelEndpoint);
+        }
+        return endpoint;
+    }
+
+    /**
+     * 端点的网关地址，未经路由时使用渠道配置的网关
+     */
+    private String gatewayOf(ChannelRouter.ChannelEndpoint endpoint, PaymentMethod paymentMethod) {
+        return endpoint != null ? endpoint.getGateway() : CHANNEL_CONFIGS.get(paymentMethod).get("gatewayUrl");
+    }
+
     /**
      * 处理支付宝退款
      */
     private RefundResult processAlipayRefund(String thirdPartyOrderNo, String refundOrderId, 
-                                           BigDecimal refundAmount, String refundReason) {
-        logger.info("处理支付宝退款，第三方订单号: {}, 退款金额: {}", thirdPartyOrderNo, refundAmount);
+                                           BigDecimal refundAmount, String refundReason, String gateway) {
+        logger.info("处理支付宝退款，第三方订单号: {}, 退款金额: {}, 网关: {}", thirdPartyOrderNo, refundAmount, gateway);
 
         try {
             // 模拟调用支付宝退款接口
@@ -306,7 +354,7 @@ public class RefundChannelServiceImpl implements RefundChannelService {
             String thirdPartyRefundNo = "ALIPAY_RF_" + System.currentTimeMillis();
             
             // 模拟退款结果
-            Random random = new Random();
+            Random random = ThreadLocalRandom.current();
             boolean success = random.nextInt(100) < 85; // 85%成功率
             
             if (success) {
@@ -334,14 +382,14 @@ public class RefundChannelServiceImpl implements RefundChannelService {
      * 处理微信支付退款
      */
     private RefundResult processWechatRefund(String thirdPartyOrderNo, String refundOrderId, 
-                                           BigDecimal refundAmount, String refundReason) {
-        logger.info("处理微信支付退款，第三方订单号: {}, 退款金额: {}", thirdPartyOrderNo, refundAmount);
+                                           BigDecimal refundAmount, String refundReason, String gateway) {
+        logger.info("处理微信支付退款，第三方订单号: {}, 退款金额: {}, 网关: {}", thirdPartyOrderNo, refundAmount, gateway);
 
         try {
             // 模拟调用微信支付退款接口
             String thirdPartyRefundNo = "WECHAT_RF_" + System.currentTimeMillis();
             
-            Random random = new Random();
+            Random random = ThreadLocalRandom.current();
             boolean success = random.nextInt(100) < 80; // 80%成功率
             
             if (success) {
@@ -368,13 +416,13 @@ public class RefundChannelServiceImpl implements RefundChannelService {
      * 处理银行卡退款
      */
     private RefundResult processBankCardRefund(String thirdPartyOrderNo, String refundOrderId, 
-                                             BigDecimal refundAmount, String refundReason) {
-        logger.info("处理银行卡退款，第三方订单号: {}, 退款金额: {}", thirdPartyOrderNo, refundAmount);
+                                             BigDecimal refundAmount, String refundReason, String gateway) {
+        logger.info("处理银行卡退款，第三方订单号: {}, 退款金额: {}, 网关: {}", thirdPartyOrderNo, refundAmount, gateway);
 
         try {
             String thirdPartyRefundNo = "BANK_RF_" + System.currentTimeMillis();
             
-            Random random = new Random();
+            Random random = ThreadLocalRandom.current();
             boolean success = random.nextInt(100) < 75; // 75%成功率
             
             if (success) {
@@ -431,7 +479,7 @@ public class RefundChannelServiceImpl implements RefundChannelService {
         try {
             String thirdPartyRefundNo = "CREDIT_RF_" + System.currentTimeMillis();
             
-            Random random = new Random();
+            Random random = ThreadLocalRandom.current();
             boolean success = random.nextInt(100) < 70; // 70%成功率
             
             if (success) {
@@ -464,7 +512,7 @@ public class RefundChannelServiceImpl implements RefundChannelService {
         try {
             String thirdPartyRefundNo = "PAYPAL_RF_" + System.currentTimeMillis();
             
-            Random random = new Random();
+            Random random = ThreadLocalRandom.current();
             boolean success = random.nextInt(100) < 85; // 85%成功率
             
             if (success) {
@@ -497,7 +545,7 @@ public class RefundChannelServiceImpl implements RefundChannelService {
         try {
             String thirdPartyRefundNo = "CRYPTO_RF_" + System.currentTimeMillis();
             
-            Random random = new Random();
+            Random random = ThreadLocalRandom.current();
             boolean success = random.nextInt(100) < 60; // 60%成功率（数字货币退款相对复杂）
             
             if (success) {
@@ -677,7 +725,7 @@ public class RefundChannelServiceImpl implements RefundChannelService {
         
         try {
             // 模拟支付宝退款查询API调用
-            Random random = new Random();
+            Random random = ThreadLocalRandom.current();
             int statusCode = random.nextInt(100);
             
             if (statusCode < 80) {
@@ -707,7 +755,7 @@ public class RefundChannelServiceImpl implements RefundChannelService {
         
         try {
             // 模拟微信退款查询API调用
-            Random random = new Random();
+            Random random = ThreadLocalRandom.current();
             int statusCode = random.nextInt(100);
             
             if (statusCode < 75) {
@@ -737,7 +785,7 @@ public class RefundChannelServiceImpl implements RefundChannelService {
         
         try {
             // 模拟银行卡退款查询API调用
-            Random random = new Random();
+            Random random = ThreadLocalRandom.current();
             int statusCode = random.nextInt(100);
             
             if (statusCode < 70) {
@@ -783,7 +831,7 @@ public class RefundChannelServiceImpl implements RefundChannelService {
         
         try {
             // 模拟信用卡退款查询API调用
-            Random random = new Random();
+            Random random = ThreadLocalRandom.current();
             int statusCode = random.nextInt(100);
             
             if (statusCode < 65) {
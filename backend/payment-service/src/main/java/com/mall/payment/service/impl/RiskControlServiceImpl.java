@@ -1,5 +1,6 @@
 package com.mall.payment.service.impl;
 
+import cn.hutool.core.util.IdUtil;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mall.payment.dto.request.PaymentCreateRequest;
@@ -8,29 +9,59 @@ import com.mall.payment.entity.RiskRule;
 import com.mall.payment.exception.PaymentException;
 import com.mall.payment.repository.RiskRecordRepository;
 import com.mall.payment.repository.RiskRuleRepository;
+import com.mall.payment.risk.CompiledRiskRule;
+import com.mall.payment.risk.RiskMetricsRollup;
+import com.mall.payment.risk.RiskRecordWriter;
+import com.mall.payment.risk.RiskReviewQueue;
+import com.mall.payment.risk.RiskRuleRegistry;
+import com.mall.payment.risk.RiskVelocityCounterStore;
 import com.mall.payment.service.RiskControlService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 风控服务实现类
  * 实现支付风控相关的业务逻辑
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.9
  * @since 2024-12-01
+ * 
+ * 修改日志：
+ * V1.9 2026-10-19：规则执行异常和线程池拒绝执行的规则与超时同样处理，不再按未触发放行；线程池队列满时拒绝而非由调用线程执行
+ * V1.8 2026-10-19：人工审核改为带状态和领取条件的条件更新；游标查询要求创建时间和记录ID同时提供
+ * V1.7 2026-10-19：计数类规则统一限时执行，超时未完成的规则按人工审核（严重风险阻止规则按阻止）处理并记录为超时
+ * V1.6 2026-10-19：待审核记录改为游标分页和租约领取，超时处理按游标分批条件更新
+ * V1.5 2026-10-19：风控统计改为读取小时汇总，误报按时间范围统计
+ * V1.4 2026-10-19：风控记录改为异步批量写入，风控检查不再参与数据库事务
+ * V1.3 2026-10-19：内存规则优先执行，计数类规则并发执行，命中阻止规则后提前结束
+ * V1.2 2026-10-19：频率、设备、速度规则改为查询滑动窗口计数器，不再对风控记录表做COUNT/SUM
+ * V1.1 2026-10-19：规则改为从内存预编译规则集获取，规则变更后热替换
  */
 @Service
 @Transactional
@@ -47,6 +78,57 @@ public class RiskControlServiceImpl implements RiskControlService {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private RiskRuleRegistry riskRuleRegistry;
+
+    @Autowired
+    private RiskVelocityCounterStore velocityCounterStore;
+
+    @Autowired
+    private RiskRecordWriter riskRecordWriter;
+
+    @Autowired
+    private RiskMetricsRollup riskMetricsRollup;
+
+    @Autowired
+    private RiskReviewQueue riskReviewQueue;
+
+    @Value("${payment.risk.executor.pool-size:16}")
+    private int rulePoolSize;
+
+    @Value("${payment.risk.executor.queue-capacity:1000}")
+    private int ruleQueueCapacity;
+
+    /**
+     * 计数类规则的最长等待时间，超时未完成的规则按人工审核处理，严重风险的阻止规则按阻止处理
+     */
+    @Value("${payment.risk.rule-timeout-ms:200}")
+    private long ruleTimeoutMs;
+
+    /**
+     * 计数类规则并发执行线程池，队列满时拒绝提交，被拒绝的规则按超时处理，不占用调用线程
+     */
+    private ThreadPoolExecutor ruleExecutor;
+
+    @PostConstruct
+    public void initRuleExecutor() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ruleExecutor = new ThreadPoolExecutor(rulePoolSize, rulePoolSize, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(ruleQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "risk-rule-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        ruleExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdownRuleExecutor() {
+        ruleExecutor.shutdown();
+    }
+
     /**
      * 执行风控检查
      * 对支付请求进行全面的风控检查
@@ -56,6 +138,7 @@ public class RiskControlServiceImpl implements RiskControlService {
      * @return 风控检查结果
      */
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public RiskCheckResult performRiskCheck(PaymentCreateRequest request, String paymentOrderId) {
         logger.info("开始执行风控检查，支付订单ID: {}, 用户ID: {}, 支付金额: {}", 
                    paymentOrderId, request.getUserId(), request.getAmount());
@@ -63,8 +146,8 @@ public class RiskControlServiceImpl implements RiskControlService {
         long startTime = System.currentTimeMillis();
         
         try {
-            // 获取适用的风控规则
-            List<RiskRule> applicableRules = getApplicableRules(request.getPaymentMethod());
+            // 获取适用的风控规则（内存中的预编译规则集）
+            List<CompiledRiskRule> applicableRules = getApplicableRules(request.getPaymentMethod());
             logger.debug("获取到 {} 条适用的风控规则", applicableRules.size());
             
             // 执行风控检查
@@ -171,6 +254,75 @@ public class RiskControlServiceImpl implements RiskControlService {
         return riskRecordRepository.findPendingReviewRecords(pageable);
     }
 
+    /**
+     * 按游标查询待审核的风控记录
+     * 
+     * @param afterCreatedAt 上一页最后一条的创建时间，首页传null
+     * @param afterRecordId 上一页最后一条的记录ID，首页传null
+     * @param size 页大小
+     * @return 待审核的风控记录
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<RiskRecord> getPendingReviewRecords(LocalDateTime afterCreatedAt, String afterRecordId, int size) {
+        logger.debug("按游标查询待审核的风控记录，游标: {} / {}", afterCreatedAt, afterRecordId);
+        
+        if (size <= 0) {
+            throw PaymentException.invalidParameter("页大小必须大于0");
+        }
+        if ((afterCreatedAt == null) != !StringUtils.hasText(afterRecordId)) {
+            throw PaymentException.invalidParameter("游标的创建时间和记录ID必须同时提供或同时为空");
+        }
+        return riskReviewQueue.page(afterCreatedAt, afterRecordId, size);
+    }
+
+    /**
+     * 领取待审核的风控记录
+     * 
+     * @param reviewer 审核人
+     * @param size 领取数量
+     * @return 领取到的风控记录
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<RiskRecord> claimReviewRecords(String reviewer, int size) {
+        if (!StringUtils.hasText(reviewer)) {
+            throw PaymentException.invalidParameter("审核人不能为空");
+        }
+        if (size <= 0) {
+            throw PaymentException.invalidParameter("领取数量必须大于0");
+        }
+        
+        try {
+            return riskReviewQueue.claim(reviewer, size);
+        } catch (Exception e) {
+            logger.error("领取待审核记录异常，审核人: {}", reviewer, e);
+            throw PaymentException.systemError("领取待审核记录异常: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 释放已领取但未审核的风控记录
+     * 
+     * @param reviewer 审核人
+     * @param recordIds 记录ID列表
+     * @return 释放的记录数量
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public int releaseReviewRecords(String reviewer, List<String> recordIds) {
+        if (!StringUtils.hasText(reviewer)) {
+            throw PaymentException.invalidParameter("审核人不能为空");
+        }
+        if (recordIds == null || recordIds.isEmpty()) {
+            return 0;
+        }
+        
+        int released = riskReviewQueue.release(reviewer, recordIds);
+        logger.info("审核人释放待审核记录，审核人: {}, 数量: {}", reviewer, released);
+        return released;
+    }
+
     /**
      * 审核风控记录
      * 
@@ -210,9 +362,16 @@ public class RiskControlServiceImpl implements RiskControlService {
                 throw PaymentException.invalidState("该记录已经审核过");
             }
             
-            // 完成审核
-            record.completeReview(status, reviewer, comment);
-            riskRecordRepository.save(record);
+            // 检查是否已被其他审核人领取
+            if (record.isClaimedByOther(reviewer, LocalDateTime.now())) {
+                throw PaymentException.invalidState("该记录已被审核人 " + record.getClaimedBy() + " 领取");
+            }
+            
+            // 完成审核：条件更新，检查之后被其他审核人完成或领取时不覆盖
+            if (!riskReviewQueue.completeReview(recordId, status, reviewer, comment)) {
+                logger.warn("风控记录审核冲突，记录已被审核或已被其他审核人领取，记录ID: {}, 审核人: {}", recordId, reviewer);
+                throw PaymentException.invalidState("该记录已被审核或已被其他审核人领取");
+            }
             
             logger.info("风控记录审核完成，记录ID: {}, 审核结果: {}", recordId, status);
             return true;
@@ -249,9 +408,13 @@ public class RiskControlServiceImpl implements RiskControlService {
             RiskRecord record = riskRecordRepository.findById(recordId)
                     .orElseThrow(() -> PaymentException.recordNotFound("风控记录不存在"));
             
-            // 标记为误报
+            // 标记为误报，首次标记时累加误报统计
+            boolean alreadyFalsePositive = Boolean.TRUE.equals(record.getIsFalsePositive());
             record.markAsFalsePositive(reviewer, comment);
             riskRecordRepository.save(record);
+            if (!alreadyFalsePositive) {
+                riskMetricsRollup.recordFalsePositive(record);
+            }
             
             logger.info("风控记录已标记为误报，记录ID: {}", recordId);
             return true;
@@ -306,20 +469,17 @@ public class RiskControlServiceImpl implements RiskControlService {
         try {
             RiskStatistics statistics = new RiskStatistics();
             
-            // 统计总交易数量
-            long totalTransactions = riskRecordRepository.countByCreatedAtBetween(startTime, endTime);
+            // 整点小时读取汇总行，首尾不足一小时的部分直接聚合
+            RiskMetricsRollup.Summary summary = riskMetricsRollup.query(startTime, endTime);
+            long totalTransactions = summary.getTotalCount();
             statistics.setTotalTransactions(totalTransactions);
             
             if (totalTransactions > 0) {
                 // 统计各种结果的数量
-                long blockedTransactions = riskRecordRepository.countByResultAndCreatedAtBetween(
-                        RiskRecord.RiskResult.BLOCKED, startTime, endTime);
-                long manualReviewTransactions = riskRecordRepository.countByResultAndCreatedAtBetween(
-                        RiskRecord.RiskResult.MANUAL_REVIEW, startTime, endTime);
-                long warningTransactions = riskRecordRepository.countByResultAndCreatedAtBetween(
-                        RiskRecord.RiskResult.WARNING, startTime, endTime);
-                long passedTransactions = riskRecordRepository.countByResultAndCreatedAtBetween(
-                        RiskRecord.RiskResult.PASSED, startTime, endTime);
+                long blockedTransactions = summary.getCount(RiskRecord.RiskResult.BLOCKED);
+                long manualReviewTransactions = summary.getCount(RiskRecord.RiskResult.MANUAL_REVIEW);
+                long warningTransactions = summary.getCount(RiskRecord.RiskResult.WARNING);
+                long passedTransactions = summary.getCount(RiskRecord.RiskResult.PASSED);
                 
                 statistics.setBlockedTransactions(blockedTransactions);
                 statistics.setManualReviewTransactions(manualReviewTransactions);
@@ -334,18 +494,13 @@ public class RiskControlServiceImpl implements RiskControlService {
                         .divide(BigDecimal.valueOf(totalTransactions), 4, RoundingMode.HALF_UP)
                         .multiply(BigDecimal.valueOf(100)));
                 
-                // 统计风险评分
-                BigDecimal avgRiskScore = riskRecordRepository.avgRiskScoreByCreatedAtBetween(startTime, endTime);
-                BigDecimal maxRiskScore = riskRecordRepository.maxRiskScoreByCreatedAtBetween(startTime, endTime);
-                statistics.setAvgRiskScore(avgRiskScore);
-                statistics.setMaxRiskScore(maxRiskScore);
+                // 统计风险评分和处理时间
+                statistics.setAvgRiskScore(summary.getAvgRiskScore());
+                statistics.setMaxRiskScore(summary.getMaxRiskScore());
+                statistics.setAvgProcessingTime(summary.getAvgProcessingTime());
                 
-                // 统计处理时间
-                Double avgProcessingTime = riskRecordRepository.avgProcessingTimeByCreatedAtBetween(startTime, endTime);
-                statistics.setAvgProcessingTime(avgProcessingTime);
-                
-                // 统计误报
-                long falsePositives = riskRecordRepository.findByIsFalsePositive(true, Pageable.unpaged()).getTotalElements();
+                // 统计误报（范围内创建的记录）
+                long falsePositives = summary.getFalsePositives();
                 statistics.setFalsePositives(falsePositives);
                 if (blockedTransactions + manualReviewTransactions > 0) {
                     statistics.setFalsePositiveRate(BigDecimal.valueOf(falsePositives)
@@ -393,6 +548,7 @@ public class RiskControlServiceImpl implements RiskControlService {
         
         try {
             RiskRule savedRule = riskRuleRepository.save(rule);
+            riskRuleRegistry.refreshAfterCommit();
             logger.info("风控规则创建成功，规则ID: {}", savedRule.getRuleId());
             return savedRule;
             
@@ -443,6 +599,7 @@ public class RiskControlServiceImpl implements RiskControlService {
             existingRule.setUpdatedBy(rule.getUpdatedBy());
             
             RiskRule savedRule = riskRuleRepository.save(existingRule);
+            riskRuleRegistry.refreshAfterCommit();
             logger.info("风控规则更新成功，规则ID: {}", ruleId);
             return savedRule;
             
@@ -474,6 +631,7 @@ public class RiskControlServiceImpl implements RiskControlService {
             }
             
             riskRuleRepository.deleteById(ruleId);
+            riskRuleRegistry.refreshAfterCommit();
             logger.info("风控规则删除成功，规则ID: {}", ruleId);
             return true;
             
@@ -550,6 +708,7 @@ public class RiskControlServiceImpl implements RiskControlService {
             
             rule.setEnabled(enabled);
             riskRuleRepository.save(rule);
+            riskRuleRegistry.refreshAfterCommit();
             
             logger.info("风控规则状态更新成功，规则ID: {}, 状态: {}", ruleId, enabled ? "启用" : "禁用");
             return true;
@@ -569,6 +728,7 @@ public class RiskControlServiceImpl implements RiskControlService {
      * @return 处理的记录数量
      */
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public int processPendingReviewRecords(int timeoutHours) {
         logger.info("开始批量处理待审核的风控记录，超时时间: {} 小时", timeoutHours);
         
@@ -577,43 +737,8 @@ public class RiskControlServiceImpl implements RiskControlService {
         }
         
         try {
-            LocalDateTime timeoutTime = LocalDateTime.now().minusHours(timeoutHours);
-            
-            // 查询超时的待审核记录
-            List<RiskRecord> timeoutRecords = riskRecordRepository.findPendingReviewRecords(Pageable.unpaged())
-                    .getContent()
-                    .stream()
-                    .filter(record -> record.getCreatedAt().isBefore(timeoutTime))
-                    .collect(Collectors.toList());
-            
-            int processedCount = 0;
-            
-            for (RiskRecord record : timeoutRecords) {
-                try {
-                    // 根据风险等级决定处理方式
-                    RiskRecord.ReviewStatus status;
-                    String comment;
-                    
-                    if (record.getRiskLevel() == RiskRule.RiskLevel.CRITICAL) {
-                        // 严重风险自动拒绝
-                        status = RiskRecord.ReviewStatus.REJECTED;
-                        comment = "系统自动拒绝：严重风险交易超时未审核";
-                    } else {
-                        // 其他风险等级自动通过
-                        status = RiskRecord.ReviewStatus.APPROVED;
-                        comment = "系统自动通过：超时未审核";
-                    }
-                    
-                    record.completeReview(status, "SYSTEM", comment);
-                    riskRecordRepository.save(record);
-                    processedCount++;
-                    
-                    logger.debug("处理超时审核记录，记录ID: {}, 处理结果: {}", record.getRecordId(), status);
-                    
-                } catch (Exception e) {
-                    logger.error("处理超时审核记录异常，记录ID: {}", record.getRecordId(), e);
-                }
-            }
+            // 按游标分批读取超时记录，严重风险自动拒绝，其他风险等级自动通过；正在被领取的记录跳过
+            int processedCount = riskReviewQueue.processTimedOut(timeoutHours);
             
             logger.info("批量处理待审核记录完成，处理数量: {}", processedCount);
             return processedCount;
@@ -630,55 +755,91 @@ public class RiskControlServiceImpl implements RiskControlService {
      * 获取适用的风控规则
      * 
      * @param paymentMethod 支付方式
-     * @return 适用的风控规则列表
+     * @return 适用的风控规则列表（已按优先级排序）
      */
-    private List<RiskRule> getApplicableRules(com.mall.payment.enums.PaymentMethod paymentMethod) {
-        return riskRuleRepository.findEnabledRulesByPaymentMethod(paymentMethod);
+    private List<CompiledRiskRule> getApplicableRules(com.mall.payment.enums.PaymentMethod paymentMethod) {
+        return riskRuleRegistry.getRules(paymentMethod);
     }
 
     /**
      * 执行风控检查
+     * 先按优先级顺序执行内存规则，命中阻止规则即结束；否则并发执行计数类规则，
+     * 任一计数类规则命中阻止规则时取消其余规则（最终结果已不会再变化）。
+     * 超时、执行异常或被线程池拒绝的规则不按未触发放行，见 {@link #timeoutActionOf(CompiledRiskRule)}，
+     * 并以“规则ID:TIMEOUT”记入命中规则列表
      * 
      * @param request 支付请求
      * @param paymentOrderId 支付订单ID
-     * @param rules 风控规则列表
+     * @param rules 风控规则列表（已按优先级排序）
      * @return 风控检查结果
      */
-    private RiskCheckResult executeRiskCheck(PaymentCreateRequest request, String paymentOrderId, List<RiskRule> rules) {
+    private RiskCheckResult executeRiskCheck(PaymentCreateRequest request, String paymentOrderId, List<CompiledRiskRule> rules) {
+        boolean[] triggered = new boolean[rules.size()];
+        boolean[] timedOut = new boolean[rules.size()];
+        List<Integer> counterRuleIndexes = new ArrayList<>();
+        boolean blocked = false;
+        
+        // 1. 内存规则：金额、IP黑名单、时间限制
+        for (int i = 0; i < rules.size() && !blocked; i++) {
+            CompiledRiskRule rule = rules.get(i);
+            if (rule.isCounterBased()) {
+                counterRuleIndexes.add(i);
+                continue;
+            }
+            RuleOutcome outcome = evaluateRule(rule, request);
+            triggered[i] = outcome == RuleOutcome.TRIGGERED;
+            timedOut[i] = outcome == RuleOutcome.FAILED;
+            blocked = triggered[i] && rule.isBlocking();
+        }
+        
+        // 2. 计数类规则：频率、设备、速度
+        if (!blocked && !counterRuleIndexes.isEmpty()) {
+            blocked = evaluateCounterRules(rules, counterRuleIndexes, request, triggered, timedOut);
+        }
+        
+        // 3. 按优先级顺序汇总命中的规则
         List<String> triggeredRules = new ArrayList<>();
         BigDecimal totalRiskScore = BigDecimal.ZERO;
         RiskRule.RiskLevel maxRiskLevel = RiskRule.RiskLevel.LOW;
         RiskRule.RiskAction finalAction = RiskRule.RiskAction.ALLOW;
         List<String> reasons = new ArrayList<>();
         
-        // 逐个检查规则
-        for (RiskRule rule : rules) {
-            try {
-                boolean triggered = checkRule(rule, request);
-                
-                if (triggered) {
-                    triggeredRules.add(rule.getRuleId());
-                    totalRiskScore = totalRiskScore.add(BigDecimal.valueOf(rule.getRiskWeight()));
-                    
-                    // 更新最高风险等级
-                    if (rule.getRiskLevel().ordinal() > maxRiskLevel.ordinal()) {
-                        maxRiskLevel = rule.getRiskLevel();
-                    }
-                    
-                    // 更新最终处理动作（优先级：BLOCK > MANUAL_REVIEW > WARN > ALLOW）
-                    if (rule.getAction().ordinal() > finalAction.ordinal()) {
-                        finalAction = rule.getAction();
-                    }
-                    
-                    reasons.add(rule.getRuleName());
-                    
-                    logger.debug("触发风控规则，规则ID: {}, 规则名称: {}, 风险等级: {}, 处理动作: {}", 
-                               rule.getRuleId(), rule.getRuleName(), rule.getRiskLevel(), rule.getAction());
+        for (int i = 0; i < rules.size(); i++) {
+            CompiledRiskRule rule = rules.get(i);
+            if (timedOut[i]) {
+                RiskRule.RiskAction timeoutAction = timeoutActionOf(rule);
+                triggeredRules.add(rule.getRuleId() + ":TIMEOUT");
+                if (rule.getRiskLevel().ordinal() > maxRiskLevel.ordinal()) {
+                    maxRiskLevel = rule.getRiskLevel();
                 }
-                
-            } catch (Exception e) {
-                logger.error("检查风控规则异常，规则ID: {}", rule.getRuleId(), e);
+                if (CompiledRiskRule.severityOf(timeoutAction) > CompiledRiskRule.severityOf(finalAction)) {
+                    finalAction = timeoutAction;
+                }
+                reasons.add(rule.getRuleName() + "(未完成)");
+                logger.warn("风控规则超时或执行失败，规则ID: {}, 规则名称: {}, 按{}处理", 
+                           rule.getRuleId(), rule.getRuleName(), timeoutAction);
+                continue;
+            }
+            if (!triggered[i]) {
+                continue;
             }
+            triggeredRules.add(rule.getRuleId());
+            totalRiskScore = totalRiskScore.add(rule.getRiskWeight());
+            
+            // 更新最高风险等级
+            if (rule.getRiskLevel().ordinal() > maxRiskLevel.ordinal()) {
+                maxRiskLevel = rule.getRiskLevel();
+            }
+            
+            // 更新最终处理动作（优先级：BLOCK > MANUAL_REVIEW > WARN > ALLOW）
+            if (rule.getActionSeverity() > CompiledRiskRule.severityOf(finalAction)) {
+                finalAction = rule.getAction();
+            }
+            
+            reasons.add(rule.getRuleName());
+            
+            logger.debug("触发风控规则，规则ID: {}, 规则名称: {}, 风险等级: {}, 处理动作: {}", 
+                       rule.getRuleId(), rule.getRuleName(), rule.getRiskLevel(), rule.getAction());
         }
         
         // 构建检查结果
@@ -688,6 +849,7 @@ public class RiskControlServiceImpl implements RiskControlService {
         result.setAction(finalAction);
         result.setTriggeredRules(triggeredRules);
         result.setReason(String.join(", ", reasons));
+        result.setShortCircuited(blocked);
         
         // 确定最终结果
         switch (finalAction) {
@@ -712,6 +874,154 @@ public class RiskControlServiceImpl implements RiskControlService {
         return result;
     }
 
+    /**
+     * 执行计数类规则
+     * 在规则线程池中并发执行并按完成顺序处理结果，总等待时间不超过规则超时时间；
+     * 超时或被中断时仍未完成的规则、执行异常的规则以及线程池拒绝执行的规则均标记为超时
+     * 
+     * @param rules 风控规则列表
+     * @param indexes 计数类规则在列表中的下标
+     * @param request 支付请求
+     * @param triggered 规则命中标记（输出）
+     * @param timedOut 规则超时标记（输出）
+     * @return 是否命中阻止规则
+     */
+    private boolean evaluateCounterRules(List<CompiledRiskRule> rules, List<Integer> indexes,
+                                         PaymentCreateRequest request, boolean[] triggered, boolean[] timedOut) {
+        CompletionService<RuleOutcome> completionService = new ExecutorCompletionService<>(ruleExecutor);
+        List<Future<RuleOutcome>> futures = new ArrayList<>(indexes.size());
+        Map<Future<RuleOutcome>, Integer> futureIndexes = new IdentityHashMap<>();
+        for (Integer index : indexes) {
+            CompiledRiskRule rule = rules.get(index);
+            try {
+                Future<RuleOutcome> future = completionService.submit(() -> evaluateRule(rule, request));
+                futures.add(future);
+                futureIndexes.put(future, index);
+            } catch (RejectedExecutionException e) {
+                // 线程池已满，规则没有机会执行，与超时同样处理
+                timedOut[index] = true;
+                logger.warn("风控规则线程池已满，规则ID: {} 按超时处理", rule.getRuleId());
+            }
+        }
+        
+        boolean blocked = false;
+        boolean expired = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ruleTimeoutMs);
+        try {
+            for (int completed = 0; completed < futures.size() && !blocked; completed++) {
+                Future<RuleOutcome> future = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (future == null) {
+                    expired = true;
+                    break;
+                }
+                int index = futureIndexes.get(future);
+                blocked = applyOutcome(rules, index, getCompleted(future), triggered, timedOut);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            expired = true;
+            logger.warn("计数类风控规则执行被中断");
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        
+        if (expired && !blocked) {
+            int timedOutCount = 0;
+            for (Future<RuleOutcome> future : futures) {
+                int index = futureIndexes.get(future);
+                if (future.isCancelled()) {
+                    timedOut[index] = true;
+                    timedOutCount++;
+                } else {
+                    // 等待结束后才完成、尚未取出的结果
+                    applyOutcome(rules, index, getCompleted(future), triggered, timedOut);
+                }
+            }
+            logger.warn("计数类风控规则执行超时，未完成规则数: {}, 超时时间: {}ms", timedOutCount, ruleTimeoutMs);
+        }
+        return blocked;
+    }
+
+    /**
+     * 记录单条计数类规则的执行结果
+     * 
+     * @param rules 风控规则列表
+     * @param index 规则在列表中的下标
+     * @param outcome 执行结果
+     * @param triggered 规则命中标记（输出）
+     * @param timedOut 规则超时标记（输出）
+     * @return 是否命中阻止规则
+     */
+    private boolean applyOutcome(List<CompiledRiskRule> rules, int index, RuleOutcome outcome,
+                                 boolean[] triggered, boolean[] timedOut) {
+        if (outcome == RuleOutcome.FAILED) {
+            timedOut[index] = true;
+            return false;
+        }
+        triggered[index] = outcome == RuleOutcome.TRIGGERED;
+        return triggered[index] && rules.get(index).isBlocking();
+    }
+
+    /**
+     * 读取已完成的规则结果
+     * 
+     * @param future 已完成的规则任务
+     * @return 规则执行结果，读取失败时按执行失败处理
+     */
+    private RuleOutcome getCompleted(Future<RuleOutcome> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return RuleOutcome.FAILED;
+        } catch (ExecutionException e) {
+            return RuleOutcome.FAILED;
+        }
+    }
+
+    /**
+     * 计数类规则超时时的处理动作
+     * 超时不能证明未触发，阻止规则只有严重风险时按阻止处理，其余降为人工审核；
+     * 本身为人工审核及以下动作的规则按原动作处理
+     * 
+     * @param rule 超时的风控规则
+     * @return 处理动作
+     */
+    private RiskRule.RiskAction timeoutActionOf(CompiledRiskRule rule) {
+        if (rule.isBlocking() && rule.getRiskLevel() != RiskRule.RiskLevel.CRITICAL) {
+            return RiskRule.RiskAction.MANUAL_REVIEW;
+        }
+        return rule.getAction();
+    }
+
+    /**
+     * 执行单条规则，异常时记录日志并返回执行失败，由调用方按超时处理
+     * 
+     * @param rule 风控规则
+     * @param request 支付请求
+     * @return 规则执行结果
+     */
+    private RuleOutcome evaluateRule(CompiledRiskRule rule, PaymentCreateRequest request) {
+        try {
+            return checkRule(rule, request) ? RuleOutcome.TRIGGERED : RuleOutcome.PASSED;
+        } catch (Exception e) {
+            logger.error("检查风控规则异常，规则ID: {}", rule.getRuleId(), e);
+            return RuleOutcome.FAILED;
+        }
+    }
+
+    /**
+     * 单条规则的执行结果
+     */
+    private enum RuleOutcome {
+        /** 未触发 */
+        PASSED,
+        /** 触发 */
+        TRIGGERED,
+        /** 执行异常，无法判断是否触发 */
+        FAILED
+    }
+
     /**
      * 检查单个风控规则
      * 
@@ -719,7 +1029,7 @@ public class RiskControlServiceImpl implements RiskControlService {
      * @param request 支付请求
      * @return 是否触发规则
      */
-    private boolean checkRule(RiskRule rule, PaymentCreateRequest request) {
+    private boolean checkRule(CompiledRiskRule rule, PaymentCreateRequest request) {
         switch (rule.getRuleType()) {
             case AMOUNT_LIMIT:
                 return checkAmountLimit(rule, request);
@@ -746,11 +1056,7 @@ public class RiskControlServiceImpl implements RiskControlService {
      * @param request 支付请求
      * @return 是否触发规则
      */
-    private boolean checkAmountLimit(RiskRule rule, PaymentCreateRequest request) {
-        if (rule.getThresholdValue() == null) {
-            return false;
-        }
-        
+    private boolean checkAmountLimit(CompiledRiskRule rule, PaymentCreateRequest request) {
         return request.getAmount().compareTo(rule.getThresholdValue()) > 0;
     }
 
@@ -761,18 +1067,9 @@ public class RiskControlServiceImpl implements RiskControlService {
      * @param request 支付请求
      * @return 是否触发规则
      */
-    private boolean checkFrequencyLimit(RiskRule rule, PaymentCreateRequest request) {
-        if (rule.getThresholdValue() == null || rule.getTimeWindowSeconds() == null) {
-            return false;
-        }
-        
-        LocalDateTime startTime = LocalDateTime.now().minusSeconds(rule.getTimeWindowSeconds());
-        LocalDateTime endTime = LocalDateTime.now();
-        
-        long count = riskRecordRepository.countByUserIdAndCreatedAtBetween(
-                request.getUserId(), startTime, endTime);
-        
-        return count >= rule.getThresholdValue().longValue();
+    private boolean checkFrequencyLimit(CompiledRiskRule rule, PaymentCreateRequest request) {
+        long count = velocityCounterStore.countByUser(request.getUserId(), rule.getTimeWindowSeconds());
+        return count >= rule.getThresholdCount();
     }
 
     /**
@@ -782,25 +1079,8 @@ public class RiskControlServiceImpl implements RiskControlService {
      * @param request 支付请求
      * @return 是否触发规则
      */
-    private boolean checkIpBlacklist(RiskRule rule, PaymentCreateRequest request) {
-        if (!StringUtils.hasText(rule.getRuleConfig()) || !StringUtils.hasText(request.getClientIp())) {
-            return false;
-        }
-        
-        try {
-            // 解析IP黑名单配置
-            String[] blacklistIps = rule.getRuleConfig().split(",");
-            for (String ip : blacklistIps) {
-                if (request.getClientIp().trim().equals(ip.trim())) {
-                    return true;
-                }
-            }
-            return false;
-            
-        } catch (Exception e) {
-            logger.error("检查IP黑名单规则异常", e);
-            return false;
-        }
+    private boolean checkIpBlacklist(CompiledRiskRule rule, PaymentCreateRequest request) {
+        return rule.getIpBlacklist().matches(request.getClientIp());
     }
 
     /**
@@ -810,23 +1090,14 @@ public class RiskControlServiceImpl implements RiskControlService {
      * @param request 支付请求
      * @return 是否触发规则
      */
-    private boolean checkDeviceLimit(RiskRule rule, PaymentCreateRequest request) {
-        if (rule.getThresholdValue() == null || rule.getTimeWindowSeconds() == null) {
-            return false;
-        }
-        
+    private boolean checkDeviceLimit(CompiledRiskRule rule, PaymentCreateRequest request) {
         String deviceFingerprint = extractDeviceFingerprint(request);
         if (!StringUtils.hasText(deviceFingerprint)) {
             return false;
         }
         
-        LocalDateTime startTime = LocalDateTime.now().minusSeconds(rule.getTimeWindowSeconds());
-        LocalDateTime endTime = LocalDateTime.now();
-        
-        long count = riskRecordRepository.countByDeviceFingerprintAndCreatedAtBetween(
-                deviceFingerprint, startTime, endTime);
-        
-        return count >= rule.getThresholdValue().longValue();
+        long count = velocityCounterStore.countByDevice(deviceFingerprint, rule.getTimeWindowSeconds());
+        return count >= rule.getThresholdCount();
     }
 
     /**
@@ -836,32 +1107,9 @@ public class RiskControlServiceImpl implements RiskControlService {
      * @param request 支付请求
      * @return 是否触发规则
      */
-    private boolean checkTimeLimit(RiskRule rule, PaymentCreateRequest request) {
-        if (!StringUtils.hasText(rule.getRuleConfig())) {
-            return false;
-        }
-        
-        try {
-            // 解析时间限制配置（例如：禁止在22:00-06:00之间支付）
-            String[] timeParts = rule.getRuleConfig().split("-");
-            if (timeParts.length != 2) {
-                return false;
-            }
-            
-            int startHour = Integer.parseInt(timeParts[0]);
-            int endHour = Integer.parseInt(timeParts[1]);
-            int currentHour = LocalDateTime.now().getHour();
-            
-            if (startHour <= endHour) {
-                return currentHour >= startHour && currentHour < endHour;
-            } else {
-                return currentHour >= startHour || currentHour < endHour;
-            }
-            
-        } catch (Exception e) {
-            logger.error("检查时间限制规则异常", e);
-            return false;
-        }
+    private boolean checkTimeLimit(CompiledRiskRule rule, PaymentCreateRequest request) {
+        LocalTime now = LocalTime.now();
+        return rule.isForbiddenAt(now.getHour() * 60 + now.getMinute());
     }
 
     /**
@@ -871,28 +1119,28 @@ public class RiskControlServiceImpl implements RiskControlService {
      * @param request 支付请求
      * @return 是否触发规则
      */
-    private boolean checkVelocity(RiskRule rule, PaymentCreateRequest request) {
-        if (rule.getThresholdValue() == null || rule.getTimeWindowSeconds() == null) {
-            return false;
-        }
-        
-        LocalDateTime startTime = LocalDateTime.now().minusSeconds(rule.getTimeWindowSeconds());
-        LocalDateTime endTime = LocalDateTime.now();
-        
-        BigDecimal totalAmount = riskRecordRepository.sumPaymentAmountByUserIdAndCreatedAtBetween(
-                request.getUserId(), startTime, endTime);
-        
+    private boolean checkVelocity(CompiledRiskRule rule, PaymentCreateRequest request) {
+        BigDecimal totalAmount = velocityCounterStore.sumAmountByUser(request.getUserId(), rule.getTimeWindowSeconds());
         return totalAmount.compareTo(rule.getThresholdValue()) > 0;
     }
 
     /**
      * 保存风控记录
+     * 滑动窗口计数同步更新，风控记录提交到异步写入队列批量落库
      * 
      * @param request 支付请求
      * @param paymentOrderId 支付订单ID
      * @param result 风控检查结果
      */
     private void saveRiskRecord(PaymentCreateRequest request, String paymentOrderId, RiskCheckResult result) {
+        // 先更新滑动窗口计数，保证后续风控检查能立即看到本次支付尝试
+        try {
+            velocityCounterStore.record(request.getUserId(), extractDeviceFingerprint(request),
+                    request.getClientIp(), request.getAmount());
+        } catch (Exception e) {
+            logger.error("更新风控滑动窗口计数异常", e);
+        }
+        
         try {
             RiskRecord record = new RiskRecord();
             record.setRecordId(generateRecordId());
@@ -922,10 +1170,12 @@ public class RiskControlServiceImpl implements RiskControlService {
             details.put("triggeredRules", result.getTriggeredRules());
             details.put("riskScore", result.getRiskScore());
             details.put("processingTime", result.getProcessingTimeMs());
+            details.put("shortCircuited", result.isShortCircuited());
             record.setDetails(objectMapper.writeValueAsString(details));
             
-            RiskRecord savedRecord = riskRecordRepository.save(record);
-            result.setRecordId(savedRecord.getRecordId());
+            // 异步批量落库，记录ID已预先生成
+            riskRecordWriter.submit(record);
+            result.setRecordId(record.getRecordId());
             
         } catch (JsonProcessingException e) {
             logger.error("序列化风控记录详情异常", e);
@@ -984,7 +1234,8 @@ public class RiskControlServiceImpl implements RiskControlService {
      * @return 记录ID
      */
     private String generateRecordId() {
-        return "RISK_" + System.currentTimeMillis() + "_" + (int)(Math.random() * 1000);
+        // 异步写入使用INSERT，记录ID必须全局唯一
+        return "RISK_" + IdUtil.getSnowflakeNextIdStr();
     }
 
     /**
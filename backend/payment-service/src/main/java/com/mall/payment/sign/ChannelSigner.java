@@ -0,0 +1,574 @@
+package com.mall.payment.sign;
+
+import com.mall.payment.config.PaymentConfig;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+/**
+ * 支付渠道签名组件
+ * 负责支付宝、微信支付、银行卡渠道的请求签名和回调验签
+ *
+ * <p>性能设计：</p>
+ * <ul>
+ *   <li>密钥在启动时从PaymentConfig解析一次，不在每次签名时解析</li>
+ *   <li>每个线程缓存一组MessageDigest/Mac/Signature实例以及拼接、编码、摘要缓冲区，签名过程不再重复创建</li>
+ *   <li>参数按键名排序后直接写入复用缓冲区，按表编码十六进制</li>
+ *   <li>验签把回调中的签名解码后与计算结果做常量时间比较，不生成中间字符串</li>
+ * </ul>
+ *
+ * <p>签名算法：</p>
+ * <ul>
+ *   <li>支付宝：SHA256withRSA，应用私钥签名，支付宝公钥验签（排除sign、sign_type）</li>
+ *   <li>微信支付：sign_type为HMAC-SHA256时使用HMAC-SHA256，否则使用MD5，均拼接商户密钥，结果大写</li>
+ *   <li>银行卡：HMAC-SHA256，商户密钥签名，结果小写</li>
+ * </ul>
+ *
+ * <p>未配置或无法解析某个渠道的密钥时，该渠道签名抛出异常、验签一律失败（fail closed），启动时输出错误日志。
+ * 仅当显式配置 payment.sign.simulate=true 时，缺少密钥的渠道进入模拟模式：签名退化为参数摘要，
+ * 验签只检查签名是否存在，启动时输出警告。模拟模式只用于本地联调，不得在生产环境开启。</p>
+ *
+ * @author lingbai
+ * @version 1.1
+ * @since 2026-10-19
+ * 修改日志：
+ * V1.1 2026-10-19：缺少密钥时默认验签失败，模拟模式改为由 payment.sign.simulate 显式开启
+ */
+@Component
+public class ChannelSigner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChannelSigner.class);
+
+    private static final char[] HEX_LOWER = "0123456789abcdef".toCharArray();
+
+    private static final char[] HEX_UPPER = "0123456789ABCDEF".toCharArray();
+
+    private static final String HMAC_SHA256 = "HmacSHA256";
+
+    private static final String RSA_SHA256 = "SHA256withRSA";
+
+    private static final String WECHAT_HMAC_SIGN_TYPE = "HMAC-SHA256";
+
+    private static final Set<String> SIGN_EXCLUDED = Set.of("sign");
+
+    private static final Set<String> ALIPAY_VERIFY_EXCLUDED = Set.of("sign", "sign_type");
+
+    private static final Set<String> BANK_EXCLUDED = Set.of("sign", "signature");
+
+    /**
+     * 线程缓冲区超过该大小时在使用后释放，避免个别超长报文长期占用内存
+     */
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private static final int INITIAL_BUFFER = 1024;
+
+    @Autowired
+    private PaymentConfig paymentConfig;
+
+    /**
+     * 是否允许缺少密钥的渠道使用模拟签名，默认关闭
+     */
+    @Value("${payment.sign.simulate:false}")
+    private boolean simulate;
+
+    private PrivateKey alipayPrivateKey;
+
+    private PublicKey alipayPublicKey;
+
+    private String wechatKey;
+
+    private SecretKeySpec wechatMacKey;
+
+    private SecretKeySpec bankMacKey;
+
+    private final ThreadLocal<SignContext> contexts = ThreadLocal.withInitial(SignContext::new);
+
+    @PostConstruct
+    public void init() {
+        PaymentConfig.AlipayConfig alipay = paymentConfig.getAlipay();
+        alipayPrivateKey = parsePrivateKey(alipay.getPrivateKey(), "支付宝应用私钥");
+        alipayPublicKey = parsePublicKey(alipay.getAlipayPublicKey(), "支付宝公钥");
+
+        wechatKey = paymentConfig.getWechatPay().getMchKey();
+        if (StringUtils.hasText(wechatKey)) {
+            wechatMacKey = new SecretKeySpec(wechatKey.getBytes(StandardCharsets.UTF_8), HMAC_SHA256);
+        } else {
+            wechatKey = null;
+            logger.warn("未配置微信支付商户密钥 payment.wechat-pay.mch-key");
+        }
+
+        String bankKey = paymentConfig.getBankCard().getMerchantKey();
+        if (StringUtils.hasText(bankKey)) {
+            bankMacKey = new SecretKeySpec(bankKey.getBytes(StandardCharsets.UTF_8), HMAC_SHA256);
+        } else {
+            logger.warn("未配置银行卡商户密钥 payment.bank-card.merchant-key");
+        }
+
+        reportMode("支付宝签名", alipayPrivateKey != null);
+        reportMode("支付宝验签", alipayPublicKey != null);
+        reportMode("微信支付签名/验签", wechatKey != null);
+        reportMode("银行卡签名/验签", bankMacKey != null);
+    }
+
+    private void reportMode(String name, boolean keyReady) {
+        if (keyReady) {
+            return;
+        }
+        if (simulate) {
+            logger.warn("payment.sign.simulate=true，{}缺少密钥，使用模拟模式（仅限本地联调）", name);
+        } else {
+            logger.error("{}缺少有效密钥，签名将失败、回调验签将一律拒绝", name);
+        }
+    }
+
+    /**
+     * 缺少密钥时的验签结果：模拟模式下只要求签名存在，否则拒绝
+     */
+    private boolean verifyWithoutKey(String channel) {
+        if (simulate) {
+            return true;
+        }
+        logger.warn("{}缺少验签密钥，拒绝回调", channel);
+        return false;
+    }
+
+    /**
+     * 缺少密钥且未开启模拟模式时拒绝签名
+     */
+    private void requireSignKey(boolean keyReady, String channel) {
+        if (!keyReady && !simulate) {
+            throw new IllegalStateException(channel + "缺少签名密钥，无法签名");
+        }
+    }
+
+    // ==================== 支付宝 ====================
+
+    /**
+     * 生成支付宝请求签名
+     *
+     * @param params 请求参数
+     * @return Base64编码的RSA签名，模拟模式下为参数MD5
+     */
+    public String signAlipay(Map<String, String> params) {
+        requireSignKey(alipayPrivateKey != null, "支付宝");
+        SignContext ctx = contexts.get();
+        try {
+            ByteBuffer data = ctx.encode(ctx.canonicalize(params, SIGN_EXCLUDED));
+            if (alipayPrivateKey == null) {
+                return ctx.md5Hex(data, HEX_LOWER);
+            }
+            Signature signer = ctx.rsaSigner();
+            signer.update(data);
+            return Base64.getEncoder().encodeToString(signer.sign());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("生成支付宝签名失败", e);
+        } finally {
+            ctx.release();
+        }
+    }
+
+    /**
+     * 验证支付宝回调签名
+     *
+     * @param params 回调参数（包含sign）
+     * @return 签名是否有效
+     */
+    public boolean verifyAlipay(Map<String, String> params) {
+        String sign = params.get("sign");
+        if (!StringUtils.hasText(sign)) {
+            return false;
+        }
+        if (alipayPublicKey == null) {
+            return verifyWithoutKey("支付宝");
+        }
+        SignContext ctx = contexts.get();
+        try {
+            // 先解码签名，避免解码失败时验签实例停留在已写入数据的状态
+            byte[] signature = Base64.getDecoder().decode(sign);
+            Signature verifier = ctx.rsaVerifier();
+            verifier.update(ctx.encode(ctx.canonicalize(params, ALIPAY_VERIFY_EXCLUDED)));
+            return verifier.verify(signature);
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            logger.warn("支付宝回调验签失败: {}", e.getMessage());
+            return false;
+        } finally {
+            ctx.release();
+        }
+    }
+
+    // ==================== 微信支付 ====================
+
+    /**
+     * 生成微信支付请求签名
+     *
+     * @param params 请求参数
+     * @return 大写十六进制签名
+     */
+    public String signWechat(Map<String, String> params) {
+        requireSignKey(wechatKey != null, "微信支付");
+        SignContext ctx = contexts.get();
+        try {
+            int length = ctx.wechatDigest(params);
+            return ctx.hex(length, HEX_UPPER);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("生成微信签名失败", e);
+        } finally {
+            ctx.release();
+        }
+    }
+
+    /**
+     * 验证微信支付回调签名
+     *
+     * @param params 回调参数（包含sign）
+     * @return 签名是否有效
+     */
+    public boolean verifyWechat(Map<String, String> params) {
+        String sign = params.get("sign");
+        if (!StringUtils.hasText(sign)) {
+            return false;
+        }
+        if (wechatKey == null) {
+            return verifyWithoutKey("微信支付");
+        }
+        SignContext ctx = contexts.get();
+        try {
+            return ctx.matches(ctx.wechatDigest(params), sign);
+        } catch (GeneralSecurityException e) {
+            logger.warn("微信支付回调验签失败: {}", e.getMessage());
+            return false;
+        } finally {
+            ctx.release();
+        }
+    }
+
+    // ==================== 银行卡 ====================
+
+    /**
+     * 生成银行卡请求签名
+     *
+     * @param params 请求参数
+     * @return 小写十六进制签名
+     */
+    public String signBankCard(Map<String, String> params) {
+        requireSignKey(bankMacKey != null, "银行卡");
+        SignContext ctx = contexts.get();
+        try {
+            return ctx.hex(ctx.bankDigest(params), HEX_LOWER);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("生成银行卡签名失败", e);
+        } finally {
+            ctx.release();
+        }
+    }
+
+    /**
+     * 验证银行卡回调签名
+     *
+     * @param params 回调参数（包含signature）
+     * @return 签名是否有效
+     */
+    public boolean verifyBankCard(Map<String, String> params) {
+        String signature = params.get("signature");
+        if (!StringUtils.hasText(signature)) {
+            return false;
+        }
+        if (bankMacKey == null) {
+            return verifyWithoutKey("银行卡");
+        }
+        SignContext ctx = contexts.get();
+        try {
+            return ctx.matches(ctx.bankDigest(params), signature);
+        } catch (GeneralSecurityException e) {
+            logger.warn("银行卡回调验签失败: {}", e.getMessage());
+            return false;
+        } finally {
+            ctx.release();
+        }
+    }
+
+    // ==================== 密钥解析 ====================
+
+    private static PrivateKey parsePrivateKey(String key, String name) {
+        byte[] encoded = decodeKey(key, name);
+        if (encoded == null) {
+            return null;
+        }
+        try {
+            return KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(encoded));
+        } catch (GeneralSecurityException e) {
+            logger.warn("{}无法解析: {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    private static PublicKey parsePublicKey(String key, String name) {
+        byte[] encoded = decodeKey(key, name);
+        if (encoded == null) {
+            return null;
+        }
+        try {
+            return KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(encoded));
+        } catch (GeneralSecurityException e) {
+            logger.warn("{}无法解析: {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 去掉PEM头尾和空白后Base64解码
+     */
+    private static byte[] decodeKey(String key, String name) {
+        if (!StringUtils.hasText(key)) {
+            logger.warn("未配置{}", name);
+            return null;
+        }
+        String body = key.replaceAll("-----[A-Z ]+-----", "").replaceAll("\\s", "");
+        try {
+            return Base64.getDecoder().decode(body);
+        } catch (IllegalArgumentException e) {
+            logger.warn("{}不是有效的Base64", name);
+            return null;
+        }
+    }
+
+    // ==================== 线程上下文 ====================
+
+    /**
+     * 线程私有的签名上下文，持有可复用的算法实例和缓冲区
+     */
+    private final class SignContext {
+
+        private final StringBuilder canonical = new StringBuilder(INITIAL_BUFFER);
+
+        private String[] keys = new String[32];
+
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_BUFFER);
+
+        private final byte[] digest = new byte[64];
+
+        private final byte[] decoded = new byte[64];
+
+        private final char[] hex = new char[128];
+
+        private MessageDigest md5;
+
+        private Mac wechatMac;
+
+        private Mac bankMac;
+
+        private Signature rsaSigner;
+
+        private Signature rsaVerifier;
+
+        /**
+         * 按键名排序拼接 key=value&...，跳过排除的键和空值
+         */
+        StringBuilder canonicalize(Map<String, String> params, Set<String> excluded) {
+            if (keys.length < params.size()) {
+                keys = new String[Math.max(params.size(), keys.length * 2)];
+            }
+            int count = 0;
+            for (Map.Entry<String, String> entry : params.entrySet()) {
+                if (!excluded.contains(entry.getKey()) && StringUtils.hasText(entry.getValue())) {
+                    keys[count++] = entry.getKey();
+                }
+            }
+            // 自然序的SortedMap已经有序，其他Map需要排序
+            if (!(params instanceof SortedMap && ((SortedMap<String, String>) params).comparator() == null)) {
+                Arrays.sort(keys, 0, count);
+            }
+
+            canonical.setLength(0);
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    canonical.append('&');
+                }
+                canonical.append(keys[i]).append('=').append(params.get(keys[i]));
+                keys[i] = null;
+            }
+            return canonical;
+        }
+
+        /**
+         * 把拼接结果按UTF-8编码到复用缓冲区
+         */
+        ByteBuffer encode(CharSequence text) {
+            int required = (int) (text.length() * encoder.maxBytesPerChar());
+            if (bytes.capacity() < required) {
+                bytes = ByteBuffer.allocate(required);
+            }
+            bytes.clear();
+            encoder.reset();
+            encoder.encode(CharBuffer.wrap(text), bytes, true);
+            encoder.flush(bytes);
+            bytes.flip();
+            return bytes;
+        }
+
+        String md5Hex(ByteBuffer data, char[] table) throws GeneralSecurityException {
+            MessageDigest md = md5();
+            md.update(data);
+            return hex(md.digest(digest, 0, digest.length), table);
+        }
+
+        /**
+         * 计算微信签名摘要，返回写入digest的字节数
+         */
+        int wechatDigest(Map<String, String> params) throws GeneralSecurityException {
+            StringBuilder text = canonicalize(params, SIGN_EXCLUDED);
+            if (wechatKey == null) {
+                MessageDigest md = md5();
+                md.update(encode(text));
+                return md.digest(digest, 0, digest.length);
+            }
+            text.append("&key=").append(wechatKey);
+            ByteBuffer data = encode(text);
+            if (WECHAT_HMAC_SIGN_TYPE.equals(params.get("sign_type"))) {
+                Mac mac = wechatMac();
+                mac.update(data);
+                mac.doFinal(digest, 0);
+                return mac.getMacLength();
+            }
+            MessageDigest md = md5();
+            md.update(data);
+            return md.digest(digest, 0, digest.length);
+        }
+
+        /**
+         * 计算银行卡签名摘要，返回写入digest的字节数
+         */
+        int bankDigest(Map<String, String> params) throws GeneralSecurityException {
+            ByteBuffer data = encode(canonicalize(params, BANK_EXCLUDED));
+            if (bankMacKey == null) {
+                MessageDigest md = md5();
+                md.update(data);
+                return md.digest(digest, 0, digest.length);
+            }
+            Mac mac = bankMac();
+            mac.update(data);
+            mac.doFinal(digest, 0);
+            return mac.getMacLength();
+        }
+
+        String hex(int length, char[] table) {
+            for (int i = 0; i < length; i++) {
+                int b = digest[i] & 0xff;
+                hex[i * 2] = table[b >>> 4];
+                hex[i * 2 + 1] = table[b & 0x0f];
+            }
+            return new String(hex, 0, length * 2);
+        }
+
+        /**
+         * 将十六进制签名解码后与digest前length个字节做常量时间比较（大小写不敏感）
+         */
+        boolean matches(int length, String signature) {
+            if (signature.length() != length * 2) {
+                return false;
+            }
+            int invalid = 0;
+            for (int i = 0; i < length; i++) {
+                int high = Character.digit(signature.charAt(i * 2), 16);
+                int low = Character.digit(signature.charAt(i * 2 + 1), 16);
+                invalid |= (high | low) >>> 31;
+                decoded[i] = (byte) ((high << 4) | (low & 0x0f));
+            }
+            int diff = invalid;
+            for (int i = 0; i < length; i++) {
+                diff |= decoded[i] ^ digest[i];
+            }
+            return diff == 0;
+        }
+
+        MessageDigest md5() throws GeneralSecurityException {
+            if (md5 == null) {
+                md5 = MessageDigest.getInstance("MD5");
+            }
+            return md5;
+        }
+
+        Mac wechatMac() throws GeneralSecurityException {
+            if (wechatMac == null) {
+                wechatMac = Mac.getInstance(HMAC_SHA256);
+                wechatMac.init(wechatMacKey);
+            }
+            return wechatMac;
+        }
+
+        Mac bankMac() throws GeneralSecurityException {
+            if (bankMac == null) {
+                bankMac = Mac.getInstance(HMAC_SHA256);
+                bankMac.init(bankMacKey);
+            }
+            return bankMac;
+        }
+
+        Signature rsaSigner() throws GeneralSecurityException {
+            if (rsaSigner == null) {
+                rsaSigner = Signature.getInstance(RSA_SHA256);
+                rsaSigner.initSign(alipayPrivateKey);
+            }
+            return rsaSigner;
+        }
+
+        Signature rsaVerifier() throws GeneralSecurityException {
+            if (rsaVerifier == null) {
+                rsaVerifier = Signature.getInstance(RSA_SHA256);
+                rsaVerifier.initVerify(alipayPublicKey);
+            }
+            return rsaVerifier;
+        }
+
+        /**
+         * 使用完毕后重置算法状态，并释放过大的缓冲区
+         */
+        void release() {
+            if (md5 != null) {
+                md5.reset();
+            }
+            if (wechatMac != null) {
+                wechatMac.reset();
+            }
+            if (bankMac != null) {
+                bankMac.reset();
+            }
+            if (canonical.capacity() > MAX_RETAINED_BUFFER) {
+                canonical.setLength(0);
+                canonical.trimToSize();
+            }
+            if (bytes.capacity() > MAX_RETAINED_BUFFER) {
+                bytes = ByteBuffer.allocate(INITIAL_BUFFER);
+            }
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package com.mall.payment.statistics;
+
+import com.mall.payment.entity.PaymentOrder;
+import com.mall.payment.entity.PaymentStatistics;
+import com.mall.payment.entity.RefundOrder;
+import com.mall.payment.enums.PaymentStatus;
+import com.mall.payment.enums.RefundStatus;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 支付统计增量汇总器
+ * 订单和退款的每次状态变化只产生一条多行UPSERT语句，把增量累加到日统计桶，
+ * 月/年统计由日统计桶求和得到，历史日期通过数据库端分组聚合回填
+ *
+ * <p>统计口径：</p>
+ * <ul>
+ *   <li>订单按创建日期归桶，统计值反映订单当前状态：状态变化时减去旧状态的贡献、加上新状态的贡献</li>
+ *   <li>每个事件同时写入"全部支付方式"行和对应支付方式行</li>
+ *   <li>成功率和平均金额在同一语句中按累加后的值重新计算</li>
+ * </ul>
+ *
+ * <p>订单首次进入支付成功状态时，同时维护用户首次支付时间（见 {@link UserFirstPaymentTracker}）。</p>
+ *
+ * <p>增量在业务事务提交后写入，热点统计行不会被业务事务长时间锁住；
+ * 提交后写入失败的增量由每日回填任务按订单表重新校准。</p>
+ *
+ * @author lingbai
+ * @version 1.1
+ * @since 2026-10-19
+ *
+ * <p>修改日志：</p>
+ * <ul>
+ *   <li>V1.0 2026-10-19：日统计桶增量UPSERT、月/年汇总和日统计回填</li>
+ *   <li>V1.1 2026-10-19：支付成功时维护用户首次支付时间</li>
+ * </ul>
+ */
+@Component
+public class PaymentStatisticsRollup {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentStatisticsRollup.class);
+
+    private static final DateTimeFormatter STAT_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static final String INSERT_COLUMNS = "INSERT INTO payment_statistics (stat_id, stat_date, stat_type, "
+            + "payment_method, total_orders, success_orders, failed_orders, cancelled_orders, total_amount, "
+            + "success_amount, refund_orders, refund_amount, fee_amount, avg_amount, success_rate, unique_users, "
+            + "new_users, risk_blocked_orders, created_at, updated_at) VALUES ";
+
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0, 0, 0, ?, ?)";
+
+    private static final int PARAMS_PER_ROW = 17;
+
+    /**
+     * 增量累加：成功率和平均金额放在最前面，按"旧值 + 增量"计算，
+     * 不依赖数据库对同一语句中赋值顺序的处理方式
+     */
+    private static final String INCREMENT_CLAUSE = " ON DUPLICATE KEY UPDATE "
+            + "success_rate = CASE WHEN total_orders + VALUES(total_orders) > 0 "
+            + "THEN ROUND((success_orders + VALUES(success_orders)) * 100.0 / (total_orders + VALUES(total_orders)), 2) "
+            + "ELSE 0 END, "
+            + "avg_amount = CASE WHEN success_orders + VALUES(success_orders) > 0 "
+            + "THEN ROUND((success_amount + VALUES(success_amount)) / (success_orders + VALUES(success_orders)), 2) "
+            + "ELSE 0 END, "
+            + "total_orders = total_orders + VALUES(total_orders), "
+            + "success_orders = success_orders + VALUES(success_orders), "
+            + "failed_orders = failed_orders + VALUES(failed_orders), "
+            + "cancelled_orders = cancelled_orders + VALUES(cancelled_orders), "
+            + "total_amount = total_amount + VALUES(total_amount), "
+            + "success_amount = success_amount + VALUES(success_amount), "
+            + "refund_orders = refund_orders + VALUES(refund_orders), "
+            + "refund_amount = refund_amount + VALUES(refund_amount), "
+            + "fee_amount = fee_amount + VALUES(fee_amount), "
+            + "updated_at = VALUES(updated_at)";
+
+    /**
+     * 覆盖写入：用于回填和月/年汇总，用户数和风控拦截数不在此处维护，保留原值
+     */
+    private static final String REPLACE_SQL = INSERT_COLUMNS + ROW_PLACEHOLDERS + " ON DUPLICATE KEY UPDATE "
+            + "total_orders = VALUES(total_orders), "
+            + "success_orders = VALUES(success_orders), "
+            + "failed_orders = VALUES(failed_orders), "
+            + "cancelled_orders = VALUES(cancelled_orders), "
+            + "total_amount = VALUES(total_amount), "
+            + "success_amount = VALUES(success_amount), "
+            + "refund_orders = VALUES(refund_orders), "
+            + "refund_amount = VALUES(refund_amount), "
+            + "fee_amount = VALUES(fee_amount), "
+            + "avg_amount = VALUES(avg_amount), "
+            + "success_rate = VALUES(success_rate), "
+            + "updated_at = VALUES(updated_at)";
+
+    private static final String INCREMENT_ONE_ROW_SQL = INSERT_COLUMNS + ROW_PLACEHOLDERS + INCREMENT_CLAUSE;
+
+    private static final String INCREMENT_TWO_ROWS_SQL = INSERT_COLUMNS + ROW_PLACEHOLDERS + ", "
+            + ROW_PLACEHOLDERS + INCREMENT_CLAUSE;
+
+    private static final String ORDER_AGGREGATE_SQL = "SELECT payment_method, status, COUNT(*), "
+            + "COALESCE(SUM(amount), 0), COALESCE(SUM(fee_amount), 0) FROM payment_orders "
+            + "WHERE created_at >= ? AND created_at < ? GROUP BY payment_method, status";
+
+    private static final String REFUND_AGGREGATE_SQL = "SELECT p.payment_method, COUNT(*), "
+            + "COALESCE(SUM(r.refund_amount), 0) FROM refund_orders r "
+            + "LEFT JOIN payment_orders p ON p.id = r.payment_order_id "
+            + "WHERE r.created_at >= ? AND r.created_at < ? AND r.status = ? GROUP BY p.payment_method";
+
+    private static final String DAILY_SUM_SQL = "SELECT payment_method, SUM(total_orders), SUM(success_orders), "
+            + "SUM(failed_orders), SUM(cancelled_orders), SUM(total_amount), SUM(success_amount), "
+            + "SUM(refund_orders), SUM(refund_amount), SUM(fee_amount) FROM payment_statistics "
+            + "WHERE stat_type = ? AND stat_date >= ? AND stat_date <= ? GROUP BY payment_method";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserFirstPaymentTracker firstPaymentTracker;
+
+    private TransactionTemplate writeTemplate;
+
+    @PostConstruct
+    public void init() {
+        writeTemplate = new TransactionTemplate(transactionManager);
+        writeTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // ==================== 增量事件 ====================
+
+    /**
+     * 记录支付订单状态变化
+     *
+     * @param order 支付订单（状态已更新为新状态）
+     * @param previousStatus 变化前的状态，新建订单传null
+     */
+    public void recordOrderTransition(PaymentOrder order, PaymentStatus previousStatus) {
+        if (order.getCreatedAt() == null || order.getPaymentMethod() == null) {
+            return;
+        }
+        Counters delta = new Counters();
+        if (previousStatus == null) {
+            delta.totalOrders = 1;
+            delta.totalAmount = nullToZero(order.getAmount());
+        } else {
+            delta.applyStatus(previousStatus, order, -1);
+        }
+        delta.applyStatus(order.getStatus(), order, 1);
+        if (delta.isEmpty()) {
+            return;
+        }
+
+        LocalDate statDate = order.getCreatedAt().toLocalDate();
+        String paymentMethod = order.getPaymentMethod().name();
+        if (order.getStatus() == PaymentStatus.SUCCESS) {
+            String userId = order.getUserId();
+            LocalDateTime paidAt = order.getPayTime() != null ? order.getPayTime() : LocalDateTime.now();
+            submit(() -> {
+                increment(statDate, paymentMethod, delta);
+                firstPaymentTracker.record(userId, paidAt);
+            });
+        } else {
+            submit(() -> increment(statDate, paymentMethod, delta));
+        }
+    }
+
+    /**
+     * 记录退款成功
+     *
+     * @param refund 退款订单
+     * @param paymentMethod 原支付订单的支付方式，未知时传null（只累加到全部支付方式行）
+     */
+    public void recordRefundSuccess(RefundOrder refund, String paymentMethod) {
+        if (refund.getCreatedAt() == null || refund.getStatus() != RefundStatus.SUCCESS) {
+            return;
+        }
+        Counters delta = new Counters();
+        delta.refundOrders = 1;
+        delta.refundAmount = nullToZero(refund.getRefundAmount());
+        LocalDate statDate = refund.getCreatedAt().toLocalDate();
+        submit(() -> increment(statDate, paymentMethod, delta));
+    }
+
+    // ==================== 回填与汇总 ====================
+
+    /**
+     * 按订单表和退款表重新计算某一天的日统计
+     * 在数据库端按支付方式和状态分组聚合，不加载订单实体
+     *
+     * @param date 统计日期
+     * @return 写入的统计行数
+     */
+    public int rebuildDay(LocalDate date) {
+        Timestamp start = Timestamp.valueOf(date.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(date.plusDays(1).atStartOfDay());
+
+        Counters all = new Counters();
+        Map<String, Counters> byMethod = new LinkedHashMap<>();
+
+        jdbcTemplate.query(ORDER_AGGREGATE_SQL, rs -> {
+            String method = rs.getString(1);
+            PaymentStatus status = PaymentStatus.valueOf(rs.getString(2));
+            long count = rs.getLong(3);
+            BigDecimal amount = rs.getBigDecimal(4);
+            BigDecimal fee = rs.getBigDecimal(5);
+            Counters methodCounters = byMethod.computeIfAbsent(method, k -> new Counters());
+            all.addOrders(status, count, amount, fee);
+            methodCounters.addOrders(status, count, amount, fee);
+        }, start, end);
+
+        jdbcTemplate.query(REFUND_AGGREGATE_SQL, rs -> {
+            String method = rs.getString(1);
+            long count = rs.getLong(2);
+            BigDecimal amount = rs.getBigDecimal(3);
+            all.refundOrders += count;
+            all.refundAmount = all.refundAmount.add(amount);
+            if (method != null) {
+                Counters methodCounters = byMethod.computeIfAbsent(method, k -> new Counters());
+                methodCounters.refundOrders += count;
+                methodCounters.refundAmount = methodCounters.refundAmount.add(amount);
+            }
+        }, start, end, RefundStatus.SUCCESS.name());
+
+        return replaceRows(date, PaymentStatistics.StatType.DAILY, all, byMethod);
+    }
+
+    /**
+     * 由日统计桶求和生成月/年统计
+     *
+     * @param periodStart 统计周期第一天（月初或年初）
+     * @param periodEnd 统计周期最后一天
+     * @param statType 统计类型（MONTHLY或YEARLY）
+     * @return 写入的统计行数
+     */
+    public int rollupFromDaily(LocalDate periodStart, LocalDate periodEnd, PaymentStatistics.StatType statType) {
+        Counters[] all = {new Counters()};
+        Map<String, Counters> byMethod = new LinkedHashMap<>();
+
+        jdbcTemplate.query(DAILY_SUM_SQL, rs -> {
+            Counters counters = readSums(rs);
+            String method = rs.getString(1);
+            if (method == null) {
+                all[0] = counters;
+            } else {
+                byMethod.put(method, counters);
+            }
+        }, PaymentStatistics.StatType.DAILY.name(), Date.valueOf(periodStart), Date.valueOf(periodEnd));
+
+        return replaceRows(periodStart, statType, all[0], byMethod);
+    }
+
+    /**
+     * 生成统计记录ID
+     *
+     * @param statDate 统计日期
+     * @param statType 统计类型
+     * @param paymentMethod 支付方式，为空表示全部支付方式
+     * @return 统计记录ID
+     */
+    public static String statId(LocalDate statDate, PaymentStatistics.StatType statType, String paymentMethod) {
+        StringBuilder sb = new StringBuilder(32);
+        sb.append(statDate.format(STAT_DATE_FORMATTER));
+        sb.append('_').append(statType.name());
+        if (paymentMethod != null) {
+            sb.append('_').append(paymentMethod);
+        }
+        return sb.toString();
+    }
+
+    // ==================== 私有方法 ====================
+
+    /**
+     * 有事务时在提交后以独立事务写入，否则立即写入
+     */
+    private void submit(Runnable write) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    writeTemplate.executeWithoutResult(status -> write.run());
+                }
+            });
+        } else {
+            write.run();
+        }
+    }
+
+    private void increment(LocalDate statDate, String paymentMethod, Counters delta) {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            if (paymentMethod == null) {
+                jdbcTemplate.update(INCREMENT_ONE_ROW_SQL, ps -> bindRow(ps, 0,
+                        statDate, PaymentStatistics.StatType.DAILY, null, delta, now));
+            } else {
+                jdbcTemplate.update(INCREMENT_TWO_ROWS_SQL, ps -> {
+                    bindRow(ps, 0, statDate, PaymentStatistics.StatType.DAILY, null, delta, now);
+                    bindRow(ps, PARAMS_PER_ROW, statDate, PaymentStatistics.StatType.DAILY, paymentMethod, delta, now);
+                });
+            }
+        } catch (Exception e) {
+            logger.warn("累加支付统计失败，等待每日回填校准，日期: {}, 支付方式: {}, 原因: {}",
+                    statDate, paymentMethod, e.getMessage());
+        }
+    }
+
+    private int replaceRows(LocalDate statDate, PaymentStatistics.StatType statType,
+                            Counters all, Map<String, Counters> byMethod) {
+        List<String> methods = new ArrayList<>(byMethod.size() + 1);
+        List<Counters> rows = new ArrayList<>(byMethod.size() + 1);
+        methods.add(null);
+        rows.add(all);
+        for (Map.Entry<String, Counters> entry : byMethod.entrySet()) {
+            methods.add(entry.getKey());
+            rows.add(entry.getValue());
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(REPLACE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                bindRow(ps, 0, statDate, statType, methods.get(i), rows.get(i), now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+        return rows.size();
+    }
+
+    private static void bindRow(PreparedStatement ps, int offset, LocalDate statDate,
+                                PaymentStatistics.StatType statType, String paymentMethod,
+                                Counters counters, LocalDateTime now) throws SQLException {
+        Timestamp timestamp = Timestamp.valueOf(now);
+        ps.setString(offset + 1, statId(statDate, statType, paymentMethod));
+        ps.setDate(offset + 2, Date.valueOf(statDate));
+        ps.setString(offset + 3, statType.name());
+        ps.setString(offset + 4, paymentMethod);
+        ps.setLong(offset + 5, counters.totalOrders);
+        ps.setLong(offset + 6, counters.successOrders);
+        ps.setLong(offset + 7, counters.failedOrders);
+        ps.setLong(offset + 8, counters.cancelledOrders);
+        ps.setBigDecimal(offset + 9, counters.totalAmount);
+        ps.setBigDecimal(offset + 10, counters.successAmount);
+        ps.setLong(offset + 11, counters.refundOrders);
+        ps.setBigDecimal(offset + 12, counters.refundAmount);
+        ps.setBigDecimal(offset + 13, counters.feeAmount);
+        ps.setBigDecimal(offset + 14, counters.avgAmount());
+        ps.setBigDecimal(offset + 15, counters.successRate());
+        ps.setTimestamp(offset + 16, timestamp);
+        ps.setTimestamp(offset + 17, timestamp);
+    }
+
+    private static Counters readSums(ResultSet rs) throws SQLException {
+        Counters counters = new Counters();
+        counters.totalOrders = rs.getLong(2);
+        counters.successOrders = rs.getLong(3);
+        counters.failedOrders = rs.getLong(4);
+        counters.cancelledOrders = rs.getLong(5);
+        counters.totalAmount = nullToZero(rs.getBigDecimal(6));
+        counters.successAmount = nullToZero(rs.getBigDecimal(7));
+        counters.refundOrders = rs.getLong(8);
+        counters.refundAmount = nullToZero(rs.getBigDecimal(9));
+        counters.feeAmount = nullToZero(rs.getBigDecimal(10));
+        return counters;
+    }
+
+    private static BigDecimal nullToZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    /**
+     * 一个统计桶的计数（增量或绝对值）
+     */
+    private static final class Counters {
+
+        long totalOrders;
+        long successOrders;
+        long failedOrders;
+        long cancelledOrders;
+        long refundOrders;
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        BigDecimal successAmount = BigDecimal.ZERO;
+        BigDecimal refundAmount = BigDecimal.ZERO;
+        BigDecimal feeAmount = BigDecimal.ZERO;
+
+        /**
+         * 累加（sign为1）或扣除（sign为-1）订单在某状态下的贡献
+         */
+        void applyStatus(PaymentStatus status, PaymentOrder order, int sign) {
+            BigDecimal amount = nullToZero(order.getAmount());
+            BigDecimal fee = nullToZero(order.getFeeAmount());
+            switch (status) {
+                case SUCCESS:
+                    successOrders += sign;
+                    successAmount = successAmount.add(sign > 0 ? amount : amount.negate());
+                    feeAmount = feeAmount.add(sign > 0 ? fee : fee.negate());
+                    break;
+                case FAILED:
+                    failedOrders += sign;
+                    break;
+                case CANCELLED:
+                    cancelledOrders += sign;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        void addOrders(PaymentStatus status, long count, BigDecimal amount, BigDecimal fee) {
+            totalOrders += count;
+            totalAmount = totalAmount.add(amount);
+            switch (status) {
+                case SUCCESS:
+                    successOrders += count;
+                    successAmount = successAmount.add(amount);
+                    feeAmount = feeAmount.add(fee);
+                    break;
+                case FAILED:
+                    failedOrders += count;
+                    break;
+                case CANCELLED:
+                    cancelledOrders += count;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        boolean isEmpty() {
+            return totalOrders == 0 && successOrders == 0 && failedOrders == 0 && cancelledOrders == 0
+                    && refundOrders == 0 && totalAmount.signum() == 0 && successAmount.signum() == 0
+                    && refundAmount.signum() == 0 && feeAmount.signum() == 0;
+        }
+
+        BigDecimal successRate() {
+            if (totalOrders <= 0) {
+                return BigDecimal.ZERO;
+            }
+            return BigDecimal.valueOf(Math.max(successOrders, 0L) * 100L)
+                    .divide(BigDecimal.valueOf(totalOrders), 2, RoundingMode.HALF_UP);
+        }
+
+        BigDecimal avgAmount() {
+            if (successOrders <= 0) {
+                return BigDecimal.ZERO;
+            }
+            return successAmount.divide(BigDecimal.valueOf(successOrders), 2, RoundingMode.HALF_UP);
+        }
+    }
+}
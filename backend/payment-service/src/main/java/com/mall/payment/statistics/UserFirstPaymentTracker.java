@@ -0,0 +1,240 @@
+package com.mall.payment.statistics;
+
+import com.mall.payment.enums.PaymentStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 用户首次支付时间维护器
+ * 订单支付成功时写入用户首次支付时间，新用户统计由逐用户查询改为一次索引范围计数
+ *
+ * <p>回填：</p>
+ * <ul>
+ *   <li>按用户ID键集分页，对支付订单表分组取最早支付时间，每页一次批量UPSERT</li>
+ *   <li>每页完成后把最后一个用户ID写入Redis检查点，全部完成后标记完成</li>
+ *   <li>应用启动时若检查点未标记完成，则在后台从检查点继续回填（无检查点时从头开始），
+ *       多实例通过Redis锁保证同一时间只有一个实例执行；也可通过统计接口手动触发，手动触发总是从头开始</li>
+ *   <li>UPSERT保留较早的时间，回填与实时写入并发执行、中断后重复处理同一页时结果一致</li>
+ * </ul>
+ *
+ * @author lingbai
+ * @version 1.2
+ * @since 2026-10-19
+ *
+ * 修改日志：
+ * V1.1 2026-10-19：回填按页写入Redis检查点，启动时未完成则从检查点继续，不再只在表为空时执行
+ * V1.2 2026-10-19：回填锁的值为实例令牌，续期和释放通过Lua脚本校验令牌，不再误续、误删其他实例的锁
+ */
+@Component
+public class UserFirstPaymentTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserFirstPaymentTracker.class);
+
+    private static final int BACKFILL_PAGE_SIZE = 1000;
+
+    /**
+     * 回填检查点，字段 lastUserId 为已处理的最后一个用户ID，completed 为完成标记
+     */
+    private static final String CHECKPOINT_KEY = "payment:statistics:first-payment-backfill";
+    private static final String CHECKPOINT_LAST_USER_ID = "lastUserId";
+    private static final String CHECKPOINT_COMPLETED = "completed";
+
+    /**
+     * 回填锁，值为持有实例的令牌，每处理一页续期一次
+     */
+    private static final String LOCK_KEY = "payment:statistics:first-payment-backfill:lock";
+    private static final Duration LOCK_TTL = Duration.ofMinutes(10);
+
+    /**
+     * 令牌一致时续期：KEYS[1]锁键，ARGV[1]令牌，ARGV[2]过期毫秒数
+     */
+    private static final DefaultRedisScript<Long> EXTEND_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end "
+            + "return 0", Long.class);
+
+    /**
+     * 令牌一致时删除：KEYS[1]锁键，ARGV[1]令牌
+     */
+    private static final DefaultRedisScript<Long> RELEASE_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end "
+            + "return 0", Long.class);
+
+    private static final String UPSERT_SQL = "INSERT INTO user_first_payments (user_id, first_paid_at, created_at) "
+            + "VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE first_paid_at = LEAST(first_paid_at, VALUES(first_paid_at))";
+
+    /**
+     * 已支付的订单状态（退款后的订单同样视为支付过）
+     */
+    private static final String PAID_STATUSES = "'" + PaymentStatus.SUCCESS.name() + "', '"
+            + PaymentStatus.REFUNDED.name() + "', '" + PaymentStatus.PARTIAL_REFUNDED.name() + "'";
+
+    private static final String BACKFILL_PAGE_SQL = "SELECT user_id, MIN(COALESCE(pay_time, updated_at)) "
+            + "FROM payment_orders WHERE status IN (" + PAID_STATUSES + ") AND user_id > ? "
+            + "GROUP BY user_id ORDER BY user_id LIMIT " + BACKFILL_PAGE_SIZE;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final AtomicBoolean backfillRunning = new AtomicBoolean(false);
+
+    /**
+     * 本实例的锁令牌，锁过期后被其他实例取得时，本实例不会续期或删除对方的锁
+     */
+    private final String lockToken = UUID.randomUUID().toString();
+
+    /**
+     * 记录一次支付成功
+     *
+     * @param userId 用户ID
+     * @param paidAt 支付成功时间
+     */
+    public void record(String userId, LocalDateTime paidAt) {
+        if (userId == null || paidAt == null) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(UPSERT_SQL, userId, Timestamp.valueOf(paidAt), Timestamp.valueOf(LocalDateTime.now()));
+        } catch (Exception e) {
+            logger.warn("写入用户首次支付时间失败，用户ID: {}, 原因: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 回填未标记完成时在后台从检查点继续执行
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeBackfill() {
+        String lastUserId;
+        try {
+            HashOperations<String, String, String> checkpoint = stringRedisTemplate.opsForHash();
+            if (checkpoint.get(CHECKPOINT_KEY, CHECKPOINT_COMPLETED) != null) {
+                return;
+            }
+            lastUserId = checkpoint.get(CHECKPOINT_KEY, CHECKPOINT_LAST_USER_ID);
+        } catch (Exception e) {
+            logger.warn("读取用户首次支付时间回填检查点失败，跳过自动回填: {}", e.getMessage());
+            return;
+        }
+        String fromUserId = lastUserId != null ? lastUserId : "";
+        Thread thread = new Thread(() -> {
+            try {
+                backfillFrom(fromUserId);
+            } catch (Exception e) {
+                // 已在backfillFrom中记录，下次启动从检查点继续
+            }
+        }, "user-first-payment-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 从头回填用户首次支付时间
+     *
+     * @return 处理的用户数，已有回填在执行时返回-1
+     */
+    public long backfill() {
+        return backfillFrom("");
+    }
+
+    /**
+     * 从指定用户ID之后回填用户首次支付时间，每页完成后更新检查点
+     *
+     * @param fromUserId 起始用户ID（不含），空字符串表示从头开始
+     * @return 处理的用户数，已有回填在执行时返回-1
+     */
+    private long backfillFrom(String fromUserId) {
+        if (!backfillRunning.compareAndSet(false, true)) {
+            logger.warn("用户首次支付时间回填正在执行，忽略本次请求");
+            return -1;
+        }
+        long startTime = System.currentTimeMillis();
+        long processed = 0;
+        boolean locked = false;
+        try {
+            locked = Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(LOCK_KEY, lockToken, LOCK_TTL));
+            if (!locked) {
+                logger.warn("其他实例正在执行用户首次支付时间回填，忽略本次请求");
+                return -1;
+            }
+            logger.info("用户首次支付时间回填开始，起始用户ID: '{}'", fromUserId);
+            String lastUserId = fromUserId;
+            while (true) {
+                List<Object[]> page = jdbcTemplate.query(BACKFILL_PAGE_SQL,
+                        (rs, rowNum) -> new Object[] {rs.getString(1), rs.getTimestamp(2)}, lastUserId);
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                List<Object[]> batchArgs = new ArrayList<>(page.size());
+                for (Object[] row : page) {
+                    if (row[1] != null) {
+                        batchArgs.add(new Object[] {row[0], row[1], now});
+                    }
+                }
+                jdbcTemplate.batchUpdate(UPSERT_SQL, batchArgs);
+
+                processed += page.size();
+                lastUserId = (String) page.get(page.size() - 1)[0];
+                saveCheckpoint(lastUserId);
+                logger.debug("用户首次支付时间回填进度，已处理用户数: {}, 最后用户ID: {}", processed, lastUserId);
+                Long extended = stringRedisTemplate.execute(EXTEND_LOCK_SCRIPT, List.of(LOCK_KEY),
+                        lockToken, String.valueOf(LOCK_TTL.toMillis()));
+                if (extended == null || extended == 0) {
+                    // 锁已过期并可能被其他实例取得，停止回填，由持锁实例或下次启动从检查点继续
+                    logger.warn("用户首次支付时间回填锁已失效，停止回填，已处理用户数: {}", processed);
+                    return processed;
+                }
+
+                if (page.size() < BACKFILL_PAGE_SIZE) {
+                    break;
+                }
+            }
+            stringRedisTemplate.opsForHash().put(CHECKPOINT_KEY, CHECKPOINT_COMPLETED,
+                    String.valueOf(System.currentTimeMillis()));
+            logger.info("用户首次支付时间回填完成，用户数: {}, 耗时: {}ms",
+                    processed, System.currentTimeMillis() - startTime);
+            return processed;
+        } catch (Exception e) {
+            logger.error("用户首次支付时间回填异常，已处理用户数: {}", processed, e);
+            throw e;
+        } finally {
+            if (locked) {
+                try {
+                    stringRedisTemplate.execute(RELEASE_LOCK_SCRIPT, List.of(LOCK_KEY), lockToken);
+                } catch (Exception e) {
+                    logger.warn("释放用户首次支付时间回填锁失败: {}", e.getMessage());
+                }
+            }
+            backfillRunning.set(false);
+        }
+    }
+
+    /**
+     * 写入回填检查点，从头开始的回填同时清除之前的完成标记
+     */
+    private void saveCheckpoint(String lastUserId) {
+        HashOperations<String, String, String> checkpoint = stringRedisTemplate.opsForHash();
+        checkpoint.put(CHECKPOINT_KEY, CHECKPOINT_LAST_USER_ID, lastUserId);
+        checkpoint.delete(CHECKPOINT_KEY, CHECKPOINT_COMPLETED);
+    }
+}
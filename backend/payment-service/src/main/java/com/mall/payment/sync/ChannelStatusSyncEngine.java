@@ -0,0 +1,242 @@
+package com.mall.payment.sync;
+
+import com.mall.payment.enums.PaymentMethod;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * 渠道状态同步引擎
+ * 并发查询第三方渠道的支付/退款状态，供定时同步任务逐页调用；退款提交调度也通过本引擎调用渠道退款接口，
+ * 与状态查询共用每个渠道的并发上限和令牌桶，渠道总负载可预期
+ *
+ * <p>流量控制：</p>
+ * <ul>
+ *   <li>按渠道分组，每个渠道一个信号量，所有并发调用（多页同步、退款提交）合计最多同时运行 max-concurrency-per-channel 个查询</li>
+ *   <li>每个渠道一个令牌桶，查询速率不超过 permits-per-second，允许 burst 个突发</li>
+ *   <li>单页查询超过 page-timeout-ms 后取消未完成的查询，已返回的结果照常处理</li>
+ * </ul>
+ *
+ * <p>查询失败或超时的条目结果为null，由下一轮同步重试。</p>
+ *
+ * @author lingbai
+ * @version 1.2
+ * @since 2026-10-19
+ *
+ * <p>修改日志：</p>
+ * <ul>
+ *   <li>V1.1 2026-10-19：退款提交调度复用本引擎</li>
+ *   <li>V1.2 2026-10-19：渠道并发上限改为引擎级信号量，跨调用生效</li>
+ * </ul>
+ */
+@Component
+public class ChannelStatusSyncEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChannelStatusSyncEngine.class);
+
+    @Value("${payment.sync.page-size:200}")
+    private int pageSize;
+
+    @Value("${payment.sync.pool-size:16}")
+    private int poolSize;
+
+    @Value("${payment.sync.max-concurrency-per-channel:4}")
+    private int maxConcurrencyPerChannel;
+
+    @Value("${payment.sync.permits-per-second:20}")
+    private double permitsPerSecond;
+
+    @Value("${payment.sync.burst:20}")
+    private int burst;
+
+    @Value("${payment.sync.page-timeout-ms:30000}")
+    private long pageTimeoutMs;
+
+    private ThreadPoolExecutor executor;
+
+    private final Map<PaymentMethod, TokenBucket> rateLimiters = new ConcurrentHashMap<>();
+
+    private final Map<PaymentMethod, Semaphore> concurrencyLimiters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "channel-sync-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 同步任务每页加载的条目数
+     *
+     * @return 页大小
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * 并发查询一页条目的渠道状态
+     *
+     * @param items 待查询条目
+     * @param channelOf 条目所属渠道（在调用线程中执行，可安全访问懒加载属性）
+     * @param query 渠道查询（在同步线程中执行，不得访问懒加载属性）
+     * @param <T> 条目类型
+     * @param <R> 查询结果类型
+     * @return 与条目一一对应的查询结果，失败或超时为null
+     */
+    public <T, R> List<R> queryAll(List<T> items, Function<T, PaymentMethod> channelOf, Function<T, R> query) {
+        AtomicReferenceArray<R> results = new AtomicReferenceArray<>(items.size());
+
+        // 按渠道分组，每个渠道启动有限个工作任务从同一个队列中取条目
+        Map<PaymentMethod, Queue<Integer>> queues = new EnumMap<>(PaymentMethod.class);
+        for (int i = 0; i < items.size(); i++) {
+            PaymentMethod channel = channelOf.apply(items.get(i));
+            if (channel != null) {
+                queues.computeIfAbsent(channel, k -> new ConcurrentLinkedQueue<>()).add(i);
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + pageTimeoutMs;
+        List<Future<?>> futures = new ArrayList<>();
+        for (Map.Entry<PaymentMethod, Queue<Integer>> entry : queues.entrySet()) {
+            PaymentMethod channel = entry.getKey();
+            Queue<Integer> queue = entry.getValue();
+            TokenBucket bucket = rateLimiters.computeIfAbsent(channel, k -> new TokenBucket(permitsPerSecond, burst));
+            Semaphore permits = concurrencyLimiters.computeIfAbsent(channel,
+                    k -> new Semaphore(Math.max(1, maxConcurrencyPerChannel)));
+            int workers = Math.min(queue.size(), maxConcurrencyPerChannel);
+            for (int w = 0; w < workers; w++) {
+                futures.add(executor.submit(() -> {
+                    Integer index;
+                    while ((index = queue.poll()) != null) {
+                        // 信号量由同一渠道的所有并发调用共享，工作任务数只限制本次调用
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0 || !permits.tryAcquire(remaining, TimeUnit.MILLISECONDS)) {
+                            return null;
+                        }
+                        try {
+                            if (!bucket.acquire(deadline)) {
+                                return null;
+                            }
+                            results.set(index, query.apply(items.get(index)));
+                        } catch (Exception e) {
+                            logger.warn("查询渠道状态失败，渠道: {}, 原因: {}", channel, e.getMessage());
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                    return null;
+                }));
+            }
+        }
+
+        int timedOut = 0;
+        for (Future<?> future : futures) {
+            try {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+                future.get(remaining, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                timedOut++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                break;
+            } catch (ExecutionException e) {
+                logger.warn("渠道状态查询任务异常: {}", e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            }
+        }
+        if (timedOut > 0) {
+            logger.warn("渠道状态查询超时，取消的工作任务数: {}, 超时时间: {}ms", timedOut, pageTimeoutMs);
+        }
+
+        List<R> list = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            list.add(results.get(i));
+        }
+        return list;
+    }
+
+    /**
+     * 令牌桶限流器
+     */
+    private static final class TokenBucket {
+
+        private final double permitsPerMillis;
+        private final double capacity;
+        private double tokens;
+        private long lastRefillMillis;
+
+        TokenBucket(double permitsPerSecond, int burst) {
+            this.permitsPerMillis = permitsPerSecond / 1000.0;
+            this.capacity = Math.max(1, burst);
+            this.tokens = this.capacity;
+            this.lastRefillMillis = System.currentTimeMillis();
+        }
+
+        /**
+         * 获取一个令牌，必要时等待
+         *
+         * @param deadline 最晚等待到的时间点
+         * @return 是否在截止时间前获得令牌
+         */
+        boolean acquire(long deadline) {
+            while (true) {
+                long waitMillis;
+                synchronized (this) {
+                    long now = System.currentTimeMillis();
+                    tokens = Math.min(capacity, tokens + (now - lastRefillMillis) * permitsPerMillis);
+                    lastRefillMillis = now;
+                    if (tokens >= 1) {
+                        tokens -= 1;
+                        return true;
+                    }
+                    waitMillis = (long) Math.ceil((1 - tokens) / permitsPerMillis);
+                    if (now + waitMillis > deadline) {
+                        return false;
+                    }
+                }
+                try {
+                    Thread.sleep(Math.max(1, waitMillis));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+}
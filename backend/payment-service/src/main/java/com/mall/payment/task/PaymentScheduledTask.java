@@ -1,12 +1,14 @@
 package com.mall.payment.task;
 
 import com.mall.payment.entity.PaymentStatistics;
+import com.mall.payment.risk.RiskMetricsRollup;
 import com.mall.payment.service.PaymentService;
 import com.mall.payment.service.PaymentStatisticsService;
 import com.mall.payment.service.RefundService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -19,8 +21,14 @@ import java.time.LocalDateTime;
  * 处理支付相关的定时任务，包括订单过期检查、失败订单重试、统计数据更新等
  * 
  * @author lingbai
- * @version 1.0
+ * @version 1.2
  * @since 2024-12-01
+ * 
+ * <p>修改日志：</p>
+ * <ul>
+ *   <li>V1.1 2026-10-19：退款提交任务改为按固定间隔执行，配合退避调度</li>
+ *   <li>V1.2 2026-10-19：新增风控小时统计校准任务</li>
+ * </ul>
  */
 @Component
 public class PaymentScheduledTask {
@@ -36,6 +44,15 @@ public class PaymentScheduledTask {
     @Autowired
     private PaymentStatisticsService statisticsService;
 
+    @Autowired
+    private RiskMetricsRollup riskMetricsRollup;
+
+    @Value("${payment.risk.metrics.reconcile-hours:3}")
+    private int riskMetricsReconcileHours;
+
+    @Value("${payment.risk.metrics.backfill-days:30}")
+    private int riskMetricsBackfillDays;
+
     /**
      * 处理过期的支付订单
      * 每5分钟执行一次，检查并处理过期的支付订单
@@ -88,16 +105,16 @@ public class PaymentScheduledTask {
     }
 
     /**
-     * 重试失败的退款订单
-     * 每15分钟执行一次，重试符合条件的失败退款订单
+     * 提交到期的退款订单
+     * 每次执行结束后间隔 payment.refund-dispatch.interval-ms 再执行，提交审核通过及已到退避时间的失败退款订单
      */
-    @Scheduled(fixedRate = 15 * 60 * 1000) // 15分钟
+    @Scheduled(fixedDelayString = "${payment.refund-dispatch.interval-ms:60000}")
     public void retryFailedRefundOrders() {
-        logger.info("开始重试失败的退款订单任务");
+        logger.info("开始提交退款订单任务");
         
         try {
             int retryCount = refundService.retryFailedRefunds();
-            logger.info("失败退款订单重试完成，重试数量: {}", retryCount);
+            logger.info("退款订单提交完成，受理数量: {}", retryCount);
             
         } catch (Exception e) {
             logger.error("重试失败退款订单任务异常", e);
@@ -178,7 +195,7 @@ public class PaymentScheduledTask {
 
     /**
      * 生成日统计报表
-     * 每天凌晨1点执行，生成前一天的统计数据
+     * 每天凌晨1点执行，生成前一天的统计数据，并由日统计刷新所在月、年的汇总
      */
     @Scheduled(cron = "0 0 1 * * ?")
     public void generateDailyReport() {
@@ -187,6 +204,9 @@ public class PaymentScheduledTask {
         try {
             LocalDate yesterday = LocalDate.now().minusDays(1);
             statisticsService.generateStatistics(yesterday, yesterday, PaymentStatistics.StatType.DAILY);
+            // 由日统计刷新所在月、年的汇总
+            statisticsService.generateStatistics(yesterday, yesterday, PaymentStatistics.StatType.MONTHLY);
+            statisticsService.generateStatistics(yesterday, yesterday, PaymentStatistics.StatType.YEARLY);
             logger.info("日统计报表生成完成，日期: {}", yesterday);
             
         } catch (Exception e) {
@@ -194,6 +214,23 @@ public class PaymentScheduledTask {
         }
     }
 
+    /**
+     * 校准风控小时统计
+     * 每小时10分执行，按风控记录表重新计算最近几个完整小时；汇总表为空时回填最近若干天
+     */
+    @Scheduled(cron = "0 10 * * * ?")
+    public void reconcileRiskMetrics() {
+        logger.info("开始校准风控小时统计");
+        
+        try {
+            int hours = riskMetricsRollup.reconcile(riskMetricsReconcileHours, riskMetricsBackfillDays);
+            logger.info("风控小时统计校准完成，小时数: {}", hours);
+            
+        } catch (Exception e) {
+            logger.error("校准风控小时统计异常", e);
+        }
+    }
+
     /**
      * 生成月统计报表
      * 每月1号凌晨2点执行，生成上个月的统计数据
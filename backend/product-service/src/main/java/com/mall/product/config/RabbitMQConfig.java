@@ -0,0 +1,30 @@
+package com.mall.product.config;
+
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * RabbitMQ配置类
+ * 声明商品变更事件Exchange，由下游服务（如购物车服务）自行声明队列并绑定
+ * 
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Configuration
+public class RabbitMQConfig {
+
+    /**
+     * 商品事件Exchange
+     */
+    public static final String PRODUCT_EXCHANGE = "product.exchange";
+
+    /**
+     * 声明商品事件Exchange
+     */
+    @Bean
+    public TopicExchange productExchange() {
+        return new TopicExchange(PRODUCT_EXCHANGE, true, false);
+    }
+}
@@ -22,8 +22,9 @@ import java.util.List;
  * 支持分页查询、关键词搜索、热销推荐、多规格商品管理等业务场景
  * 
  * @author lingbai
- * @version 2.0
+ * @version 2.1
  * @since 2025-10-22
+ * 修改日志：V2.1 2026-10-19：批量商品信息返回数据库维护的交易版本号和变更版本号
  */
 @RestController
 @RequestMapping("/api")
@@ -169,7 +170,7 @@ public class ProductController {
      * 直接返回List便于Feign客户端解析
      * 
      * @param productIds 商品ID列表
-     * @return 商品信息列表（Map格式，包含id、name、price、image、stock字段）
+     * @return 商品信息列表（Map格式，包含id、name、price、image、stock、status、version字段）
      */
     @PostMapping("/products/batch")
     public List<java.util.Map<String, Object>> getProductsBatch(@RequestBody List<Long> productIds) {
@@ -190,7 +191,10 @@ public class ProductController {
                 map.put("price", product.getPrice());
                 map.put("image", product.getMainImage());
                 map.put("stock", product.getStock());
+                map.put("status", product.getStatus());
                 map.put("merchantId", product.getMerchantId());
+                map.put("version", product.getTradeVersion());
+                map.put("changeVersion", product.getChangeVersion());
                 return map;
             }).toList();
         } catch (Exception e) {
@@ -199,6 +203,38 @@ public class ProductController {
         }
     }
 
+    /**
+     * 批量获取商品完整信息
+     * 供商家服务批量展示、校验商品使用，一次请求返回全部字段
+     * 
+     * @param productIds 商品ID列表
+     * @return 统一响应结果，包含商品列表
+     */
+    @PostMapping("/products/batch/detail")
+    public R<List<Product>> getProductDetailsBatch(@RequestBody List<Long> productIds) {
+        logger.info("接收到批量获取商品完整信息的请求 - 数量: {}", productIds != null ? productIds.size() : 0);
+        
+        try {
+            return R.ok(productService.getProductsByIds(productIds));
+        } catch (Exception e) {
+            logger.error("批量获取商品完整信息失败", e);
+            return R.fail("批量获取商品信息失败");
+        }
+    }
+
+    /**
+     * 批量获取商品交易版本号
+     * 供订单服务校验购物车结算快照，只返回版本号，不返回完整商品信息
+     * 
+     * @param productIds 商品ID列表
+     * @return 商品ID -> 交易版本号
+     */
+    @PostMapping("/products/versions")
+    public java.util.Map<Long, Long> getProductVersions(@RequestBody List<Long> productIds) {
+        logger.info("接收到批量获取商品版本号的请求 - 数量: {}", productIds != null ? productIds.size() : 0);
+        return productService.getProductVersions(productIds);
+    }
+
     /**
      * 根据ID获取商品详情
      * 返回指定商品的详细信息
@@ -377,6 +413,18 @@ public class ProductController {
         }
     }
 
+    /**
+     * 批量删除商品
+     * 与 DELETE /batch 相同，使用POST便于Feign客户端携带请求体
+     * 
+     * @param ids 商品ID列表
+     * @return 统一响应结果
+     */
+    @PostMapping("/products/batch/delete")
+    public R<String> batchDeleteProductsByPost(@RequestBody List<Long> ids) {
+        return batchDeleteProducts(ids);
+    }
+
     /**
      * 更新商品状态
      * 
@@ -403,6 +451,26 @@ public class ProductController {
         }
     }
 
+    /**
+     * 批量更新商品状态
+     * 
+     * @param ids 商品ID列表
+     * @param status 状态（0-下架，1-上架）
+     * @return 统一响应结果，包含更新的商品数
+     */
+    @PutMapping("/products/batch/status")
+    public R<Integer> batchUpdateProductStatus(@RequestBody List<Long> ids, @RequestParam Integer status) {
+        logger.info("接收到批量更新商品状态的请求 - 数量: {}, 状态: {}", ids != null ? ids.size() : 0, status);
+        
+        try {
+            int rows = productService.batchUpdateProductStatus(ids, status);
+            return R.ok(rows);
+        } catch (Exception e) {
+            logger.error("批量更新商品状态时发生异常 - 状态: {}", status, e);
+            return R.fail("批量状态更新失败");
+        }
+    }
+
     // ==================== 多规格商品管理 ====================
 
     /**
@@ -551,6 +619,26 @@ public class ProductController {
         }
     }
 
+    /**
+     * 批量验证商品归属
+     * 
+     * @param productIds 商品ID列表
+     * @param merchantId 商家ID
+     * @return 属于该商家的商品ID列表，不存在或不属于该商家的商品不返回
+     */
+    @PostMapping("/products/batch/ownership")
+    public R<List<Long>> getOwnedProductIds(@RequestBody List<Long> productIds,
+                                            @RequestParam Long merchantId) {
+        logger.info("批量验证商品归属 - 商品数量: {}, 商家ID: {}", productIds != null ? productIds.size() : 0, merchantId);
+        
+        try {
+            return R.ok(productServiceImpl.getOwnedProductIds(productIds, merchantId));
+        } catch (Exception e) {
+            logger.error("批量验证商品归属失败 - 商家ID: {}", merchantId, e);
+            return R.fail("批量验证商品归属失败");
+        }
+    }
+
     // ==================== 统计功能 ====================
 
     /**
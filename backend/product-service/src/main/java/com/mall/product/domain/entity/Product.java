@@ -1,5 +1,6 @@
 package com.mall.product.domain.entity;
 
+import com.baomidou.mybatisplus.annotation.FieldStrategy;
 import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
@@ -9,7 +10,6 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
-import java.math.BigDecimal;
 import java.util.List;
 
 /**
@@ -17,9 +17,12 @@ import java.util.List;
  * 用于 product-service 统一管理商品数据
  * 
  * @author lingbai
- * @version 2.0
+ * @version 2.3
  * @since 2025-01-21
  * 修改日志：V2.0 2025-12-01：添加 merchantId 字段和 MyBatis-Plus 注解，支持数据库持久化
+ * V2.1 2026-10-19：新增交易版本号计算
+ * V2.2 2026-10-19：新增商品变更版本号 change_version，商品事件按该版本排序
+ * V2.3 2026-10-19：交易版本号改为数据库列 trade_version，价格或上下架状态变化时加1，不再由价格和状态计算
  */
 @Data
 @EqualsAndHashCode(callSuper = false)
@@ -272,4 +275,17 @@ public class Product extends BaseEntity {
      */
     @TableField(exist = false)
     private Integer version;
+    
+    /**
+     * 商品变更版本号 - 每次发布商品事件的更新都在同一条UPDATE中加1，只由数据库维护
+     */
+    @TableField(value = "change_version", insertStrategy = FieldStrategy.NEVER, updateStrategy = FieldStrategy.NEVER)
+    private Long changeVersion;
+    
+    /**
+     * 商品交易版本号 - 价格或上下架状态实际变化时在同一条UPDATE中加1，只由数据库维护；
+     * 库存变化不影响，避免并发下单导致结算快照频繁失效
+     */
+    @TableField(value = "trade_version", insertStrategy = FieldStrategy.NEVER, updateStrategy = FieldStrategy.NEVER)
+    private Long tradeVersion;
 }
\ No newline at end of file
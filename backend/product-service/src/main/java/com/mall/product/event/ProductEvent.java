@@ -0,0 +1,127 @@
+package com.mall.product.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 商品变更事件
+ * 携带变更后的商品快照，字段为空表示该字段未变更
+ * 
+ * <p>version 为本次变更写入后商品的 change_version，由商品表在同一条UPDATE中递增，
+ * 消费方据此判断事件先后，不依赖各服务的系统时钟。</p>
+ * 
+ * @author lingbai
+ * @version 1.1
+ * @since 2026-10-19
+ * 
+ * V1.1 2026-10-19：增加商品变更版本号，事件按版本号排序
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductEvent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 事件类型
+     */
+    private ProductEventType eventType;
+
+    /**
+     * 商品ID
+     */
+    private Long productId;
+
+    /**
+     * 商品名称
+     */
+    private String name;
+
+    /**
+     * 商品主图
+     */
+    private String mainImage;
+
+    /**
+     * 变更后价格
+     */
+    private BigDecimal price;
+
+    /**
+     * 变更后库存
+     */
+    private Integer stock;
+
+    /**
+     * 变更后状态 (1:上架 0:下架)
+     */
+    private Integer status;
+
+    /**
+     * 商品变更版本号（变更写入后的 change_version，删除事件为空）
+     */
+    private Long version;
+
+    /**
+     * 事件时间（仅用于排查，不参与排序）
+     */
+    private LocalDateTime eventTime;
+
+    /**
+     * 创建价格变更事件
+     */
+    public static ProductEvent priceChanged(Long productId, Double price, Long version) {
+        return ProductEvent.builder()
+                .eventType(ProductEventType.PRICE_CHANGED)
+                .productId(productId)
+                .price(price != null ? BigDecimal.valueOf(price) : null)
+                .version(version)
+                .eventTime(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * 创建库存变更事件
+     */
+    public static ProductEvent stockChanged(Long productId, Integer stock, Long version) {
+        return ProductEvent.builder()
+                .eventType(ProductEventType.STOCK_CHANGED)
+                .productId(productId)
+                .stock(stock)
+                .version(version)
+                .eventTime(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * 创建状态变更事件
+     */
+    public static ProductEvent statusChanged(Long productId, Integer status, Long version) {
+        return ProductEvent.builder()
+                .eventType(ProductEventType.STATUS_CHANGED)
+                .productId(productId)
+                .status(status)
+                .version(version)
+                .eventTime(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * 创建商品删除事件
+     */
+    public static ProductEvent deleted(Long productId) {
+        return ProductEvent.builder()
+                .eventType(ProductEventType.DELETED)
+                .productId(productId)
+                .eventTime(LocalDateTime.now())
+                .build();
+    }
+}
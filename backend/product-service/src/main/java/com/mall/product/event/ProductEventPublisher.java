@@ -0,0 +1,74 @@
+package com.mall.product.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mall.product.config.RabbitMQConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 商品事件发布器
+ * 负责发布商品价格、库存、状态变更事件到RabbitMQ
+ * 存在事务时延迟到事务提交后发布，避免下游读到未提交的数据
+ * 
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+@Component
+public class ProductEventPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductEventPublisher.class);
+
+    @Autowired(required = false)
+    private RabbitTemplate rabbitTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    /**
+     * 发布商品事件
+     * 
+     * @param event 商品事件
+     */
+    public void publish(ProductEvent event) {
+        if (event == null || event.getProductId() == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(event);
+                }
+            });
+        } else {
+            send(event);
+        }
+    }
+
+    /**
+     * 发送事件到RabbitMQ，失败不影响主流程
+     */
+    private void send(ProductEvent event) {
+        if (rabbitTemplate == null) {
+            logger.debug("RabbitTemplate未配置，跳过商品事件发布 - 商品ID: {}", event.getProductId());
+            return;
+        }
+        try {
+            String message = objectMapper.writeValueAsString(event);
+            rabbitTemplate.convertAndSend(RabbitMQConfig.PRODUCT_EXCHANGE,
+                    event.getEventType().getRoutingKey(), message);
+            logger.debug("商品事件发布成功 - 类型: {}, 商品ID: {}", event.getEventType(), event.getProductId());
+        } catch (JsonProcessingException e) {
+            logger.error("商品事件序列化失败 - 类型: {}, 商品ID: {}", event.getEventType(), event.getProductId(), e);
+        } catch (Exception e) {
+            logger.error("商品事件发布失败 - 类型: {}, 商品ID: {}", event.getEventType(), event.getProductId(), e);
+        }
+    }
+}
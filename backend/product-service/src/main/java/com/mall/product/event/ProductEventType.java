@@ -0,0 +1,52 @@
+package com.mall.product.event;
+
+/**
+ * 商品事件类型枚举
+ * 
+ * @author lingbai
+ * @version 1.0
+ * @since 2026-10-19
+ */
+public enum ProductEventType {
+
+    /**
+     * 价格变更
+     */
+    PRICE_CHANGED("product.price.changed", "价格变更"),
+
+    /**
+     * 库存变更
+     */
+    STOCK_CHANGED("product.stock.changed", "库存变更"),
+
+    /**
+     * 上下架状态变更
+     */
+    STATUS_CHANGED("product.status.changed", "状态变更"),
+
+    /**
+     * 商品信息变更（名称、图片等）
+     */
+    INFO_CHANGED("product.info.changed", "信息变更"),
+
+    /**
+     * 商品删除
+     */
+    DELETED("product.deleted", "商品删除");
+
+    private final String routingKey;
+    private final String description;
+
+    ProductEventType(String routingKey, String description) {
+        this.routingKey = routingKey;
+        this.description = description;
+    }
+
+    public String getRoutingKey() {
+        return routingKey;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
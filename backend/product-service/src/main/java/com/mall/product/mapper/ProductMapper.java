@@ -15,9 +15,10 @@ import java.util.List;
  * 同时提供自定义的业务查询方法
  * 
  * @author lingbai
- * @version 2.0
+ * @version 2.1
  * @since 2025-10-22
  * 修改日志：V2.0 2025-12-01：继承 BaseMapper，添加商家筛选支持
+ * V2.1 2026-10-19：扣减、恢复库存同时递增商品变更版本号
  */
 @Mapper
 public interface ProductMapper extends BaseMapper<Product> {
@@ -79,7 +80,7 @@ public interface ProductMapper extends BaseMapper<Product> {
      * @param quantity 扣减数量
      * @return 影响行数
      */
-    @Update("UPDATE products SET stock = stock - #{quantity}, updated_time = NOW() " +
+    @Update("UPDATE products SET stock = stock - #{quantity}, change_version = change_version + 1, updated_time = NOW() " +
             "WHERE id = #{productId} AND stock >= #{quantity} AND deleted = 0")
     int deductStock(@Param("productId") Long productId, @Param("quantity") Integer quantity);
     
@@ -90,7 +91,7 @@ public interface ProductMapper extends BaseMapper<Product> {
      * @param quantity 恢复数量
      * @return 影响行数
      */
-    @Update("UPDATE products SET stock = stock + #{quantity}, updated_time = NOW() " +
+    @Update("UPDATE products SET stock = stock + #{quantity}, change_version = change_version + 1, updated_time = NOW() " +
             "WHERE id = #{productId} AND deleted = 0")
     int restoreStock(@Param("productId") Long productId, @Param("quantity") Integer quantity);
     
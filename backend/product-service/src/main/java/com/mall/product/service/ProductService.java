@@ -7,16 +7,20 @@ import com.mall.product.domain.entity.StockLog;
 import com.mall.product.domain.dto.ProductDetailDto;
 import com.mall.product.domain.dto.ProductQueryDto;
 
-import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 商品服务接口
  * 提供完整的商品管理功能，包括商品信息管理、库存管理、价格管理等
  * 
  * @author lingbai
- * @version 2.0
+ * @version 2.4
  * @since 2025-01-21
+ * 修改日志：V2.1 2026-10-19：新增批量更新商品状态
+ * V2.2 2026-10-19：交易版本号计算移至 Product#tradeVersion
+ * V2.3 2026-10-19：交易版本号改为读取数据库列 trade_version
+ * V2.4 2026-10-19：批量状态更新只更新并通知状态实际变化的商品；批量库存、批量调价全部成功或全部回滚
  */
 public interface ProductService {
     
@@ -106,6 +110,14 @@ public interface ProductService {
      */
     List<Product> getProductsByIds(List<Long> ids);
     
+    /**
+     * 批量获取商品交易版本号，用于结算快照校验
+     * 
+     * @param ids 商品ID列表
+     * @return 商品ID -> 交易版本号（不存在的商品不返回）
+     */
+    Map<Long, Long> getProductVersions(List<Long> ids);
+    
     /**
      * 获取商品详细信息（包含SKU列表）
      * 
@@ -165,6 +177,15 @@ public interface ProductService {
      */
     boolean updateProductStatus(Long id, Integer status);
     
+    /**
+     * 批量更新商品状态，只更新状态与目标状态不同的商品
+     * 
+     * @param ids 商品ID列表
+     * @param status 状态（0-下架，1-上架）
+     * @return 状态实际变化的商品数
+     */
+    int batchUpdateProductStatus(List<Long> ids, Integer status);
+    
     // ==================== 多规格商品管理 ====================
     
     /**
@@ -229,7 +250,7 @@ public interface ProductService {
     boolean updateSkuStock(Long skuId, Integer quantity);
     
     /**
-     * 批量更新商品库存
+     * 批量更新商品库存，任一项无效或更新失败时全部回滚
      * 
      * @param stockUpdates 库存更新列表
      * @return 是否全部更新成功
@@ -278,10 +299,10 @@ public interface ProductService {
     boolean updateSkuPrice(Long skuId, Double newPrice, String reason, Long operatorId);
     
     /**
-     * 批量调价
+     * 批量调价，任一项无效或更新失败时全部回滚
      * 
      * @param priceUpdates 价格更新列表
-     * @return 是否成功
+     * @return 是否全部调价成功
      */
     boolean batchUpdatePrices(List<PriceUpdate> priceUpdates);
     
@@ -1,6 +1,7 @@
 package com.mall.product.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.mall.common.core.domain.PageResult;
@@ -12,6 +13,9 @@ import com.mall.product.domain.entity.StockLog;
 import com.mall.product.domain.dto.ProductDetailDto;
 import com.mall.product.domain.dto.ProductQueryDto;
 import com.mall.product.domain.dto.ProductStatistics;
+import com.mall.product.event.ProductEvent;
+import com.mall.product.event.ProductEventPublisher;
+import com.mall.product.event.ProductEventType;
 import com.mall.product.mapper.ProductMapper;
 import com.mall.product.mapper.StockLogMapper;
 import com.mall.product.mapper.PriceHistoryMapper;
@@ -21,7 +25,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -31,15 +37,25 @@ import java.util.stream.Collectors;
  * 使用 MyBatis-Plus 进行数据库操作，支持商家ID筛选
  * 
  * @author lingbai
- * @version 3.0
+ * @version 3.5
  * @since 2025-10-22
  * 修改日志：V3.0 2025-12-01：重构为数据库实现，移除模拟数据，添加商家筛选支持
+ *          V3.1 2026-10-19：价格、库存、状态变更后发布商品事件，供购物车增量刷新
+ *          V3.2 2026-10-19：新增批量状态更新、批量归属验证；批量库存、批量调价改为一次查询全部商品
+ *          V3.3 2026-10-19：发布事件的更新同时递增 change_version，事件携带该版本号；库存事件和库存日志使用更新后重新读取的库存
+ *          V3.4 2026-10-19：价格或上下架状态实际变化时递增 trade_version，交易版本号改为读取该列
+ *          V3.5 2026-10-19：批量状态更新先锁定状态不同的商品，只更新并发布这些商品；批量库存、批量调价在一个事务内完成，失败时整体回滚
  */
 @Service
 public class ProductServiceImpl implements ProductService {
 
     private static final Logger logger = LoggerFactory.getLogger(ProductServiceImpl.class);
 
+    /**
+     * 递增商品变更版本号，与业务字段在同一条UPDATE中执行
+     */
+    private static final String BUMP_CHANGE_VERSION = "change_version = change_version + 1";
+
     @Autowired(required = false)
     private ProductMapper productMapper;
 
@@ -49,6 +65,9 @@ public class ProductServiceImpl implements ProductService {
     @Autowired(required = false)
     private PriceHistoryMapper priceHistoryMapper;
 
+    @Autowired
+    private ProductEventPublisher productEventPublisher;
+
     // SKU缓存（暂时保留，后续可迁移到数据库）
     private static final Map<Long, List<ProductSku>> SKU_CACHE = new HashMap<>();
 
@@ -316,6 +335,32 @@ public class ProductServiceImpl implements ProductService {
         }
     }
 
+    /**
+     * 批量获取商品交易版本号，只查询ID和版本号列
+     */
+    @Override
+    public Map<Long, Long> getProductVersions(List<Long> ids) {
+        logger.info("批量获取商品版本号 - 数量: {}", ids != null ? ids.size() : 0);
+
+        if (ids == null || ids.isEmpty() || productMapper == null) {
+            return Collections.emptyMap();
+        }
+
+        try {
+            LambdaQueryWrapper<Product> wrapper = new LambdaQueryWrapper<>();
+            wrapper.select(Product::getId, Product::getTradeVersion)
+                    .in(Product::getId, ids);
+            Map<Long, Long> versions = new HashMap<>();
+            for (Product product : productMapper.selectList(wrapper)) {
+                versions.put(product.getId(), product.getTradeVersion());
+            }
+            return versions;
+        } catch (Exception e) {
+            logger.error("批量获取商品版本号失败", e);
+            return Collections.emptyMap();
+        }
+    }
+
     /**
      * 获取商品详细信息（包含SKU列表）
      */
@@ -474,8 +519,21 @@ public class ProductServiceImpl implements ProductService {
             product.setUpdateTime(LocalDateTime.now());
 
             if (productMapper != null) {
-                int rows = productMapper.updateById(product);
+                int rows = updateWithVersion(product);
                 logger.info("商品更新成功 - ID: {}", product.getId());
+                if (rows > 0) {
+                    productEventPublisher.publish(ProductEvent.builder()
+                            .eventType(ProductEventType.INFO_CHANGED)
+                            .productId(product.getId())
+                            .name(product.getName())
+                            .mainImage(product.getMainImage())
+                            .price(product.getPrice() != null ? BigDecimal.valueOf(product.getPrice()) : null)
+                            .stock(product.getStock())
+                            .status(product.getStatus())
+                            .version(versionOf(product.getId()))
+                            .eventTime(LocalDateTime.now())
+                            .build());
+                }
                 return rows > 0;
             }
             return false;
@@ -502,6 +560,9 @@ public class ProductServiceImpl implements ProductService {
                 int rows = productMapper.deleteById(id);
                 SKU_CACHE.remove(id);
                 logger.info("商品删除成功 - ID: {}", id);
+                if (rows > 0) {
+                    productEventPublisher.publish(ProductEvent.deleted(id));
+                }
                 return rows > 0;
             }
             return false;
@@ -528,6 +589,9 @@ public class ProductServiceImpl implements ProductService {
                 int rows = productMapper.deleteBatchIds(ids);
                 ids.forEach(SKU_CACHE::remove);
                 logger.info("批量删除完成 - 删除数量: {}", rows);
+                if (rows > 0) {
+                    ids.forEach(id -> productEventPublisher.publish(ProductEvent.deleted(id)));
+                }
                 return rows > 0;
             }
             return false;
@@ -551,7 +615,10 @@ public class ProductServiceImpl implements ProductService {
                 product.setId(id);
                 product.setStatus(status);
                 product.setUpdateTime(LocalDateTime.now());
-                int rows = productMapper.updateById(product);
+                int rows = updateWithVersion(product);
+                if (rows > 0) {
+                    productEventPublisher.publish(ProductEvent.statusChanged(id, status, versionOf(id)));
+                }
                 return rows > 0;
             }
             return false;
@@ -561,6 +628,53 @@ public class ProductServiceImpl implements ProductService {
         }
     }
 
+    /**
+     * 批量更新商品状态：先锁定状态与目标状态不同的商品，再用一条UPDATE语句更新这些商品，
+     * 只有状态实际变化的商品递增版本号并发布状态变更事件
+     */
+    @Override
+    @Transactional
+    public int batchUpdateProductStatus(List<Long> ids, Integer status) {
+        logger.info("批量更新商品状态 - 数量: {}, 状态: {}", ids != null ? ids.size() : 0, status);
+
+        if (ids == null || ids.isEmpty() || status == null || productMapper == null) {
+            return 0;
+        }
+
+        try {
+            // 行锁保证选出的商品在更新前不会被其他事务改为目标状态
+            LambdaQueryWrapper<Product> query = new LambdaQueryWrapper<>();
+            query.select(Product::getId).in(Product::getId, ids)
+                    .and(w -> w.ne(Product::getStatus, status).or().isNull(Product::getStatus))
+                    .last("FOR UPDATE");
+            List<Long> changedIds = productMapper.selectList(query).stream()
+                    .map(Product::getId)
+                    .collect(Collectors.toList());
+            if (changedIds.isEmpty()) {
+                logger.info("批量更新商品状态完成 - 请求数量: {}, 状态均未变化", ids.size());
+                return 0;
+            }
+
+            Product update = new Product();
+            update.setUpdateTime(LocalDateTime.now());
+            LambdaUpdateWrapper<Product> wrapper = new LambdaUpdateWrapper<>();
+            wrapper.in(Product::getId, changedIds).setSql(BUMP_CHANGE_VERSION)
+                    .setSql(tradeVersionBump(null, status))
+                    .set(Product::getStatus, status);
+            int rows = productMapper.update(update, wrapper);
+            if (rows > 0) {
+                Map<Long, Product> versions = loadVersions(changedIds);
+                changedIds.forEach(id -> productEventPublisher.publish(ProductEvent.statusChanged(id, status,
+                        versions.containsKey(id) ? versions.get(id).getChangeVersion() : null)));
+            }
+            logger.info("批量更新商品状态完成 - 请求数量: {}, 更新数量: {}", ids.size(), rows);
+            return rows;
+        } catch (Exception e) {
+            logger.error("批量更新商品状态失败 - 数量: {}", ids.size(), e);
+            return 0;
+        }
+    }
+
 
     // ==================== 商品归属验证 ====================
 
@@ -586,6 +700,29 @@ public class ProductServiceImpl implements ProductService {
         }
     }
 
+    /**
+     * 批量验证商品归属，一次查询返回属于该商家的商品ID
+     * 
+     * @param productIds 商品ID列表
+     * @param merchantId 商家ID
+     * @return 属于该商家的商品ID列表
+     */
+    public List<Long> getOwnedProductIds(List<Long> productIds, Long merchantId) {
+        logger.info("批量验证商品归属 - 商品数量: {}, 商家ID: {}", productIds != null ? productIds.size() : 0, merchantId);
+
+        if (productIds == null || productIds.isEmpty() || merchantId == null || productMapper == null) {
+            return Collections.emptyList();
+        }
+
+        LambdaQueryWrapper<Product> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(Product::getId)
+                .in(Product::getId, productIds)
+                .eq(Product::getMerchantId, merchantId);
+        return productMapper.selectList(wrapper).stream()
+                .map(Product::getId)
+                .collect(Collectors.toList());
+    }
+
     // ==================== 统计功能 ====================
 
     /**
@@ -708,32 +845,7 @@ public class ProductServiceImpl implements ProductService {
                 if (product == null) {
                     return false;
                 }
-
-                int oldStock = product.getStock() != null ? product.getStock() : 0;
-                
-                Product update = new Product();
-                update.setId(productId);
-                update.setStock(newStock);
-                update.setUpdateTime(LocalDateTime.now());
-                int rows = productMapper.updateById(update);
-
-                // 记录库存日志（失败不影响主流程）
-                if (rows > 0 && stockLogMapper != null) {
-                    try {
-                        StockLog log = new StockLog();
-                        log.setProductId(productId);
-                        log.setOldStock(oldStock);
-                        log.setNewStock(newStock);
-                        log.setChangeQuantity(newStock - oldStock);
-                        log.setChangeType("UPDATE");
-                        log.setCreateTime(LocalDateTime.now());
-                        stockLogMapper.insert(log);
-                    } catch (Exception e) {
-                        logger.warn("记录库存日志失败，不影响主流程 - 商品ID: {}", productId, e);
-                    }
-                }
-
-                return rows > 0;
+                return applyStockUpdate(product, newStock);
             }
             return false;
         } catch (Exception e) {
@@ -742,6 +854,45 @@ public class ProductServiceImpl implements ProductService {
         }
     }
 
+    /**
+     * 写入新库存，记录库存日志并发布库存变更事件
+     * 
+     * @param product 更新前的商品
+     * @param newStock 新库存
+     * @return 是否更新成功
+     */
+    private boolean applyStockUpdate(Product product, Integer newStock) {
+        Long productId = product.getId();
+        int oldStock = product.getStock() != null ? product.getStock() : 0;
+
+        Product update = new Product();
+        update.setId(productId);
+        update.setStock(newStock);
+        update.setUpdateTime(LocalDateTime.now());
+        int rows = updateWithVersion(update);
+
+        // 记录库存日志（失败不影响主流程）
+        if (rows > 0 && stockLogMapper != null) {
+            try {
+                StockLog log = new StockLog();
+                log.setProductId(productId);
+                log.setOldStock(oldStock);
+                log.setNewStock(newStock);
+                log.setChangeQuantity(newStock - oldStock);
+                log.setChangeType("UPDATE");
+                log.setCreateTime(LocalDateTime.now());
+                stockLogMapper.insert(log);
+            } catch (Exception e) {
+                logger.warn("记录库存日志失败，不影响主流程 - 商品ID: {}", productId, e);
+            }
+        }
+        if (rows > 0) {
+            productEventPublisher.publish(ProductEvent.stockChanged(productId, newStock, versionOf(productId)));
+        }
+
+        return rows > 0;
+    }
+
     /**
      * 检查库存是否充足
      */
@@ -769,25 +920,28 @@ public class ProductServiceImpl implements ProductService {
 
         try {
             if (productMapper != null) {
-                Product product = productMapper.selectById(productId);
-                if (product == null) return false;
-
-                int oldStock = product.getStock() != null ? product.getStock() : 0;
                 int rows = productMapper.deductStock(productId, quantity);
+                if (rows == 0) {
+                    return false;
+                }
 
-                if (rows > 0 && stockLogMapper != null) {
+                // 条件更新持有行锁，本事务内重新读取到的库存即为本次扣减后的库存
+                Product current = loadVersions(Collections.singletonList(productId)).get(productId);
+                int newStock = current != null && current.getStock() != null ? current.getStock() : 0;
+                if (stockLogMapper != null) {
                     StockLog log = new StockLog();
                     log.setProductId(productId);
-                    log.setOldStock(oldStock);
-                    log.setNewStock(oldStock - quantity);
+                    log.setOldStock(newStock + quantity);
+                    log.setNewStock(newStock);
                     log.setChangeQuantity(-quantity);
                     log.setChangeType("DEDUCT");
                     log.setRelatedOrderNo(orderNo);
                     log.setCreateTime(LocalDateTime.now());
                     stockLogMapper.insert(log);
                 }
-
-                return rows > 0;
+                productEventPublisher.publish(ProductEvent.stockChanged(productId, newStock,
+                        current != null ? current.getChangeVersion() : null));
+                return true;
             }
             return false;
         } catch (Exception e) {
@@ -805,25 +959,27 @@ public class ProductServiceImpl implements ProductService {
 
         try {
             if (productMapper != null) {
-                Product product = productMapper.selectById(productId);
-                if (product == null) return false;
-
-                int oldStock = product.getStock() != null ? product.getStock() : 0;
                 int rows = productMapper.restoreStock(productId, quantity);
+                if (rows == 0) {
+                    return false;
+                }
 
-                if (rows > 0 && stockLogMapper != null) {
+                Product current = loadVersions(Collections.singletonList(productId)).get(productId);
+                int newStock = current != null && current.getStock() != null ? current.getStock() : 0;
+                if (stockLogMapper != null) {
                     StockLog log = new StockLog();
                     log.setProductId(productId);
-                    log.setOldStock(oldStock);
-                    log.setNewStock(oldStock + quantity);
+                    log.setOldStock(newStock - quantity);
+                    log.setNewStock(newStock);
                     log.setChangeQuantity(quantity);
                     log.setChangeType("RESTORE");
                     log.setRelatedOrderNo(orderNo);
                     log.setCreateTime(LocalDateTime.now());
                     stockLogMapper.insert(log);
                 }
-
-                return rows > 0;
+                productEventPublisher.publish(ProductEvent.stockChanged(productId, newStock,
+                        current != null ? current.getChangeVersion() : null));
+                return true;
             }
             return false;
         } catch (Exception e) {
@@ -851,28 +1007,7 @@ public class ProductServiceImpl implements ProductService {
             if (productMapper != null) {
                 Product product = productMapper.selectById(productId);
                 if (product == null) return false;
-
-                Double oldPrice = product.getPrice();
-
-                Product update = new Product();
-                update.setId(productId);
-                update.setPrice(newPrice);
-                update.setUpdateTime(LocalDateTime.now());
-                int rows = productMapper.updateById(update);
-
-                // 记录价格历史
-                if (rows > 0 && priceHistoryMapper != null) {
-                    PriceHistory history = new PriceHistory();
-                    history.setProductId(productId);
-                    history.setOldPrice(oldPrice);
-                    history.setNewPrice(newPrice);
-                    history.setReason(reason);
-                    history.setOperatorId(operatorId);
-                    history.setCreateTime(LocalDateTime.now());
-                    priceHistoryMapper.insert(history);
-                }
-
-                return rows > 0;
+                return applyPriceUpdate(product, newPrice, reason, operatorId);
             }
             return false;
         } catch (Exception e) {
@@ -881,6 +1016,43 @@ public class ProductServiceImpl implements ProductService {
         }
     }
 
+    /**
+     * 写入新价格，记录价格历史并发布价格变更事件
+     * 
+     * @param product 更新前的商品
+     * @param newPrice 新价格
+     * @param reason 变更原因
+     * @param operatorId 操作人ID
+     * @return 是否更新成功
+     */
+    private boolean applyPriceUpdate(Product product, Double newPrice, String reason, Long operatorId) {
+        Long productId = product.getId();
+        Double oldPrice = product.getPrice();
+
+        Product update = new Product();
+        update.setId(productId);
+        update.setPrice(newPrice);
+        update.setUpdateTime(LocalDateTime.now());
+        int rows = updateWithVersion(update);
+
+        // 记录价格历史
+        if (rows > 0 && priceHistoryMapper != null) {
+            PriceHistory history = new PriceHistory();
+            history.setProductId(productId);
+            history.setOldPrice(oldPrice);
+            history.setNewPrice(newPrice);
+            history.setReason(reason);
+            history.setOperatorId(operatorId);
+            history.setCreateTime(LocalDateTime.now());
+            priceHistoryMapper.insert(history);
+        }
+        if (rows > 0) {
+            productEventPublisher.publish(ProductEvent.priceChanged(productId, newPrice, versionOf(productId)));
+        }
+
+        return rows > 0;
+    }
+
     // ==================== SKU管理（暂时保留缓存实现） ====================
 
     @Override
@@ -962,24 +1134,149 @@ public class ProductServiceImpl implements ProductService {
 
     // ==================== 其他接口实现 ====================
 
+    /**
+     * 批量更新库存，一次查询出全部商品的原库存后逐条更新；
+     * 所有更新在一个事务内完成，存在无效项或任一项更新失败时整体回滚，库存事件随回滚一并丢弃
+     */
     @Override
+    @Transactional
     public boolean batchUpdateStock(List<ProductService.StockUpdate> updates) {
-        if (updates == null) return false;
+        if (updates == null || updates.isEmpty() || productMapper == null) return false;
+        logger.info("批量更新库存 - 数量: {}", updates.size());
+
+        Map<Long, Product> products = getProductMap(updates.stream().map(StockUpdate::getProductId));
         for (StockUpdate update : updates) {
-            updateStock(update.getProductId(), update.getQuantity());
+            Integer newStock = update.getQuantity();
+            if (!products.containsKey(update.getProductId()) || newStock == null || newStock < 0) {
+                logger.warn("批量更新库存存在无效项，未更新 - 商品ID: {}, 新库存: {}", update.getProductId(), newStock);
+                return false;
+            }
+        }
+        for (StockUpdate update : updates) {
+            boolean updated;
+            try {
+                updated = applyStockUpdate(products.get(update.getProductId()), update.getQuantity());
+            } catch (Exception e) {
+                logger.error("批量更新库存失败 - 商品ID: {}", update.getProductId(), e);
+                updated = false;
+            }
+            if (!updated) {
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                logger.warn("批量更新库存回滚 - 请求数量: {}, 失败商品ID: {}", updates.size(), update.getProductId());
+                return false;
+            }
         }
+        logger.info("批量更新库存完成 - 数量: {}", updates.size());
         return true;
     }
 
+    /**
+     * 批量调价，一次查询出全部商品的原价格后逐条更新；
+     * 所有更新在一个事务内完成，存在无效项或任一项调价失败时整体回滚，价格事件随回滚一并丢弃
+     */
     @Override
+    @Transactional
     public boolean batchUpdatePrices(List<ProductService.PriceUpdate> updates) {
-        if (updates == null) return false;
+        if (updates == null || updates.isEmpty() || productMapper == null) return false;
+        logger.info("批量调价 - 数量: {}", updates.size());
+
+        Map<Long, Product> products = getProductMap(updates.stream().map(PriceUpdate::getProductId));
+        for (PriceUpdate update : updates) {
+            Double newPrice = update.getNewPrice();
+            if (!products.containsKey(update.getProductId()) || newPrice == null || newPrice < 0) {
+                logger.warn("批量调价存在无效项，未调价 - 商品ID: {}, 新价格: {}", update.getProductId(), newPrice);
+                return false;
+            }
+        }
         for (PriceUpdate update : updates) {
-            updateProductPrice(update.getProductId(), update.getNewPrice(), update.getReason(), update.getOperatorId());
+            boolean updated;
+            try {
+                updated = applyPriceUpdate(products.get(update.getProductId()), update.getNewPrice(),
+                        update.getReason(), update.getOperatorId());
+            } catch (Exception e) {
+                logger.error("批量调价失败 - 商品ID: {}", update.getProductId(), e);
+                updated = false;
+            }
+            if (!updated) {
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                logger.warn("批量调价回滚 - 请求数量: {}, 失败商品ID: {}", updates.size(), update.getProductId());
+                return false;
+            }
         }
+        logger.info("批量调价完成 - 数量: {}", updates.size());
         return true;
     }
 
+    /**
+     * 按ID更新商品非空字段，同时递增商品变更版本号；价格或上下架状态实际变化时递增交易版本号
+     */
+    private int updateWithVersion(Product update) {
+        LambdaUpdateWrapper<Product> wrapper = new LambdaUpdateWrapper<>();
+        wrapper.eq(Product::getId, update.getId()).setSql(BUMP_CHANGE_VERSION);
+        Double price = update.getPrice();
+        Integer status = update.getStatus();
+        if (price == null && status == null) {
+            return productMapper.update(update, wrapper);
+        }
+        // 实体字段排在SET子句最前，价格和状态改由wrapper在交易版本号之后赋值，
+        // 交易版本号比较的才是更新前的价格和状态
+        wrapper.setSql(tradeVersionBump(price, status))
+                .set(price != null, Product::getPrice, price)
+                .set(status != null, Product::getStatus, status);
+        update.setPrice(null);
+        update.setStatus(null);
+        try {
+            return productMapper.update(update, wrapper);
+        } finally {
+            update.setPrice(price);
+            update.setStatus(status);
+        }
+    }
+
+    /**
+     * 交易版本号递增语句，新价格或新状态与当前值不同时加1。
+     * MySQL单表UPDATE按从左到右的顺序赋值，该语句必须排在价格和状态赋值之前
+     *
+     * @param price 新价格，不更新时为null
+     * @param status 新状态，不更新时为null
+     * @return SET子句片段
+     */
+    private static String tradeVersionBump(Double price, Integer status) {
+        List<String> changed = new ArrayList<>(2);
+        if (price != null) {
+            changed.add("NOT (price <=> " + BigDecimal.valueOf(price).toPlainString() + ")");
+        }
+        if (status != null) {
+            changed.add("NOT (status <=> " + status + ")");
+        }
+        return "trade_version = trade_version + IF(" + String.join(" OR ", changed) + ", 1, 0)";
+    }
+
+    /**
+     * 读取商品当前的库存和变更版本号。
+     * 在更新所在事务内调用时读到的是本事务写入的值，该行在提交前被行锁保护
+     */
+    private Map<Long, Product> loadVersions(Collection<Long> ids) {
+        LambdaQueryWrapper<Product> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(Product::getId, Product::getStock, Product::getChangeVersion).in(Product::getId, ids);
+        return productMapper.selectList(wrapper).stream()
+                .collect(Collectors.toMap(Product::getId, product -> product, (a, b) -> a));
+    }
+
+    private Long versionOf(Long productId) {
+        Product current = loadVersions(Collections.singletonList(productId)).get(productId);
+        return current != null ? current.getChangeVersion() : null;
+    }
+
+    private Map<Long, Product> getProductMap(java.util.stream.Stream<Long> productIds) {
+        List<Long> ids = productIds.filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return productMapper.selectBatchIds(ids).stream()
+                .collect(Collectors.toMap(Product::getId, product -> product, (a, b) -> a));
+    }
+
     @Override
     public Object getStockLogs(Long productId, Long current, Long size) {
         return createEmptyPageData(current, size);
@@ -2,9 +2,13 @@
 -- 在线商城数据库初始化脚本
 -- 创建时间: 2025-10-21 23:01:58
 -- 作者: lingbai
--- 版本: 1.2
+-- 版本: 1.6
 -- 修改日志:
 -- V1.2 2025-12-30: 修正 products 表结构以匹配 Product 实体类 (brand_name, detail_images, is_recommend 等)
+-- V1.3 2026-10-19: products 表增加商品变更版本号 change_version（已有库执行 07-product-versions.sql）
+-- V1.4 2026-10-19: payment_orders 表增加发起支付时选中的收单端点 channel_endpoint（已有库执行 08-payment-channel-endpoint.sql）
+-- V1.5 2026-10-19: products 表增加交易版本号 trade_version，价格或上下架状态变化时加1（已有库执行 07-product-versions.sql）
+-- V1.6 2026-10-19: order_items 表增加商品所属商家 merchant_id（已有库执行 09-order-item-merchant.sql）
 -- ========================================
 
 -- 创建数据库
@@ -118,6 +122,8 @@ CREATE TABLE IF NOT EXISTS `products` (
     `is_hot` TINYINT DEFAULT 0 COMMENT '是否热销',
     `sort_order` INT DEFAULT 0 COMMENT '排序值',
     `deleted` TINYINT DEFAULT 0 COMMENT '删除标志: 0-未删除, 1-已删除',
+    `change_version` BIGINT NOT NULL DEFAULT 0 COMMENT '商品变更版本号，每次发布商品事件的更新加1',
+    `trade_version` BIGINT NOT NULL DEFAULT 0 COMMENT '商品交易版本号，价格或上下架状态变化时加1',
     `created_time` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     `updated_time` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     INDEX `idx_category_id` (`category_id`),
@@ -298,6 +304,7 @@ CREATE TABLE IF NOT EXISTS `order_items` (
     `id` BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '订单商品ID',
     `order_id` BIGINT NOT NULL COMMENT '订单ID',
     `product_id` BIGINT NOT NULL COMMENT '商品ID',
+    `merchant_id` BIGINT NULL COMMENT '商品所属商家ID',
     `product_name` VARCHAR(255) NOT NULL COMMENT '商品名称',
     `product_image` VARCHAR(255) COMMENT '商品图片',
     `price` DECIMAL(10,2) NOT NULL COMMENT '商品价格',
@@ -323,6 +330,7 @@ CREATE TABLE IF NOT EXISTS `payment_orders` (
     `notify_url` VARCHAR(500) COMMENT '异步通知URL',
     `expire_time` DATETIME COMMENT '过期时间',
     `third_party_order_no` VARCHAR(64) COMMENT '第三方订单号',
+    `channel_endpoint` VARCHAR(64) COMMENT '发起支付时选中的收单端点',
     `pay_time` DATETIME COMMENT '支付时间',
     `actual_amount` DECIMAL(15,2) COMMENT '实际支付金额',
     `fee_amount` DECIMAL(15,2) COMMENT '手续费',
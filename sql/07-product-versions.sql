@@ -0,0 +1,27 @@
+-- ======================================
+-- 商品版本号升级脚本
+-- 创建时间: 2026-10-19
+-- 用途: 为已有的 products 表补充变更版本号和交易版本号列，新建库已由 00-init-databases.sql 创建，可重复执行
+-- ======================================
+
+USE `mall_product`;
+
+-- 商品变更版本号：每次发布商品事件的更新加1，购物车据此判断商品事件先后
+SET @column_exists = (SELECT COUNT(*) FROM information_schema.COLUMNS
+    WHERE TABLE_SCHEMA = 'mall_product' AND TABLE_NAME = 'products' AND COLUMN_NAME = 'change_version');
+SET @ddl = IF(@column_exists = 0,
+    'ALTER TABLE `products` ADD COLUMN `change_version` BIGINT NOT NULL DEFAULT 0 COMMENT ''商品变更版本号，每次发布商品事件的更新加1'' AFTER `deleted`',
+    'SELECT 1');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- 商品交易版本号：价格或上下架状态变化时加1，结算快照据此判断商品是否变化
+SET @column_exists = (SELECT COUNT(*) FROM information_schema.COLUMNS
+    WHERE TABLE_SCHEMA = 'mall_product' AND TABLE_NAME = 'products' AND COLUMN_NAME = 'trade_version');
+SET @ddl = IF(@column_exists = 0,
+    'ALTER TABLE `products` ADD COLUMN `trade_version` BIGINT NOT NULL DEFAULT 0 COMMENT ''商品交易版本号，价格或上下架状态变化时加1'' AFTER `change_version`',
+    'SELECT 1');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
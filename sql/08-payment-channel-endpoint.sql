@@ -0,0 +1,17 @@
+-- ======================================
+-- 支付订单收单端点升级脚本
+-- 创建时间: 2026-10-19
+-- 用途: 为已有的 payment_orders 表补充收单端点列，新建库已由 00-init-databases.sql 创建，可重复执行
+-- ======================================
+
+USE `mall_payment`;
+
+-- 发起支付时路由选中的收单端点名称：查询、取消、同步和退款须发往同一端点，为空时使用渠道默认网关
+SET @column_exists = (SELECT COUNT(*) FROM information_schema.COLUMNS
+    WHERE TABLE_SCHEMA = 'mall_payment' AND TABLE_NAME = 'payment_orders' AND COLUMN_NAME = 'channel_endpoint');
+SET @ddl = IF(@column_exists = 0,
+    'ALTER TABLE `payment_orders` ADD COLUMN `channel_endpoint` VARCHAR(64) NULL COMMENT ''发起支付时选中的收单端点'' AFTER `third_party_order_no`',
+    'SELECT 1');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -0,0 +1,17 @@
+-- ======================================
+-- 订单项商家升级脚本
+-- 创建时间: 2026-10-19
+-- 用途: 为已有的 order_items 表补充商品所属商家列，新建库已由 00-init-databases.sql 创建，可重复执行
+-- ======================================
+
+USE `mall_order`;
+
+-- 订单项的商品所属商家：多商家订单按商家拆分订单事件，为空的历史订单项归入订单的商家
+SET @column_exists = (SELECT COUNT(*) FROM information_schema.COLUMNS
+    WHERE TABLE_SCHEMA = 'mall_order' AND TABLE_NAME = 'order_items' AND COLUMN_NAME = 'merchant_id');
+SET @ddl = IF(@column_exists = 0,
+    'ALTER TABLE `order_items` ADD COLUMN `merchant_id` BIGINT NULL COMMENT ''商品所属商家ID'' AFTER `product_id`',
+    'SELECT 1');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;